@@ -46,11 +46,19 @@ import static net.sf.orcc.OrccLaunchConstants.PROJECT;
 import static net.sf.orcc.OrccLaunchConstants.TRACES_FOLDER;
 import static net.sf.orcc.OrccLaunchConstants.XDF_FILE;
 import static net.sf.orcc.backends.BackendsConstants.ADDITIONAL_TRANSFOS;
+import static net.sf.orcc.backends.BackendsConstants.AUTO_MAPPING;
+import static net.sf.orcc.backends.BackendsConstants.AUTO_MAPPING_CORES;
+import static net.sf.orcc.backends.BackendsConstants.AUTO_MAPPING_RESTARTS;
+import static net.sf.orcc.backends.BackendsConstants.AUTO_MAPPING_SEED;
+import static net.sf.orcc.backends.BackendsConstants.AUTO_MAPPING_TIME_BUDGET;
+import static net.sf.orcc.backends.BackendsConstants.AUTO_MAPPING_WEIGHTS;
 import static net.sf.orcc.backends.BackendsConstants.CONVERT_MULTI2MONO;
+import static net.sf.orcc.backends.BackendsConstants.INCREMENTAL_GENERATION;
 import static net.sf.orcc.backends.BackendsConstants.LLVM_TARGET_DATALAYOUT;
 import static net.sf.orcc.backends.BackendsConstants.LLVM_TARGET_TRIPLE;
 import static net.sf.orcc.backends.BackendsConstants.NEW_SCHEDULER;
 import static net.sf.orcc.backends.BackendsConstants.PAPIFY;
+import static net.sf.orcc.backends.BackendsConstants.PARALLEL_GENERATION;
 import static net.sf.orcc.backends.BackendsConstants.PROFILE;
 import static net.sf.orcc.backends.BackendsConstants.TTA_PROCESSORS_CONFIGURATION;
 import static net.sf.orcc.backends.BackendsConstants.LINK_NATIVE_LIBRARY;
@@ -63,10 +71,19 @@ import static net.sf.orcc.util.OrccUtil.getFile;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.backends.util.BuildManifest;
+import net.sf.orcc.backends.util.MappingPartitioner;
 import net.sf.orcc.backends.util.Validator;
 import net.sf.orcc.df.Actor;
 import net.sf.orcc.df.Instance;
@@ -103,6 +120,7 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.equinox.app.IApplication;
 import org.eclipse.equinox.app.IApplicationContext;
 import org.osgi.framework.Bundle;
@@ -200,6 +218,8 @@ public abstract class AbstractBackend implements Backend, IApplication {
 	protected boolean mergeActions;
 	protected boolean mergeActors;
 	protected boolean convertMulti2Mono;
+	protected boolean parallelGeneration;
+	protected boolean incrementalGeneration;
 
 	/**
 	 * Path where output files will be written
@@ -362,6 +382,13 @@ public abstract class AbstractBackend implements Backend, IApplication {
 			}
 			OrccLogger.traceln(actors.size() + " actors will be added to the VTL (other IR files are units)");
 
+			final Result result = Result.newInstance();
+			BuildManifest manifest = null;
+			if (incrementalGeneration) {
+				manifest = new BuildManifest(outputPath, backendName + " " + orccVersion, getOptions());
+				actors = getOutdatedChildren(actors, manifest, result);
+			}
+
 			if (!childrenTransfos.isEmpty()) {
 				stopIfRequested();
 				OrccLogger.traceln("Actors transformations");
@@ -373,11 +400,9 @@ public abstract class AbstractBackend implements Backend, IApplication {
 			stopIfRequested();
 			OrccLogger.traceln("Actors generation");
 			final long t0 = System.currentTimeMillis();
-			final Result result = Result.newInstance();
-			for (final Actor actor : actors) {
-				beforeGeneration(actor);
-				result.merge(doGenerateActor(actor));
-				result.merge(doAdditionalGeneration(actor));
+			result.merge(generateChildren(actors, manifest));
+			if (manifest != null) {
+				manifest.save();
 			}
 			OrccLogger.traceln("Done in " + getDuration(t0) + "s. " + result);
 		}
@@ -386,31 +411,30 @@ public abstract class AbstractBackend implements Backend, IApplication {
 		// -----------------------------------------------------
 		else {
 
+			List<Vertex> children = network.getChildren();
+			List<Actor> actors = network.getAllActors();
+			final Result result = Result.newInstance();
+			BuildManifest manifest = null;
+			if (incrementalGeneration) {
+				manifest = new BuildManifest(outputPath, backendName + " " + orccVersion, getOptions());
+				children = getOutdatedChildren(children, manifest, result);
+				actors = getOutdatedActors(actors, network.getChildren(), children);
+			}
+
 			if (!childrenTransfos.isEmpty()) {
 				stopIfRequested();
 				OrccLogger.traceln("Children transformations");
 				final long t0 = System.currentTimeMillis();
-				applyTransformations(network.getAllActors(), childrenTransfos, debug);
+				applyTransformations(actors, childrenTransfos, debug);
 				OrccLogger.traceln("Done in " + getDuration(t0) + "s");
 			}
 
 			stopIfRequested();
 			OrccLogger.traceln("Children generation");
 			final long t0 = System.currentTimeMillis();
-			final Result result = Result.newInstance();
-			for (final Vertex vertex : network.getChildren()) {
-				stopIfRequested();
-				final Instance instance = vertex.getAdapter(Instance.class);
-				final Actor actor = vertex.getAdapter(Actor.class);
-				if (instance != null) {
-					beforeGeneration(instance);
-					result.merge(doGenerateInstance(instance));
-					result.merge(doAdditionalGeneration(instance));
-				} else if (actor != null) {
-					beforeGeneration(actor);
-					result.merge(doGenerateActor(actor));
-					result.merge(doAdditionalGeneration(actor));
-				}
+			result.merge(generateChildren(children, manifest));
+			if (manifest != null) {
+				manifest.save();
 			}
 
 			OrccLogger.traceln("Done in " + getDuration(t0) + "s. " + result);
@@ -551,6 +575,206 @@ public abstract class AbstractBackend implements Backend, IApplication {
 		}
 	}
 
+	/**
+	 * Returns the children which must be generated, i.e. the ones whose hash
+	 * differs from the one recorded in the given build <em>manifest</em>. The
+	 * hashes of all the children are recorded in the manifest, and the cache
+	 * hits and misses are merged into <em>result</em>.
+	 * 
+	 * @param children
+	 *            the instances or actors of the network
+	 * @param manifest
+	 *            the build manifest of the previous run
+	 * @param result
+	 *            the Result of the children generation
+	 * @return the children which are not up-to-date
+	 */
+	private <T extends Vertex> List<T> getOutdatedChildren(final List<T> children, final BuildManifest manifest,
+			final Result result) {
+		final List<T> outdated = new ArrayList<T>();
+		for (final T child : children) {
+			final Actor actor = child.getAdapter(Actor.class);
+			if (child.getAdapter(Instance.class) == null && actor == null) {
+				outdated.add(child);
+				continue;
+			}
+
+			final String name = getManifestName(child);
+			final String hash = manifest.computeHash(child);
+			manifest.record(name, hash);
+			if (manifest.isUpToDate(name, hash)) {
+				result.merge(Result.newCacheHitInstance());
+			} else {
+				result.merge(Result.newCacheMissInstance());
+				outdated.add(child);
+			}
+		}
+		return outdated;
+	}
+
+	/**
+	 * Returns the given <em>actors</em>, except those used only by up-to-date
+	 * children.
+	 * 
+	 * @param actors
+	 *            all the actors of the network
+	 * @param children
+	 *            all the children of the network
+	 * @param outdated
+	 *            the children which must be generated
+	 * @return the actors to transform
+	 */
+	private List<Actor> getOutdatedActors(final List<Actor> actors, final List<Vertex> children,
+			final List<Vertex> outdated) {
+		final Set<Actor> upToDate = new HashSet<Actor>();
+		for (final Vertex child : children) {
+			upToDate.add(child.getAdapter(Actor.class));
+		}
+		for (final Vertex child : outdated) {
+			upToDate.remove(child.getAdapter(Actor.class));
+		}
+
+		final List<Actor> result = new ArrayList<Actor>();
+		for (final Actor actor : actors) {
+			if (!upToDate.contains(actor)) {
+				result.add(actor);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Generate the code of the given children (instances or actors). The
+	 * generation is done concurrently when the parallel generation is enabled
+	 * and {@link #isChildrenGenerationThreadSafe()} returns true. The children
+	 * transformations are always applied sequentially before, since they may
+	 * modify the units shared by the actors (e.g. the inliners).
+	 * 
+	 * @param children
+	 *            the instances or actors to generate
+	 * @param manifest
+	 *            the build manifest in which the files of each child are
+	 *            recorded, or <code>null</code>
+	 * @return the merged generation Result
+	 */
+	private Result generateChildren(final List<? extends Vertex> children, final BuildManifest manifest) {
+		final Result result = Result.newInstance();
+		if (!parallelGeneration || children.size() < 2 || !isChildrenGenerationThreadSafe()) {
+			for (final Vertex vertex : children) {
+				stopIfRequested();
+				result.merge(generateChild(vertex, manifest));
+			}
+			return result;
+		}
+
+		final List<Callable<Result>> tasks = new ArrayList<Callable<Result>>();
+		for (final Vertex vertex : children) {
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					return generateChild(vertex, manifest);
+				}
+			});
+		}
+		return result.merge(runInParallel(tasks));
+	}
+
+	/**
+	 * Generate the code of the given instance or actor, and record the
+	 * generated files in the given build manifest.
+	 * 
+	 * @param vertex
+	 *            an instance or an actor
+	 * @param manifest
+	 *            a build manifest, or <code>null</code>
+	 * @return The generation Result object
+	 */
+	private Result generateChild(final Vertex vertex, final BuildManifest manifest) {
+		final Result result = Result.newInstance();
+		final Instance instance = vertex.getAdapter(Instance.class);
+		final Actor actor = vertex.getAdapter(Actor.class);
+		if (instance != null) {
+			beforeGeneration(instance);
+			result.merge(doGenerateInstance(instance));
+			result.merge(doAdditionalGeneration(instance));
+		} else if (actor != null) {
+			beforeGeneration(actor);
+			result.merge(doGenerateActor(actor));
+			result.merge(doAdditionalGeneration(actor));
+		}
+		if (manifest != null && (instance != null || actor != null)) {
+			manifest.recordFiles(getManifestName(vertex), result.files());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the name of the given instance or actor in the build manifest.
+	 * 
+	 * @param vertex
+	 *            an instance or an actor
+	 * @return the name of the actor, or the label of the instance
+	 */
+	private String getManifestName(final Vertex vertex) {
+		final Actor actor = vertex.getAdapter(Actor.class);
+		return vertex == actor ? actor.getName() : vertex.getLabel();
+	}
+
+	/**
+	 * Run the given tasks on a pool of one thread per available processor and
+	 * merge their results. All the proxies of the current ResourceSet are
+	 * resolved before, as EMF resource loading is not thread-safe.
+	 * 
+	 * @param tasks
+	 *            the tasks to run
+	 * @return the merged Result of the tasks
+	 */
+	private Result runInParallel(final List<Callable<Result>> tasks) {
+		EcoreUtil.resolveAll(currentResourceSet);
+
+		final int nbThreads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		try {
+			final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final Callable<Result> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+
+			final Result result = Result.newInstance();
+			for (final Future<Result> future : futures) {
+				stopIfRequested();
+				result.merge(future.get());
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new OrccRuntimeException("Error while generating the children", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns true if {@link #beforeGeneration(Instance)},
+	 * {@link #doGenerateInstance(Instance)},
+	 * {@link #doAdditionalGeneration(Instance)} and their actor counterparts
+	 * can be called concurrently on different children. This is false by
+	 * default, since most back-ends share their printers between children.
+	 * 
+	 * @return true if the children can be generated in parallel
+	 */
+	protected boolean isChildrenGenerationThreadSafe() {
+		return false;
+	}
+
 	/**
 	 * Returns the boolean-valued option with the given name. Returns the given
 	 * default value if the option is undefined.
@@ -628,6 +852,53 @@ public abstract class AbstractBackend implements Backend, IApplication {
 		}
 	}
 
+	/**
+	 * Returns the number-valued option with the given name, given either as a
+	 * number or as a string. Returns the given default value if the option is
+	 * undefined or empty.
+	 */
+	private long getNumberOption(String optionName, long defaultValue) {
+		Object obj = options.get(optionName);
+		if (obj instanceof Number) {
+			return ((Number) obj).longValue();
+		} else if (obj instanceof String && !((String) obj).trim().isEmpty()) {
+			try {
+				return Long.parseLong(((String) obj).trim());
+			} catch (NumberFormatException e) {
+				throw new OrccRuntimeException("Expected integer for option " + optionName + ", got " + obj);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the mapping of the children of the given network on components.
+	 * When automatic mapping is enabled, the mapping is computed by a
+	 * {@link MappingPartitioner}, otherwise the mapping configured before the
+	 * launch is returned.
+	 * 
+	 * @param network
+	 *            the network to map
+	 * @return a map from instance names to component names
+	 */
+	protected Map<String, String> getMapping(Network network) {
+		if (!getOption(AUTO_MAPPING, false)) {
+			return mapping;
+		}
+
+		final MappingPartitioner partitioner = new MappingPartitioner(network);
+		final String weights = getOption(AUTO_MAPPING_WEIGHTS, "");
+		if (!weights.isEmpty()) {
+			partitioner.loadWeights(new File(weights));
+		}
+		partitioner.setRestarts((int) getNumberOption(AUTO_MAPPING_RESTARTS, MappingPartitioner.DEFAULT_RESTARTS));
+		partitioner.setTimeBudget(getNumberOption(AUTO_MAPPING_TIME_BUDGET, 1000));
+		partitioner.setSeed(getNumberOption(AUTO_MAPPING_SEED, 0));
+
+		final long cores = getNumberOption(AUTO_MAPPING_CORES, Runtime.getRuntime().availableProcessors());
+		return partitioner.computeMapping((int) Math.max(1, cores));
+	}
+
 	/**
 	 * Returns a map containing the back-end options in this launch
 	 * configuration. Returns an empty map if the back-end configuration has no
@@ -766,6 +1037,8 @@ public abstract class AbstractBackend implements Backend, IApplication {
 		mergeActors = classify && getOption(MERGE_ACTORS, false);
 
 		convertMulti2Mono = getOption(CONVERT_MULTI2MONO, false);
+		parallelGeneration = getOption(PARALLEL_GENERATION, false);
+		incrementalGeneration = getOption(INCREMENTAL_GENERATION, false);
 
 		String outputFolder = getOption(OUTPUT_FOLDER, "");
 		if (outputFolder.isEmpty()) {
@@ -816,6 +1089,14 @@ public abstract class AbstractBackend implements Backend, IApplication {
 				"(C) Use the " + "data-driven/demand-driven strategy for the actor-scheduler");
 		options.addOption("m2m", "multi2mono", false, "Transform high-level actors with multi-tokens actions"
 				+ " in low-level actors with mono-token actions");
+		options.addOption("pg", "parallel-generation", false,
+				"Generate the children on several threads, when supported by the back-end");
+		options.addOption("inc", "incremental", false,
+				"Only transform and generate the children which changed since the previous run");
+		options.addOption("am", "auto-mapping", true,
+				"(C) Compute a load-balanced mapping of the actors on the given number of cores");
+		options.addOption("amw", "auto-mapping-weights", true,
+				"(C) Actions weights file (.exdf, from genWeights) used by the automatic mapping");
 		options.addOption("prof", "profile", false, "(C) Enable profiling");
 		options.addOption("papify", false, "(C) Enable papi performance tool analyzer code printing.");
 		options.addOption("et", "enable-traces", true, "(C) Enable tracing of the FIFOs in the given directory");
@@ -897,6 +1178,14 @@ public abstract class AbstractBackend implements Backend, IApplication {
 				optionMap.put(TRACES_FOLDER, line.getOptionValue("et"));
 			}
 
+			if (line.hasOption("am")) {
+				optionMap.put(AUTO_MAPPING, true);
+				optionMap.put(AUTO_MAPPING_CORES, line.getOptionValue("am"));
+				if (line.hasOption("amw")) {
+					optionMap.put(AUTO_MAPPING_WEIGHTS, line.getOptionValue("amw"));
+				}
+			}
+
 			if (line.hasOption("ttapc")) {
 				String pc = line.getOptionValue("ttapc");
 				if (pc.equals("Standard") || pc.equals("Custom") || pc.equals("Fast") || pc.equals("Huge")) {
@@ -916,6 +1205,8 @@ public abstract class AbstractBackend implements Backend, IApplication {
 
 			optionMap.put(NEW_SCHEDULER, line.hasOption("as"));
 			optionMap.put(CONVERT_MULTI2MONO, line.hasOption("m2m"));
+			optionMap.put(PARALLEL_GENERATION, line.hasOption("pg"));
+			optionMap.put(INCREMENTAL_GENERATION, line.hasOption("inc"));
 			optionMap.put(ADDITIONAL_TRANSFOS, line.hasOption('t'));
 			optionMap.put(PROFILE, line.hasOption("prof"));
 			optionMap.put(PAPIFY, line.hasOption("papify"));
@@ -40,6 +40,15 @@ public class BackendsConstants {
 	
 	public static final String CONVERT_MULTI2MONO = "net.sf.orcc.backends.multi2mono";
 	public static final String ADDITIONAL_TRANSFOS = "net.sf.orcc.backends.add_transfos";
+	public static final String PARALLEL_GENERATION = "net.sf.orcc.backends.parallelGeneration";
+	public static final String INCREMENTAL_GENERATION = "net.sf.orcc.backends.incrementalGeneration";
+
+	public static final String AUTO_MAPPING = "net.sf.orcc.backends.autoMapping";
+	public static final String AUTO_MAPPING_CORES = "net.sf.orcc.backends.autoMapping.cores";
+	public static final String AUTO_MAPPING_WEIGHTS = "net.sf.orcc.backends.autoMapping.weights";
+	public static final String AUTO_MAPPING_TIME_BUDGET = "net.sf.orcc.backends.autoMapping.timeBudget";
+	public static final String AUTO_MAPPING_SEED = "net.sf.orcc.backends.autoMapping.seed";
+	public static final String AUTO_MAPPING_RESTARTS = "net.sf.orcc.backends.autoMapping.restarts";
 
 	public static final String INLINE = "net.sf.orcc.backends.inline";
 	public static final String INLINE_NOTACTIONS = "net.sf.orcc.backends.inline.notActions";
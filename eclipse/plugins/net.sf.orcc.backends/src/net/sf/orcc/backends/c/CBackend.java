@@ -109,7 +109,7 @@ public class CBackend extends AbstractBackend {
 
 	private final NetworkPrinter networkPrinter;
 	private final CMakePrinter cmakePrinter;
-	private final InstancePrinter instancePrinter;
+	private ThreadLocal<InstancePrinter> instancePrinter;
 
 	private final TracesPrinter tracesPrinter;
 	private final StatisticsPrinter statsPrinter;
@@ -117,7 +117,6 @@ public class CBackend extends AbstractBackend {
 	public CBackend() {
 		networkPrinter = new NetworkPrinter();
 		cmakePrinter = new CMakePrinter();
-		instancePrinter = new InstancePrinter();
 
 		tracesPrinter = new TracesPrinter();
 		statsPrinter = new StatisticsPrinter();
@@ -130,9 +129,19 @@ public class CBackend extends AbstractBackend {
 
 		// Load options map into code generator instances
 		networkPrinter.setOptions(getOptions());
-		instancePrinter.setOptions(getOptions());
 		tracesPrinter.setOptions(getOptions());
 
+		// One instance printer per thread, children may be generated in
+		// parallel
+		instancePrinter = new ThreadLocal<InstancePrinter>() {
+			@Override
+			protected InstancePrinter initialValue() {
+				final InstancePrinter printer = new InstancePrinter();
+				printer.setOptions(getOptions());
+				return printer;
+			}
+		};
+
 		// -----------------------------------------------------
 		// Transformations that will be applied on the Network
 		// -----------------------------------------------------
@@ -204,6 +213,12 @@ public class CBackend extends AbstractBackend {
 			childrenTransfos.add(new DfVisitor<Expression>(new CastAdder(true, true)));
 			childrenTransfos.add(new DfVisitor<Void>(new SSAVariableRenamer()));
 		}
+
+	}
+
+	@Override
+	protected boolean isChildrenGenerationThreadSafe() {
+		return true;
 	}
 
 	protected Map<String, String> getRenameMap() {
@@ -298,7 +313,7 @@ public class CBackend extends AbstractBackend {
 			broadcastMapper.prepareBroadcastMapping(network);
 		}
 
-		final Mapping mapper = new Mapping(network, mapping);
+		final Mapping mapper = new Mapping(network, getMapping(network));
 		result.merge(FilesManager.writeFile(mapper.getContentFile(), srcPath, network.getSimpleName() + ".xcf"));
 
 		return result;
@@ -312,8 +327,9 @@ public class CBackend extends AbstractBackend {
 
 	@Override
 	protected Result doGenerateInstance(Instance instance) {
-		instancePrinter.setInstance(instance);
-		return FilesManager.writeFile(instancePrinter.getFileContent(), srcPath, instance.getSimpleName() + ".c");
+		final InstancePrinter printer = instancePrinter.get();
+		printer.setInstance(instance);
+		return FilesManager.writeFile(printer.getFileContent(), srcPath, instance.getSimpleName() + ".c");
 	}
 
 	@Override
@@ -324,7 +340,8 @@ public class CBackend extends AbstractBackend {
 
 	@Override
 	protected Result doGenerateActor(Actor actor) {
-		instancePrinter.setActor(actor);
-		return FilesManager.writeFile(instancePrinter.getFileContent(), srcPath, actor.getSimpleName() + ".c");
+		final InstancePrinter printer = instancePrinter.get();
+		printer.setActor(actor);
+		return FilesManager.writeFile(printer.getFileContent(), srcPath, actor.getSimpleName() + ".c");
 	}
 }
@@ -135,7 +135,7 @@ public class COMPABackend extends CBackend {
 		network.computeTemplateMaps();
 
 		// Compute the actor mapping
-		computedMapping = new Mapping(network, mapping);
+		computedMapping = new Mapping(network, getMapping(network));
 
 		// update "vectorizable" information
 		Alignable.setAlignability(network);
@@ -173,6 +173,12 @@ public class COMPABackend extends CBackend {
 		return result;
 	}
 
+	@Override
+	protected boolean isChildrenGenerationThreadSafe() {
+		// The printers are shared between children
+		return false;
+	}
+
 	@Override
 	protected Result doGenerateInstance(Instance instance) {
 		final Result result = Result.newInstance();
@@ -176,6 +176,12 @@ public class DALBackend extends CBackend {
 		return result;
 	}
 
+	@Override
+	protected boolean isChildrenGenerationThreadSafe() {
+		// The printers are shared between children
+		return false;
+	}
+
 	@Override
 	protected Result doGenerateActor(Actor actor) {
 		boolean printSDF = false;
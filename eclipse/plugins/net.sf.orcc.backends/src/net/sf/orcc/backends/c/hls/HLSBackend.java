@@ -220,6 +220,12 @@ public class HLSBackend extends CBackend {
 		return result;
 	}
 
+	@Override
+	protected boolean isChildrenGenerationThreadSafe() {
+		// The printers are shared between children
+		return false;
+	}
+
 	@Override
 	protected Result doGenerateInstance(Instance instance) {
 
@@ -92,6 +92,12 @@ public class HMPPBackend extends CBackend {
 		}
 	}
 
+	@Override
+	protected boolean isChildrenGenerationThreadSafe() {
+		// The printers are shared between children
+		return false;
+	}
+
 	@Override
 	protected Result doGenerateInstance(Instance instance) {
 		return FilesManager.writeFile(
@@ -201,7 +201,7 @@ public class PromelaSchedulabilityTest extends DfVisitor<Void> {
 			final int MAX_PHASES = 1024;
 			INTERP: for (List<Schedule> sl : scheduler.getScheduleCases()) {
 				PromelaAbstractInterpreter interpreter = new PromelaAbstractInterpreter(actor);
-				ActorState actorstate = new ActorState(interpreter.getActor());
+				ActorState actorstate = new ActorState(interpreter);
 				for (int index = 0; index < sl.size(); index++) {
 					Schedule schedule = sl.get(index);
 					int nbPhases = 0;
@@ -59,6 +59,8 @@ public class GlobalArrayInitializer extends DfVisitor<Void> {
 		}
 
 		public void initialize() {
+			// the globals of the interpreter are not allocated, the values
+			// are kept in the variables, where the back-ends read them
 			try {
 				// initializes state variables
 				for (Var stateVar : actor.getStateVars()) {
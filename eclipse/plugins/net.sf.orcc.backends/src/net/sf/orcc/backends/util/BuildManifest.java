@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.backends.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Connection;
+import net.sf.orcc.df.Port;
+import net.sf.orcc.graph.Edge;
+import net.sf.orcc.graph.GraphPackage;
+import net.sf.orcc.graph.Vertex;
+import net.sf.orcc.ir.IrPackage;
+import net.sf.orcc.util.Attribute;
+import net.sf.orcc.util.OrccLogger;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * This class stores, in the output folder of a back-end, a hash of each
+ * generated instance or actor, and the files generated for it. The hash
+ * covers the IR of the child as it is before the children transformations,
+ * its connections in the network, the back-end options and the version of
+ * Orcc. When the hash of a child is the same as in the previous run, and the
+ * files generated for it still exist, its transformation and code generation
+ * can be skipped.
+ * 
+ * <p>
+ * The objects referenced by the child from other resources or from the
+ * network, such as the constants and procedures of units or the parameters of
+ * the network, are hashed by their content, as well as the objects they
+ * reference in turn. Deleting the manifest file forces a full regeneration.
+ * </p>
+ */
+public class BuildManifest {
+
+	public static final String FILE_NAME = ".orcc-manifest";
+
+	/**
+	 * Suffix of the property which lists the files generated for a child.
+	 */
+	private static final String FILES_SUFFIX = "#files";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final byte[] context;
+
+	private final Properties current;
+
+	private final File file;
+
+	private final Properties previous;
+
+	/**
+	 * Load the manifest of the given output folder, if any.
+	 * 
+	 * @param outputPath
+	 *            the output folder of the back-end
+	 * @param backend
+	 *            an identifier of the back-end and its version
+	 * @param options
+	 *            the back-end options
+	 */
+	public BuildManifest(String outputPath, String backend,
+			Map<String, Object> options) {
+		file = new File(outputPath, FILE_NAME);
+		previous = new Properties();
+		current = new Properties();
+
+		if (file.isFile()) {
+			try {
+				final InputStream in = new FileInputStream(file);
+				try {
+					previous.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				OrccLogger.warnln("Unable to read " + file + ", all the "
+						+ "children will be generated: " + e.getMessage());
+				previous.clear();
+			}
+		}
+
+		// Options are sorted to get a stable hash
+		final MessageDigest digest = createDigest();
+		update(digest, backend);
+		for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(
+				options).entrySet()) {
+			update(digest, entry.getKey());
+			update(digest, String.valueOf(entry.getValue()));
+		}
+		context = digest.digest();
+	}
+
+	/**
+	 * Compute the hash of the given child: its IR (and the IR of its actor if
+	 * it is an instance), its incoming and outgoing connections, and the
+	 * context of this manifest.
+	 * 
+	 * @param vertex
+	 *            an instance or an actor
+	 * @return an hexadecimal hash
+	 */
+	public String computeHash(Vertex vertex) {
+		final MessageDigest digest = createDigest();
+		digest.update(context);
+
+		final Map<EObject, Integer> indexes;
+		indexes = new IdentityHashMap<EObject, Integer>();
+		final List<EObject> externals = new ArrayList<EObject>();
+		final List<EObject> roots = new ArrayList<EObject>();
+		roots.add(vertex);
+		final Actor actor = vertex.getAdapter(Actor.class);
+		if (actor != null && actor != vertex) {
+			roots.add(actor);
+		}
+		for (EObject root : roots) {
+			index(root, indexes);
+		}
+		for (EObject root : roots) {
+			hash(digest, root, indexes, externals);
+		}
+
+		// Network context: the connections of this vertex
+		for (Edge edge : vertex.getIncoming()) {
+			hashConnection(digest, edge, indexes, externals);
+		}
+		for (Edge edge : vertex.getOutgoing()) {
+			hashConnection(digest, edge, indexes, externals);
+		}
+
+		// Referenced objects, the list grows while they are hashed
+		for (int i = 0; i < externals.size(); i++) {
+			hash(digest, externals.get(i), indexes, externals);
+		}
+
+		final StringBuilder builder = new StringBuilder();
+		for (byte b : digest.digest()) {
+			builder.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Returns true if the given child has the same hash as in the previous
+	 * run, and all the files generated for it in the previous run still
+	 * exist.
+	 * 
+	 * @param name
+	 *            the name of the child
+	 * @param hash
+	 *            the hash computed by {@link #computeHash(Vertex)}
+	 * @return true if the child is up-to-date
+	 */
+	public boolean isUpToDate(String name, String hash) {
+		if (!hash.equals(previous.getProperty(name))) {
+			return false;
+		}
+
+		// Children recorded without their files are regenerated
+		final String files = previous.getProperty(name + FILES_SUFFIX);
+		if (files == null) {
+			return false;
+		}
+		for (String path : files.split(File.pathSeparator)) {
+			if (!path.isEmpty() && !new File(path).isFile()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Record the hash of the given child. Only the recorded children are
+	 * saved in the manifest. If the hash is the same as in the previous run,
+	 * the files generated for the child in the previous run are recorded too.
+	 * 
+	 * @param name
+	 *            the name of the child
+	 * @param hash
+	 *            the hash computed by {@link #computeHash(Vertex)}
+	 */
+	public void record(String name, String hash) {
+		current.setProperty(name, hash);
+		final String files = previous.getProperty(name + FILES_SUFFIX);
+		if (hash.equals(previous.getProperty(name)) && files != null) {
+			current.setProperty(name + FILES_SUFFIX, files);
+		} else {
+			current.remove(name + FILES_SUFFIX);
+		}
+	}
+
+	/**
+	 * Record the files generated for the given child. A child whose files
+	 * are not recorded is regenerated in the next run.
+	 * 
+	 * @param name
+	 *            the name of the child
+	 * @param files
+	 *            the paths of the files written or kept for the child
+	 */
+	public void recordFiles(String name, List<String> files) {
+		final StringBuilder builder = new StringBuilder();
+		for (String path : files) {
+			if (builder.length() > 0) {
+				builder.append(File.pathSeparator);
+			}
+			builder.append(path);
+		}
+		current.setProperty(name + FILES_SUFFIX, builder.toString());
+	}
+
+	/**
+	 * Write the recorded hashes to the manifest file.
+	 */
+	public void save() {
+		try {
+			file.getParentFile().mkdirs();
+			final OutputStream out = new FileOutputStream(file);
+			try {
+				current.store(out, "Orcc build manifest, do not edit");
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			OrccLogger.warnln("Unable to write " + file + ": "
+					+ e.getMessage());
+		}
+	}
+
+	private MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new OrccRuntimeException("SHA-1 is not available", e);
+		}
+	}
+
+	/**
+	 * Returns a stable description of the given target of a reference. A
+	 * target which belongs to a resource and is not hashed yet is described
+	 * by its URI, and added with its contents to the objects to hash.
+	 */
+	private String describe(EObject target, Map<EObject, Integer> indexes,
+			List<EObject> externals) {
+		final Integer index = indexes.get(target);
+		if (index != null) {
+			return "#" + index;
+		} else if (target instanceof Vertex) {
+			return "vertex:" + ((Vertex) target).getLabel();
+		} else if (target instanceof Port) {
+			return "port:" + ((Port) target).getName();
+		} else if (target.eResource() != null) {
+			index(target, indexes);
+			externals.add(target);
+			return EcoreUtil.getURI(target).toString();
+		}
+		return target.eClass().getName();
+	}
+
+	private void hash(MessageDigest digest, EObject root,
+			Map<EObject, Integer> indexes, List<EObject> externals) {
+		hashObject(digest, root, indexes, externals);
+		final TreeIterator<EObject> it = root.eAllContents();
+		while (it.hasNext()) {
+			hashObject(digest, it.next(), indexes, externals);
+		}
+	}
+
+	private void hashConnection(MessageDigest digest, Edge edge,
+			Map<EObject, Integer> indexes, List<EObject> externals) {
+		update(digest, describe(edge.getSource(), indexes, externals));
+		update(digest, describe(edge.getTarget(), indexes, externals));
+		if (edge instanceof Connection) {
+			final Connection connection = (Connection) edge;
+			if (connection.getSourcePort() != null) {
+				update(digest, connection.getSourcePort().getName());
+			}
+			if (connection.getTargetPort() != null) {
+				update(digest, connection.getTargetPort().getName());
+			}
+			update(digest, String.valueOf(connection.getSize()));
+		}
+		for (Attribute attribute : edge.getAttributes()) {
+			hash(digest, attribute, indexes, externals);
+		}
+	}
+
+	private void hashObject(MessageDigest digest, EObject object,
+			Map<EObject, Integer> indexes, List<EObject> externals) {
+		update(digest, object.eClass().getName());
+		if (object.eContainingFeature() != null) {
+			// The container of a hashed root, such as the network of an
+			// instance or the unit of a procedure, is not hashed
+			update(digest, object.eContainingFeature().getName());
+			final Integer container = indexes.get(object.eContainer());
+			if (container != null) {
+				update(digest, "#" + container);
+			}
+		}
+
+		for (EAttribute attribute : object.eClass().getEAllAttributes()) {
+			if (!attribute.isTransient() && !attribute.isDerived()) {
+				// Values without a stable representation make the hash
+				// change at each run, the child is then always regenerated
+				final Object value = object.eGet(attribute);
+				update(digest, attribute.getName());
+				if (value instanceof EObject) {
+					update(digest,
+							describe((EObject) value, indexes, externals));
+				} else {
+					update(digest, String.valueOf(value));
+				}
+			}
+		}
+
+		for (EReference reference : object.eClass().getEAllReferences()) {
+			if (reference.isTransient() || reference.isDerived()
+					|| reference.isContainment() || reference.isContainer()
+					|| GraphPackage.Literals.EDGE.isSuperTypeOf(reference
+							.getEReferenceType())
+					|| reference == IrPackage.Literals.VAR__DEFS
+					|| reference == IrPackage.Literals.VAR__USES) {
+				// Contents are hashed by the tree traversal, connections
+				// are hashed as the network context, and the definitions
+				// and uses of a variable, which may belong to other
+				// children, are hashed from their side
+				continue;
+			}
+
+			update(digest, reference.getName());
+			final Object value = object.eGet(reference, false);
+			if (value instanceof List<?>) {
+				for (Object target : (List<?>) value) {
+					update(digest,
+							describe((EObject) target, indexes, externals));
+				}
+			} else if (value != null) {
+				update(digest, describe((EObject) value, indexes, externals));
+			}
+		}
+	}
+
+	private void index(EObject root, Map<EObject, Integer> indexes) {
+		indexes.put(root, indexes.size());
+		final TreeIterator<EObject> it = root.eAllContents();
+		while (it.hasNext()) {
+			indexes.put(it.next(), indexes.size());
+		}
+	}
+
+	private void update(MessageDigest digest, String value) {
+		try {
+			digest.update(value.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new OrccRuntimeException("UTF-8 is not supported", e);
+		}
+		digest.update((byte) 0);
+	}
+
+}
@@ -0,0 +1,690 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.backends.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Action;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Connection;
+import net.sf.orcc.df.Instance;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.df.Port;
+import net.sf.orcc.graph.Vertex;
+import net.sf.orcc.ir.Instruction;
+import net.sf.orcc.util.OrccLogger;
+
+import org.eclipse.emf.ecore.EObject;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * This class computes a mapping of the children of a network on a number of
+ * cores. It is a graph partitioning pass whose cost is the load of the
+ * heaviest core plus the traffic between cores, both relative to their total:
+ * 
+ * <pre>
+ * cost = max(load) / (total weight / cores)
+ *      + communicationFactor * cut traffic / total traffic
+ * </pre>
+ * 
+ * <p>
+ * The weight of an actor is its number of clock cycles when an actions weights
+ * file (as generated by the <code>genWeights</code> option of the C back-end)
+ * is given, and its number of instructions otherwise. The traffic of a
+ * connection is the number of tokens produced on its source port, computed
+ * from the firings of the actions when they are known and from their output
+ * patterns otherwise.
+ * </p>
+ * 
+ * <p>
+ * A first partition is built by assigning children by decreasing weight to the
+ * core that increases the cost the least, and is refined by moving and
+ * swapping children between cores. The search is restarted a fixed number of
+ * times from randomly perturbed orders, so that with a given seed the result
+ * is the same at each run, whatever the speed of the machine.
+ * </p>
+ * 
+ * <p>
+ * The time budget is only a safety cap on the duration of the search: when it
+ * is reached before all the restarts are done, the best partition found so far
+ * is returned, and it may differ from one run to another.
+ * </p>
+ * 
+ * <p>
+ * The computed mapping uses the keys expected by {@link Mapping}, so that the
+ * result can be printed as an XCF file.
+ * </p>
+ * 
+ */
+public class MappingPartitioner {
+
+	/**
+	 * Default number of restarts of the search.
+	 */
+	public static final int DEFAULT_RESTARTS = 64;
+
+	/**
+	 * Returns the number of instructions of the given actor, at least 1.
+	 */
+	private static double getStaticWeight(Actor actor) {
+		int weight = 1;
+		Iterator<EObject> it = actor.eAllContents();
+		while (it.hasNext()) {
+			if (it.next() instanceof Instruction) {
+				weight++;
+			}
+		}
+		return weight;
+	}
+
+	private static long percent(double value, double total) {
+		return total == 0 ? 0 : Math.round(100 * value / total);
+	}
+
+	private double communicationFactor = 1.0;
+
+	private int[] edgeSource;
+
+	private int[] edgeTarget;
+
+	private double[] edgeTraffic;
+
+	/**
+	 * Firings of the actions, by actor name and action name.
+	 */
+	private Map<String, Map<String, Long>> firings;
+
+	private int[][] neighbors;
+
+	private double[][] neighborTraffic;
+
+	private final Network network;
+
+	private Random random;
+
+	private int restarts = DEFAULT_RESTARTS;
+
+	private long seed;
+
+	private long timeBudget = 1000;
+
+	private double totalTraffic;
+
+	private double totalWeight;
+
+	private final List<Vertex> vertices;
+
+	private double[] weights;
+
+	/**
+	 * Clock cycles of the actors, by actor name.
+	 */
+	private Map<String, Double> workloads;
+
+	/**
+	 * Creates a partitioner for the children of the given network.
+	 * 
+	 * @param network
+	 *            a network
+	 */
+	public MappingPartitioner(Network network) {
+		this.network = network;
+		vertices = new ArrayList<Vertex>();
+		for (Vertex vertex : network.getChildren()) {
+			Actor actor = vertex.getAdapter(Actor.class);
+			// broadcasts are mapped with their origin by Mapping
+			if (actor != null && !vertex.hasAttribute("broadcastOrigin")) {
+				vertices.add(vertex);
+			}
+		}
+	}
+
+	/**
+	 * Builds the weights of the children and the traffic of the connections.
+	 */
+	private void buildGraph() {
+		int n = vertices.size();
+		Map<Vertex, Integer> indexes = new HashMap<Vertex, Integer>();
+		for (int i = 0; i < n; i++) {
+			indexes.put(vertices.get(i), i);
+		}
+
+		// weights, static ones are scaled to the profiled ones
+		weights = new double[n];
+		boolean[] profiled = new boolean[n];
+		double profiledSum = 0;
+		double staticSum = 0;
+		for (int i = 0; i < n; i++) {
+			Actor actor = vertices.get(i).getAdapter(Actor.class);
+			weights[i] = getStaticWeight(actor);
+			Double workload = workloads == null ? null : workloads.get(actor
+					.getName());
+			if (workload != null) {
+				staticSum += weights[i];
+				weights[i] = Math.max(1, workload);
+				profiledSum += weights[i];
+				profiled[i] = true;
+			}
+		}
+
+		double scale = staticSum > 0 ? profiledSum / staticSum : 1;
+		double meanFirings = getMeanFirings();
+		totalWeight = 0;
+		for (int i = 0; i < n; i++) {
+			if (!profiled[i]) {
+				weights[i] *= scale;
+			}
+			totalWeight += weights[i];
+		}
+
+		// traffic of the connections between different children
+		List<Connection> connections = new ArrayList<Connection>();
+		for (Connection connection : network.getConnections()) {
+			Integer source = indexes.get(getMapped(connection.getSource()));
+			Integer target = indexes.get(getMapped(connection.getTarget()));
+			if (source != null && target != null
+					&& source.intValue() != target.intValue()) {
+				connections.add(connection);
+			}
+		}
+
+		int m = connections.size();
+		edgeSource = new int[m];
+		edgeTarget = new int[m];
+		edgeTraffic = new double[m];
+		int[] degrees = new int[n];
+		totalTraffic = 0;
+		for (int e = 0; e < m; e++) {
+			Connection connection = connections.get(e);
+			edgeSource[e] = indexes.get(getMapped(connection.getSource()));
+			edgeTarget[e] = indexes.get(getMapped(connection.getTarget()));
+			edgeTraffic[e] = getTraffic(connection, meanFirings);
+			totalTraffic += edgeTraffic[e];
+			degrees[edgeSource[e]]++;
+			degrees[edgeTarget[e]]++;
+		}
+
+		neighbors = new int[n][];
+		neighborTraffic = new double[n][];
+		for (int i = 0; i < n; i++) {
+			neighbors[i] = new int[degrees[i]];
+			neighborTraffic[i] = new double[degrees[i]];
+			degrees[i] = 0;
+		}
+		for (int e = 0; e < m; e++) {
+			int s = edgeSource[e];
+			int t = edgeTarget[e];
+			neighbors[s][degrees[s]] = t;
+			neighborTraffic[s][degrees[s]++] = edgeTraffic[e];
+			neighbors[t][degrees[t]] = s;
+			neighborTraffic[t][degrees[t]++] = edgeTraffic[e];
+		}
+	}
+
+	/**
+	 * Returns a mapping of the children of the network on the given number of
+	 * cores. Cores are named "1", "2"... and every child is mapped.
+	 * 
+	 * @param cores
+	 *            number of cores
+	 * @return a map from the keys expected by {@link Mapping} to cores
+	 */
+	public Map<String, String> computeMapping(int cores) {
+		Map<String, String> mapping = new HashMap<String, String>();
+		if (vertices.isEmpty()) {
+			return mapping;
+		}
+
+		buildGraph();
+		int k = Math.max(1, Math.min(cores, vertices.size()));
+		random = new Random(seed);
+
+		long deadline = System.currentTimeMillis() + timeBudget;
+		int[] best = null;
+		double bestCost = Double.MAX_VALUE;
+		int runs = 0;
+		do {
+			int[] parts = getInitialPartition(k, runs > 0);
+			double[] loads = getLoads(parts, k);
+			refine(parts, loads);
+
+			double cost = getCost(loads, getCut(parts));
+			if (cost < bestCost) {
+				bestCost = cost;
+				best = parts;
+			}
+			runs++;
+		} while (runs < restarts && System.currentTimeMillis() < deadline);
+
+		if (runs < restarts) {
+			OrccLogger.warnln("Automatic mapping stopped by its time budget "
+					+ "after " + runs + " of " + restarts + " restarts, the "
+					+ "mapping may differ from one run to another");
+		}
+
+		double[] loads = getLoads(best, k);
+		double maxLoad = 0;
+		for (double load : loads) {
+			maxLoad = Math.max(maxLoad, load);
+		}
+		OrccLogger.traceln("Automatic mapping on " + k + " cores ("
+				+ runs + " restarts): heaviest core "
+				+ percent(maxLoad, totalWeight) + "% of the load, "
+				+ percent(getCut(best), totalTraffic)
+				+ "% of the traffic between cores");
+
+		for (int i = 0; i < best.length; i++) {
+			String component = String.valueOf(best[i] + 1);
+			for (String key : getKeys(vertices.get(i))) {
+				mapping.put(key, component);
+			}
+		}
+		return mapping;
+	}
+
+	private double getCost(double[] loads, double cut) {
+		double maxLoad = 0;
+		for (double load : loads) {
+			maxLoad = Math.max(maxLoad, load);
+		}
+
+		double cost = maxLoad * loads.length / totalWeight;
+		if (totalTraffic > 0) {
+			cost += communicationFactor * cut / totalTraffic;
+		}
+		return cost;
+	}
+
+	/**
+	 * Returns the traffic between the given partitions.
+	 */
+	private double getCut(int[] parts) {
+		double cut = 0;
+		for (int e = 0; e < edgeTraffic.length; e++) {
+			if (parts[edgeSource[e]] != parts[edgeTarget[e]]) {
+				cut += edgeTraffic[e];
+			}
+		}
+		return cut;
+	}
+
+	/**
+	 * Returns the variation of the cut traffic if the given child is moved to
+	 * the given partition.
+	 */
+	private double getCutDelta(int[] parts, int v, int to) {
+		int from = parts[v];
+		double delta = 0;
+		for (int j = 0; j < neighbors[v].length; j++) {
+			int p = parts[neighbors[v][j]];
+			if (p == from) {
+				delta += neighborTraffic[v][j];
+			} else if (p == to) {
+				delta -= neighborTraffic[v][j];
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * Assigns the children by decreasing weight to the partition that
+	 * increases the cost the least. When <code>perturb</code> is true, the
+	 * weights used to order the children are randomly perturbed.
+	 */
+	private int[] getInitialPartition(int k, boolean perturb) {
+		int n = vertices.size();
+		final double[] keys = new double[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			keys[i] = perturb ? weights[i] * (0.5 + random.nextDouble())
+					: weights[i];
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(keys[i2], keys[i1]);
+			}
+		});
+
+		int[] parts = new int[n];
+		Arrays.fill(parts, -1);
+		double[] loads = new double[k];
+		double[] affinity = new double[k];
+		for (int v : order) {
+			Arrays.fill(affinity, 0);
+			double external = 0;
+			for (int j = 0; j < neighbors[v].length; j++) {
+				int p = parts[neighbors[v][j]];
+				if (p != -1) {
+					affinity[p] += neighborTraffic[v][j];
+					external += neighborTraffic[v][j];
+				}
+			}
+
+			int bestPart = 0;
+			double bestCost = Double.MAX_VALUE;
+			for (int p = 0; p < k; p++) {
+				loads[p] += weights[v];
+				double cost = getCost(loads, external - affinity[p]);
+				loads[p] -= weights[v];
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestPart = p;
+				}
+			}
+
+			parts[v] = bestPart;
+			loads[bestPart] += weights[v];
+		}
+		return parts;
+	}
+
+	/**
+	 * Returns the keys used by {@link Mapping} to find the component of the
+	 * given child.
+	 */
+	private List<String> getKeys(Vertex vertex) {
+		if (vertex instanceof Instance) {
+			return Collections.singletonList(((Instance) vertex)
+					.getHierarchicalName());
+		}
+
+		List<String> keys = new ArrayList<String>();
+		Actor actor = (Actor) vertex;
+		if (actor.hasAttribute("mergedActors")) {
+			List<String> merged = actor.getValueAsObject("mergedActors");
+			for (String name : merged) {
+				keys.add(network.getName() + "_" + name);
+			}
+		} else {
+			keys.add(network.getName() + "_" + actor.getName());
+		}
+		return keys;
+	}
+
+	private double[] getLoads(int[] parts, int k) {
+		double[] loads = new double[k];
+		for (int i = 0; i < parts.length; i++) {
+			loads[parts[i]] += weights[i];
+		}
+		return loads;
+	}
+
+	/**
+	 * Returns the child the given vertex is mapped with: its broadcast origin
+	 * for broadcasts.
+	 */
+	private Vertex getMapped(Vertex vertex) {
+		if (vertex != null && vertex.hasAttribute("broadcastOrigin")) {
+			Vertex origin = network.getChild(vertex
+					.getValueAsString("broadcastOrigin"));
+			return origin != null ? origin : vertex;
+		}
+		return vertex;
+	}
+
+	/**
+	 * Returns the mean number of firings of the profiled actions, or 1 if no
+	 * action was profiled.
+	 */
+	private double getMeanFirings() {
+		if (firings == null) {
+			return 1;
+		}
+
+		long sum = 0;
+		int count = 0;
+		for (Map<String, Long> actions : firings.values()) {
+			for (Long actionFirings : actions.values()) {
+				sum += actionFirings;
+				count++;
+			}
+		}
+		return count == 0 ? 1 : (double) sum / count;
+	}
+
+	/**
+	 * Returns the number of tokens produced on the source port of the given
+	 * connection.
+	 */
+	private double getTraffic(Connection connection, double meanFirings) {
+		Actor actor = connection.getSource().getAdapter(Actor.class);
+		Port port = connection.getSourcePort();
+		Map<String, Long> actorFirings = firings == null ? null : firings
+				.get(actor.getName());
+
+		double traffic = 0;
+		for (Action action : actor.getActions()) {
+			int numTokens = action.getOutputPattern().getNumTokens(port);
+			if (actorFirings == null) {
+				traffic += numTokens * meanFirings;
+			} else {
+				Long actionFirings = actorFirings.get(action.getName());
+				if (actionFirings != null) {
+					traffic += numTokens * actionFirings;
+				}
+			}
+		}
+		return Math.max(traffic, 1);
+	}
+
+	/**
+	 * Loads the clock cycles and the firings of the actions from the given
+	 * actions weights file, as generated by the <code>genWeights</code> option
+	 * of the C back-end.
+	 * 
+	 * @param file
+	 *            an actions weights file (.exdf)
+	 */
+	public void loadWeights(File file) {
+		Document dom;
+		try {
+			dom = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+					.parse(file);
+		} catch (Exception e) {
+			throw new OrccRuntimeException("Unable to read the weights file "
+					+ file, e);
+		}
+
+		workloads = new HashMap<String, Double>();
+		firings = new HashMap<String, Map<String, Long>>();
+		NodeList actors = dom.getDocumentElement().getElementsByTagName(
+				"actor");
+		for (int i = 0; i < actors.getLength(); i++) {
+			Element actor = (Element) actors.item(i);
+			Map<String, Long> actionFirings = new HashMap<String, Long>();
+			double workload = 0;
+
+			NodeList actions = actor.getElementsByTagName("action");
+			for (int j = 0; j < actions.getLength(); j++) {
+				Element action = (Element) actions.item(j);
+				try {
+					double cycles = Double.parseDouble(action
+							.getAttribute("clockcycles"));
+					long count = Long.parseLong(action.getAttribute("firings"));
+					workload += cycles * count;
+					actionFirings.put(action.getAttribute("id"), count);
+				} catch (NumberFormatException e) {
+					OrccLogger.warnln("Invalid weight for action "
+							+ action.getAttribute("id") + " of "
+							+ actor.getAttribute("id"));
+				}
+			}
+
+			workloads.put(actor.getAttribute("id"), workload);
+			firings.put(actor.getAttribute("id"), actionFirings);
+		}
+	}
+
+	/**
+	 * Moves children between partitions, and swaps children of the heaviest
+	 * partition with children of other partitions, while the cost decreases.
+	 */
+	private void refine(int[] parts, double[] loads) {
+		int n = parts.length;
+		int k = loads.length;
+		double cut = getCut(parts);
+		double cost = getCost(loads, cut);
+
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			Collections.shuffle(Arrays.asList(order), random);
+
+			// single moves
+			for (int v : order) {
+				int from = parts[v];
+				for (int to = 0; to < k; to++) {
+					if (to == from) {
+						continue;
+					}
+
+					double newCut = cut + getCutDelta(parts, v, to);
+					loads[from] -= weights[v];
+					loads[to] += weights[v];
+					double newCost = getCost(loads, newCut);
+					if (newCost < cost - 1e-12) {
+						parts[v] = to;
+						cut = newCut;
+						cost = newCost;
+						improved = true;
+						break;
+					}
+					loads[from] += weights[v];
+					loads[to] -= weights[v];
+				}
+			}
+
+			// swaps with the heaviest partition
+			int heaviest = 0;
+			for (int p = 1; p < k; p++) {
+				if (loads[p] > loads[heaviest]) {
+					heaviest = p;
+				}
+			}
+
+			for (int v : order) {
+				if (parts[v] != heaviest) {
+					continue;
+				}
+
+				for (int u = 0; u < n; u++) {
+					int other = parts[u];
+					if (other == heaviest) {
+						continue;
+					}
+
+					double newCut = cut + getCutDelta(parts, v, other);
+					parts[v] = other;
+					newCut += getCutDelta(parts, u, heaviest);
+					double delta = weights[v] - weights[u];
+					loads[heaviest] -= delta;
+					loads[other] += delta;
+					double newCost = getCost(loads, newCut);
+					if (newCost < cost - 1e-12) {
+						parts[u] = heaviest;
+						cut = newCut;
+						cost = newCost;
+						improved = true;
+						break;
+					}
+					parts[v] = heaviest;
+					loads[heaviest] += delta;
+					loads[other] -= delta;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the weight of the traffic between cores in the cost, relative to
+	 * the load of the heaviest core. The default is 1.
+	 * 
+	 * @param communicationFactor
+	 *            a positive factor
+	 */
+	public void setCommunicationFactor(double communicationFactor) {
+		this.communicationFactor = communicationFactor;
+	}
+
+	/**
+	 * Sets the number of restarts of the search, which bounds its duration.
+	 * The default is {@link #DEFAULT_RESTARTS}.
+	 * 
+	 * @param restarts
+	 *            a number of restarts, at least 1
+	 */
+	public void setRestarts(int restarts) {
+		this.restarts = Math.max(1, restarts);
+	}
+
+	/**
+	 * Sets the seed of the random perturbations of the search.
+	 * 
+	 * @param seed
+	 *            a seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the time budget of the search. The default is one second. It is
+	 * only a safety cap: the search normally stops after its number of
+	 * restarts (see {@link #setRestarts(int)}), and a search stopped by the
+	 * time budget may give a different mapping at each run.
+	 * 
+	 * @param timeBudget
+	 *            a time in milliseconds
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+}
@@ -66,7 +66,16 @@ class CalInterpreterTests extends CalTestsHelper {
 	 * a String with all content printed while this actor's execution.
 	 */
 	def private runInterpreter(Actor actor) {
+		actor.runInterpreter(false)
+	}
+
+	/**
+	 * Run the specific test interpreter on the given Actor, with primitive
+	 * values (long/double) or with the BigInteger/BigDecimal values.
+	 */
+	def private runInterpreter(Actor actor, boolean primitiveValues) {
 		val interpreter = new TestInterpreter(actor);
+		interpreter.setPrimitiveValues(primitiveValues);
 		interpreter.initialize();
 		interpreter.schedule();
 
@@ -132,4 +141,21 @@ class CalInterpreterTests extends CalTestsHelper {
 		val resultString = (entity.transformEntity as Actor).runInterpreter
 		"idx is 60".assertEquals(resultString)
 	}
+
+	@Test
+	def testPrimitiveValues() {
+		val entity = parseFile("/test/pass/PrimitiveValues.cal")
+
+		entity.assertNoErrors
+
+		val actor = entity.transformEntity as Actor
+		val expected = actor.runInterpreter(false)
+		val resultString = actor.runInterpreter(true)
+		expected.assertEquals(resultString)
+
+		resultString.contains("clip -56 44 -9223372036854775808 18446744073709551615;").assertTrue
+		resultString.contains("wrap 9223372036854775807 0;").assertTrue
+		resultString.contains("div -3 -3 3 -3;").assertTrue
+		resultString.contains("mod 1 1;").assertTrue
+	}
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.tests.main
+
+import java.io.File
+import java.util.List
+import net.sf.orcc.frontend.FrontendManifest
+import net.sf.orcc.util.FilesManager
+import org.eclipse.emf.common.util.URI
+import org.eclipse.emf.ecore.resource.Resource
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+/**
+ * Test the hashes recorded by FrontendManifest between two runs of the frontend
+ */
+@RunWith(typeof(JUnit4))
+class FrontendManifestTests extends Assert {
+
+	static val context = "Orcc tests xmi"
+
+	var File outputFolder
+
+	val resourceSet = new ResourceSetImpl
+
+	@Before
+	def void initialization() {
+		outputFolder = new File(System.getProperty("java.io.tmpdir"), "ORCC_MANIFEST_TESTS")
+		if (outputFolder.exists) {
+			FilesManager.recursiveDelete(outputFolder)
+		}
+		outputFolder.mkdirs
+	}
+
+	/**
+	 * Write the given content in a CAL file of the output folder, and returns
+	 * a resource on this file.
+	 */
+	def private createResource(String name, String content) {
+		val file = new File(outputFolder, name + ".cal")
+		FilesManager.writeFile(content, file)
+		val resource = new ResourceImpl(URI.createFileURI(file.absolutePath))
+		resourceSet.resources.add(resource)
+		resource
+	}
+
+	def private hash(FrontendManifest manifest, Resource resource, List<String> importHashes) {
+		manifest.computeHash(#[resource], importHashes)
+	}
+
+	@Test
+	def upToDate() {
+		val unit = createResource("Constants", "unit Constants : int SIZE = 8; end")
+		val actor = createResource("Actor", "import Constants.*; actor Actor () ==> : end")
+
+		var manifest = new FrontendManifest(outputFolder, context, true)
+		val unitHash = manifest.hash(unit, #[])
+		val actorHash = manifest.hash(actor, #[unitHash])
+		manifest.isUpToDate(actor, actorHash).assertFalse
+		manifest.record(unit, unitHash)
+		manifest.record(actor, actorHash)
+		manifest.save
+
+		manifest = new FrontendManifest(outputFolder, context, true)
+		unitHash.assertEquals(manifest.hash(unit, #[]))
+		actorHash.assertEquals(manifest.hash(actor, #[unitHash]))
+		manifest.isUpToDate(unit, unitHash).assertTrue
+		manifest.isUpToDate(actor, actorHash).assertTrue
+
+		// Another version of Orcc or IR format
+		manifest = new FrontendManifest(outputFolder, context + " binary", true)
+		manifest.isUpToDate(actor, manifest.hash(actor, #[manifest.hash(unit, #[])])).assertFalse
+	}
+
+	@Test
+	def changedImport() {
+		val unit = createResource("Constants", "unit Constants : int SIZE = 8; end")
+		val actor = createResource("Actor", "import Constants.*; actor Actor () ==> : end")
+
+		var manifest = new FrontendManifest(outputFolder, context, true)
+		var unitHash = manifest.hash(unit, #[])
+		manifest.record(unit, unitHash)
+		manifest.record(actor, manifest.hash(actor, #[unitHash]))
+		manifest.save
+
+		// Only the imported unit changes
+		FilesManager.writeFile("unit Constants : int SIZE = 16; end", new File(outputFolder, "Constants.cal"))
+
+		manifest = new FrontendManifest(outputFolder, context, true)
+		unitHash = manifest.hash(unit, #[])
+		manifest.isUpToDate(unit, unitHash).assertFalse
+		manifest.isUpToDate(actor, manifest.hash(actor, #[unitHash])).assertFalse
+	}
+
+	@Test
+	def forced() {
+		val unit = createResource("Constants", "unit Constants : int SIZE = 8; end")
+
+		var manifest = new FrontendManifest(outputFolder, context, true)
+		val unitHash = manifest.hash(unit, #[])
+		manifest.record(unit, unitHash)
+		manifest.save
+
+		// As with -f in command line: the previous hashes are not loaded
+		manifest = new FrontendManifest(outputFolder, context, false)
+		manifest.isUpToDate(unit, unitHash).assertFalse
+		manifest.record(unit, unitHash)
+		manifest.save
+
+		new FrontendManifest(outputFolder, context, true).isUpToDate(unit, unitHash).assertTrue
+	}
+
+	@Test
+	def importCycle() {
+		val unitA = createResource("A", "import B.*; unit A : int X = Y; end")
+		val unitB = createResource("B", "import A.*; unit B : int Y = 1; end")
+
+		val manifest = new FrontendManifest(outputFolder, context, true)
+		val hash = manifest.computeHash(#[unitA, unitB], #[])
+		hash.assertEquals(manifest.computeHash(#[unitB, unitA], #[]))
+
+		// A change in any resource of the cycle changes the hash of the cycle
+		FilesManager.writeFile("import A.*; unit B : int Y = 2; end", new File(outputFolder, "B.cal"))
+		hash.assertNotEquals(manifest.computeHash(#[unitA, unitB], #[]))
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.tests.main
+
+import com.google.inject.Inject
+import net.sf.orcc.cal.CalInjectorProvider
+import net.sf.orcc.df.Actor
+import net.sf.orcc.df.DfFactory
+import net.sf.orcc.frontend.ActorTransformer
+import net.sf.orcc.simulators.runtime.impl.GenericSource
+import net.sf.orcc.tests.util.CalTestsHelper
+import net.sf.orcc.tests.util.TestActorRunner
+import org.eclipse.xtext.junit4.InjectWith
+import org.eclipse.xtext.junit4.XtextRunner
+import org.eclipse.xtext.junit4.validation.ValidationTestHelper
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Runs the same actors interpreted and compiled to JVM bytecode by the JIT
+ * mode of the simulator, and checks that both write the same tokens and print
+ * the same content.
+ */
+@RunWith(typeof(XtextRunner))
+@InjectWith(typeof(CalInjectorProvider))
+class JitCompilerTests extends CalTestsHelper {
+
+	@Inject extension ValidationTestHelper
+
+	/**
+	 * Input tokens of the actor: the first ones overflow its state variables,
+	 * the others go through both guards with negative and large values.
+	 */
+	static val INPUT = #[120, 120, -7, 50, 101, 40000, -40000, 100, -101, 255, 3,
+		77777, -5, 130, 0, 200, -64, 1000, 1, 2, -99999, 101, 101, 101, 101,
+		101, 101, 101, 101, 101, 101, 101, 101, 101, 7, -8]
+
+	/**
+	 * Parses and transforms the actor in the given file. Native procedures are
+	 * resolved from the name of their container, so the native functions of
+	 * the actor are moved to a unit named after the runtime class of the
+	 * standard source.
+	 */
+	def private transformActor(String path) {
+		val entity = parseFile(path)
+		entity.assertNoErrors
+
+		val actor = new ActorTransformer().doSwitch(entity.actor) as Actor
+		val unit = DfFactory::eINSTANCE.createUnit
+		unit.name = "std.stdio.Source"
+		unit.procedures += actor.procs.filter[isNative && name != "print"].toList
+		actor
+	}
+
+	/**
+	 * Runs the given actor on the input tokens, interpreted or compiled.
+	 */
+	def private runActor(Actor actor, boolean jit, boolean primitiveValues) {
+		val runner = new TestActorRunner(actor, jit)
+		runner.setPrimitiveValues(primitiveValues)
+		runner.run(INPUT)
+		runner
+	}
+
+	@Test
+	def testCompiledActor() {
+		val actor = "/test/pass/JitActor.cal".transformActor
+		GenericSource::setNbLoops(3)
+
+		val interpreted = actor.runActor(false, false)
+		val primitive = actor.runActor(false, true)
+		val compiled = actor.runActor(true, false)
+
+		compiled.isCompiled.assertTrue
+		(interpreted.tokens.size > 20).assertTrue
+		interpreted.tokens.assertEquals(primitive.tokens)
+		interpreted.tokens.assertEquals(compiled.tokens)
+		interpreted.output.assertEquals(primitive.output)
+		interpreted.output.assertEquals(compiled.output)
+
+		// acc is an int(size=8), and last an int(size=16)
+		compiled.output.startsWith(
+			"x 120 acc 120 count 1 last 1;x 120 acc -16 count 2 last 120;").assertTrue
+		compiled.output.contains("last -25536;").assertTrue
+		compiled.output.contains("reset;").assertTrue
+	}
+}
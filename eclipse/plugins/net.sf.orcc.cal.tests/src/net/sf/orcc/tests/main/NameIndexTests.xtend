@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.tests.main
+
+import java.util.List
+import net.sf.orcc.df.Actor
+import net.sf.orcc.df.DfFactory
+import net.sf.orcc.df.Port
+import net.sf.orcc.graph.GraphPackage
+import net.sf.orcc.ir.IrFactory
+import net.sf.orcc.util.util.NameIndexAdapter
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+/**
+ * Test the lookups by name through NameIndexAdapter, which must return the
+ * same objects as a linear search after any change of the list or of the names
+ */
+@RunWith(typeof(JUnit4))
+class NameIndexTests extends Assert {
+
+	static val SIZE = 2 * NameIndexAdapter::MIN_SIZE
+
+	val dfFact = DfFactory::eINSTANCE
+	val irFact = IrFactory::eINSTANCE
+
+	var Actor actor
+
+	// Names of all the ports created by a test, even when they are removed
+	val List<String> names = newArrayList("missing")
+
+	@Before
+	def void initialization() {
+		actor = dfFact.createActor
+		for (i : 0 ..< SIZE) {
+			actor.inputs.add(createPort("in" + i))
+		}
+	}
+
+	def private createPort(String name) {
+		names.add(name)
+		dfFact.createPort(irFact.createTypeInt(8), name)
+	}
+
+	/**
+	 * Check that the lookup of each known name returns the same port as a
+	 * linear search of the inputs of the actor.
+	 */
+	def private checkLookups() {
+		for (name : names) {
+			val expected = NameIndexAdapter::find(actor.inputs, GraphPackage.Literals::VERTEX__LABEL, name)
+			assertSame(name, expected, actor.getInput(name))
+		}
+	}
+
+	@Test
+	def lookup() {
+		checkLookups
+		actor.getInput("in5").assertSame(actor.inputs.get(5))
+		actor.getInput("missing").assertNull
+	}
+
+	@Test
+	def lookupAfterAdd() {
+		checkLookups
+
+		actor.inputs.add(createPort("added"))
+		actor.getInput("added").assertNotNull
+		checkLookups
+
+		// A duplicate name in front of the list hides the previous port
+		val duplicate = createPort("in3")
+		actor.inputs.add(0, duplicate)
+		actor.getInput("in3").assertSame(duplicate)
+		checkLookups
+
+		// A duplicate name at the end of the list does not
+		actor.inputs.add(createPort("in4"))
+		actor.getInput("in4").assertSame(actor.inputs.get(5))
+		checkLookups
+	}
+
+	@Test
+	def lookupAfterRemove() {
+		checkLookups
+
+		val removed = actor.inputs.remove(3)
+		actor.getInput("in3").assertNull
+		checkLookups
+
+		actor.inputs.removeAll(actor.inputs.subList(0, 2).toList)
+		actor.getInput("in0").assertNull
+		checkLookups
+
+		// The removed ports are not indexed anymore
+		removed.label = "in5"
+		actor.getInput("in5").assertNotSame(removed)
+		checkLookups
+
+		actor.inputs.clear
+		checkLookups
+	}
+
+	@Test
+	def lookupAfterSet() {
+		checkLookups
+
+		val replaced = actor.inputs.get(6)
+		actor.inputs.set(6, createPort("set"))
+		actor.getInput("in6").assertNull
+		actor.getInput("set").assertSame(actor.inputs.get(6))
+		checkLookups
+
+		replaced.label = "in7"
+		checkLookups
+	}
+
+	@Test
+	def lookupAfterMove() {
+		val duplicate = createPort("in2")
+		actor.inputs.add(duplicate)
+		actor.getInput("in2").assertNotSame(duplicate)
+		checkLookups
+
+		// The first port with a name changes when the list is reordered
+		actor.inputs.move(0, duplicate)
+		actor.getInput("in2").assertSame(duplicate)
+		checkLookups
+
+		actor.inputs.move(SIZE, 0)
+		actor.getInput("in2").assertNotSame(duplicate)
+		checkLookups
+	}
+
+	@Test
+	def lookupAfterRename() {
+		checkLookups
+
+		val port = actor.inputs.get(4)
+		port.label = "renamed"
+		names.add("renamed")
+		actor.getInput("in4").assertNull
+		actor.getInput("renamed").assertSame(port)
+		checkLookups
+
+		// Renaming the first port of a duplicate name uncovers the next one
+		actor.inputs.get(9).label = "in1"
+		actor.getInput("in1").assertSame(actor.inputs.get(1))
+		actor.inputs.get(1).label = "other"
+		names.add("other")
+		actor.getInput("in1").assertSame(actor.inputs.get(9))
+		checkLookups
+
+		actor.inputs.get(9).label = null
+		checkLookups
+	}
+
+	@Test
+	def smallList() {
+		actor.inputs.removeAll(actor.inputs.subList(0, SIZE - 2).toList)
+		(actor.inputs.size < NameIndexAdapter::MIN_SIZE).assertTrue
+		checkLookups
+
+		// The list grows again and is indexed
+		for (i : 0 ..< SIZE) {
+			actor.inputs.add(createPort("again" + i))
+		}
+		checkLookups
+		actor.inputs.get(0).label = "again3"
+		actor.getInput("again3").assertSame(actor.inputs.get(0))
+		checkLookups
+	}
+
+	@Test
+	def ports() {
+		// Several indexes on the same actor
+		for (i : 0 ..< SIZE) {
+			actor.outputs.add(dfFact.createPort(irFact.createTypeInt(8), "out" + i))
+		}
+		actor.getOutput("out3").assertSame(actor.outputs.get(3))
+		actor.getInput("in3").assertSame(actor.inputs.get(3))
+
+		// An output renamed like an input does not change the inputs
+		actor.outputs.get(3).label = "in4"
+		actor.getInput("in4").assertSame(actor.inputs.get(4))
+		actor.getOutput("in4").assertSame(actor.outputs.get(3))
+		actor.getOutput("out3").assertNull
+	}
+}
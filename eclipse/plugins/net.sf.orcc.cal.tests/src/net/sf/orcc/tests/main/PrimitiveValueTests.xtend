@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.tests.main
+
+import java.math.BigInteger
+import net.sf.orcc.ir.IrFactory
+import net.sf.orcc.ir.OpBinary
+import net.sf.orcc.ir.OpUnary
+import net.sf.orcc.ir.Type
+import net.sf.orcc.ir.util.PrimitiveValueUtil
+import net.sf.orcc.ir.util.ValueUtil
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+/**
+ * Test the long/double fast paths of PrimitiveValueUtil, which must give the
+ * same results as the BigInteger arithmetic of ValueUtil
+ */
+@RunWith(typeof(JUnit4))
+class PrimitiveValueTests extends Assert {
+
+	// Operands around the limits of the fast paths
+	static val long[] VALUES = #[0L, 1L, -1L, 2L, -2L, 7L, -7L, 31L, 32L, 63L, 64L, 65L, 100L, -64L,
+		2147483648L, -2147483648L, 4294967295L, 4294967296L, 3037000499L, 3037000500L, -3037000500L,
+		4611686018427387904L, -4611686018427387904L, Long::MAX_VALUE, Long::MAX_VALUE - 1,
+		Long::MIN_VALUE, Long::MIN_VALUE + 1]
+
+	static val OPERATORS = #[OpBinary::BITAND, OpBinary::BITOR, OpBinary::BITXOR, OpBinary::DIV,
+		OpBinary::DIV_INT, OpBinary::EQ, OpBinary::GE, OpBinary::GT, OpBinary::LE, OpBinary::LT,
+		OpBinary::MINUS, OpBinary::MOD, OpBinary::NE, OpBinary::PLUS, OpBinary::SHIFT_LEFT,
+		OpBinary::SHIFT_RIGHT, OpBinary::TIMES]
+
+	static val TWO_POW_64 = BigInteger::ONE.shiftLeft(64)
+
+	val irFact = IrFactory::eINSTANCE
+
+	/**
+	 * Returns the result of the given operation with ValueUtil, or the class of
+	 * the arithmetic exception it raised.
+	 */
+	def private expected(long a, OpBinary op, long b) {
+		try {
+			ValueUtil::compute(BigInteger::valueOf(a), op, BigInteger::valueOf(b))
+		} catch (ArithmeticException e) {
+			e.class
+		}
+	}
+
+	/**
+	 * Returns the result of the given operation with PrimitiveValueUtil, in
+	 * the representation of ValueUtil.
+	 */
+	def private actual(long a, OpBinary op, long b) {
+		try {
+			PrimitiveValueUtil::widen(PrimitiveValueUtil::compute(a, op, b))
+		} catch (ArithmeticException e) {
+			e.class
+		}
+	}
+
+	/**
+	 * Returns the given value clipped to the given type, as the interpreter
+	 * does with BigInteger values.
+	 */
+	def private clip(Type type, BigInteger value) {
+		val n = type.sizeInBits
+		val twoPowSize = BigInteger::ONE.shiftLeft(n)
+		var clipped = value.and(twoPowSize.subtract(BigInteger::ONE))
+		if (type.isInt && clipped.testBit(n - 1)) {
+			clipped = clipped.subtract(twoPowSize)
+		}
+		clipped
+	}
+
+	@Test
+	def binaryOperations() {
+		for (a : VALUES) {
+			for (b : VALUES) {
+				for (op : OPERATORS) {
+					assertEquals(a + " " + op + " " + b, expected(a, op, b), actual(a, op, b))
+				}
+			}
+		}
+	}
+
+	@Test
+	def divisionNegativeOperands() {
+		// Truncated division and floored modulo, as BigInteger
+		(-3L).assertEquals(PrimitiveValueUtil::compute(-7L, OpBinary::DIV, 2L))
+		(-3L).assertEquals(PrimitiveValueUtil::compute(7L, OpBinary::DIV_INT, -2L))
+		1L.assertEquals(PrimitiveValueUtil::compute(-7L, OpBinary::MOD, 2L))
+		BigInteger::ONE.shiftLeft(63).assertEquals(
+			PrimitiveValueUtil::compute(Long::MIN_VALUE, OpBinary::DIV, -1L))
+	}
+
+	@Test
+	def shifts() {
+		for (n : #[62L, 63L, 64L, 65L, 100L]) {
+			for (a : #[1L, -1L, 5L, Long::MAX_VALUE, Long::MIN_VALUE]) {
+				assertEquals(a + " << " + n, BigInteger::valueOf(a).shiftLeft(n.intValue),
+					actual(a, OpBinary::SHIFT_LEFT, n))
+				assertEquals(a + " >> " + n, BigInteger::valueOf(a).shiftRight(n.intValue),
+					actual(a, OpBinary::SHIFT_RIGHT, n))
+			}
+		}
+		0L.assertEquals(PrimitiveValueUtil::compute(1L, OpBinary::SHIFT_RIGHT, 64L))
+		(-1L).assertEquals(PrimitiveValueUtil::compute(-1L, OpBinary::SHIFT_RIGHT, 64L))
+	}
+
+	@Test
+	def unaryOperations() {
+		for (a : VALUES) {
+			for (op : #[OpUnary::BITNOT, OpUnary::MINUS]) {
+				assertEquals(op + " " + a, ValueUtil::compute(op, BigInteger::valueOf(a)),
+					PrimitiveValueUtil::widen(PrimitiveValueUtil::compute(op, a)))
+			}
+		}
+	}
+
+	@Test
+	def overflowClipping() {
+		val types = <Type>newArrayList
+		for (size : #[1, 8, 13, 32, 63, 64, 65, 70]) {
+			types.add(irFact.createTypeInt(size))
+			types.add(irFact.createTypeUint(size))
+		}
+
+		val values = <BigInteger>newArrayList
+		for (a : VALUES) {
+			values.add(BigInteger::valueOf(a))
+		}
+		values.add(TWO_POW_64.subtract(BigInteger::ONE))
+		values.add(TWO_POW_64.add(BigInteger::valueOf(5)))
+		values.add(TWO_POW_64.negate.subtract(BigInteger::valueOf(3)))
+		values.add(BigInteger::ONE.shiftLeft(70).add(BigInteger::ONE))
+
+		for (type : types) {
+			for (value : values) {
+				assertEquals(type + " " + value, type.clip(value),
+					PrimitiveValueUtil::widen(PrimitiveValueUtil::clip(type, PrimitiveValueUtil::narrow(value))))
+			}
+		}
+	}
+
+	@Test
+	def uint64() {
+		val type = irFact.createTypeUint(64)
+		val max = TWO_POW_64.subtract(BigInteger::ONE)
+
+		// Values above Long.MAX_VALUE are not narrowed to a long
+		val narrowed = PrimitiveValueUtil::narrow(max)
+		max.assertEquals(narrowed)
+		max.assertEquals(PrimitiveValueUtil::clip(type, narrowed))
+		0L.assertEquals(PrimitiveValueUtil::clip(type, PrimitiveValueUtil::compute(narrowed, OpBinary::PLUS, 1L)))
+		max.assertEquals(PrimitiveValueUtil::clip(type, -1L))
+
+		// Arrays of uint64 store the same bits as with ValueUtil
+		for (value : #[BigInteger::ZERO, BigInteger::ONE.shiftLeft(63), max]) {
+			val array = ValueUtil::createArray(type, 1)
+			PrimitiveValueUtil::set(type, array, PrimitiveValueUtil::narrow(value), 0)
+			value.assertEquals(PrimitiveValueUtil::widen(PrimitiveValueUtil::get(type, array, 0)))
+			value.assertEquals(ValueUtil::get(type, array, 0))
+
+			ValueUtil::set(type, array, value, 0)
+			value.assertEquals(PrimitiveValueUtil::widen(PrimitiveValueUtil::get(type, array, 0)))
+		}
+	}
+}
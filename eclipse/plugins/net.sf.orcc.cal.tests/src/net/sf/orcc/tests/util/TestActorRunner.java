@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.tests.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Port;
+import net.sf.orcc.simulators.jit.JitActorInterpreter;
+import net.sf.orcc.simulators.slow.ConnectedActorInterpreter;
+import net.sf.orcc.simulators.slow.SimulatorFifo;
+import net.sf.orcc.simulators.slow.SimulatorFifoBuffer;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class runs an actor of the simulator, interpreted or compiled to JVM
+ * bytecode, on a list of input tokens. The actor must have one input port and
+ * one output port, and it is scheduled until it cannot fire anymore. The
+ * tokens it writes and the content it prints are recorded, so that both
+ * executions of an actor can be compared.
+ */
+public class TestActorRunner {
+
+	private final Actor actor;
+
+	private boolean compiled;
+
+	private final boolean jit;
+
+	private final StringBuilder output;
+
+	private boolean primitiveValues;
+
+	private final List<Long> tokens;
+
+	/**
+	 * Creates a runner for the given actor.
+	 * 
+	 * @param actor
+	 *            an actor with one input port and one output port
+	 * @param jit
+	 *            <code>true</code> to compile the actor to JVM bytecode
+	 */
+	public TestActorRunner(Actor actor, boolean jit) {
+		this.actor = actor;
+		this.jit = jit;
+		output = new StringBuilder();
+		tokens = new ArrayList<Long>();
+	}
+
+	/**
+	 * Returns a String that contains everything the actor has printed.
+	 * 
+	 * @return the output of the actor
+	 */
+	public String getOutput() {
+		return output.toString();
+	}
+
+	/**
+	 * Returns the tokens written by the actor on its output port.
+	 * 
+	 * @return a list of tokens
+	 */
+	public List<Long> getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Returns <code>true</code> if the actor has been compiled by the last
+	 * run.
+	 * 
+	 * @return <code>true</code> if the actor ran as JVM bytecode
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	/**
+	 * Runs the actor on the given input tokens.
+	 * 
+	 * @param input
+	 *            the tokens available on the input port
+	 */
+	public void run(List<? extends Number> input) {
+		Port inPort = actor.getInputs().get(0);
+		SimulatorFifoBuffer source = new SimulatorFifoBuffer(
+				inPort.getType(), primitiveValues);
+		SimulatorFifo inFifo = new SimulatorFifo(source, input.size() + 1,
+				false);
+		inPort.setAttribute("fifo", inFifo);
+		for (Number token : input) {
+			source.write(BigInteger.valueOf(token.longValue()));
+		}
+
+		Port outPort = actor.getOutputs().get(0);
+		SimulatorFifoBuffer sink = new SimulatorFifoBuffer(outPort.getType(),
+				primitiveValues);
+		SimulatorFifo outFifo = new SimulatorFifo(sink, 64, false);
+		outPort.setAttribute("fifo", sink);
+
+		// the print procedure writes to the logger
+		OrccLogger.configureLoggerWithHandler(new Handler() {
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void publish(LogRecord record) {
+				output.append(record.getMessage());
+			}
+
+		});
+
+		try {
+			ConnectedActorInterpreter interpreter = jit ? new JitActorInterpreter(
+					actor) : new ConnectedActorInterpreter(actor);
+			interpreter.setPrimitiveValues(primitiveValues);
+			interpreter.initialize();
+			compiled = jit && ((JitActorInterpreter) interpreter).isCompiled();
+			while (interpreter.schedule()) {
+				while (outFifo.hasTokens(1)) {
+					tokens.add(((Number) outFifo.read()).longValue());
+				}
+			}
+		} finally {
+			OrccLogger.configureLoggerWithHandler(new ConsoleHandler());
+		}
+	}
+
+	/**
+	 * Sets the representation of the values of the interpreter.
+	 * 
+	 * @param primitiveValues
+	 *            <code>true</code> for long/double values, <code>false</code>
+	 *            for BigInteger/BigDecimal values
+	 */
+	public void setPrimitiveValues(boolean primitiveValues) {
+		this.primitiveValues = primitiveValues;
+	}
+
+}
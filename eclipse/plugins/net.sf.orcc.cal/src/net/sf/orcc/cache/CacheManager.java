@@ -60,7 +60,8 @@ public interface CacheManager extends EObject {
 	/**
 	 * Returns an object of type T associated with the source object of type F.
 	 * If the object is in cache, retrieve it, otherwise compute it using the
-	 * given function.
+	 * given function. This method can be called by several threads: a cache
+	 * is locked (with <code>synchronized</code>) while it is read or updated.
 	 * 
 	 * @param <F>
 	 *            the type of the function input
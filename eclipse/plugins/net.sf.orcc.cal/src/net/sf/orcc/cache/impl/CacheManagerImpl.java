@@ -52,7 +52,7 @@ public class CacheManagerImpl extends EObjectImpl implements CacheManager {
 	}
 
 	@Override
-	public Cache getCache(Resource resource) {
+	public synchronized Cache getCache(Resource resource) {
 		Cache cache = cacheMap.get(resource);
 		if (cache == null) {
 			cache = CacheFactory.eINSTANCE.createCache();
@@ -72,14 +72,25 @@ public class CacheManagerImpl extends EObjectImpl implements CacheManager {
 		} else {
 			Cache cache = getCache(resource);
 
-			@SuppressWarnings("unchecked")
-			EMap<EObject, T> map = (EMap<EObject, T>) cache.eGet(featureMap);
-			result = map.get(astObject);
+			// The cache is locked while it is read or updated, but not while
+			// the object is computed, which may need other objects
+			synchronized (cache) {
+				result = this.<T> getMap(cache, featureMap).get(astObject);
+			}
 
 			if (result == null) {
 				result = switchInst.doSwitch(astObject);
 				if (result != null) {
-					map.put(astObject, result);
+					synchronized (cache) {
+						// keep the object computed first by another thread
+						EMap<EObject, T> map = getMap(cache, featureMap);
+						T existing = map.get(astObject);
+						if (existing == null) {
+							map.put(astObject, result);
+						} else {
+							result = existing;
+						}
+					}
 				}
 			}
 		}
@@ -87,8 +98,18 @@ public class CacheManagerImpl extends EObjectImpl implements CacheManager {
 		return result;
 	}
 
+	/**
+	 * Returns the map of the given cache that is referenced by the given
+	 * feature.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> EMap<EObject, T> getMap(Cache cache,
+			EStructuralFeature featureMap) {
+		return (EMap<EObject, T>) cache.eGet(featureMap);
+	}
+
 	@Override
-	public void unloadAllCaches() {
+	public synchronized void unloadAllCaches() {
 		cacheMap.clear();
 	}
 
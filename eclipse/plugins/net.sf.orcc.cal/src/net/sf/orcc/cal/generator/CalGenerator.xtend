@@ -30,26 +30,44 @@ package net.sf.orcc.cal.generator
 
 import com.google.inject.Inject
 import com.google.inject.Provider
+import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
 import java.util.HashSet
+import java.util.LinkedList
+import java.util.List
+import java.util.Map
+import java.util.Set
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Executors
+import net.sf.orcc.OrccActivator
+import net.sf.orcc.OrccRuntimeException
 import net.sf.orcc.cache.CacheManager
 import net.sf.orcc.cal.cal.AstEntity
 import net.sf.orcc.cal.cal.Import
 import net.sf.orcc.df.Unit
 import net.sf.orcc.frontend.ActorTransformer
 import net.sf.orcc.frontend.Frontend
+import net.sf.orcc.frontend.FrontendManifest
 import net.sf.orcc.frontend.UnitTransformer
+import net.sf.orcc.ir.impl.IrResourceImpl
 import net.sf.orcc.util.OrccLogger
 import net.sf.orcc.util.OrccUtil
 import org.eclipse.core.resources.IProject
 import org.eclipse.core.resources.ResourcesPlugin
 import org.eclipse.core.runtime.Path
+import org.eclipse.core.runtime.Platform
 import org.eclipse.emf.common.util.URI
 import org.eclipse.emf.ecore.resource.Resource
 import org.eclipse.emf.ecore.resource.ResourceSet
+import org.eclipse.emf.ecore.util.EcoreUtil
 import org.eclipse.xtext.generator.IFileSystemAccess
+import org.eclipse.xtext.generator.IFileSystemAccessExtension3
 import org.eclipse.xtext.generator.IGenerator
 
+import static net.sf.orcc.preferences.PreferenceConstants.P_BINARY_IR
+
 /**
  * Generates code from your model files on save.
  * 
@@ -84,6 +102,9 @@ class CalGenerator implements IGenerator {
 	private var ResourceSet calResourceSet
 	private var ResourceSet irResourceSet
 
+	// True if IR files are written in the binary format
+	private var boolean binaryIr
+
 	@Inject
 	private var Provider<ResourceSet> rsProvider
 
@@ -103,6 +124,9 @@ class CalGenerator implements IGenerator {
 
 		calResourceSet = rs
 		irResourceSet = rsProvider.get
+
+		val activator = OrccActivator::getDefault
+		binaryIr = activator != null && Boolean::parseBoolean(activator.getPreference(P_BINARY_IR, "false"))
 	}
 
 	/**
@@ -117,8 +141,6 @@ class CalGenerator implements IGenerator {
 	 */
 	override void doGenerate(Resource calResource, IFileSystemAccess fsa) {
 
-		val irSubPath = calResource.irRelativePath
-
 		if (loadedResources.contains(calResource)) {
 			return
 		}
@@ -143,16 +165,247 @@ class CalGenerator implements IGenerator {
 		}
 
 		// Write in the IR file the content of the transformed AstEntity
-		fsa.generateFile(irSubPath, calResource.serialize)
+		calResource.generateFile(fsa, actorTransformer, unitTransformer)
 
 		// Ensure we will not do it again in the same session
 		loadedResources.add(calResource)
 	}
 
 	/**
-	 * Returns a EMF serialized version of the given AstEntity
+	 * Generate the IR files corresponding to the given calResources, on a pool of
+	 * nbThreads threads. This method is called by net.sf.orcc.frontend.FrontendCli.
+	 * 
+	 * The resources imported from the same project are added to the resources to
+	 * generate. When incremental is true, a resource is not generated again if its
+	 * content and the content of the units it imports (transitively) are the same
+	 * as when its IR file was written (see FrontendManifest).
+	 * 
+	 * The graph of imports is computed first: the Units imported from other projects
+	 * or not generated again are loaded in the Frontend. Then a resource is transformed
+	 * and serialized as soon as all the resources it imports have been, so independent
+	 * resources are generated concurrently. The time spent on each resource is written
+	 * in the log.
+	 */
+	def doGenerate(Iterable<Resource> calResources, IFileSystemAccess fsa, int nbThreads, boolean incremental) {
+
+		val outputFolder = OrccUtil::getOutputFolder(currentProject).location
+		val manifest = new FrontendManifest(outputFolder.toFile, manifestContext, incremental)
+
+		// Resources to build, with the resources they import from the same project
+		val imports = <Resource, Set<Resource>>newLinkedHashMap
+		val hashes = <Resource, String>newHashMap
+		val reused = <Resource>newLinkedHashSet
+		val toVisit = new LinkedList<Resource>
+		toVisit.addAll(calResources.toList)
+		while (!toVisit.empty) {
+			val calResource = toVisit.removeFirst
+			if (!loadedResources.contains(calResource) && !imports.containsKey(calResource) &&
+				!reused.contains(calResource)) {
+				val hash = calResource.computeHash(manifest, hashes)
+				if (manifest.isUpToDate(calResource, hash) &&
+					outputFolder.append(calResource.irRelativePath).toFile.exists) {
+					reused.add(calResource)
+				} else {
+					val sameProject = <Resource>newHashSet
+					for (importedResource : calResource.entity.importedResource) {
+						if (importedResource.isInSameProject(calResource)) {
+							sameProject.add(importedResource)
+							toVisit.add(importedResource)
+						}
+					}
+					imports.put(calResource, sameProject)
+				}
+			}
+		}
+
+		// Load the units that are imported but not built. All proxies of the resources
+		// to build are resolved here, since lazy linking and resource loading are not
+		// thread-safe
+		for (entry : imports.entrySet) {
+			EcoreUtil::resolveAll(entry.key)
+			for (importedResource : entry.key.entity.importedResource) {
+				if (!loadedResources.contains(importedResource) &&
+					(!importedResource.isInSameProject(entry.key) || reused.contains(importedResource))) {
+					importedResource.loadMappings
+				}
+			}
+			entry.value.removeAll(reused)
+		}
+		for (calResource : reused) {
+			manifest.record(calResource, hashes.get(calResource))
+		}
+
+		// Number of imports not generated yet, and importers of each resource
+		val pending = <Resource, Integer>newHashMap
+		val importers = <Resource, List<Resource>>newHashMap
+		for (entry : imports.entrySet) {
+			pending.put(entry.key, entry.value.size)
+			for (importedResource : entry.value) {
+				var list = importers.get(importedResource)
+				if (list == null) {
+					list = newArrayList
+					importers.put(importedResource, list)
+				}
+				list.add(entry.key)
+			}
+		}
+
+		val executor = Executors::newFixedThreadPool(Math::max(1, nbThreads))
+		val completion = new ExecutorCompletionService<Resource>(executor)
+		try {
+			var running = 0
+			for (calResource : imports.keySet) {
+				if (pending.get(calResource) == 0) {
+					completion.submit(calResource.generateTask(fsa))
+					running = running + 1
+				}
+			}
+
+			while (running > 0) {
+				val calResource = completion.take.get
+				running = running - 1
+				loadedResources.add(calResource)
+				manifest.record(calResource, hashes.get(calResource))
+
+				for (importer : importers.get(calResource) ?: emptyList) {
+					val count = pending.get(importer) - 1
+					pending.put(importer, count)
+					if (count == 0) {
+						completion.submit(importer.generateTask(fsa))
+						running = running + 1
+					}
+				}
+			}
+
+			// The resources left import each other: generate them one at a time
+			for (calResource : imports.keySet.filter[!loadedResources.contains(it)].toList) {
+				calResource.doGenerate(fsa)
+				manifest.record(calResource, hashes.get(calResource))
+			}
+		} catch (ExecutionException e) {
+			val cause = e.cause
+			if (cause instanceof RuntimeException) {
+				throw cause
+			}
+			throw new OrccRuntimeException("Error while generating the IR files", cause)
+		} finally {
+			executor.shutdownNow
+			manifest.save
+		}
+
+		OrccLogger::traceln(imports.size + " entities built, " + reused.size + " reused")
+	}
+
+	/**
+	 * Returns the hash of the given calResource. The resources which import each other
+	 * (a strongly connected component of the graph of imports) are hashed as one unit,
+	 * from their contents and the hashes of the resources they import outside of the
+	 * component, so that all of them are built again when one of them changes. The
+	 * hashes are stored in the given map.
+	 */
+	private def String computeHash(Resource calResource, FrontendManifest manifest, Map<Resource, String> hashes) {
+		if (!hashes.containsKey(calResource)) {
+			calResource.hashComponents(manifest, hashes, newHashMap, new LinkedList<Resource>)
+		}
+		hashes.get(calResource)
+	}
+
+	/**
+	 * Visit the imports of the given calResource in depth first (Tarjan's algorithm),
+	 * and hash each strongly connected component once all its resources are visited.
+	 * Returns the lowest index of the resources on the stack reachable from calResource.
+	 */
+	private def int hashComponents(Resource calResource, FrontendManifest manifest, Map<Resource, String> hashes,
+		Map<Resource, Integer> indexes, LinkedList<Resource> stack) {
+		val index = indexes.size
+		indexes.put(calResource, index)
+		stack.push(calResource)
+
+		var lowLink = index
+		for (importedResource : calResource.entity.importedResource) {
+			// The resources already hashed are in components visited before
+			if (!hashes.containsKey(importedResource)) {
+				val importIndex = indexes.get(importedResource)
+				if (importIndex == null) {
+					val importLowLink = importedResource.hashComponents(manifest, hashes, indexes, stack)
+					lowLink = Math::min(lowLink, importLowLink)
+				} else {
+					lowLink = Math::min(lowLink, importIndex)
+				}
+			}
+		}
+
+		// calResource is the first visited resource of its component
+		if (lowLink == index) {
+			val component = <Resource>newArrayList
+			do {
+				component.add(stack.pop)
+			} while (component.last != calResource)
+
+			val externals = <Resource>newHashSet
+			for (member : component) {
+				externals.addAll(member.entity.importedResource)
+			}
+			externals.removeAll(component)
+
+			val hash = manifest.computeHash(component, externals.map[hashes.get(it)].toList)
+			for (member : component) {
+				hashes.put(member, hash)
+			}
+		}
+		lowLink
+	}
+
+	/**
+	 * Returns the context of the hashes of the frontend manifest: the version of
+	 * Orcc and the format of the IR files.
+	 */
+	private def getManifestContext() {
+		val bundle = Platform::getBundle(OrccActivator::PLUGIN_ID)
+		val version = if (bundle != null) bundle.headers.get("Bundle-Version") else "<unknown>"
+		"Orcc " + version + (if (binaryIr) " binary" else " xmi")
+	}
+
+	/**
+	 * Returns a task which generates the IR file of the given calResource, with
+	 * its own transformers, and writes the time it took in the log.
+	 */
+	private def Callable<Resource> generateTask(Resource calResource, IFileSystemAccess fsa) {
+		[|
+			val start = System::currentTimeMillis
+			calResource.generateFile(fsa, new ActorTransformer, new UnitTransformer)
+			OrccLogger::traceln("Build " + calResource.URI + " (" + (System::currentTimeMillis - start) + " ms)")
+			calResource
+		]
+	}
+
+	/**
+	 * Write in the IR file the content of the given calResource, transformed with the
+	 * given transformers. The binary format can only be written by a file system
+	 * access which accepts binary contents.
+	 */
+	private def generateFile(Resource calResource, IFileSystemAccess fsa, ActorTransformer actorTransformer,
+		UnitTransformer unitTransformer) {
+		val irSubPath = calResource.irRelativePath
+		if (binaryIr && fsa instanceof IFileSystemAccessExtension3) {
+			val contents = calResource.serialize(actorTransformer, unitTransformer, true).toByteArray
+			synchronized (fsa) {
+				(fsa as IFileSystemAccessExtension3).generateFile(irSubPath, new ByteArrayInputStream(contents))
+			}
+		} else {
+			val contents = calResource.serialize(actorTransformer, unitTransformer, false).toString
+			synchronized (fsa) {
+				fsa.generateFile(irSubPath, contents)
+			}
+		}
+	}
+
+	/**
+	 * Returns a EMF serialized version of the given AstEntity, in the binary
+	 * format of EMF if <code>binary</code> is true, in XMI otherwise
 	 */
-	private def serialize(Resource calResource) {
+	private def serialize(Resource calResource, ActorTransformer actorTransformer, UnitTransformer unitTransformer,
+		boolean binary) {
 		val astEntity = calResource.entity
 
 		// Transform the AstEntity into an Actor or a Unit
@@ -167,20 +420,26 @@ class CalGenerator implements IGenerator {
 		// Check errors...
 		if (entity == null) {
 			OrccLogger.warnln("Unable to transform the CAL content")
-			return ""
+			return new ByteArrayOutputStream
 		}
 
-		val irResource = irResourceSet.createResource(OrccUtil::getIrUri(calResource.URI))
+		val irResource = synchronized (irResourceSet) {
+			irResourceSet.createResource(OrccUtil::getIrUri(calResource.URI))
+		}
 
 		// Associate the current entity to its resource
 		irResource.contents.add(entity)
 
-		// Serialize in a simple String in memory
+		// Serialize in memory
 		val outputStream = new ByteArrayOutputStream
-		irResource.save(outputStream, newHashMap)
+		val options = <Object, Object>newHashMap
+		if (binary) {
+			options.put(IrResourceImpl::OPTION_BINARY, true)
+		}
+		irResource.save(outputStream, options)
 
 		// Simply return the serialized content
-		outputStream.toString
+		outputStream
 	}
 
 	/**
@@ -113,7 +113,9 @@ public class Evaluator extends CalSwitch<Expression> {
 		Resource resource = eObject.eResource();
 		if (resource != null) {
 			Cache cache = CacheManager.instance.getCache(resource);
-			cache.getExpressionsMap().put(eObject, value);
+			synchronized (cache) {
+				cache.getExpressionsMap().put(eObject, value);
+			}
 		}
 	}
 
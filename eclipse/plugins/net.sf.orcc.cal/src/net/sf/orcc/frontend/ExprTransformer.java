@@ -75,6 +75,7 @@ import net.sf.orcc.ir.OpUnary;
 import net.sf.orcc.ir.Procedure;
 import net.sf.orcc.ir.Type;
 import net.sf.orcc.ir.TypeList;
+import net.sf.orcc.ir.Use;
 import net.sf.orcc.ir.Var;
 import net.sf.orcc.ir.util.IrUtil;
 import net.sf.orcc.util.OrccUtil;
@@ -284,8 +285,8 @@ public class ExprTransformer extends CalSwitch<Expression> {
 
 		// set load target and add load
 		Var loadTarget = getScalar(Typer.getType(expression), var.getName());
-		InstLoad load = eINSTANCE.createInstLoad(lineNumber, loadTarget, var,
-				indexes);
+		InstLoad load = eINSTANCE.createInstLoad(lineNumber,
+				eINSTANCE.createDef(loadTarget), createUse(var), indexes);
 		IrUtil.getLast(blocks).add(load);
 
 		// return expr
@@ -392,7 +393,7 @@ public class ExprTransformer extends CalSwitch<Expression> {
 						return eINSTANCE.createExprVar(target);
 					}
 				}
-				return eINSTANCE.createExprVar(var);
+				return eINSTANCE.createExprVar(createUse(var));
 			} else {
 				Expression expr;
 				// Check if the variable has been marked before by the
@@ -422,7 +423,9 @@ public class ExprTransformer extends CalSwitch<Expression> {
 						var = procedure.newTempLocalVariable(global.getType(),
 								"local_" + global.getName());
 					}
-					InstLoad load = eINSTANCE.createInstLoad(var, global);
+					InstLoad load = eINSTANCE.createInstLoad(0,
+							eINSTANCE.createDef(var), createUse(global),
+							new ArrayList<Expression>(0));
 					IrUtil.getLast(blocks).add(load);
 				}
 			}
@@ -484,7 +487,8 @@ public class ExprTransformer extends CalSwitch<Expression> {
 		// load
 		Var loadTarget = procedure.newTempLocalVariable(
 				typeList.getInnermostType(), "local_" + var.getName());
-		InstLoad load = eINSTANCE.createInstLoad(0, loadTarget, var, indexes);
+		InstLoad load = eINSTANCE.createInstLoad(0,
+				eINSTANCE.createDef(loadTarget), createUse(var), indexes);
 		IrUtil.getLast(blocks).add(load);
 
 		// store
@@ -511,6 +515,22 @@ public class ExprTransformer extends CalSwitch<Expression> {
 		return null;
 	}
 
+	/**
+	 * Creates a use of the given variable. The constants of a unit get uses
+	 * from all the entities importing the unit, which may be transformed
+	 * concurrently by the command line frontend, so the list of uses of the
+	 * variable is updated while holding its lock.
+	 * 
+	 * @param var
+	 *            a variable
+	 * @return a new use of the variable
+	 */
+	private Use createUse(Var var) {
+		synchronized (var) {
+			return eINSTANCE.createUse(var);
+		}
+	}
+
 	/**
 	 * If the current target is a local scalar variable, returns the current
 	 * target. Otherwise, creates a new temporary local variable to hold the
@@ -37,7 +37,8 @@ import org.eclipse.emf.ecore.resource.Resource;
 
 /**
  * This class defines an RVC-CAL front-end. Is is mainly used to manage links
- * between AST objects and their IR equivalent.
+ * between AST objects and their IR equivalent. The links can be read and
+ * stored by several threads, when entities are transformed concurrently.
  * 
  * @author Matthieu Wipliez
  * @author Antoine Lorence
@@ -76,7 +77,9 @@ public class Frontend {
 		if (astObject.eResource() != null) {
 			final Cache cache = CacheManager.instance.getCache(astObject
 					.eResource());
-			irObject = cache.getIrMap().get(astObject);
+			synchronized (cache) {
+				irObject = cache.getIrMap().get(astObject);
+			}
 		}
 
 		if (irObject == null) {
@@ -107,7 +110,9 @@ public class Frontend {
 		final Resource resource = astObject.eResource();
 		if (resource != null) {
 			Cache cache = CacheManager.instance.getCache(resource);
-			cache.getIrMap().put(astObject, irObject);
+			synchronized (cache) {
+				cache.getIrMap().put(astObject, irObject);
+			}
 		} else {
 			OrccLogger.warnln("Try to put object not contained in a resource: "
 					+ astObject);
@@ -30,6 +30,7 @@ package net.sf.orcc.frontend;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -89,9 +90,15 @@ import com.google.inject.Injector;
  * eclipse :
  * 
  * <pre>
- * eclipse -application net.sf.orcc.cal.cli -data &lt;workspacePath&gt; &lt;projectName&gt; [&lt;network&gt;]
+ * eclipse -application net.sf.orcc.cal.cli -data &lt;workspacePath&gt; [-j &lt;threads&gt;] [-f] &lt;projectName&gt; [&lt;network&gt;]
  * </pre>
  * 
+ * The entities of a project are transformed and serialized concurrently by a
+ * pool of threads (one per available processor by default), each one as soon
+ * as the units it imports have been built. An entity is not built again when
+ * neither its file nor the units it imports have changed since its IR file
+ * was written, unless a full build is requested (-f).
+ * 
  * @author Matthieu Wipliez
  * @author Antoine Lorence
  * 
@@ -100,7 +107,7 @@ public class FrontendCli implements IApplication {
 
 	// Display the command line usage of this application
 	private final String USAGE = "Usage : \n"
-			+ "net.sf.orcc.cal.cli <project> [<network>]";
+			+ "net.sf.orcc.cal.cli [-j <threads>] [-f] <project> [<network>]";
 
 	private final ResourceSet resourceSet;
 	private final IWorkspace workspace;
@@ -108,6 +115,8 @@ public class FrontendCli implements IApplication {
 
 	private IProject project;
 	private IFile networkFile;
+	private int nbThreads;
+	private boolean fullBuild;
 
 	final Injector injector;
 
@@ -130,6 +139,8 @@ public class FrontendCli implements IApplication {
 
 		project = null;
 		networkFile = null;
+		nbThreads = Runtime.getRuntime().availableProcessors();
+		fullBuild = false;
 
 		// Get the resource set used by Frontend
 		resourceSet = injector.getInstance(ResourceSet.class);
@@ -220,12 +231,13 @@ public class FrontendCli implements IApplication {
 
 				fsa.setOutputPath(OrccUtil.getOutputFolder(project)
 						.getLocation().toString());
+				final long t0 = System.currentTimeMillis();
 				calGenerator.beforeBuild(project, resourceSet);
-				for (final Resource res : resourcesMap.get(project)) {
-					calGenerator.doGenerate(res, fsa);
-					OrccLogger.traceln("Build " + res.getURI().toString());
-				}
+				calGenerator.doGenerate(resourcesMap.get(project), fsa,
+						nbThreads, !fullBuild);
 				calGenerator.afterBuild();
+				OrccLogger.traceln("Built " + project.getName() + " in "
+						+ (System.currentTimeMillis() - t0) + " ms");
 			}
 
 			// Avoid warning messages of type "The workspace exited
@@ -293,18 +305,43 @@ public class FrontendCli implements IApplication {
 		OrccLogger.traceln("Command line arguments are \""
 				+ StringUtils.join(args, ' ') + "\"");
 
-		project = workspace.getRoot().getProject(args[0]);
+		final List<String> arguments = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-j".equals(args[i]) && i + 1 < args.length) {
+				try {
+					nbThreads = Math.max(1, Integer.parseInt(args[++i]));
+				} catch (NumberFormatException e) {
+					OrccLogger.severeln("Invalid number of threads " + args[i]);
+					OrccLogger.traceln(USAGE);
+					return false;
+				}
+			} else if ("-f".equals(args[i])) {
+				fullBuild = true;
+			} else {
+				arguments.add(args[i]);
+			}
+		}
+
+		if (arguments.isEmpty()) {
+			OrccLogger.severeln("Unable to parse command line arguments");
+			OrccLogger.traceln(USAGE);
+			return false;
+		}
+
+		project = workspace.getRoot().getProject(arguments.get(0));
 		if (project == null) {
-			OrccLogger.severeln("Unable to find the project " + args[0]);
+			OrccLogger.severeln("Unable to find the project "
+					+ arguments.get(0));
 			OrccLogger.traceln(USAGE);
 			return false;
 		}
 
-		if (args.length >= 2 && !args[1].isEmpty()) {
-			networkFile = OrccUtil.getFile(project, args[1],
+		if (arguments.size() >= 2 && !arguments.get(1).isEmpty()) {
+			networkFile = OrccUtil.getFile(project, arguments.get(1),
 					OrccUtil.NETWORK_SUFFIX);
 			if (networkFile == null) {
-				OrccLogger.severeln("Unable to find the network " + args[1]);
+				OrccLogger.severeln("Unable to find the network "
+						+ arguments.get(1));
 			}
 		}
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.frontend;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.util.OrccLogger;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.URIConverter;
+
+/**
+ * This class stores, in the output folder of a project, a hash of each CAL
+ * file whose IR has been generated by the frontend. The hash covers the content
+ * of the file, the hashes of the units it imports (and so their own imports),
+ * and a context given by the frontend (the version of Orcc and the IR format).
+ * Files which import each other are hashed together, from all their contents
+ * and the hashes of the units they import outside of the group. When the hash
+ * of a file is the same as in the previous run and its IR file exists, its
+ * transformation and serialization can be skipped.
+ * 
+ * <p>
+ * The hashes of files that are not built during a run are kept. Deleting the
+ * manifest file forces a full build.
+ * </p>
+ */
+public class FrontendManifest {
+
+	public static final String FILE_NAME = ".orcc-frontend";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final byte[] context;
+
+	private final Properties current;
+
+	private final File file;
+
+	private final Properties previous;
+
+	/**
+	 * Load the manifest of the given output folder, if any.
+	 * 
+	 * @param outputFolder
+	 *            the output folder of a project
+	 * @param context
+	 *            a description of the frontend and its options
+	 * @param load
+	 *            if false, the previous hashes are not loaded, so that all
+	 *            the files are built
+	 */
+	public FrontendManifest(File outputFolder, String context, boolean load) {
+		file = new File(outputFolder, FILE_NAME);
+		previous = new Properties();
+		current = new Properties();
+
+		if (load && file.isFile()) {
+			try {
+				final InputStream in = new FileInputStream(file);
+				try {
+					previous.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				OrccLogger.warnln("Unable to read " + file + ", all the "
+						+ "entities will be built: " + e.getMessage());
+				previous.clear();
+			}
+		}
+		current.putAll(previous);
+
+		final MessageDigest digest = createDigest();
+		update(digest, context);
+		this.context = digest.digest();
+	}
+
+	/**
+	 * Compute the hash of the given CAL resources, which import each other
+	 * (a single resource when it is not part of a cycle of imports): the
+	 * contents of their files, the given hashes of the units they import
+	 * outside of the given resources, and the context of this manifest. The
+	 * hash does not depend on the order of the given resources.
+	 * 
+	 * @param calResources
+	 *            the resources of CAL files which import each other
+	 * @param importHashes
+	 *            the hashes of the other resources imported by the CAL files
+	 * @return an hexadecimal hash
+	 */
+	public String computeHash(List<Resource> calResources,
+			List<String> importHashes) {
+		final MessageDigest digest = createDigest();
+		digest.update(context);
+
+		// Files are sorted by URI to get a stable hash
+		final List<Resource> resources = new ArrayList<Resource>(calResources);
+		Collections.sort(resources, new Comparator<Resource>() {
+			@Override
+			public int compare(Resource r1, Resource r2) {
+				return r1.getURI().toString()
+						.compareTo(r2.getURI().toString());
+			}
+		});
+		for (Resource calResource : resources) {
+			update(digest, calResource);
+		}
+
+		// Imports are sorted to get a stable hash
+		final List<String> hashes = new ArrayList<String>(importHashes);
+		Collections.sort(hashes);
+		for (String hash : hashes) {
+			update(digest, hash);
+		}
+
+		final StringBuilder builder = new StringBuilder();
+		for (byte b : digest.digest()) {
+			builder.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Returns true if the given CAL resource has the same hash as in the
+	 * previous run.
+	 * 
+	 * @param calResource
+	 *            the resource of a CAL file
+	 * @param hash
+	 *            the hash computed by {@link #computeHash(List, List)}
+	 * @return true if the IR of the resource is up-to-date
+	 */
+	public boolean isUpToDate(Resource calResource, String hash) {
+		return hash.equals(previous.getProperty(calResource.getURI()
+				.toString()));
+	}
+
+	/**
+	 * Record the hash of the given CAL resource, once its IR is written.
+	 * 
+	 * @param calResource
+	 *            the resource of a CAL file
+	 * @param hash
+	 *            the hash computed by {@link #computeHash(List, List)}
+	 */
+	public void record(Resource calResource, String hash) {
+		current.setProperty(calResource.getURI().toString(), hash);
+	}
+
+	/**
+	 * Write the hashes to the manifest file.
+	 */
+	public void save() {
+		try {
+			file.getParentFile().mkdirs();
+			final OutputStream out = new FileOutputStream(file);
+			try {
+				current.store(out, "Orcc frontend manifest, do not edit");
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			OrccLogger.warnln("Unable to write " + file + ": "
+					+ e.getMessage());
+		}
+	}
+
+	private MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new OrccRuntimeException("SHA-1 is not available", e);
+		}
+	}
+
+	private void update(MessageDigest digest, Resource calResource) {
+		final URIConverter converter = calResource.getResourceSet()
+				.getURIConverter();
+		try {
+			final InputStream in = converter.createInputStream(calResource
+					.getURI());
+			try {
+				final byte[] buffer = new byte[8192];
+				int count;
+				while ((count = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, count);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// The file will be built
+			update(digest, String.valueOf(System.nanoTime()));
+		}
+		digest.update((byte) 0);
+	}
+
+	private void update(MessageDigest digest, String value) {
+		try {
+			digest.update(value.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new OrccRuntimeException("UTF-8 is not supported", e);
+		}
+		digest.update((byte) 0);
+	}
+
+}
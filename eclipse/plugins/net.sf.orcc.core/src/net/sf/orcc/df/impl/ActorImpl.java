@@ -20,7 +20,9 @@ import net.sf.orcc.df.Entity;
 import net.sf.orcc.df.FSM;
 import net.sf.orcc.df.Port;
 import net.sf.orcc.df.util.DfUtil;
+import net.sf.orcc.graph.GraphPackage;
 import net.sf.orcc.graph.impl.VertexImpl;
+import net.sf.orcc.ir.IrPackage;
 import net.sf.orcc.ir.Procedure;
 import net.sf.orcc.ir.Var;
 import net.sf.orcc.ir.util.MapAdapter;
@@ -593,12 +595,8 @@ public class ActorImpl extends VertexImpl implements Actor {
 
 	@Override
 	public Port getInput(String name) {
-		for (Port port : getInputs()) {
-			if (port.getName().equals(name)) {
-				return port;
-			}
-		}
-		return null;
+		return findByName(getInputs(), Literals.ACTOR__INPUTS,
+				GraphPackage.Literals.VERTEX__LABEL, name);
 	}
 
 	/**
@@ -640,12 +638,8 @@ public class ActorImpl extends VertexImpl implements Actor {
 
 	@Override
 	public Port getOutput(String name) {
-		for (Port port : getOutputs()) {
-			if (port.getName().equals(name)) {
-				return port;
-			}
-		}
-		return null;
+		return findByName(getOutputs(), Literals.ACTOR__OUTPUTS,
+				GraphPackage.Literals.VERTEX__LABEL, name);
 	}
 
 	/**
@@ -667,12 +661,8 @@ public class ActorImpl extends VertexImpl implements Actor {
 
 	@Override
 	public Var getParameter(String name) {
-		for (Var var : getParameters()) {
-			if (var.getName().equals(name)) {
-				return var;
-			}
-		}
-		return null;
+		return findByName(getParameters(), Literals.ACTOR__PARAMETERS,
+				IrPackage.Literals.VAR__NAME, name);
 	}
 
 	/**
@@ -699,12 +689,8 @@ public class ActorImpl extends VertexImpl implements Actor {
 
 	@Override
 	public Procedure getProcedure(String name) {
-		for (Procedure procedure : getProcs()) {
-			if (procedure.getName().equals(name)) {
-				return procedure;
-			}
-		}
-		return null;
+		return findByName(getProcs(), Literals.ACTOR__PROCS,
+				IrPackage.Literals.PROCEDURE__NAME, name);
 	}
 
 	/**
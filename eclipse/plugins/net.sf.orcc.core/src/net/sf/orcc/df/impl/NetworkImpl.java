@@ -46,9 +46,11 @@ import net.sf.orcc.df.Instance;
 import net.sf.orcc.df.Network;
 import net.sf.orcc.df.Port;
 import net.sf.orcc.df.util.DfUtil;
+import net.sf.orcc.graph.GraphPackage;
 import net.sf.orcc.graph.Edge;
 import net.sf.orcc.graph.Vertex;
 import net.sf.orcc.graph.impl.GraphImpl;
+import net.sf.orcc.ir.IrPackage;
 import net.sf.orcc.ir.Var;
 import net.sf.orcc.moc.MoC;
 
@@ -471,12 +473,8 @@ public class NetworkImpl extends GraphImpl implements Network {
 
 	@Override
 	public Vertex getChild(String name) {
-		for (Vertex vertex : getChildren()) {
-			if (vertex.getLabel().equals(name)) {
-				return vertex;
-			}
-		}
-		return null;
+		return findByName(getChildren(), DfPackage.Literals.NETWORK__CHILDREN,
+				GraphPackage.Literals.VERTEX__LABEL, name);
 	}
 
 	/**
@@ -518,12 +516,8 @@ public class NetworkImpl extends GraphImpl implements Network {
 
 	@Override
 	public Port getInput(String name) {
-		for (Port port : getInputs()) {
-			if (port.getName().equals(name)) {
-				return port;
-			}
-		}
-		return null;
+		return findByName(getInputs(), DfPackage.Literals.NETWORK__INPUTS,
+				GraphPackage.Literals.VERTEX__LABEL, name);
 	}
 
 	/**
@@ -586,12 +580,8 @@ public class NetworkImpl extends GraphImpl implements Network {
 
 	@Override
 	public Port getOutput(String name) {
-		for (Port port : getOutputs()) {
-			if (port.getName().equals(name)) {
-				return port;
-			}
-		}
-		return null;
+		return findByName(getOutputs(), DfPackage.Literals.NETWORK__OUTPUTS,
+				GraphPackage.Literals.VERTEX__LABEL, name);
 	}
 
 	/**
@@ -613,12 +603,8 @@ public class NetworkImpl extends GraphImpl implements Network {
 
 	@Override
 	public Var getParameter(String name) {
-		for (Var var : getParameters()) {
-			if (var.getName().equals(name)) {
-				return var;
-			}
-		}
-		return null;
+		return findByName(getParameters(), DfPackage.Literals.NETWORK__PARAMETERS,
+				IrPackage.Literals.VAR__NAME, name);
 	}
 
 	/**
@@ -640,12 +626,8 @@ public class NetworkImpl extends GraphImpl implements Network {
 
 	@Override
 	public Var getVariable(String name) {
-		for (Var var : getVariables()) {
-			if (var.getName().equals(name)) {
-				return var;
-			}
-		}
-		return null;
+		return findByName(getVariables(), DfPackage.Literals.NETWORK__VARIABLES,
+				IrPackage.Literals.VAR__NAME, name);
 	}
 
 	/**
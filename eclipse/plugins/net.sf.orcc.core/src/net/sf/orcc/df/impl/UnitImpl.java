@@ -11,6 +11,7 @@ import java.util.Collection;
 import net.sf.orcc.df.DfPackage;
 import net.sf.orcc.df.Unit;
 import net.sf.orcc.df.util.DfUtil;
+import net.sf.orcc.ir.IrPackage;
 import net.sf.orcc.ir.Procedure;
 import net.sf.orcc.ir.Var;
 import net.sf.orcc.util.impl.AttributableImpl;
@@ -264,12 +265,8 @@ public class UnitImpl extends AttributableImpl implements Unit {
 
 	@Override
 	public Var getConstant(String name) {
-		for (Var var : getConstants()) {
-			if (var.getName().equals(name)) {
-				return var;
-			}
-		}
-		return null;
+		return findByName(getConstants(), DfPackage.Literals.UNIT__CONSTANTS,
+				IrPackage.Literals.VAR__NAME, name);
 	}
 
 	/**
@@ -328,12 +325,8 @@ public class UnitImpl extends AttributableImpl implements Unit {
 
 	@Override
 	public Procedure getProcedure(String name) {
-		for (Procedure procedure : getProcedures()) {
-			if (procedure.getName().equals(name)) {
-				return procedure;
-			}
-		}
-		return null;
+		return findByName(getProcedures(), DfPackage.Literals.UNIT__PROCEDURES,
+				IrPackage.Literals.PROCEDURE__NAME, name);
 	}
 
 	/**
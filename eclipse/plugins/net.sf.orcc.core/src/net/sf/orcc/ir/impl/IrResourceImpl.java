@@ -28,11 +28,22 @@
  */
 package net.sf.orcc.ir.impl;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
 import net.sf.orcc.df.Actor;
 import net.sf.orcc.df.Unit;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectInputStream;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectOutputStream;
+import org.eclipse.emf.ecore.util.InternalEList;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipse.emf.ecore.xmi.impl.URIHandlerImpl;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
@@ -41,11 +52,85 @@ import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
  * This class defines a resource implementation for the Df model which is used
  * to serialize to/deserialize from XDF.
  * 
+ * <p>
+ * A resource is saved as XMI, or in the compact binary format of EMF when the
+ * {@link #OPTION_BINARY} save option is set. Both formats are loaded
+ * transparently: the format of a file is recognized from its first bytes.
+ * </p>
+ * 
  * @author mwipliez
  * 
  */
 public class IrResourceImpl extends XMIResourceImpl {
 
+	/**
+	 * Save option: when {@link Boolean#TRUE}, the resource is saved in the
+	 * binary format of EMF instead of XMI.
+	 */
+	public static final String OPTION_BINARY = "net.sf.orcc.ir.binary";
+
+	/**
+	 * This class defines an input stream of the binary format that keeps the
+	 * order of the lists of references whose opposite has already been set
+	 * when they are loaded, such as the uses and definitions of a variable.
+	 */
+	private static class IrInputStream extends EObjectInputStream {
+
+		public IrInputStream(InputStream inputStream, Map<?, ?> options)
+				throws IOException {
+			super(inputStream, options);
+		}
+
+		@Override
+		public void loadEObjects(InternalEList<InternalEObject> internalEObjects)
+				throws IOException {
+			int size = readCompressedInt();
+			InternalEObject[] values = new InternalEObject[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = loadEObject();
+			}
+
+			if (internalEObjects.isEmpty()) {
+				internalEObjects.addAllUnique(Arrays.asList(values));
+			} else {
+				for (int i = 0; i < size; i++) {
+					int index = internalEObjects.basicIndexOf(values[i]);
+					if (index == -1) {
+						internalEObjects.addUnique(i, values[i]);
+					} else if (index != i) {
+						internalEObjects.move(i, index);
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Signature that starts the files written in the binary format of EMF.
+	 */
+	private static final byte[] BINARY_SIGNATURE = { (byte) 0x89, 'e', 'm',
+			'f', '\n', '\r', 0x1a, '\n' };
+
+	/**
+	 * Returns <code>true</code> if the given stream starts with the signature
+	 * of the binary format. The stream is reset to its current position.
+	 */
+	private static boolean isBinary(InputStream inputStream)
+			throws IOException {
+		byte[] header = new byte[BINARY_SIGNATURE.length];
+		inputStream.mark(header.length);
+		int length = 0;
+		int count;
+		while (length < header.length
+				&& (count = inputStream.read(header, length, header.length
+						- length)) != -1) {
+			length += count;
+		}
+		inputStream.reset();
+		return Arrays.equals(header, BINARY_SIGNATURE);
+	}
+
 	public IrResourceImpl() {
 	}
 
@@ -61,6 +146,31 @@ public class IrResourceImpl extends XMIResourceImpl {
 				new URIHandlerImpl.PlatformSchemeAware());
 	}
 
+	@Override
+	public void doLoad(InputStream inputStream, Map<?, ?> options)
+			throws IOException {
+		InputStream is = inputStream.markSupported() ? inputStream
+				: new BufferedInputStream(inputStream);
+		if (isBinary(is)) {
+			new IrInputStream(is, options).loadResource(this);
+		} else {
+			super.doLoad(is, options);
+		}
+	}
+
+	@Override
+	public void doSave(OutputStream outputStream, Map<?, ?> options)
+			throws IOException {
+		if (options != null && Boolean.TRUE.equals(options.get(OPTION_BINARY))) {
+			EObjectOutputStream os = new EObjectOutputStream(outputStream,
+					options);
+			os.saveResource(this);
+			os.flush();
+		} else {
+			super.doSave(outputStream, options);
+		}
+	}
+
 	@Override
 	public EObject getEObject(String uriFragment) {
 		if (getContents().isEmpty()) {
@@ -576,12 +576,13 @@ public class ProcedureImpl extends AttributableImpl implements Procedure {
 
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
-	 * @generated
+	 * @generated NOT
 	 */
 	@Override
 	public void setName(String newName) {
 		String oldName = name;
 		name = newName;
+		nameChanged(Literals.PROCEDURE__NAME);
 		if (eNotificationRequired())
 			eNotify(new ENotificationImpl(this, Notification.SET,
 					IrPackage.PROCEDURE__NAME, oldName, name));
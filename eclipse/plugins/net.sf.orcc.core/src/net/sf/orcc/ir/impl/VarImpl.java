@@ -626,11 +626,12 @@ public class VarImpl extends AttributableImpl implements Var {
 
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
-	 * @generated
+	 * @generated NOT
 	 */
 	public void setName(String newName) {
 		String oldName = name;
 		name = newName;
+		nameChanged(IrPackage.Literals.VAR__NAME);
 		if (eNotificationRequired())
 			eNotify(new ENotificationImpl(this, Notification.SET,
 					IrPackage.VAR__NAME, oldName, name));
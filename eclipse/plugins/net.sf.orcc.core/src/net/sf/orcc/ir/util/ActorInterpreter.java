@@ -33,8 +33,12 @@ import static java.math.BigInteger.ONE;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import net.sf.orcc.OrccRuntimeException;
 import net.sf.orcc.df.Action;
@@ -76,6 +80,24 @@ import org.eclipse.emf.ecore.util.EcoreUtil;
  * This class defines an interpreter for an actor. The interpreter can
  * {@link #initialize()} and {@link #schedule()} the actor.
  * 
+ * <p>
+ * The values of the variables are not stored in the variables themselves, but
+ * in slots resolved by each interpreter: the parameters, state variables and
+ * pattern variables of the actor have a slot in an array of globals, resolved
+ * by {@link #initialize()}, and the parameters and locals of a procedure have
+ * a slot in a frame allocated for each call of the procedure, resolved the
+ * first time the procedure is called. The values of the parameters and state
+ * variables are written back to the variables by
+ * {@link #synchronizeVariables()}.
+ * </p>
+ * 
+ * <p>
+ * Only global variables are stored in the variables themselves: the constants
+ * declared in units, and the variables of the actor when its globals are not
+ * allocated, i.e. when a subclass overrides {@link #initialize()} without
+ * calling it.
+ * </p>
+ * 
  * @author Pierre-Laurent Lagalaye
  * @author Matthieu Wipliez
  * 
@@ -86,16 +108,37 @@ public class ActorInterpreter extends IrSwitch<Object> {
 	protected Actor actor;
 	/** branch being visited */
 	protected int branch;
-	/** the expression evaluator */
+	/**
+	 * the expression evaluator, which must be set by
+	 * {@link #setExprInterpreter(ExpressionEvaluator)}
+	 */
 	protected ExpressionEvaluator exprInterpreter;
 	/** Actor's FSM current state */
 	protected State fsmState;
+	/** frame of the procedure being interpreted */
+	private Object[] frame;
+	/**
+	 * size of the frame of the procedures whose slots have been resolved by
+	 * this interpreter
+	 */
+	private final Map<Procedure, Integer> frameSizes;
+	/** values of the parameters, state variables and pattern variables */
+	private Object[] globals;
+	/**
+	 * slots of the variables resolved by this interpreter: the index plus one
+	 * of a variable in a frame, or <code>-(index + 1)</code> in the globals
+	 */
+	private final Map<Var, Integer> slots;
+	/** true if values are in the representation of PrimitiveValueUtil */
+	protected boolean primitiveValues;
 
 	/**
 	 * Creates a new interpreter without any associated {@link Actor}
 	 */
 	public ActorInterpreter() {
-		this.exprInterpreter = new ExpressionEvaluator();
+		this.frameSizes = new HashMap<Procedure, Integer>();
+		this.slots = new IdentityHashMap<Var, Integer>();
+		setExprInterpreter(new ExpressionEvaluator());
 	}
 
 	/**
@@ -120,8 +163,101 @@ public class ActorInterpreter extends IrSwitch<Object> {
 			Var var = pattern.getVariable(port);
 			if (var != null) {
 				Object value = ValueUtil.createArray((TypeList) var.getType());
-				var.setValue(value);
+				setValue(var, value);
+			}
+		}
+	}
+
+	/**
+	 * Allocates a new frame for the given procedure. The slots of its
+	 * parameters and locals are resolved the first time it is called: the
+	 * parameters are the first slots of the frame, in order. The slot of a
+	 * variable in a frame is its index plus one.
+	 * 
+	 * @param procedure
+	 *            a procedure
+	 * @return a new frame with a slot for each parameter and local of the
+	 *         procedure
+	 */
+	private Object[] allocateFrame(Procedure procedure) {
+		Integer size = frameSizes.get(procedure);
+		if (size == null) {
+			int index = 0;
+			for (Param param : procedure.getParameters()) {
+				slots.put(param.getVariable(), ++index);
 			}
+			for (Var local : procedure.getLocals()) {
+				slots.put(local, ++index);
+			}
+
+			size = index;
+			frameSizes.put(procedure, size);
+		}
+		return new Object[size];
+	}
+
+	/**
+	 * Allocates the globals of the actor, and resolves their slots. The slot
+	 * of a variable in the globals is <code>-(index + 1)</code>.
+	 */
+	private void allocateGlobals() {
+		final Set<Var> resolved = Collections
+				.newSetFromMap(new IdentityHashMap<Var, Boolean>());
+		for (Var var : actor.getParameters()) {
+			resolveGlobal(var, resolved);
+		}
+		for (Var var : actor.getStateVars()) {
+			resolveGlobal(var, resolved);
+		}
+		for (Action action : actor.getActions()) {
+			resolveGlobals(action, resolved);
+		}
+		for (Action action : actor.getInitializes()) {
+			resolveGlobals(action, resolved);
+		}
+
+		globals = new Object[resolved.size()];
+	}
+
+	/**
+	 * Returns the value in the given array at the given indexes, in the value
+	 * representation used by this interpreter.
+	 * 
+	 * @param type
+	 *            type of the innermost elements of the array
+	 * @param array
+	 *            an array
+	 * @param indexes
+	 *            indexes
+	 * @return the value read
+	 */
+	final protected Object getArrayValue(Type type, Object array,
+			Object... indexes) {
+		if (primitiveValues) {
+			return PrimitiveValueUtil.get(type, array, indexes);
+		}
+		return ValueUtil.get(type, array, indexes);
+	}
+
+	/**
+	 * Writes the given value in the given array at the given indexes. The
+	 * value is expected in the representation used by this interpreter.
+	 * 
+	 * @param type
+	 *            type of the innermost elements of the array
+	 * @param array
+	 *            an array
+	 * @param value
+	 *            the value to write
+	 * @param indexes
+	 *            indexes
+	 */
+	final protected void setArrayValue(Type type, Object array, Object value,
+			Object... indexes) {
+		if (primitiveValues) {
+			PrimitiveValueUtil.set(type, array, value, indexes);
+		} else {
+			ValueUtil.set(type, array, value, indexes);
 		}
 	}
 
@@ -233,7 +369,7 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		Object value = exprInterpreter.doSwitch(instr.getValue());
 		value = clipValue(target.getType(), value, instr);
 		try {
-			target.setValue(value);
+			setValue(target, value);
 		} catch (OrccRuntimeException e) {
 			String file = actor.getFileName();
 			throw new OrccRuntimeException(file, instr.getLineNumber(), "", e);
@@ -255,23 +391,23 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		} else if (proc.isNative()) {
 			Object result = callNativeProcedure(proc, callParams);
 			if (call.hasResult()) {
-				call.getTarget().getVariable().setValue(result);
+				setValue(call.getTarget().getVariable(), result);
 			}
 		} else {
-			List<Param> procParams = proc.getParameters();
+			// the parameters are the first slots of the frame
+			Object[] calleeFrame = allocateFrame(proc);
 			for (int i = 0; i < callParams.size(); i++) {
-				Var procVar = procParams.get(i).getVariable();
 				Arg arg = callParams.get(i);
 				if (arg.isByVal()) {
 					Expression value = ((ArgByVal) arg).getValue();
-					procVar.setValue(exprInterpreter.doSwitch(value));
+					calleeFrame[i] = exprInterpreter.doSwitch(value);
 				}
 			}
 
 			// Interpret procedure body
-			Object result = doSwitch(proc);
+			Object result = interpret(proc, calleeFrame);
 			if (call.hasResult()) {
-				call.getTarget().getVariable().setValue(result);
+				setValue(call.getTarget().getVariable(), result);
 			}
 		}
 		return null;
@@ -282,10 +418,10 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		Var target = instr.getTarget().getVariable();
 		Var source = instr.getSource().getVariable();
 		if (instr.getIndexes().isEmpty()) {
-			target.setValue(source.getValue());
+			setValue(target, getValue(source));
 		} else {
 
-			Object array = source.getValue();
+			Object array = getValue(source);
 			Object[] indexes = new Object[instr.getIndexes().size()];
 			int i = 0;
 			for (Expression index : instr.getIndexes()) {
@@ -293,8 +429,8 @@ public class ActorInterpreter extends IrSwitch<Object> {
 			}
 			Type type = ((TypeList) source.getType()).getInnermostType();
 			try {
-				Object value = ValueUtil.get(type, array, indexes);
-				target.setValue(value);
+				Object value = getArrayValue(type, array, indexes);
+				setValue(target, value);
 			} catch (IndexOutOfBoundsException e) {
 				throw new OrccRuntimeException(
 						"Array Index Out of Bound at line "
@@ -307,7 +443,8 @@ public class ActorInterpreter extends IrSwitch<Object> {
 	@Override
 	public Object caseInstPhi(InstPhi phi) {
 		Expression value = phi.getValues().get(branch);
-		phi.getTarget().getVariable().setValue(exprInterpreter.doSwitch(value));
+		Var target = phi.getTarget().getVariable();
+		setValue(target, exprInterpreter.doSwitch(value));
 		return null;
 	}
 
@@ -325,10 +462,10 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		Object value = exprInterpreter.doSwitch(instr.getValue());
 		if (instr.getIndexes().isEmpty()) {
 			value = clipValue(target.getType(), value, instr);
-			target.setValue(value);
+			setValue(target, value);
 		} else {
 
-			Object array = target.getValue();
+			Object array = getValue(target);
 			Object[] indexes = new Object[instr.getIndexes().size()];
 			int i = 0;
 			for (Expression index : instr.getIndexes()) {
@@ -338,7 +475,7 @@ public class ActorInterpreter extends IrSwitch<Object> {
 			Type type = ((TypeList) target.getType()).getInnermostType();
 			value = clipValue(type, value, instr);
 			try {
-				ValueUtil.set(type, array, value, indexes);
+				setArrayValue(type, array, value, indexes);
 			} catch (IndexOutOfBoundsException e) {
 				throw new OrccRuntimeException(
 						"Array Index Out of Bound at line "
@@ -350,18 +487,7 @@ public class ActorInterpreter extends IrSwitch<Object> {
 
 	@Override
 	public Object caseProcedure(Procedure procedure) {
-
-		// Allocate local List variables
-		for (Var local : procedure.getLocals()) {
-			Type type = local.getType();
-			if (type.isList()) {
-				Object value = ValueUtil
-						.createArray((TypeList) local.getType());
-				local.setValue(value);
-			}
-		}
-
-		return doSwitch(procedure.getBlocks());
+		return interpret(procedure, allocateFrame(procedure));
 	}
 
 	/**
@@ -393,6 +519,15 @@ public class ActorInterpreter extends IrSwitch<Object> {
 	 * @return the original value or a new value
 	 */
 	protected Object clipValue(Type type, Object value, Instruction instruction) {
+		if (primitiveValues) {
+			Object clippedValue = PrimitiveValueUtil.clip(type, value);
+			if (type.isInt() && clippedValue != value
+					&& !clippedValue.equals(value)) {
+				warnOverflow(instruction);
+			}
+			return clippedValue;
+		}
+
 		if (!ValueUtil.isInt(value)) {
 			return value;
 		}
@@ -411,21 +546,7 @@ public class ActorInterpreter extends IrSwitch<Object> {
 			}
 
 			if (!clippedValue.equals(intVal)) {
-
-				String container = "";
-				Action parentAction = EcoreHelper.getContainerOfType(
-						instruction, Action.class);
-				if (parentAction != null) {
-					container = parentAction.getName();
-				} else if (EcoreHelper.getContainerOfType(instruction,
-						Procedure.class) != null) {
-					container = EcoreHelper.getContainerOfType(instruction,
-							Procedure.class).getName();
-				}
-
-				OrccLogger.debugln("[signed overflow/underflow] "
-						+ actor.getName() + ":" + container + " line: "
-						+ instruction.getLineNumber());
+				warnOverflow(instruction);
 			}
 		}
 
@@ -484,6 +605,45 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		return fsmState;
 	}
 
+	/**
+	 * Throws an exception if the given variable, which is not held by this
+	 * interpreter, is a parameter or a local of a procedure: only the global
+	 * variables may be stored in the variables themselves.
+	 * 
+	 * @param var
+	 *            a variable without a slot in this interpreter
+	 */
+	private void checkGlobal(Var var) {
+		if (var.isParam() || var.eContainer() instanceof Procedure) {
+			throw new OrccRuntimeException("Variable " + var.getName()
+					+ " is not in the frame of the interpreted procedure");
+		}
+	}
+
+	/**
+	 * Returns the value of the given variable held by this interpreter. The
+	 * values of the locals of a procedure can only be read while the procedure
+	 * is interpreted. The value of a global variable that has no slot, such as
+	 * a constant declared in a unit, is the value of the variable itself.
+	 * 
+	 * @param var
+	 *            a variable
+	 * @return the value of the variable
+	 */
+	public final Object getValue(Var var) {
+		final Integer slot = slots.get(var);
+		if (slot != null) {
+			final int index = slot;
+			if (index > 0) {
+				return frame[index - 1];
+			}
+			return globals[-index - 1];
+		}
+
+		checkGlobal(var);
+		return var.getValue();
+	}
+
 	/**
 	 * Get the next schedulable action to be executed for this actor
 	 * 
@@ -546,6 +706,9 @@ public class ActorInterpreter extends IrSwitch<Object> {
 	 */
 	public void initialize() {
 		try {
+			// allocates parameters, state and pattern variables
+			allocateGlobals();
+
 			// initializes parameters
 			for (Var var : actor.getParameters()) {
 				initializeVar(var);
@@ -590,7 +753,9 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		Expression initConst = variable.getInitialValue();
 		if (initConst == null) {
 			Object value;
-			if (type.isBool()) {
+			if (primitiveValues && !type.isList()) {
+				value = PrimitiveValueUtil.getDefaultValue(type);
+			} else if (type.isBool()) {
 				value = false;
 			} else if (type.isFloat()) {
 				value = BigDecimal.ZERO;
@@ -603,16 +768,55 @@ public class ActorInterpreter extends IrSwitch<Object> {
 			} else {
 				value = null;
 			}
-			variable.setValue(value);
+			setValue(variable, value);
 		} else {
 			// evaluate initial constant value
 			if (type.isList()) {
 				exprInterpreter.setType((TypeList) type);
 			}
-			variable.setValue(exprInterpreter.doSwitch(initConst));
+			setValue(variable, exprInterpreter.doSwitch(initConst));
 		}
 	}
 
+	/**
+	 * Interprets the given procedure in the given frame.
+	 * 
+	 * @param procedure
+	 *            a procedure
+	 * @param procedureFrame
+	 *            a frame allocated for the procedure, with the values of its
+	 *            parameters
+	 * @return the value returned by the procedure
+	 */
+	private Object interpret(Procedure procedure, Object[] procedureFrame) {
+		Object[] callerFrame = frame;
+		frame = procedureFrame;
+		try {
+			// Allocate local List variables
+			for (Var local : procedure.getLocals()) {
+				Type type = local.getType();
+				if (type.isList()) {
+					Object value = ValueUtil.createArray((TypeList) type);
+					setValue(local, value);
+				}
+			}
+
+			return doSwitch(procedure.getBlocks());
+		} finally {
+			frame = callerFrame;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if this interpreter uses the primitive value
+	 * representation defined by {@link PrimitiveValueUtil}.
+	 * 
+	 * @return <code>true</code> if primitive values are used
+	 */
+	public final boolean isPrimitiveValues() {
+		return primitiveValues;
+	}
+
 	/**
 	 * Returns true if the given action is schedulable. This implementation
 	 * allocates the peek pattern and calls the scheduler procedure. This method
@@ -630,6 +834,39 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		return ValueUtil.isTrue(result);
 	}
 
+	/**
+	 * Resolves the slot of the given global variable, unless it has already
+	 * been resolved.
+	 * 
+	 * @param var
+	 *            a variable
+	 * @param resolved
+	 *            the variables resolved so far, in the order of their slots
+	 */
+	private void resolveGlobal(Var var, Set<Var> resolved) {
+		if (var != null && resolved.add(var)) {
+			slots.put(var, -resolved.size());
+		}
+	}
+
+	/**
+	 * Resolves the slots of the variables of the patterns of the given action.
+	 * 
+	 * @param action
+	 *            an action
+	 * @param resolved
+	 *            the variables resolved so far, in the order of their slots
+	 */
+	private void resolveGlobals(Action action, Set<Var> resolved) {
+		Pattern[] patterns = { action.getInputPattern(),
+				action.getOutputPattern(), action.getPeekPattern() };
+		for (Pattern pattern : patterns) {
+			for (Var var : pattern.getVariables()) {
+				resolveGlobal(var, resolved);
+			}
+		}
+	}
+
 	/**
 	 * Schedule next schedulable action if any
 	 * 
@@ -663,4 +900,100 @@ public class ActorInterpreter extends IrSwitch<Object> {
 		this.actor = actor;
 	}
 
+	/**
+	 * Sets the expression evaluator of this interpreter, which reads the
+	 * values of the variables held by this interpreter.
+	 * 
+	 * @param exprInterpreter
+	 *            an expression evaluator
+	 */
+	protected void setExprInterpreter(ExpressionEvaluator exprInterpreter) {
+		this.exprInterpreter = exprInterpreter;
+		exprInterpreter.setInterpreter(this);
+		exprInterpreter.setPrimitiveValues(primitiveValues);
+	}
+
+	/**
+	 * Sets the value of the given variable held by this interpreter. The value
+	 * of a global variable that has no slot, such as a constant declared in a
+	 * unit, is stored in the variable itself.
+	 * 
+	 * @param var
+	 *            a variable
+	 * @param value
+	 *            its new value
+	 */
+	public final void setValue(Var var, Object value) {
+		final Integer slot = slots.get(var);
+		if (slot != null) {
+			final int index = slot;
+			if (index > 0) {
+				frame[index - 1] = value;
+			} else {
+				globals[-index - 1] = value;
+			}
+		} else {
+			checkGlobal(var);
+			var.setValue(value);
+		}
+	}
+
+	/**
+	 * Sets whether this interpreter (and its expression evaluator) should
+	 * represent integers and floats with <code>long</code> and
+	 * <code>double</code> values (see {@link PrimitiveValueUtil}) instead of
+	 * {@link BigInteger} and {@link BigDecimal}. This must be called before
+	 * {@link #initialize()}.
+	 * 
+	 * @param primitiveValues
+	 *            <code>true</code> to use primitive values
+	 */
+	public void setPrimitiveValues(boolean primitiveValues) {
+		this.primitiveValues = primitiveValues;
+		exprInterpreter.setPrimitiveValues(primitiveValues);
+	}
+
+	/**
+	 * Writes the values of the parameters and state variables held by this
+	 * interpreter back to the variables of the actor, so that
+	 * {@link Var#getValue()} returns them. This must be called before the
+	 * variables are read by code that does not know about this interpreter,
+	 * e.g. to save the state of the actor.
+	 */
+	public void synchronizeVariables() {
+		if (globals == null) {
+			return;
+		}
+
+		for (Var var : actor.getParameters()) {
+			var.setValue(getValue(var));
+		}
+		for (Var var : actor.getStateVars()) {
+			var.setValue(getValue(var));
+		}
+	}
+
+	/**
+	 * Prints a debug message for a signed overflow/underflow detected when
+	 * executing the given instruction.
+	 * 
+	 * @param instruction
+	 *            an instruction
+	 */
+	private void warnOverflow(Instruction instruction) {
+		String container = "";
+		Action parentAction = EcoreHelper.getContainerOfType(instruction,
+				Action.class);
+		if (parentAction != null) {
+			container = parentAction.getName();
+		} else if (EcoreHelper.getContainerOfType(instruction,
+				Procedure.class) != null) {
+			container = EcoreHelper.getContainerOfType(instruction,
+					Procedure.class).getName();
+		}
+
+		OrccLogger.debugln("[signed overflow/underflow] " + actor.getName()
+				+ ":" + container + " line: " + instruction.getLineNumber());
+	}
+
 }
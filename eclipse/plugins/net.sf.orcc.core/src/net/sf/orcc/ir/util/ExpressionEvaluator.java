@@ -56,13 +56,22 @@ import org.eclipse.emf.ecore.EObject;
  */
 public class ExpressionEvaluator extends IrSwitch<Object> {
 
+	private ActorInterpreter interpreter;
+
+	private boolean primitiveValues;
+
 	private TypeList typeList;
 
 	@Override
 	public Object caseExprBinary(ExprBinary expr) {
 		Object val1 = doSwitch(expr.getE1());
 		Object val2 = doSwitch(expr.getE2());
-		Object result = ValueUtil.compute(val1, expr.getOp(), val2);
+		Object result;
+		if (primitiveValues) {
+			result = PrimitiveValueUtil.compute(val1, expr.getOp(), val2);
+		} else {
+			result = ValueUtil.compute(val1, expr.getOp(), val2);
+		}
 
 		if (result == null) {
 			throw new OrccRuntimeException(
@@ -79,11 +88,17 @@ public class ExpressionEvaluator extends IrSwitch<Object> {
 
 	@Override
 	public Object caseExprFloat(ExprFloat expr) {
+		if (primitiveValues) {
+			return expr.getValue().doubleValue();
+		}
 		return expr.getValue();
 	}
 
 	@Override
 	public Object caseExprInt(ExprInt expr) {
+		if (primitiveValues) {
+			return PrimitiveValueUtil.narrow(expr.getValue());
+		}
 		return expr.getValue();
 	}
 
@@ -113,7 +128,12 @@ public class ExpressionEvaluator extends IrSwitch<Object> {
 	@Override
 	public Object caseExprUnary(ExprUnary expr) {
 		Object value = doSwitch(expr.getExpr());
-		Object result = ValueUtil.compute(expr.getOp(), value);
+		Object result;
+		if (primitiveValues) {
+			result = PrimitiveValueUtil.compute(expr.getOp(), value);
+		} else {
+			result = ValueUtil.compute(expr.getOp(), value);
+		}
 
 		if (result == null) {
 			throw new OrccRuntimeException(
@@ -126,7 +146,8 @@ public class ExpressionEvaluator extends IrSwitch<Object> {
 	@Override
 	public Object caseExprVar(ExprVar expr) {
 		Var var = expr.getUse().getVariable();
-		Object value = var.getValue();
+		Object value = interpreter == null ? var.getValue() : interpreter
+				.getValue(var);
 		if (value == null) {
 			throw new OrccRuntimeException("Uninitialized variable: "
 					+ var.getName());
@@ -161,6 +182,8 @@ public class ExpressionEvaluator extends IrSwitch<Object> {
 				innerIndexes[indexes.length] = i;
 				computeInitValue(array, eltType, list.get(i), innerIndexes);
 			}
+		} else if (primitiveValues) {
+			PrimitiveValueUtil.set(type, array, doSwitch(expr), indexes);
 		} else {
 			ValueUtil.set(type, array, doSwitch(expr), indexes);
 		}
@@ -187,12 +210,49 @@ public class ExpressionEvaluator extends IrSwitch<Object> {
 		Object value = doSwitch(expr);
 		if (ValueUtil.isInt(value)) {
 			return ((BigInteger) value).intValue();
+		} else if (value instanceof Long) {
+			return ((Long) value).intValue();
 		}
 
 		// evaluated ok, but not as an integer
 		throw new OrccRuntimeException("expected integer expression");
 	}
 
+	/**
+	 * Returns <code>true</code> if this evaluator computes values in the
+	 * primitive representation defined by {@link PrimitiveValueUtil}.
+	 * 
+	 * @return <code>true</code> if primitive values are used
+	 */
+	public boolean isPrimitiveValues() {
+		return primitiveValues;
+	}
+
+	/**
+	 * Sets the interpreter that holds the values of the variables. When no
+	 * interpreter is set, the values of the variables are read from the
+	 * variables themselves.
+	 * 
+	 * @param interpreter
+	 *            an actor interpreter, or <code>null</code>
+	 */
+	void setInterpreter(ActorInterpreter interpreter) {
+		this.interpreter = interpreter;
+	}
+
+	/**
+	 * Sets whether this evaluator should compute values in the primitive
+	 * representation defined by {@link PrimitiveValueUtil} (<code>long</code>
+	 * and <code>double</code>) instead of {@link BigInteger} and
+	 * {@link java.math.BigDecimal}.
+	 * 
+	 * @param primitiveValues
+	 *            <code>true</code> to use primitive values
+	 */
+	public void setPrimitiveValues(boolean primitiveValues) {
+		this.primitiveValues = primitiveValues;
+	}
+
 	public void setType(TypeList typeList) {
 		this.typeList = typeList;
 	}
@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.ir.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.ir.OpBinary;
+import net.sf.orcc.ir.OpUnary;
+import net.sf.orcc.ir.Type;
+
+/**
+ * This class defines static utility methods to deal with values in the
+ * primitive representation used by interpreters running in "primitive values"
+ * mode. In this representation, integers that fit in 64 bits are stored as
+ * {@link Long}, floats as {@link Double}, and {@link BigInteger} is only used
+ * when a value does not fit in a <code>long</code> (i.e. for types wider than
+ * 64 bits or for intermediate results that overflow).
+ * 
+ * <p>
+ * Every operation has a fast path working on <code>long</code> or
+ * <code>double</code>. When this path cannot give the exact result (overflow,
+ * division by zero, unsupported operand types...), operands are widened to the
+ * representation used by {@link ValueUtil} and the result is narrowed back, so
+ * integer results are always the same as the ones computed by
+ * {@link ValueUtil}.
+ * </p>
+ * 
+ */
+public class PrimitiveValueUtil {
+
+	private static final BigInteger MAX_LONG = BigInteger
+			.valueOf(Long.MAX_VALUE);
+
+	private static final BigInteger MIN_LONG = BigInteger
+			.valueOf(Long.MIN_VALUE);
+
+	/**
+	 * Returns the value of the given binary operation. Operands and result are
+	 * in the primitive representation.
+	 * 
+	 * @param val1
+	 *            first operand
+	 * @param op
+	 *            a binary operator
+	 * @param val2
+	 *            second operand
+	 * @return the value of <code>val1</code> <code>op</code> <code>val2</code>
+	 */
+	public static Object compute(Object val1, OpBinary op, Object val2) {
+		if (val1 instanceof Long && val2 instanceof Long) {
+			Object result = computeLong((Long) val1, op, (Long) val2);
+			if (result != null) {
+				return result;
+			}
+		} else if (val1 instanceof Boolean && val2 instanceof Boolean) {
+			Object result = computeBool((Boolean) val1, op, (Boolean) val2);
+			if (result != null) {
+				return result;
+			}
+		} else if (val1 instanceof Double || val2 instanceof Double) {
+			Object result = computeDouble(val1, op, val2);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		// slow path
+		return narrow(ValueUtil.compute(widen(val1), op, widen(val2)));
+	}
+
+	/**
+	 * Returns the value of the given unary operation. Operand and result are
+	 * in the primitive representation.
+	 * 
+	 * @param op
+	 *            a unary operator
+	 * @param value
+	 *            the operand
+	 * @return the value of <code>op</code> <code>value</code>
+	 */
+	public static Object compute(OpUnary op, Object value) {
+		switch (op) {
+		case BITNOT:
+			if (value instanceof Long) {
+				return ~(Long) value;
+			}
+			break;
+		case LOGIC_NOT:
+			if (value instanceof Boolean) {
+				return !(Boolean) value;
+			}
+			break;
+		case MINUS:
+			if (value instanceof Long && (Long) value != Long.MIN_VALUE) {
+				return -(Long) value;
+			} else if (value instanceof Double) {
+				return -(Double) value;
+			}
+			break;
+		case NUM_ELTS:
+			return ValueUtil.length(value);
+		default:
+			break;
+		}
+
+		return narrow(ValueUtil.compute(op, widen(value)));
+	}
+
+	private static Object computeBool(boolean val1, OpBinary op, boolean val2) {
+		switch (op) {
+		case BITAND:
+			return val1 & val2;
+		case BITOR:
+			return val1 | val2;
+		case BITXOR:
+			return val1 ^ val2;
+		case EQ:
+			return val1 == val2;
+		case LOGIC_AND:
+			return val1 && val2;
+		case LOGIC_OR:
+			return val1 || val2;
+		case NE:
+			return val1 != val2;
+		default:
+			return null;
+		}
+	}
+
+	private static Object computeDouble(Object val1, OpBinary op, Object val2) {
+		if (!isNumber(val1) || !isNumber(val2)) {
+			return null;
+		}
+
+		double d1 = ((Number) val1).doubleValue();
+		double d2 = ((Number) val2).doubleValue();
+		boolean bothDouble = val1 instanceof Double && val2 instanceof Double;
+		switch (op) {
+		case DIV:
+		case DIV_INT:
+			return d1 / d2;
+		case EQ:
+			return bothDouble ? (Object) (d1 == d2) : null;
+		case GE:
+			return bothDouble ? (Object) (d1 >= d2) : null;
+		case GT:
+			return bothDouble ? (Object) (d1 > d2) : null;
+		case LE:
+			return bothDouble ? (Object) (d1 <= d2) : null;
+		case LT:
+			return bothDouble ? (Object) (d1 < d2) : null;
+		case MINUS:
+			return d1 - d2;
+		case NE:
+			return bothDouble ? (Object) (d1 != d2) : null;
+		case PLUS:
+			return d1 + d2;
+		case TIMES:
+			return d1 * d2;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Computes the given operation on two longs. Returns <code>null</code> if
+	 * the result cannot be computed exactly with 64-bit arithmetic.
+	 */
+	private static Object computeLong(long a, OpBinary op, long b) {
+		long r;
+		int n;
+		switch (op) {
+		case BITAND:
+			return a & b;
+		case BITOR:
+			return a | b;
+		case BITXOR:
+			return a ^ b;
+		case DIV:
+		case DIV_INT:
+			if (b == 0 || (a == Long.MIN_VALUE && b == -1)) {
+				return null;
+			}
+			return a / b;
+		case EQ:
+			return a == b;
+		case GE:
+			return a >= b;
+		case GT:
+			return a > b;
+		case LE:
+			return a <= b;
+		case LT:
+			return a < b;
+		case MINUS:
+			r = a - b;
+			if (((a ^ b) & (a ^ r)) < 0) {
+				return null;
+			}
+			return r;
+		case MOD:
+			if (b <= 0) {
+				return null;
+			}
+			r = a % b;
+			return r < 0 ? r + b : r;
+		case NE:
+			return a != b;
+		case PLUS:
+			r = a + b;
+			if (((a ^ r) & (b ^ r)) < 0) {
+				return null;
+			}
+			return r;
+		case SHIFT_LEFT:
+			// shift distance is truncated to an int, as in ValueUtil
+			n = (int) b;
+			if (n < 0 || n > 62) {
+				return null;
+			}
+			r = a << n;
+			if ((r >> n) != a) {
+				return null;
+			}
+			return r;
+		case SHIFT_RIGHT:
+			n = (int) b;
+			if (n < 0) {
+				return null;
+			}
+			return n > 63 ? (a < 0 ? -1L : 0L) : a >> n;
+		case TIMES:
+			if (a == (int) a && b == (int) b) {
+				return a * b;
+			}
+			r = a * b;
+			if (a != 0 && (r / a != b || (a == -1 && b == Long.MIN_VALUE))) {
+				return null;
+			}
+			return r;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the given value clipped to the range of the given type, as done
+	 * by {@link ActorInterpreter#clipValue}. Values of types up to 63 bits
+	 * (and signed 64 bits) are clipped using 64-bit arithmetic, wider types
+	 * fall back to {@link BigInteger}.
+	 * 
+	 * @param type
+	 *            type of the target variable
+	 * @param value
+	 *            a value
+	 * @return the clipped value
+	 */
+	public static Object clip(Type type, Object value) {
+		if (value instanceof Long) {
+			return clip(type, (long) (Long) value);
+		} else if (!(value instanceof BigInteger)) {
+			return value;
+		}
+
+		BigInteger intVal = (BigInteger) value;
+		int n = type.getSizeInBits();
+		if (n < 64) {
+			return clip(type, intVal.longValue());
+		}
+
+		BigInteger twoPowSize = BigInteger.ONE.shiftLeft(n);
+		BigInteger clippedValue = intVal.and(twoPowSize
+				.subtract(BigInteger.ONE));
+		if (type.isInt() && clippedValue.testBit(n - 1)) {
+			clippedValue = clippedValue.subtract(twoPowSize);
+		}
+		return narrow(clippedValue);
+	}
+
+	private static Object clip(Type type, long v) {
+		int n = type.getSizeInBits();
+		if (n < 64) {
+			if (type.isInt()) {
+				return (v << (64 - n)) >> (64 - n);
+			}
+			return v & ((1L << n) - 1);
+		} else if (n == 64 && type.isInt()) {
+			return v;
+		}
+		return clip(type, BigInteger.valueOf(v));
+	}
+
+	/**
+	 * Returns the default value of the given scalar type in the primitive
+	 * representation.
+	 * 
+	 * @param type
+	 *            a scalar type
+	 * @return a default value, or <code>null</code>
+	 */
+	public static Object getDefaultValue(Type type) {
+		if (type.isBool()) {
+			return false;
+		} else if (type.isFloat()) {
+			return 0.0;
+		} else if (type.isInt() || type.isUint()) {
+			return 0L;
+		} else if (type.isString()) {
+			return "";
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the value in the given array, at the given indexes. Contrary to
+	 * {@link ValueUtil#get(Type, Object, Object...)}, the primitive arrays
+	 * created by {@link ValueUtil#createArray(Type, int...)} are accessed
+	 * directly.
+	 * 
+	 * @param type
+	 *            type of the innermost elements of the array
+	 * @param array
+	 *            an array
+	 * @param indexes
+	 *            indexes
+	 * @return a value in the primitive representation
+	 */
+	public static Object get(Type type, Object array, Object... indexes) {
+		if (array == null) {
+			return null;
+		}
+
+		int numIndexes = indexes.length;
+		for (int i = 0; i < numIndexes - 1; i++) {
+			array = ((Object[]) array)[getIntValue(indexes[i])];
+		}
+
+		int index = getIntValue(indexes[numIndexes - 1]);
+		boolean unsigned = type.isUint();
+		if (array instanceof byte[]) {
+			byte b = ((byte[]) array)[index];
+			return unsigned ? (long) (b & 0xFF) : (long) b;
+		} else if (array instanceof short[]) {
+			short s = ((short[]) array)[index];
+			return unsigned ? (long) (s & 0xFFFF) : (long) s;
+		} else if (array instanceof int[]) {
+			int i = ((int[]) array)[index];
+			return unsigned ? i & 0xFFFFFFFFL : (long) i;
+		} else if (array instanceof long[]) {
+			long l = ((long[]) array)[index];
+			if (unsigned && l < 0) {
+				return BigInteger.valueOf(l).and(
+						BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE));
+			}
+			return l;
+		} else if (array instanceof boolean[]) {
+			return ((boolean[]) array)[index];
+		} else if (array instanceof float[]) {
+			return (double) ((float[]) array)[index];
+		} else {
+			return narrow(((Object[]) array)[index]);
+		}
+	}
+
+	/**
+	 * Returns the given index as an int.
+	 */
+	private static int getIntValue(Object value) {
+		if (value instanceof Long) {
+			return (int) (long) (Long) value;
+		} else if (value instanceof Integer) {
+			return (Integer) value;
+		} else if (value instanceof BigInteger) {
+			return ((BigInteger) value).intValue();
+		}
+		throw new OrccRuntimeException("type mismatch in getIntValue");
+	}
+
+	private static boolean isNumber(Object value) {
+		return value instanceof Long || value instanceof Double
+				|| value instanceof BigInteger;
+	}
+
+	/**
+	 * Converts a value from the representation used by {@link ValueUtil} to
+	 * the primitive representation. Integers that fit in a <code>long</code>
+	 * become {@link Long}, and floats become {@link Double}. Other values
+	 * (including arrays) are returned as is.
+	 * 
+	 * @param value
+	 *            a value
+	 * @return a value in the primitive representation
+	 */
+	public static Object narrow(Object value) {
+		if (value instanceof BigInteger) {
+			BigInteger intVal = (BigInteger) value;
+			if (intVal.compareTo(MIN_LONG) >= 0
+					&& intVal.compareTo(MAX_LONG) <= 0) {
+				return intVal.longValue();
+			}
+		} else if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).doubleValue();
+		}
+		return value;
+	}
+
+	/**
+	 * Writes the given value in the given array at the given indexes.
+	 * 
+	 * @param type
+	 *            type of the innermost elements of the array
+	 * @param array
+	 *            an array
+	 * @param value
+	 *            a value in the primitive representation
+	 * @param indexes
+	 *            indexes
+	 */
+	public static void set(Type type, Object array, Object value,
+			Object... indexes) {
+		if (array == null || value == null) {
+			return;
+		}
+
+		int numIndexes = indexes.length;
+		for (int i = 0; i < numIndexes - 1; i++) {
+			array = ((Object[]) array)[getIntValue(indexes[i])];
+		}
+
+		int index = getIntValue(indexes[numIndexes - 1]);
+		if (value instanceof Long || value instanceof BigInteger) {
+			Number intVal = (Number) value;
+			if (array instanceof byte[]) {
+				((byte[]) array)[index] = intVal.byteValue();
+			} else if (array instanceof short[]) {
+				((short[]) array)[index] = intVal.shortValue();
+			} else if (array instanceof int[]) {
+				((int[]) array)[index] = intVal.intValue();
+			} else if (array instanceof long[]) {
+				((long[]) array)[index] = intVal.longValue();
+			} else if (array instanceof BigInteger[]) {
+				((BigInteger[]) array)[index] = (BigInteger) widen(value);
+			} else {
+				throw new OrccRuntimeException("unexpected type in set");
+			}
+		} else if (value instanceof Double && array instanceof float[]) {
+			((float[]) array)[index] = ((Double) value).floatValue();
+		} else if (value instanceof Boolean && array instanceof boolean[]) {
+			((boolean[]) array)[index] = (Boolean) value;
+		} else {
+			// strings and unusual combinations
+			ValueUtil.set(type, array, widen(value), index);
+		}
+	}
+
+	/**
+	 * Converts a value from the primitive representation to the
+	 * representation used by {@link ValueUtil}. Arrays are returned as is.
+	 * 
+	 * @param value
+	 *            a value in the primitive representation
+	 * @return a value compatible with {@link ValueUtil}
+	 */
+	public static Object widen(Object value) {
+		if (value instanceof Long) {
+			return BigInteger.valueOf((Long) value);
+		} else if (value instanceof Double) {
+			return BigDecimal.valueOf((Double) value);
+		}
+		return value;
+	}
+
+}
@@ -422,6 +422,8 @@ public class ValueUtil {
 	private static int getIntValue(Object value) {
 		if (value instanceof Integer) {
 			return (Integer) value;
+		} else if (value instanceof Long) {
+			return ((Long) value).intValue();
 		} else if (isInt(value)) {
 			return ((BigInteger) value).intValue();
 		} else if (isString(value)) {
@@ -35,6 +35,8 @@ package net.sf.orcc.preferences;
  */
 public class PreferenceConstants {
 
+	public static final String P_BINARY_IR = "binaryIr";
+
 	public static final String P_JADE = "jadePath";
 
 	public static final String P_SOLVER = "solver";
@@ -30,6 +30,7 @@ package net.sf.orcc.tools.classifier;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import net.sf.orcc.OrccRuntimeException;
 import net.sf.orcc.df.Action;
@@ -82,6 +83,18 @@ public class AbstractInterpreter extends ActorInterpreter {
 	 * @param actor
 	 *            an actor
 	 */
+	/**
+	 * Throws a {@link CancellationException} if the current thread has been
+	 * interrupted. It is called in each loop of the classification, so that a
+	 * classification that timed out stops instead of running in the
+	 * background.
+	 */
+	static void checkInterrupted() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("classification interrupted");
+		}
+	}
+
 	public AbstractInterpreter(Actor actor) {
 		// save the original actor
 		originalActor = actor;
@@ -104,7 +117,7 @@ public class AbstractInterpreter extends ActorInterpreter {
 		setActor(copyOfActor);
 
 		// abstract expression interpreter
-		exprInterpreter = new AbstractExpressionEvaluator();
+		setExprInterpreter(new AbstractExpressionEvaluator());
 
 		initialize();
 	}
@@ -182,6 +195,7 @@ public class AbstractInterpreter extends ActorInterpreter {
 		if (ValueUtil.isBool(condition)) {
 			branch = 1;
 			while (ValueUtil.isTrue(condition)) {
+				checkInterrupted();
 				doSwitch(block.getBlocks());
 				doSwitch(block.getJoinBlock());
 
@@ -261,7 +275,7 @@ public class AbstractInterpreter extends ActorInterpreter {
 				// allocates peeked variables
 				TypeList typeList = (TypeList) peeked.getType();
 				Object array = ValueUtil.createArray(typeList);
-				peeked.setValue(array);
+				setValue(peeked, array);
 
 				Type type = typeList.getType();
 				Object value = configuration.get(portName);
@@ -39,6 +39,7 @@ import net.sf.orcc.ir.Procedure;
 import net.sf.orcc.ir.Type;
 import net.sf.orcc.ir.Use;
 import net.sf.orcc.ir.Var;
+import net.sf.orcc.ir.util.ActorInterpreter;
 import net.sf.orcc.util.util.EcoreHelper;
 
 /**
@@ -50,16 +51,21 @@ import net.sf.orcc.util.util.EcoreHelper;
  */
 public class ActorState {
 
+	private final ActorInterpreter interpreter;
+
 	private Map<Var, Object> state;
 
 	/**
 	 * Creates a new actor state initialized to all the state variables of the
-	 * given actor that have an initial constant values and are not lists.
+	 * actor of the given interpreter that have an initial constant values and
+	 * are not lists. Their values are read from the interpreter.
 	 * 
-	 * @param actor
-	 *            an actor
+	 * @param interpreter
+	 *            an initialized actor interpreter
 	 */
-	public ActorState(Actor actor) {
+	public ActorState(ActorInterpreter interpreter) {
+		this.interpreter = interpreter;
+		Actor actor = interpreter.getActor();
 		state = new HashMap<Var, Object>();
 		for (Var variable : actor.getStateVars()) {
 			Type type = variable.getType();
@@ -77,7 +83,7 @@ public class ActorState {
 				}
 
 				if (usedByGuard) {
-					state.put(variable, variable.getValue());
+					state.put(variable, interpreter.getValue(variable));
 				}
 			}
 		}
@@ -104,7 +110,7 @@ public class ActorState {
 	public boolean isInitialState() {
 		for (Entry<Var, Object> entry : state.entrySet()) {
 			Var stateVariable = entry.getKey();
-			Object value = stateVariable.getValue();
+			Object value = interpreter.getValue(stateVariable);
 			if (value == null) {
 				// oops not static!
 				throw new OrccRuntimeException("null state variable");
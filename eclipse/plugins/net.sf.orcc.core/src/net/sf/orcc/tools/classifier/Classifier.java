@@ -39,12 +39,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import net.sf.orcc.OrccRuntimeException;
 import net.sf.orcc.df.Action;
 import net.sf.orcc.df.Actor;
 import net.sf.orcc.df.DfFactory;
 import net.sf.orcc.df.FSM;
+import net.sf.orcc.df.Network;
 import net.sf.orcc.df.Pattern;
 import net.sf.orcc.df.Port;
 import net.sf.orcc.df.State;
@@ -59,6 +61,7 @@ import net.sf.orcc.moc.MoC;
 import net.sf.orcc.moc.MocFactory;
 import net.sf.orcc.moc.QSDFMoC;
 import net.sf.orcc.moc.SDFMoC;
+import net.sf.orcc.tools.classifier.smt.SmtSession;
 import net.sf.orcc.tools.merger.action.GuardInternalizer;
 import net.sf.orcc.util.OrccLogger;
 
@@ -75,9 +78,23 @@ import org.eclipse.core.runtime.CoreException;
  */
 public class Classifier extends DfVisitor<Void> {
 
+	/**
+	 * Default time after which the classification of an actor is abandoned,
+	 * in seconds.
+	 */
+	public static final long DEFAULT_TIMEOUT = 300;
+
 	private boolean internalizeGuards;
 	private boolean hasSolver;
 
+	// The session is closed after each actor, unless it is owned by a
+	// NetworkClassifier
+	private SmtSession session;
+	private boolean ownsSession;
+
+	private int threadsNumber;
+	private long timeout;
+
 	// This is used in toString(), to display the actor classified even when
 	// this.actor has been reseted to null
 	private String lastActorName;
@@ -93,6 +110,26 @@ public class Classifier extends DfVisitor<Void> {
 			OrccLogger.noticeln("The classifier cannot check "
 					+ "time-dependency since no SMT solver is setup.");
 		}
+		session = new SmtSession();
+		ownsSession = true;
+		threadsNumber = Runtime.getRuntime().availableProcessors();
+		timeout = DEFAULT_TIMEOUT;
+	}
+
+	/**
+	 * Creates a classifier configured as the given one, which uses the given
+	 * session without closing it.
+	 * 
+	 * @param classifier
+	 *            a classifier
+	 * @param session
+	 *            an SMT session
+	 */
+	Classifier(Classifier classifier, SmtSession session) {
+		this.internalizeGuards = classifier.internalizeGuards;
+		this.hasSolver = classifier.hasSolver;
+		this.session = session;
+		this.ownsSession = false;
 	}
 
 	/**
@@ -109,7 +146,7 @@ public class Classifier extends DfVisitor<Void> {
 		if (!hasSolver) {
 			return true;
 		}
-		GuardSatChecker checker = new GuardSatChecker(actor);
+		GuardSatChecker checker = new GuardSatChecker(actor, session);
 		try {
 			if (checker.checkSat(previous, action)) {
 				OrccLogger.traceln(actor.getName() + ": guards of actions "
@@ -133,6 +170,39 @@ public class Classifier extends DfVisitor<Void> {
 			return null;
 		}
 
+		// set and print MoC
+		MoC moc = classify(actor);
+		actor.setMoC(moc);
+		OrccLogger.traceln("MoC of " + actor.getName() + ": " + moc);
+
+		return null;
+	}
+
+	/**
+	 * The actors of the network are classified concurrently by a
+	 * {@link NetworkClassifier}.
+	 */
+	@Override
+	public Void caseNetwork(Network network) {
+		try {
+			NetworkClassifier classifier = new NetworkClassifier(this,
+					session, threadsNumber, timeout);
+			classifier.classify(network.getAllActors());
+		} finally {
+			session.close();
+		}
+		return null;
+	}
+
+	/**
+	 * Classifies the given actor and returns its MoC, without setting it on
+	 * the actor. Returns a DPN MoC if an exception occurs.
+	 * 
+	 * @param actor
+	 *            an actor
+	 * @return the MoC of the actor
+	 */
+	MoC classify(Actor actor) {
 		try {
 			this.actor = actor;
 			lastActorName = actor.getName();
@@ -145,18 +215,20 @@ public class Classifier extends DfVisitor<Void> {
 			actor.resetTokenConsumption();
 			actor.resetTokenProduction();
 
-			classify();
+			return classify();
+		} catch (CancellationException e) {
+			// interrupted by a timeout, the result is ignored
+			throw e;
 		} catch (Exception e) {
-			MoC moc = MocFactory.eINSTANCE.createDPNMoC();
-			actor.setMoC(moc);
 			OrccLogger.warnln("An exception occurred when classifying actor ("
 					+ e.getMessage() + ")");
-			OrccLogger.traceln("MoC of " + actor.getName() + ": " + moc);
+			return MocFactory.eINSTANCE.createDPNMoC();
 		} finally {
 			this.actor = null;
+			if (ownsSession) {
+				session.close();
+			}
 		}
-
-		return null;
 	}
 
 	/**
@@ -164,7 +236,7 @@ public class Classifier extends DfVisitor<Void> {
 	 * 
 	 * @return the class of the actor
 	 */
-	private void classify() {
+	private MoC classify() {
 		try {
 			if (actor.getFile() != null) {
 				IMarker[] markers = actor.getFile().findMarkers(
@@ -215,9 +287,7 @@ public class Classifier extends DfVisitor<Void> {
 			}
 		}
 
-		// set and print MoC
-		actor.setMoC(moc);
-		OrccLogger.traceln("MoC of " + actor.getName() + ": " + moc);
+		return moc;
 	}
 
 	/**
@@ -230,7 +300,7 @@ public class Classifier extends DfVisitor<Void> {
 	private MoC classifyCSDF() {
 		AbstractInterpreter interpreter = new AbstractInterpreter(actor);
 
-		ActorState state = new ActorState(interpreter.getActor());
+		ActorState state = new ActorState(interpreter);
 		if (state.isEmpty()) {
 			FSM fsm = actor.getFsm();
 			if (fsm == null || !isCycloStaticFsm(fsm)) {
@@ -248,6 +318,7 @@ public class Classifier extends DfVisitor<Void> {
 		final int MAX_PHASES = 16384;
 		State initialState = interpreter.getFsmState();
 		do {
+			AbstractInterpreter.checkInterrupted();
 			interpreter.schedule();
 			Action latest = interpreter.getExecutedAction();
 			Invocation invocation = eINSTANCE.createInvocation(latest);
@@ -285,6 +356,7 @@ public class Classifier extends DfVisitor<Void> {
 		int nbPhases = 0;
 		final int MAX_PHASES = 16384;
 		do {
+			AbstractInterpreter.checkInterrupted();
 			interpreter.schedule();
 			Action latest = interpreter.getExecutedAction();
 			Invocation invocation = eINSTANCE.createInvocation(latest);
@@ -446,7 +518,7 @@ public class Classifier extends DfVisitor<Void> {
 		State initialState = fsm.getInitialState();
 		for (Action targetAction : fsm.getTargetActions(initialState)) {
 			// create the configuration for this action
-			GuardSatChecker checker = new GuardSatChecker(actor);
+			GuardSatChecker checker = new GuardSatChecker(actor, session);
 			Map<String, Object> configuration = checker.computeTokenValues(
 					ports, previous, targetAction);
 
@@ -595,6 +667,27 @@ public class Classifier extends DfVisitor<Void> {
 		}
 	}
 
+	/**
+	 * Sets the number of threads used to classify the actors of a network.
+	 * 
+	 * @param threadsNumber
+	 *            a number of threads
+	 */
+	public void setThreadsNumber(int threadsNumber) {
+		this.threadsNumber = threadsNumber;
+	}
+
+	/**
+	 * Sets the time after which the classification of an actor of a network
+	 * is abandoned. The actor is then classified as dynamic (DPN).
+	 * 
+	 * @param timeout
+	 *            a timeout in seconds, or 0 for no timeout
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
 	@Override
 	public String toString() {
 		return "Classifier[" + lastActorName + "]";
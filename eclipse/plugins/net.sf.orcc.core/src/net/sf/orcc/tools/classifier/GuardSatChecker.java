@@ -70,6 +70,7 @@ import net.sf.orcc.ir.util.AbstractIrVisitor;
 import net.sf.orcc.ir.util.IrSwitch;
 import net.sf.orcc.ir.util.TypePrinter;
 import net.sf.orcc.tools.classifier.smt.SmtScript;
+import net.sf.orcc.tools.classifier.smt.SmtSession;
 import net.sf.orcc.tools.classifier.smt.SmtSolver;
 import net.sf.orcc.util.sexp.SExp;
 import net.sf.orcc.util.sexp.SExpList;
@@ -608,8 +609,24 @@ public class GuardSatChecker {
 
 	private boolean hasFailed;
 
+	private SmtSession session;
+
 	public GuardSatChecker(Actor actor) {
+		this(actor, null);
+	}
+
+	/**
+	 * Creates a new checker for the given actor. If a session is given, the
+	 * queries are run by its solver process and memoized.
+	 * 
+	 * @param actor
+	 *            an actor
+	 * @param session
+	 *            an SMT session, may be <code>null</code>
+	 */
+	public GuardSatChecker(Actor actor, SmtSession session) {
 		this.actor = actor;
+		this.session = session;
 	}
 
 	/**
@@ -640,7 +657,7 @@ public class GuardSatChecker {
 
 		hasFailed = false;
 		if (!translator.hasFailed()) {
-			SmtSolver solver = new SmtSolver(actor);
+			SmtSolver solver = new SmtSolver(actor, session);
 			boolean result = solver.checkSat(script);
 			hasFailed = solver.hasFailed();
 			// for SmtTranslator debugging, print script.getCommands() here
@@ -674,7 +691,7 @@ public class GuardSatChecker {
 
 		hasFailed = false;
 		if (!translator.hasFailed()) {
-			SmtSolver solver = new SmtSolver(actor);
+			SmtSolver solver = new SmtSolver(actor, session);
 			boolean result = solver.checkSat(script);
 			hasFailed = solver.hasFailed();
 			// for SmtTranslator debugging, print script.getCommands() here
@@ -728,7 +745,7 @@ public class GuardSatChecker {
 		script.addCommand(sexpAssert.toString());
 		script.addCommand("(check-sat)");
 
-		SmtSolver solver = new SmtSolver(actor);
+		SmtSolver solver = new SmtSolver(actor, session);
 		solver.checkSat(script, action, ports);
 
 		// fills the map
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.tools.classifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.moc.MoC;
+import net.sf.orcc.moc.MocFactory;
+import net.sf.orcc.tools.classifier.smt.SmtSession;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class classifies the actors of a network concurrently. Each distinct
+ * actor is classified once, even if it is referenced by several instances, by
+ * a pool of worker threads. Each worker has its own SMT session, all of them
+ * sharing their memoized answers.
+ * 
+ * <p>
+ * The MoC of an actor whose classification takes longer than the timeout is
+ * set to DPN: its worker is interrupted, and the solver it may wait for is
+ * killed. The classification modifies the actor, so the MoC is only set once
+ * the worker has stopped. The classification time of each actor is reported,
+ * slowest first.
+ * </p>
+ */
+class NetworkClassifier {
+
+	/**
+	 * This class defines the classification of an actor by a worker.
+	 */
+	private class Task implements Callable<MoC> {
+
+		private final Actor actor;
+
+		private final CountDownLatch done;
+
+		private SmtSession session;
+
+		private volatile long start;
+
+		private final ThreadLocal<SmtSession> workerSession;
+
+		public Task(Actor actor, ThreadLocal<SmtSession> workerSession) {
+			this.actor = actor;
+			this.workerSession = workerSession;
+			done = new CountDownLatch(1);
+		}
+
+		/**
+		 * Kills the solver the worker waits for, if any. The session is only
+		 * aborted while this task runs, never while the worker classifies
+		 * another actor with it.
+		 */
+		public synchronized void abort() {
+			if (session != null) {
+				session.abort();
+			}
+		}
+
+		/**
+		 * Waits until the worker has stopped classifying the actor.
+		 * 
+		 * @throws InterruptedException
+		 */
+		public void await() throws InterruptedException {
+			done.await();
+		}
+
+		@Override
+		public MoC call() {
+			final SmtSession current = workerSession.get();
+			synchronized (this) {
+				session = current;
+			}
+			start = System.currentTimeMillis();
+			try {
+				return new Classifier(classifier, current).classify(actor);
+			} finally {
+				synchronized (this) {
+					session = null;
+				}
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Returns the time when the worker began the classification, or 0 if
+		 * it has not begun yet.
+		 * 
+		 * @return a time in milliseconds
+		 */
+		public long getStart() {
+			return start;
+		}
+
+	}
+
+	/**
+	 * Number of actors whose classification time is printed at trace level,
+	 * the others are printed at debug level.
+	 */
+	private static final int REPORTED_ACTORS = 10;
+
+	/**
+	 * Delay between two checks of the start of a task, in milliseconds.
+	 */
+	private static final long POLL_DELAY = 100;
+
+	private final Classifier classifier;
+
+	private final SmtSession session;
+
+	private final List<SmtSession> sessions;
+
+	private final int threadsNumber;
+
+	private final long timeout;
+
+	/**
+	 * Creates a new network classifier.
+	 * 
+	 * @param classifier
+	 *            the classifier whose configuration is used for each actor
+	 * @param session
+	 *            the session whose memoized answers are shared by the workers
+	 * @param threadsNumber
+	 *            the number of worker threads
+	 * @param timeout
+	 *            the timeout of the classification of an actor, in seconds,
+	 *            or 0 for no timeout
+	 */
+	public NetworkClassifier(Classifier classifier, SmtSession session,
+			int threadsNumber, long timeout) {
+		this.classifier = classifier;
+		this.session = session;
+		this.sessions = Collections
+				.synchronizedList(new ArrayList<SmtSession>());
+		this.threadsNumber = Math.max(1, threadsNumber);
+		this.timeout = TimeUnit.SECONDS.toMillis(timeout);
+	}
+
+	/**
+	 * Classifies the given actors and sets their MoC. Native actors are
+	 * ignored.
+	 * 
+	 * @param actors
+	 *            a list of actors, which may contain duplicates
+	 */
+	public void classify(List<Actor> actors) {
+		final Set<Actor> distinct = new LinkedHashSet<Actor>();
+		for (Actor actor : actors) {
+			if (!actor.isNative()) {
+				distinct.add(actor);
+			}
+		}
+		if (distinct.isEmpty()) {
+			return;
+		}
+
+		final ThreadLocal<SmtSession> workerSession;
+		workerSession = new ThreadLocal<SmtSession>() {
+			@Override
+			protected SmtSession initialValue() {
+				SmtSession forked = session.fork();
+				sessions.add(forked);
+				return forked;
+			}
+		};
+
+		final long t0 = System.currentTimeMillis();
+		final int nbThreads = Math.min(threadsNumber, distinct.size());
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				nbThreads, new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						// a worker stuck in a timed-out actor must not
+						// prevent the application from exiting
+						Thread thread = new Thread(r, "Orcc classifier");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		final Map<Task, Future<MoC>> futures;
+		futures = new LinkedHashMap<Task, Future<MoC>>();
+		for (Actor actor : distinct) {
+			Task task = new Task(actor, workerSession);
+			futures.put(task, executor.submit(task));
+		}
+
+		final Map<Actor, Long> durations = new LinkedHashMap<Actor, Long>();
+		try {
+			for (Map.Entry<Task, Future<MoC>> entry : futures.entrySet()) {
+				final Task task = entry.getKey();
+				final Actor actor = task.actor;
+				final Future<MoC> future = entry.getValue();
+				MoC moc = waitFor(task, future);
+				if (moc == null && !future.cancel(true)) {
+					// completed just after the timeout, its result is kept
+					moc = waitFor(task, future);
+				}
+
+				if (moc == null) {
+					// timed out: the worker has been interrupted, the solver
+					// it may wait for is killed, and the actor is left alone
+					// until the worker has stopped modifying it
+					task.abort();
+					task.await();
+					OrccLogger.warnln("Classification of " + actor.getName()
+							+ " timed out after " + timeout / 1000
+							+ "s, defaults to dynamic");
+					moc = MocFactory.eINSTANCE.createDPNMoC();
+					durations.put(actor, timeout);
+				} else {
+					durations.put(actor, System.currentTimeMillis()
+							- task.getStart());
+				}
+
+				actor.setMoC(moc);
+				OrccLogger.traceln("MoC of " + actor.getName() + ": " + moc);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OrccRuntimeException("Classification interrupted");
+		} finally {
+			executor.shutdownNow();
+			synchronized (sessions) {
+				for (SmtSession forked : sessions) {
+					forked.close();
+				}
+			}
+		}
+
+		report(durations, System.currentTimeMillis() - t0);
+	}
+
+	/**
+	 * Prints the classification time of each actor, slowest first.
+	 * 
+	 * @param durations
+	 *            the classification time of each actor, in milliseconds
+	 * @param total
+	 *            the total classification time, in milliseconds
+	 */
+	private void report(Map<Actor, Long> durations, long total) {
+		final List<Map.Entry<Actor, Long>> entries;
+		entries = new ArrayList<Map.Entry<Actor, Long>>(durations.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<Actor, Long>>() {
+			@Override
+			public int compare(Map.Entry<Actor, Long> e1,
+					Map.Entry<Actor, Long> e2) {
+				return e2.getValue().compareTo(e1.getValue());
+			}
+		});
+
+		OrccLogger.traceln(entries.size() + " actors classified in "
+				+ (float) total / 1000 + "s, slowest first:");
+		int index = 0;
+		for (Map.Entry<Actor, Long> entry : entries) {
+			final String line = "  " + entry.getKey().getName() + ": "
+					+ (float) entry.getValue() / 1000 + "s";
+			if (index++ < REPORTED_ACTORS) {
+				OrccLogger.traceln(line);
+			} else {
+				OrccLogger.debugln(line);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the classification of the actor of the given task. The
+	 * timeout starts when a worker begins the classification, not when it is
+	 * submitted.
+	 * 
+	 * @param task
+	 *            a classification task
+	 * @param future
+	 *            the result of the task
+	 * @return the MoC of the actor, or <code>null</code> if the
+	 *         classification timed out
+	 * @throws InterruptedException
+	 */
+	private MoC waitFor(Task task, Future<MoC> future)
+			throws InterruptedException {
+		while (true) {
+			final long start = task.getStart();
+			long delay;
+			if (timeout <= 0) {
+				delay = Long.MAX_VALUE;
+			} else if (start == 0) {
+				delay = POLL_DELAY;
+			} else {
+				long now = System.currentTimeMillis();
+				delay = Math.max(0, start + timeout - now);
+			}
+
+			try {
+				return getMoC(task.actor, future, delay);
+			} catch (TimeoutException e) {
+				if (start != 0) {
+					return null;
+				}
+				// not started yet, check the start time again
+			}
+		}
+	}
+
+	private MoC getMoC(Actor actor, Future<MoC> future, long delay)
+			throws InterruptedException, TimeoutException {
+		try {
+			return future.get(delay, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			// Classifier catches exceptions, only errors can get there
+			OrccLogger.warnln("An error occurred when classifying actor "
+					+ actor.getName() + " (" + e.getCause() + ")");
+			return MocFactory.eINSTANCE.createDPNMoC();
+		}
+	}
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.tools.classifier.smt;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class defines a session with an SMT solver. A single solver process is
+ * launched for the whole session and reads the scripts on its standard input:
+ * each script is run between <code>(push 1)</code> and <code>(pop 1)</code>
+ * commands, so that its declarations do not leak into the next one.
+ * 
+ * <p>
+ * The answers of the solver are memoized on a canonical form of the scripts,
+ * hence the guards of several instances of the same actor are only checked
+ * once. The cache survives {@link #close()}: a closed session launches a new
+ * process on its next query.
+ * </p>
+ * 
+ * <p>
+ * A query blocked on a solver that does not answer is stopped from another
+ * thread by interrupting the querying thread, then calling {@link #abort()}.
+ * </p>
+ */
+public class SmtSession {
+
+	/**
+	 * Printed by the solver after the answer to each script.
+	 */
+	private static final String END_MARKER = "orcc-end-of-script";
+
+	private final Map<String, String> cache;
+
+	private int hits;
+
+	private int queries;
+
+	// read without the lock of the session by abort()
+	private volatile Process process;
+
+	private BufferedReader reader;
+
+	private PrintWriter writer;
+
+	public SmtSession() {
+		this(new ConcurrentHashMap<String, String>());
+	}
+
+	private SmtSession(Map<String, String> cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Kills the solver process of this session, if any, without waiting for
+	 * the query in progress. This method may be called from any thread: it
+	 * does not take the lock of the session, which is held by
+	 * {@link #solve(String)} while it waits for the solver. The query in
+	 * progress fails, and throws a {@link CancellationException} if its
+	 * thread has been interrupted.
+	 */
+	public void abort() {
+		final Process current = process;
+		if (current != null) {
+			current.destroy();
+		}
+	}
+
+	/**
+	 * Returns a canonical form of the given script: commands are trimmed,
+	 * whitespaces are collapsed and empty lines are removed.
+	 * 
+	 * @param script
+	 *            an SMT-LIB script
+	 * @return the canonical form of the script
+	 */
+	private String canonicalize(String script) {
+		final StringBuilder builder = new StringBuilder(script.length());
+		for (String line : script.split("\n")) {
+			final String command = line.trim().replaceAll("\\s+", " ");
+			if (!command.isEmpty()) {
+				builder.append(command).append('\n');
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Stops the solver process of this session, if any. The memoized answers
+	 * are kept.
+	 */
+	public synchronized void close() {
+		if (process == null) {
+			return;
+		}
+
+		writer.println("(exit)");
+		writer.close();
+		try {
+			reader.close();
+		} catch (IOException e) {
+			// the process is destroyed anyway
+		}
+		process.destroy();
+		process = null;
+
+		OrccLogger.debugln("SMT session closed: " + queries + " queries, "
+				+ hits + " answered from the cache");
+	}
+
+	/**
+	 * Creates a new session, with its own solver process, which shares the
+	 * memoized answers of this one. It is used to run queries concurrently.
+	 * 
+	 * @return a new session
+	 */
+	public SmtSession fork() {
+		return new SmtSession(cache);
+	}
+
+	/**
+	 * Returns the number of queries answered from the cache.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public synchronized int getCacheHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of queries sent to this session.
+	 * 
+	 * @return the number of queries
+	 */
+	public synchronized int getQueries() {
+		return queries;
+	}
+
+	/**
+	 * Launches the solver set in the preferences, reading its standard input.
+	 * 
+	 * @throws IOException
+	 */
+	private void launchSolver() throws IOException {
+		final List<String> command = SmtSolver.getSolverCommand();
+
+		// Z3 reads a file unless told otherwise, most other solvers read
+		// their standard input when no file is given
+		final String name = new File(command.get(0)).getName();
+		if (name.startsWith("z3") && !command.contains("-in")) {
+			command.add("-in");
+		}
+
+		final ProcessBuilder pb = new ProcessBuilder(command);
+		process = pb.start();
+		reader = new BufferedReader(new InputStreamReader(
+				process.getInputStream()));
+		writer = new PrintWriter(new OutputStreamWriter(
+				process.getOutputStream()));
+
+		final BufferedReader errReader = new BufferedReader(
+				new InputStreamReader(process.getErrorStream()));
+		final Thread thErr = new Thread() {
+			public void run() {
+				try {
+					String line = errReader.readLine();
+					while (line != null) {
+						OrccLogger.traceln(line);
+						line = errReader.readLine();
+					}
+				} catch (IOException e) {
+					// the process has been stopped
+				} finally {
+					try {
+						errReader.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		};
+		thErr.setDaemon(true);
+		thErr.start();
+	}
+
+	/**
+	 * Throws a {@link CancellationException} if the current thread has been
+	 * interrupted, so that an aborted query does not launch a new solver.
+	 */
+	private void checkInterrupted() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("SMT query interrupted");
+		}
+	}
+
+	/**
+	 * Runs the given script and returns the output of the solver.
+	 * 
+	 * @param script
+	 *            an SMT-LIB script
+	 * @return the output of the solver
+	 * @throws CancellationException
+	 *             if the current thread has been interrupted
+	 */
+	public synchronized String solve(String script) {
+		checkInterrupted();
+		queries++;
+		final String key = canonicalize(script);
+		final String cached = cache.get(key);
+		if (cached != null) {
+			hits++;
+			return cached;
+		}
+
+		try {
+			if (process == null) {
+				launchSolver();
+			}
+
+			writer.println("(push 1)");
+			writer.print(key);
+			writer.println("(pop 1)");
+			writer.println("(echo \"" + END_MARKER + "\")");
+			writer.flush();
+
+			final StringBuilder builder = new StringBuilder();
+			String line = reader.readLine();
+			while (line != null && !line.contains(END_MARKER)) {
+				builder.append(line).append('\n');
+				line = reader.readLine();
+			}
+
+			if (line == null) {
+				close();
+				checkInterrupted();
+				throw new OrccRuntimeException("solver has terminated "
+						+ "unexpectedly");
+			}
+
+			final String output = builder.toString();
+			if (!output.contains("error")) {
+				cache.put(key, output);
+			}
+			return output;
+		} catch (IOException e) {
+			close();
+			checkInterrupted();
+			throw new OrccRuntimeException("could not execute solver", e);
+		}
+	}
+
+}
@@ -42,10 +42,10 @@ import java.io.PrintStream;
 import java.io.Reader;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import net.sf.orcc.OrccRuntimeException;
 import net.sf.orcc.df.Action;
@@ -71,7 +71,7 @@ import org.eclipse.core.resources.IFolder;
  */
 public class SmtSolver {
 
-	static boolean hasFailed;
+	private boolean hasFailed;
 
 	private class SmtSolverOutputProcessor implements Runnable {
 
@@ -81,37 +81,8 @@ public class SmtSolver {
 			reader = new InputStreamReader(in);
 		}
 
-		/**
-		 * Parse the assertion encoded as the given list s-expression.
-		 * 
-		 * @param list
-		 *            a list s-expression
-		 */
-		private Object getExpression(SExp exp) {
-			if (exp.isSymbol()) {
-				SExpSymbol symbol = (SExpSymbol) exp;
-				if ("true".equals(symbol.getContents())) {
-					return true;
-				} else if ("false".equals(symbol.getContents())) {
-					return false;
-				}
-			} else if (exp.isList()) {
-				SExpList list = (SExpList) exp;
-				if (list.size() == 2) {
-					SExpSymbol bv = list.getSymbol(1);
-					// remove "bv" from the symbol
-					String contents = bv.getContents().substring(2);
-					BigInteger value = new BigInteger(contents, 16);
-					return value;
-				}
-			}
-
-			return null;
-		}
-
 		@Override
 		public void run() {
-			hasFailed = false;
 			StringBuilder builder = new StringBuilder();
 			try {
 				char[] cbuf = new char[8192];
@@ -129,52 +100,7 @@ public class SmtSolver {
 				}
 			}
 
-			if (builder.toString().contains("error")) {
-				OrccLogger.warnln("Solving of actor " + actor.getName() + ":");
-				hasFailed = true;
-				String error[] = builder.toString().split("\n");
-				for (int i = 0; i < error.length; i++) {
-					if (!error[i].equals("sat")) {
-						OrccLogger.traceln(error[i]);
-					}
-				}
-				return;
-			}
-
-			SExpParser parser = new SExpParser(builder.toString());
-			SExp exp = parser.read();
-			SExpSymbol symbol = (SExpSymbol) exp;
-			satisfied = "sat".equals(symbol.getContents());
-
-			// parse assertions (if there are any)
-			if (satisfied && action != null && ports != null) {
-				exp = parser.read();
-				if (exp != null && exp.isList()) {
-					SExpList list = (SExpList) exp;
-
-					Pattern pattern = action.getPeekPattern();
-					int index = 0;
-					for (Port port : ports) {
-						exp = list.get(index);
-						index++;
-
-						Object value;
-						int numTokens = pattern.getNumTokens(port);
-						if (numTokens > 1) {
-							List<Object> values = new ArrayList<Object>();
-							SExpList portList = (SExpList) exp;
-							for (int i = 0; i < numTokens; i++) {
-								SExp subExpr = portList.get(i);
-								values.add(getExpression(subExpr));
-							}
-							value = values.toArray();
-						} else {
-							value = getExpression(exp);
-						}
-						assertions.put(port.getName(), value);
-					}
-				}
-			}
+			processOutput(builder.toString());
 		}
 	}
 
@@ -184,7 +110,7 @@ public class SmtSolver {
 
 	private Map<String, Object> assertions;
 
-	private List<String> options;
+	private List<String> command;
 
 	private IFolder output;
 
@@ -192,7 +118,7 @@ public class SmtSolver {
 
 	private boolean satisfied;
 
-	private String solver;
+	private SmtSession session;
 
 	/**
 	 * Creates a new solver. The solver writes SMT-LIB files that are given the
@@ -202,20 +128,43 @@ public class SmtSolver {
 	 *            the actor
 	 */
 	public SmtSolver(Actor actor) {
+		this(actor, null);
+	}
+
+	/**
+	 * Creates a new solver. If a session is given, the scripts are sent to its
+	 * solver process instead of being written to SMT-LIB files.
+	 * 
+	 * @param actor
+	 *            the actor
+	 * @param session
+	 *            a solver session, may be <code>null</code>
+	 */
+	public SmtSolver(Actor actor, SmtSession session) {
 		assertions = new HashMap<String, Object>();
 
 		this.actor = actor;
-		IFile file = actor.getFile();
-		output = OrccUtil.getOutputFolder(file.getProject());
+		this.session = session;
+		if (session == null) {
+			IFile file = actor.getFile();
+			output = OrccUtil.getOutputFolder(file.getProject());
+			command = getSolverCommand();
+		}
+	}
 
+	/**
+	 * Returns the command used to launch the solver set in the preferences,
+	 * followed by its options.
+	 * 
+	 * @return the solver command
+	 */
+	static List<String> getSolverCommand() {
 		String solverPath = getDefault().getPreference(P_SOLVER, "");
 		solverPath = FilesManager.sanitize(solverPath);
 		if (!solverPath.isEmpty()) {
 			File solverFile = new File(solverPath);
 			if (solverFile.exists()) {
-				if(solverFile.canExecute()) {
-					solver = solverPath;
-				} else {
+				if(!solverFile.canExecute()) {
 					throw new OrccRuntimeException("solver " + solverPath
 							+ " is not executable");
 				}
@@ -226,8 +175,15 @@ public class SmtSolver {
 			throw new OrccRuntimeException("path of solver is empty!");
 		}
 
+		List<String> command = new ArrayList<String>();
+		command.add(solverPath);
 		String strOptions = getDefault().getPreference(P_SOLVER_OPTIONS, "");
-		options = Arrays.asList(strOptions.split(" "));
+		for (String option : strOptions.split(" ")) {
+			if (!option.isEmpty()) {
+				command.add(option);
+			}
+		}
+		return command;
 	}
 
 	/**
@@ -288,10 +244,17 @@ public class SmtSolver {
 			}
 			ps.close();
 
+			if (session != null) {
+				processOutput(session.solve(bos.toString()));
+				return satisfied;
+			}
+
 			File file = new File(output.getLocation().toOSString(), actor.getSimpleName() + "_"
 					+ System.currentTimeMillis() + ".smt2");
 			FilesManager.writeFile(bos.toString(), file);
 			launchSolver(file);
+		} catch (CancellationException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new OrccRuntimeException("could not execute solver", e);
 		}
@@ -299,6 +262,91 @@ public class SmtSolver {
 		return satisfied;
 	}
 
+	/**
+	 * Parse the assertion encoded as the given list s-expression.
+	 * 
+	 * @param list
+	 *            a list s-expression
+	 */
+	private Object getExpression(SExp exp) {
+		if (exp.isSymbol()) {
+			SExpSymbol symbol = (SExpSymbol) exp;
+			if ("true".equals(symbol.getContents())) {
+				return true;
+			} else if ("false".equals(symbol.getContents())) {
+				return false;
+			}
+		} else if (exp.isList()) {
+			SExpList list = (SExpList) exp;
+			if (list.size() == 2) {
+				SExpSymbol bv = list.getSymbol(1);
+				// remove "bv" from the symbol
+				String contents = bv.getContents().substring(2);
+				BigInteger value = new BigInteger(contents, 16);
+				return value;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Parse the output of the solver: satisfiability, and the values of the
+	 * tokens read on the control ports if they have been requested.
+	 * 
+	 * @param output
+	 *            the output of the solver
+	 */
+	private void processOutput(String output) {
+		hasFailed = false;
+		if (output.contains("error")) {
+			OrccLogger.warnln("Solving of actor " + actor.getName() + ":");
+			hasFailed = true;
+			String error[] = output.split("\n");
+			for (int i = 0; i < error.length; i++) {
+				if (!error[i].equals("sat")) {
+					OrccLogger.traceln(error[i]);
+				}
+			}
+			return;
+		}
+
+		SExpParser parser = new SExpParser(output);
+		SExp exp = parser.read();
+		SExpSymbol symbol = (SExpSymbol) exp;
+		satisfied = "sat".equals(symbol.getContents());
+
+		// parse assertions (if there are any)
+		if (satisfied && action != null && ports != null) {
+			exp = parser.read();
+			if (exp != null && exp.isList()) {
+				SExpList list = (SExpList) exp;
+
+				Pattern pattern = action.getPeekPattern();
+				int index = 0;
+				for (Port port : ports) {
+					exp = list.get(index);
+					index++;
+
+					Object value;
+					int numTokens = pattern.getNumTokens(port);
+					if (numTokens > 1) {
+						List<Object> values = new ArrayList<Object>();
+						SExpList portList = (SExpList) exp;
+						for (int i = 0; i < numTokens; i++) {
+							SExp subExpr = portList.get(i);
+							values.add(getExpression(subExpr));
+						}
+						value = values.toArray();
+					} else {
+						value = getExpression(exp);
+					}
+					assertions.put(port.getName(), value);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Returns the assertions as a map between ports and associated values.
 	 * 
@@ -316,9 +364,7 @@ public class SmtSolver {
 	 * @throws IOException
 	 */
 	private void launchSolver(File file) throws IOException {
-		List<String> allOptions = new ArrayList<String>(options.size() + 2);
-		allOptions.add(solver);
-		allOptions.addAll(options);
+		List<String> allOptions = new ArrayList<String>(command);
 		allOptions.add(file.getCanonicalPath());
 
 		ProcessBuilder pb = new ProcessBuilder(allOptions);
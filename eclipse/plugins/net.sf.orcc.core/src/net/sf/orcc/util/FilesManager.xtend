@@ -354,7 +354,7 @@ class FilesManager {
 	 */
 	static def writeFile(CharSequence content, File targetFile) {
 		if (content.isContentEqual(targetFile)) {
-			return newCachedInstance
+			return newCachedInstance(targetFile)
 		}
 
 		if (!targetFile.exists) {
@@ -364,7 +364,7 @@ class FilesManager {
 		val ps = new PrintStream(new FileOutputStream(targetFile))
 		ps.print(content)
 		ps.close
-		return newOkInstance
+		return newOkInstance(targetFile)
 	}
 
 	/**
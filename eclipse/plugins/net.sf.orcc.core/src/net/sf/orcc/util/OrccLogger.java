@@ -173,6 +173,17 @@ public class OrccLogger {
 		}
 	}
 
+	/**
+	 * Return true if messages of the given level are displayed, e.g. to avoid
+	 * computing debug information that would be discarded.
+	 * 
+	 * @param level
+	 * @return true if messages of this level are displayed
+	 */
+	public static boolean isLoggable(Level level) {
+		return getLogger().isLoggable(level);
+	}
+
 	/**
 	 * Display a debug message to current console.
 	 * 
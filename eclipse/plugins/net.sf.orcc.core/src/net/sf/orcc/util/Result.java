@@ -28,10 +28,19 @@
  */
 package net.sf.orcc.util;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Used to store files writing results. It maintains the number of really
  * written files in an operation, and the number of cached files (not written
- * because already up-to-date)
+ * because already up-to-date). When a back-end uses its build manifest, it
+ * also counts the children which have been skipped because they did not
+ * change (cache hits) and the ones which have been regenerated (cache
+ * misses). The paths of the files written or cached are kept, so that a
+ * back-end can check that the files of a child still exist. Results are
+ * not thread-safe, they are merged by the thread which started the operation.
  * 
  * @author Antoine Lorence
  * 
@@ -40,6 +49,9 @@ public class Result {
 
 	private int written = 0;
 	private int cached = 0;
+	private int cacheHits = 0;
+	private int cacheMisses = 0;
+	private final List<String> files = new ArrayList<String>();
 
 	private Result(int written, int cached) {
 		this.written = written;
@@ -64,6 +76,19 @@ public class Result {
 		return new Result(1, 0);
 	}
 
+	/**
+	 * Create a new Result instance for the given written file.
+	 * 
+	 * @param file
+	 *            the written file
+	 * @return
+	 */
+	public static Result newOkInstance(final File file) {
+		final Result result = new Result(1, 0);
+		result.files.add(file.getAbsolutePath());
+		return result;
+	}
+
 	/**
 	 * Create a new Result instance for a cached file.
 	 * 
@@ -73,6 +98,43 @@ public class Result {
 		return new Result(0, 1);
 	}
 
+	/**
+	 * Create a new Result instance for the given cached file.
+	 * 
+	 * @param file
+	 *            the cached file
+	 * @return
+	 */
+	public static Result newCachedInstance(final File file) {
+		final Result result = new Result(0, 1);
+		result.files.add(file.getAbsolutePath());
+		return result;
+	}
+
+	/**
+	 * Create a new Result instance for a child skipped because it is
+	 * up-to-date in the build manifest.
+	 * 
+	 * @return
+	 */
+	public static Result newCacheHitInstance() {
+		final Result result = new Result(0, 0);
+		result.cacheHits = 1;
+		return result;
+	}
+
+	/**
+	 * Create a new Result instance for a child regenerated because it is
+	 * missing or outdated in the build manifest.
+	 * 
+	 * @return
+	 */
+	public static Result newCacheMissInstance() {
+		final Result result = new Result(0, 0);
+		result.cacheMisses = 1;
+		return result;
+	}
+
 	/**
 	 * Merge the given <em>other</em> instance into this one by adding their
 	 * respective members.
@@ -83,13 +145,34 @@ public class Result {
 	public Result merge(final Result other) {
 		written += other.written;
 		cached += other.cached;
+		cacheHits += other.cacheHits;
+		cacheMisses += other.cacheMisses;
+		files.addAll(other.files);
 		return this;
 	}
 
+	public int cacheHits() {
+		return cacheHits;
+	}
+
+	public int cacheMisses() {
+		return cacheMisses;
+	}
+
 	public int cached() {
 		return cached;
 	}
 
+	/**
+	 * Returns the absolute paths of the files written or cached, when they
+	 * are known.
+	 * 
+	 * @return a copy of the list of paths
+	 */
+	public List<String> files() {
+		return new ArrayList<String>(files);
+	}
+
 	public int written() {
 		return written;
 	}
@@ -98,7 +181,9 @@ public class Result {
 	public boolean equals(Object obj) {
 		if(obj instanceof Result) {
 			return ((Result) obj).written == written
-					&& ((Result) obj).cached == cached;
+					&& ((Result) obj).cached == cached
+					&& ((Result) obj).cacheHits == cacheHits
+					&& ((Result) obj).cacheMisses == cacheMisses;
 		}
 		return false;
 	}
@@ -109,6 +194,11 @@ public class Result {
 		builder.append("Result: ");
 		builder.append(written).append (" file(s) written - ");
 		builder.append(cached).append(" file(s) cached");
+		if (cacheHits + cacheMisses > 0) {
+			builder.append(" - build cache: ").append(cacheHits);
+			builder.append(" hit(s), ").append(cacheMisses);
+			builder.append(" miss(es)");
+		}
 		return builder.toString();
 	}
 
@@ -219,12 +219,8 @@ public class GraphImpl extends VertexImpl implements Graph {
 
 	@Override
 	public Vertex getVertex(String name) {
-		for (Vertex vertex : getVertices()) {
-			if (name.equals(vertex.getLabel())) {
-				return vertex;
-			}
-		}
-		return null;
+		return findByName(getVertices(), GraphPackage.Literals.GRAPH__VERTICES,
+				GraphPackage.Literals.VERTEX__LABEL, name);
 	}
 
 	/**
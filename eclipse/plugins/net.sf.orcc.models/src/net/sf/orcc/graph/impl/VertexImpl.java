@@ -482,11 +482,12 @@ public class VertexImpl extends AttributableImpl implements Vertex {
 
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
-	 * @generated
+	 * @generated NOT
 	 */
 	public void setLabel(String newLabel) {
 		String oldLabel = label;
 		label = newLabel;
+		nameChanged(GraphPackage.Literals.VERTEX__LABEL);
 		if (eNotificationRequired())
 			eNotify(new ENotificationImpl(this, Notification.SET,
 					GraphPackage.VERTEX__LABEL, oldLabel, label));
@@ -31,16 +31,23 @@ package net.sf.orcc.util.impl;
 import static net.sf.orcc.util.UtilFactory.eINSTANCE;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import net.sf.orcc.util.Attributable;
 import net.sf.orcc.util.Attribute;
 import net.sf.orcc.util.UtilPackage;
+import net.sf.orcc.util.util.NameIndexAdapter;
 
 import org.eclipse.emf.common.notify.NotificationChain;
 import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.EObjectImpl;
 import org.eclipse.emf.ecore.util.EObjectContainmentEList;
@@ -62,6 +69,13 @@ public abstract class AttributableImpl extends EObjectImpl implements
 	 */
 	protected EList<Attribute> attributes;
 
+	/**
+	 * Name indexes of the lists of this object, by reference. The map is
+	 * replaced, never modified, when an index is added.
+	 */
+	private volatile Map<EReference, NameIndexAdapter> nameIndexes = Collections
+			.emptyMap();
+
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
 	 * @generated
@@ -168,12 +182,42 @@ public abstract class AttributableImpl extends EObjectImpl implements
 
 	@Override
 	public Attribute getAttribute(String name) {
-		for (Attribute attribute : getAttributes()) {
-			if (name.equals(attribute.getName())) {
-				return attribute;
-			}
+		return findByName(getAttributes(),
+				UtilPackage.Literals.ATTRIBUTABLE__ATTRIBUTES,
+				UtilPackage.Literals.ATTRIBUTE__NAME, name);
+	}
+
+	/**
+	 * Returns the first object of the given list of this object whose name is
+	 * equal to the given name. Small lists are searched linearly, the others
+	 * through a name index that is built on the first lookup and kept up to
+	 * date by a {@link NameIndexAdapter}.
+	 * 
+	 * @param list
+	 *            the value of the given reference
+	 * @param reference
+	 *            a many-valued reference of this object
+	 * @param nameAttribute
+	 *            the attribute that holds the name of the referenced objects
+	 * @param name
+	 *            a name
+	 * @return the first object with the given name, or <code>null</code>
+	 */
+	protected <T extends EObject> T findByName(List<T> list,
+			EReference reference, EAttribute nameAttribute, String name) {
+		if (name == null) {
+			return null;
 		}
-		return null;
+
+		if (list.size() < NameIndexAdapter.MIN_SIZE) {
+			return NameIndexAdapter.find(list, nameAttribute, name);
+		}
+
+		NameIndexAdapter index = nameIndexes.get(reference);
+		if (index == null) {
+			index = getNameIndex(reference, nameAttribute);
+		}
+		return index.get(name);
 	}
 
 	/**
@@ -189,6 +233,30 @@ public abstract class AttributableImpl extends EObjectImpl implements
 		return attributes;
 	}
 
+	/**
+	 * Returns the name index of the given reference, and creates it if needed.
+	 * 
+	 * @param reference
+	 *            a many-valued reference of this object
+	 * @param nameAttribute
+	 *            the attribute that holds the name of the referenced objects
+	 * @return the name index of the given reference
+	 */
+	private synchronized NameIndexAdapter getNameIndex(EReference reference,
+			EAttribute nameAttribute) {
+		NameIndexAdapter index = nameIndexes.get(reference);
+		if (index == null) {
+			index = new NameIndexAdapter(this, reference, nameAttribute);
+			eAdapters().add(index);
+
+			Map<EReference, NameIndexAdapter> map = new HashMap<EReference, NameIndexAdapter>(
+					nameIndexes);
+			map.put(reference, index);
+			nameIndexes = map;
+		}
+		return index;
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public <T extends EObject> T getValueAsEObject(String name) {
@@ -228,6 +296,27 @@ public abstract class AttributableImpl extends EObjectImpl implements
 		return getAttribute(name) != null;
 	}
 
+	/**
+	 * Drops the name indexes of the container of this object whose objects are
+	 * named by the given attribute. This method must be called by the setter
+	 * of the name attribute of the objects that may be looked up by name,
+	 * since they are not observed by the indexes of their container.
+	 * 
+	 * @param nameAttribute
+	 *            the name attribute of this object that has been changed
+	 */
+	protected void nameChanged(EAttribute nameAttribute) {
+		EObject container = eInternalContainer();
+		if (container instanceof AttributableImpl) {
+			AttributableImpl owner = (AttributableImpl) container;
+			for (NameIndexAdapter index : owner.nameIndexes.values()) {
+				if (index.getNameAttribute() == nameAttribute) {
+					index.invalidate();
+				}
+			}
+		}
+	}
+
 	@Override
 	public void removeAttribute(String name) {
 		Iterator<Attribute> it = getAttributes().iterator();
@@ -354,12 +354,13 @@ public class AttributeImpl extends AttributableImpl implements Attribute {
 
 	/**
 	 * <!-- begin-user-doc --> <!-- end-user-doc -->
-	 * @generated
+	 * @generated NOT
 	 */
 	@Override
 	public void setName(String newName) {
 		String oldName = name;
 		name = newName;
+		nameChanged(UtilPackage.Literals.ATTRIBUTE__NAME);
 		if (eNotificationRequired())
 			eNotify(new ENotificationImpl(this, Notification.SET,
 					UtilPackage.ATTRIBUTE__NAME, oldName, name));
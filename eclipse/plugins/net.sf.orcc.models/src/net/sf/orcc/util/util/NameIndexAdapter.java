@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.util.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+
+/**
+ * This class defines an adapter that indexes by name the objects of a
+ * many-valued reference. The index is built on the first lookup, and dropped
+ * whenever an object is added to or removed from the list, or whenever one of
+ * the indexed objects is renamed. The adapter is only attached to the owner of
+ * the list: the indexed objects are expected to be contained by the owner, and
+ * to drop the index from the setter of their name (see
+ * {@link net.sf.orcc.util.impl.AttributableImpl#nameChanged(EAttribute)}).
+ * 
+ * When several objects have the same name, the first one in the list is
+ * returned, as a linear search would.
+ * 
+ */
+public class NameIndexAdapter extends AdapterImpl {
+
+	/**
+	 * Minimal size of a list for its lookups to be indexed. Smaller lists are
+	 * searched linearly.
+	 */
+	public static final int MIN_SIZE = 8;
+
+	/**
+	 * Returns the first object of the given list whose name attribute is equal
+	 * to the given name, by searching the list linearly.
+	 * 
+	 * @param list
+	 *            a list of objects
+	 * @param nameAttribute
+	 *            the attribute that holds the name of the objects
+	 * @param name
+	 *            a name
+	 * @return the first object with the given name, or <code>null</code>
+	 */
+	public static <T extends EObject> T find(List<T> list,
+			EAttribute nameAttribute, String name) {
+		for (T object : list) {
+			if (name.equals(object.eGet(nameAttribute))) {
+				return object;
+			}
+		}
+		return null;
+	}
+
+	private volatile Map<String, EObject> index;
+
+	/**
+	 * Number of times the index has been dropped, guarded by this adapter.
+	 */
+	private int modCount;
+
+	private final EAttribute nameAttribute;
+
+	private final EObject owner;
+
+	private final EReference reference;
+
+	/**
+	 * Creates a new index of the objects referenced by the given reference of
+	 * the given owner. The adapter must then be added to the adapters of the
+	 * owner.
+	 * 
+	 * @param owner
+	 *            the object that holds the list
+	 * @param reference
+	 *            a many-valued reference of the owner
+	 * @param nameAttribute
+	 *            the attribute that holds the name of the referenced objects
+	 */
+	public NameIndexAdapter(EObject owner, EReference reference,
+			EAttribute nameAttribute) {
+		this.owner = owner;
+		this.reference = reference;
+		this.nameAttribute = nameAttribute;
+	}
+
+	/**
+	 * Builds the index from the current content of the list. The index is only
+	 * published if it has not been dropped while the list was read, otherwise
+	 * it is only used by the current lookup.
+	 * 
+	 * @return the index
+	 */
+	private Map<String, EObject> build() {
+		int count;
+		synchronized (this) {
+			Map<String, EObject> map = index;
+			if (map != null) {
+				return map;
+			}
+			count = modCount;
+		}
+
+		List<?> list = (List<?>) owner.eGet(reference);
+		Map<String, EObject> map = new HashMap<String, EObject>(
+				list.size() * 2);
+		for (Object object : list) {
+			EObject eObject = (EObject) object;
+			Object name = eObject.eGet(nameAttribute);
+			if (name != null && !map.containsKey(name)) {
+				map.put((String) name, eObject);
+			}
+		}
+
+		synchronized (this) {
+			if (modCount == count) {
+				index = map;
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Returns the first object of the list whose name is equal to the given
+	 * name.
+	 * 
+	 * @param name
+	 *            a name
+	 * @return the first object with the given name, or <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends EObject> T get(String name) {
+		Map<String, EObject> map = index;
+		if (map == null) {
+			map = build();
+		}
+		return (T) map.get(name);
+	}
+
+	/**
+	 * Returns the attribute that holds the name of the indexed objects.
+	 * 
+	 * @return the name attribute
+	 */
+	public EAttribute getNameAttribute() {
+		return nameAttribute;
+	}
+
+	/**
+	 * Drops the index, which is built again on the next lookup.
+	 */
+	public synchronized void invalidate() {
+		modCount++;
+		index = null;
+	}
+
+	@Override
+	public boolean isAdapterForType(Object type) {
+		return type == reference;
+	}
+
+	@Override
+	public void notifyChanged(Notification notification) {
+		if (!notification.isTouch() && notification.getFeature() == reference
+				&& notification.getNotifier() == owner) {
+			invalidate();
+		}
+	}
+
+}
@@ -28,6 +28,7 @@
  */
 package net.sf.orcc.simulators;
 
+import java.io.File;
 import java.math.BigInteger;
 import java.util.Map;
 
@@ -42,12 +43,21 @@ import org.eclipse.core.runtime.IProgressMonitor;
  */
 public abstract class AbstractSimulator implements Simulator {
 
+	/**
+	 * context of the simulations run by this simulator
+	 */
+	protected final SimulationContext context = new SimulationContext();
+
+	/**
+	 * metrics of the running simulation
+	 */
+	protected final SimulationMetrics metrics = new SimulationMetrics();
+
 	private IProgressMonitor monitor;
 
 	private Map<String, Object> options;
 
-	protected static boolean stopRequested = false;
-	public static int statusCode = 0;
+	private MetricsSampler sampler;
 
 	/**
 	 * Returns the boolean-valued attribute with the given name. Returns the
@@ -138,6 +148,24 @@ public abstract class AbstractSimulator implements Simulator {
 		return options;
 	}
 
+	/**
+	 * Returns the context of the simulations run by this simulator.
+	 * 
+	 * @return a simulation context
+	 */
+	public SimulationContext getContext() {
+		return context;
+	}
+
+	/**
+	 * Returns the registry of the metrics of the running simulation.
+	 * 
+	 * @return the metrics of the simulation
+	 */
+	public SimulationMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Called when options are initialized.
 	 */
@@ -149,7 +177,17 @@ public abstract class AbstractSimulator implements Simulator {
 	 * @return true if this process has been stopped or canceled
 	 */
 	protected boolean isStopped() {
-		return stopRequested || (monitor != null && monitor.isCanceled());
+		return context.isStopRequested() || isCanceled();
+	}
+
+	/**
+	 * Returns true if this process has been canceled from its progress
+	 * monitor.
+	 * 
+	 * @return true if this process has been canceled
+	 */
+	protected boolean isCanceled() {
+		return monitor != null && monitor.isCanceled();
 	}
 
 	/*
@@ -174,25 +212,58 @@ public abstract class AbstractSimulator implements Simulator {
 	}
 
 	/**
-	 * Stop the simulation. This method is called from application after a user
-	 * action (ex: display closed)
+	 * Starts sampling the metrics registered so far, unless they are neither
+	 * written in a file nor published through JMX.
 	 * 
-	 * @param status
-	 *            the status code which should be returned
+	 * @param name
+	 *            name of the simulation, e.g. the name of its network
+	 * @param fileName
+	 *            name of the file where the samples are written (CSV or JSON
+	 *            lines), or an empty string
+	 * @param period
+	 *            period of the samples, in milliseconds
+	 * @param jmx
+	 *            <code>true</code> to publish the last sample through JMX
+	 */
+	protected void startMetricsSampler(String name, String fileName,
+			int period, boolean jmx) {
+		if (fileName.isEmpty() && !jmx) {
+			return;
+		}
+
+		File file = fileName.isEmpty() ? null : new File(fileName);
+		sampler = new MetricsSampler(metrics, name, file, period, jmx);
+		sampler.start();
+	}
+
+	/**
+	 * Stops the metrics sampler, if it was started, and clears the metrics.
+	 */
+	protected void stopMetricsSampler() {
+		if (sampler != null) {
+			sampler.stop();
+			sampler = null;
+		}
+		metrics.clear();
+	}
+
+	/**
+	 * Stop the current simulation. This method is called from application
+	 * after a user action (ex: display closed)
 	 */
 	public static void userStop() {
-		stopRequested = true;
+		SimulationContext.current().stop();
 	}
 
 	/**
-	 * Stop the simulation. This method is called from application itself.
+	 * Stop the current simulation. This method is called from application
+	 * itself.
 	 * 
 	 * @param status
 	 *            the status code which should be returned
 	 */
 	public static void stop(BigInteger status) {
-		statusCode += status.intValue();
-		stopRequested = true;
+		SimulationContext.current().stop(status.intValue());
 	}
 
 	/**
@@ -200,6 +271,6 @@ public abstract class AbstractSimulator implements Simulator {
 	 */
 	@Override
 	public void stop() {
-		stopRequested = true;
+		context.stop();
 	}
 }
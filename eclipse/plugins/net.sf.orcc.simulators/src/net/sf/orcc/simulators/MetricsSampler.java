@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.simulators.SimulationMetrics.Metric;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class samples the metrics of a simulation periodically, in a
+ * background thread. Each sample is written as a line of a CSV file, or as a
+ * JSON object per line when the file does not end with ".csv", and the last
+ * sample can be read through JMX, as the attributes of an MBean named
+ * <code>net.sf.orcc.simulators:type=Simulation,name=&lt;network&gt;</code>.
+ * 
+ * <p>
+ * The metrics are the ones registered when the sampler is started. Counts
+ * are sampled as their current value, and rates as their increase per second
+ * since the previous sample.
+ * </p>
+ * 
+ * @see SimulationMetrics
+ */
+public class MetricsSampler implements Runnable {
+
+	/**
+	 * An MBean whose read-only attributes are the values of the last sample.
+	 */
+	private class SampleBean implements DynamicMBean {
+
+		private final MBeanInfo info;
+
+		public SampleBean() {
+			MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names
+					.size()];
+			for (int i = 0; i < attributes.length; i++) {
+				String type = rates[i] ? Double.class.getName() : Long.class
+						.getName();
+				attributes[i] = new MBeanAttributeInfo(names.get(i), type,
+						rates[i] ? "per second" : "count", true, false, false);
+			}
+			info = new MBeanInfo(getClass().getName(), "Metrics of the "
+					+ "simulation of " + name, attributes, null, null, null);
+		}
+
+		@Override
+		public Object getAttribute(String attribute)
+				throws AttributeNotFoundException {
+			Map<String, Number> sample = lastSample;
+			if (!sample.containsKey(attribute)) {
+				throw new AttributeNotFoundException(attribute);
+			}
+			return sample.get(attribute);
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			Map<String, Number> sample = lastSample;
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				if (sample.containsKey(attribute)) {
+					list.add(new Attribute(attribute, sample.get(attribute)));
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			return info;
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params,
+				String[] signature) throws ReflectionException {
+			throw new ReflectionException(new NoSuchMethodException(
+					actionName));
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute)
+				throws AttributeNotFoundException {
+			throw new AttributeNotFoundException(attribute.getName()
+					+ " is read-only");
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+	}
+
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+	private final File file;
+
+	private final boolean jmx;
+
+	private volatile Map<String, Number> lastSample;
+
+	private final SimulationMetrics metrics;
+
+	private final String name;
+
+	private List<String> names;
+
+	private ObjectName objectName;
+
+	private final int period;
+
+	private long previousTime;
+
+	private long[] previousValues;
+
+	private boolean[] rates;
+
+	private long startTime;
+
+	private Thread thread;
+
+	private List<Metric> values;
+
+	private PrintWriter writer;
+
+	/**
+	 * Creates a new sampler.
+	 * 
+	 * @param metrics
+	 *            the metrics of the simulation
+	 * @param name
+	 *            name of the simulation, e.g. the name of its network
+	 * @param file
+	 *            file where the samples are written, or <code>null</code>
+	 * @param period
+	 *            period of the samples, in milliseconds
+	 * @param jmx
+	 *            <code>true</code> to publish the last sample through JMX
+	 */
+	public MetricsSampler(SimulationMetrics metrics, String name, File file,
+			int period, boolean jmx) {
+		this.metrics = metrics;
+		this.name = name;
+		this.file = file;
+		this.period = Math.max(1, period);
+		this.jmx = jmx;
+		lastSample = new LinkedHashMap<String, Number>();
+	}
+
+	private String formatRate(double rate) {
+		return String.format(Locale.US, "%.1f", rate);
+	}
+
+	private void registerBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			objectName = new ObjectName("net.sf.orcc.simulators:type="
+					+ "Simulation,name=" + ObjectName.quote(name) + ",id="
+					+ NEXT_ID.incrementAndGet());
+			server.registerMBean(new SampleBean(), objectName);
+		} catch (JMException e) {
+			objectName = null;
+			OrccLogger.warnln("Unable to publish the metrics through JMX: "
+					+ e.getMessage());
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				Thread.sleep(period);
+				sample();
+			}
+		} catch (InterruptedException e) {
+			// the sampler has been stopped
+		}
+	}
+
+	/**
+	 * Samples the metrics, and writes the sample.
+	 */
+	private void sample() {
+		long time = System.nanoTime();
+		double seconds = (time - previousTime) / 1e9;
+		previousTime = time;
+
+		Map<String, Number> sample = new LinkedHashMap<String, Number>();
+		for (int i = 0; i < names.size(); i++) {
+			long value = values.get(i).getValue();
+			if (rates[i]) {
+				double rate = seconds > 0 ? (value - previousValues[i])
+						/ seconds : 0;
+				sample.put(names.get(i), rate);
+				previousValues[i] = value;
+			} else {
+				sample.put(names.get(i), value);
+			}
+		}
+		lastSample = sample;
+
+		if (writer != null) {
+			writeSample((time - startTime) / 1e9, sample);
+		}
+	}
+
+	/**
+	 * Starts sampling the metrics registered so far.
+	 */
+	public void start() {
+		Map<String, Metric> registered = metrics.getMetrics();
+		names = new ArrayList<String>(registered.keySet());
+		values = new ArrayList<Metric>(registered.values());
+		rates = new boolean[names.size()];
+		previousValues = new long[names.size()];
+		for (int i = 0; i < names.size(); i++) {
+			rates[i] = metrics.isRate(names.get(i));
+			previousValues[i] = values.get(i).getValue();
+		}
+
+		if (file != null) {
+			try {
+				writer = new PrintWriter(new BufferedWriter(new FileWriter(
+						file)));
+			} catch (IOException e) {
+				throw new OrccRuntimeException("Unable to write the metrics "
+						+ "in " + file, e);
+			}
+			if (isCsv()) {
+				writer.print("time");
+				for (int i = 0; i < names.size(); i++) {
+					writer.print("," + names.get(i) + (rates[i] ? "/s" : ""));
+				}
+				writer.println();
+			}
+		}
+
+		if (jmx) {
+			registerBean();
+		}
+
+		startTime = System.nanoTime();
+		previousTime = startTime;
+		thread = new Thread(this, "Metrics sampler of " + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private boolean isCsv() {
+		return file.getName().toLowerCase(Locale.US).endsWith(".csv");
+	}
+
+	/**
+	 * Stops the sampler, after a last sample of the metrics.
+	 */
+	public void stop() {
+		if (thread == null) {
+			return;
+		}
+
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+		sample();
+
+		if (writer != null) {
+			writer.close();
+			if (writer.checkError()) {
+				OrccLogger.warnln("Unable to write the metrics in " + file);
+			}
+			writer = null;
+		}
+
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+						objectName);
+			} catch (JMException e) {
+				// the bean is already unregistered
+			}
+			objectName = null;
+		}
+	}
+
+	private void writeSample(double time, Map<String, Number> sample) {
+		StringBuilder builder = new StringBuilder();
+		boolean csv = isCsv();
+		if (csv) {
+			builder.append(String.format(Locale.US, "%.3f", time));
+		} else {
+			builder.append(String.format(Locale.US, "{\"time\":%.3f", time));
+		}
+
+		for (int i = 0; i < names.size(); i++) {
+			Number value = sample.get(names.get(i));
+			String text = rates[i] ? formatRate(value.doubleValue()) : value
+					.toString();
+			if (csv) {
+				builder.append(',').append(text);
+			} else {
+				String key = names.get(i) + (rates[i] ? "/s" : "");
+				builder.append(",\"")
+						.append(key.replace("\\", "\\\\").replace("\"", "\\\""))
+						.append("\":").append(text);
+			}
+		}
+
+		if (!csv) {
+			builder.append('}');
+		}
+		writer.println(builder);
+		writer.flush();
+	}
+
+}
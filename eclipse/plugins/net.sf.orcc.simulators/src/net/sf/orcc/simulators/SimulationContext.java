@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds the state of a simulation that is shared by the native
+ * procedures, such as the files read by the source, the frames of the display
+ * or the status code of the simulation. Each simulator has its own context,
+ * so that several simulations can run at the same time in the same JVM.
+ * 
+ * <p>
+ * The current context is attached to the thread that runs the simulation,
+ * and is inherited by the threads it creates. Native procedures retrieve their
+ * state from the current context with a {@link Local} variable, the same way
+ * as with a {@link ThreadLocal}. When no simulation is running, a default
+ * context is used.
+ * </p>
+ * 
+ */
+public class SimulationContext {
+
+	/**
+	 * A variable with one value per simulation context, created on first use.
+	 * 
+	 * @param <T>
+	 *            type of the value
+	 */
+	public static abstract class Local<T> {
+
+		/**
+		 * Returns the value of this variable in the current context.
+		 * 
+		 * @return the value of this variable
+		 */
+		public T get() {
+			return current().get(this);
+		}
+
+		/**
+		 * Returns the initial value of this variable in a new context.
+		 * 
+		 * @return a new value
+		 */
+		protected abstract T initialValue();
+
+	}
+
+	private static final SimulationContext DEFAULT = new SimulationContext();
+
+	private static final ThreadLocal<SimulationContext> CURRENT = new InheritableThreadLocal<SimulationContext>() {
+
+		@Override
+		protected SimulationContext initialValue() {
+			return DEFAULT;
+		}
+
+	};
+
+	/**
+	 * Returns the context of the simulation run by the current thread, or the
+	 * default context if the thread does not run a simulation.
+	 * 
+	 * @return the current context
+	 */
+	public static SimulationContext current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Makes the given context the current context of the current thread, and
+	 * of the threads it creates from now on.
+	 * 
+	 * @param context
+	 *            a context, or <code>null</code> for the default context
+	 * @return the previous context of the current thread
+	 */
+	public static SimulationContext enter(SimulationContext context) {
+		SimulationContext previous = CURRENT.get();
+		CURRENT.set(context == null ? DEFAULT : context);
+		return previous;
+	}
+
+	private int statusCode;
+
+	private volatile boolean stopRequested;
+
+	private final ConcurrentMap<Local<?>, Object> values;
+
+	/**
+	 * Creates a new context.
+	 */
+	public SimulationContext() {
+		values = new ConcurrentHashMap<Local<?>, Object>();
+	}
+
+	/**
+	 * Adds the given value to the status code of the simulation.
+	 * 
+	 * @param status
+	 *            a status code, e.g. a number of errors
+	 */
+	public synchronized void addStatus(int status) {
+		statusCode += status;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T get(Local<T> local) {
+		Object value = values.get(local);
+		if (value == null) {
+			value = local.initialValue();
+			Object previous = values.putIfAbsent(local, value);
+			if (previous != null) {
+				value = previous;
+			}
+		}
+		return (T) value;
+	}
+
+	/**
+	 * Returns the status code of the simulation.
+	 * 
+	 * @return the status code
+	 */
+	public synchronized int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns <code>true</code> if the simulation has been requested to stop.
+	 * 
+	 * @return <code>true</code> if the simulation must stop
+	 */
+	public boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	/**
+	 * Resets the status code and the stop request, before a new simulation.
+	 */
+	public synchronized void reset() {
+		statusCode = 0;
+		stopRequested = false;
+	}
+
+	/**
+	 * Requests the simulation to stop.
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	/**
+	 * Requests the simulation to stop with the given status code, which is
+	 * added to the status code of the simulation.
+	 * 
+	 * @param status
+	 *            a status code
+	 */
+	public synchronized void stop(int status) {
+		statusCode += status;
+		stopRequested = true;
+	}
+
+}
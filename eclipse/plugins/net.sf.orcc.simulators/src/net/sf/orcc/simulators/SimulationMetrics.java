@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is a registry of the metrics of a running simulation, such as
+ * the firings of the actors or the number of tokens in the FIFOs. A metric is
+ * read by another thread while the simulation is running, without any
+ * synchronization so as not to slow the simulation down: the counters of the
+ * actors are plain fields, so a sample may be behind the simulation (or torn on
+ * a 32-bit JVM), which is acceptable for monitoring.
+ * 
+ * <p>
+ * A metric is either a count, sampled as its current value, or a rate,
+ * sampled as the increase of its value per second.
+ * </p>
+ * 
+ * @see MetricsSampler
+ */
+public class SimulationMetrics {
+
+	/**
+	 * A value of the simulation.
+	 */
+	public interface Metric {
+
+		/**
+		 * Returns the current value of this metric.
+		 * 
+		 * @return a value
+		 */
+		long getValue();
+
+	}
+
+	private final Map<String, Metric> metrics;
+
+	private final Set<String> rates;
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public SimulationMetrics() {
+		metrics = new LinkedHashMap<String, Metric>();
+		rates = new HashSet<String>();
+	}
+
+	/**
+	 * Registers a metric sampled as its current value.
+	 * 
+	 * @param name
+	 *            name of the metric
+	 * @param metric
+	 *            the metric
+	 */
+	public synchronized void addCount(String name, Metric metric) {
+		metrics.put(name, metric);
+		rates.remove(name);
+	}
+
+	/**
+	 * Registers a metric sampled as the increase of its value per second.
+	 * 
+	 * @param name
+	 *            name of the metric
+	 * @param metric
+	 *            the metric, whose value never decreases
+	 */
+	public synchronized void addRate(String name, Metric metric) {
+		metrics.put(name, metric);
+		rates.add(name);
+	}
+
+	/**
+	 * Removes all the metrics of this registry.
+	 */
+	public synchronized void clear() {
+		metrics.clear();
+		rates.clear();
+	}
+
+	/**
+	 * Returns a copy of the metrics of this registry, in the order they were
+	 * registered.
+	 * 
+	 * @return a map from names to metrics
+	 */
+	public synchronized Map<String, Metric> getMetrics() {
+		return new LinkedHashMap<String, Metric>(metrics);
+	}
+
+	/**
+	 * Returns <code>true</code> if the metric with the given name is sampled
+	 * as a rate.
+	 * 
+	 * @param name
+	 *            name of a metric
+	 * @return <code>true</code> if the metric is a rate
+	 */
+	public synchronized boolean isRate(String name) {
+		return rates.contains(name);
+	}
+
+}
@@ -28,16 +28,35 @@
  */
 package net.sf.orcc.simulators;
 
+import static net.sf.orcc.OrccLaunchConstants.ENABLE_TRACES;
 import static net.sf.orcc.OrccLaunchConstants.FIFO_SIZE;
 import static net.sf.orcc.OrccLaunchConstants.NO_DISPLAY;
 import static net.sf.orcc.OrccLaunchConstants.PROJECT;
 import static net.sf.orcc.OrccLaunchConstants.SIMULATOR;
+import static net.sf.orcc.OrccLaunchConstants.TRACES_FOLDER;
 import static net.sf.orcc.OrccLaunchConstants.XDF_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.BUFFER_SIZING;
+import static net.sf.orcc.simulators.SimulatorsConstants.BUFFER_SIZING_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT_FOLDER;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT_FRAMES;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT_TRAFFIC;
 import static net.sf.orcc.simulators.SimulatorsConstants.FRAMES_NUMBER;
+import static net.sf.orcc.simulators.SimulatorsConstants.FRAME_HASH_FILE;
 import static net.sf.orcc.simulators.SimulatorsConstants.GOLDEN_REFERENCE;
 import static net.sf.orcc.simulators.SimulatorsConstants.GOLDEN_REFERENCE_FILE;
 import static net.sf.orcc.simulators.SimulatorsConstants.INPUT_STIMULUS;
+import static net.sf.orcc.simulators.SimulatorsConstants.JIT;
 import static net.sf.orcc.simulators.SimulatorsConstants.LOOP_NUMBER;
+import static net.sf.orcc.simulators.SimulatorsConstants.METRICS_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.METRICS_JMX;
+import static net.sf.orcc.simulators.SimulatorsConstants.METRICS_PERIOD;
+import static net.sf.orcc.simulators.SimulatorsConstants.PRIMITIVE_VALUES;
+import static net.sf.orcc.simulators.SimulatorsConstants.RESTORE_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.SCHEDULER;
+import static net.sf.orcc.simulators.SimulatorsConstants.STATIC_REGIONS;
+import static net.sf.orcc.simulators.SimulatorsConstants.THREADS_NUMBER;
+import static net.sf.orcc.simulators.SimulatorsConstants.TRACES_FORMAT;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -121,11 +140,53 @@ public class SimulatorCli implements IApplication {
 						+ "display before closing application.");
 
 		clOptions.addOption("r", "golden_reference", true,
-				"Reference file which used to compare with decoded stream.");
+				"Reference file which used to compare with decoded stream "
+						+ "(a YUV file, or a frame hash file recorded with -H).");
+		clOptions.addOption("H", "frame-hashes", true,
+				"Record a hash of each decoded frame in the given file.");
 		clOptions.addOption("s", "fifo-size", true,
 				"Default size of the FIFO channels");
 		clOptions.addOption("n", "nodisplay", false,
 				"Disable display initialization");
+		clOptions.addOption("P", "primitive-values", false,
+				"Use long/double values instead of BigInteger/BigDecimal "
+						+ "in the interpreter (faster)");
+		clOptions.addOption("J", "jit", false,
+				"Compile the actions to JVM bytecode instead of interpreting "
+						+ "them (faster)");
+		clOptions.addOption("S", "scheduler", true,
+				"Scheduling policy: round-robin (default), or data-driven "
+						+ "fifo, backlog or depth-first");
+		clOptions.addOption("R", "static-regions", false,
+				"Execute the static regions of the network from a "
+						+ "precomputed schedule (faster)");
+		clOptions.addOption("j", "threads", true,
+				"Run the actors in parallel on the given number of threads");
+		clOptions.addOption("t", "traces", true,
+				"Trace the tokens of the FIFOs in the given folder");
+		clOptions.addOption("T", "traces-format", true,
+				"Format of the traces: text (default), binary or compressed");
+		clOptions.addOption("B", "buffer-sizing", true,
+				"Search for the FIFO sizes that keep the throughput of the "
+						+ "network, and write them in the given BXDF file");
+		clOptions.addOption("c", "checkpoints", true,
+				"Write checkpoints of the simulation in the given folder");
+		clOptions.addOption("C", "checkpoint-frames", true,
+				"Number of frames displayed between two checkpoints");
+		clOptions.addOption("k", "checkpoint-tokens", true,
+				"Number of tokens written in the FIFOs between two "
+						+ "checkpoints");
+		clOptions.addOption("x", "restore", true,
+				"Resume the simulation from the given checkpoint file");
+		clOptions.addOption("m", "metrics", true,
+				"Sample the firings, blocked attempts, FIFO levels and native "
+						+ "calls in the given file (CSV if it ends with .csv, "
+						+ "JSON lines otherwise)");
+		clOptions.addOption("M", "metrics-period", true,
+				"Period of the samples of the metrics, in milliseconds "
+						+ "(default: 1000)");
+		clOptions.addOption("X", "jmx", false,
+				"Publish the metrics of the simulation through JMX");
 		clOptions.addOption("d", "debug", false,
 				"Launch simulator in debug mode");
 		clOptions.addOption("h", "help", false, "Print this help message");
@@ -167,6 +228,14 @@ public class SimulatorCli implements IApplication {
 				simulatorOptions.put(NO_DISPLAY, true);
 			}
 
+			if (commandLine.hasOption('P')) {
+				simulatorOptions.put(PRIMITIVE_VALUES, true);
+			}
+
+			if (commandLine.hasOption('J')) {
+				simulatorOptions.put(JIT, true);
+			}
+
 			if (commandLine.hasOption('d')) {
 				OrccLogger.setLevel(OrccLogger.DEBUG);
 			}
@@ -177,7 +246,80 @@ public class SimulatorCli implements IApplication {
 						commandLine.getOptionValue("r"));
 			}
 
-			simulatorOptions.put(SIMULATOR, "Visitor interpreter and debugger");
+			if (commandLine.hasOption('H')) {
+				simulatorOptions.put(FRAME_HASH_FILE,
+						commandLine.getOptionValue('H'));
+			}
+
+			if (commandLine.hasOption('S')) {
+				simulatorOptions.put(SCHEDULER,
+						commandLine.getOptionValue('S'));
+			}
+
+			if (commandLine.hasOption('t')) {
+				simulatorOptions.put(ENABLE_TRACES, true);
+				simulatorOptions.put(TRACES_FOLDER,
+						commandLine.getOptionValue('t'));
+			}
+
+			if (commandLine.hasOption('T')) {
+				simulatorOptions.put(TRACES_FORMAT,
+						commandLine.getOptionValue('T'));
+			}
+
+			if (commandLine.hasOption('B')) {
+				simulatorOptions.put(BUFFER_SIZING, true);
+				simulatorOptions.put(BUFFER_SIZING_FILE,
+						commandLine.getOptionValue('B'));
+			}
+
+			if (commandLine.hasOption('R')) {
+				simulatorOptions.put(STATIC_REGIONS, true);
+			}
+
+			if (commandLine.hasOption('c')) {
+				simulatorOptions.put(CHECKPOINT, true);
+				simulatorOptions.put(CHECKPOINT_FOLDER,
+						commandLine.getOptionValue('c'));
+			}
+
+			if (commandLine.hasOption('C')) {
+				simulatorOptions.put(CHECKPOINT_FRAMES,
+						commandLine.getOptionValue('C'));
+			}
+
+			if (commandLine.hasOption('k')) {
+				simulatorOptions.put(CHECKPOINT_TRAFFIC,
+						commandLine.getOptionValue('k'));
+			}
+
+			if (commandLine.hasOption('x')) {
+				simulatorOptions.put(RESTORE_FILE,
+						commandLine.getOptionValue('x'));
+			}
+
+			if (commandLine.hasOption('m')) {
+				simulatorOptions.put(METRICS_FILE,
+						commandLine.getOptionValue('m'));
+			}
+
+			if (commandLine.hasOption('M')) {
+				simulatorOptions.put(METRICS_PERIOD,
+						commandLine.getOptionValue('M'));
+			}
+
+			if (commandLine.hasOption('X')) {
+				simulatorOptions.put(METRICS_JMX, true);
+			}
+
+			if (commandLine.hasOption('j')) {
+				simulatorOptions.put(THREADS_NUMBER,
+						commandLine.getOptionValue('j'));
+				simulatorOptions.put(SIMULATOR, "Parallel visitor interpreter");
+			} else {
+				simulatorOptions.put(SIMULATOR,
+						"Visitor interpreter and debugger");
+			}
 
 			try {
 
@@ -46,33 +46,45 @@ import net.sf.orcc.simulators.runtime.impl.SystemIO;
  */
 public class SimulatorDescriptor {
 
-	private static Map<Integer, GenericSource> descsMap = new HashMap<Integer, GenericSource>();
+	private static final SimulationContext.Local<Map<Integer, GenericSource>> DESCRIPTORS = new SimulationContext.Local<Map<Integer, GenericSource>>() {
+
+		@Override
+		protected Map<Integer, GenericSource> initialValue() {
+			return new HashMap<Integer, GenericSource>();
+		}
+
+	};
 
 	public static BigInteger create(IntfNet net) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		Integer desc = net.hashCode();
 		descsMap.put(desc, net);
 		return new BigInteger(desc.toString());
 	}
 
 	public static BigInteger create(IntfChannel channel) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		Integer desc = channel.hashCode();
 		descsMap.put(desc, channel);
 		return new BigInteger(desc.toString());
 	}
 
 	public static BigInteger create(SystemIO io) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		Integer desc = io.hashCode();
 		descsMap.put(desc, io);
 		return new BigInteger(desc.toString());
 	}
 
 	public static GenericSource get(BigInteger descriptor) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		if (descsMap.containsKey(descriptor.intValue()))
 			return descsMap.get(descriptor.intValue());
 		return null;
 	}
 
 	public static IntfNet getIntfNet(BigInteger descriptor) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		if (descsMap.containsKey(descriptor.intValue())) {
 			GenericSource g = descsMap.get(descriptor.intValue());
 			if (g.isIntfNet())
@@ -82,6 +94,7 @@ public class SimulatorDescriptor {
 	}
 
 	public static IntfChannel getIntfChannel(BigInteger descriptor) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		if (descsMap.containsKey(descriptor.intValue())) {
 			GenericSource g = descsMap.get(descriptor.intValue());
 			if (g.isIntfChannel())
@@ -91,6 +104,7 @@ public class SimulatorDescriptor {
 	}
 
 	public static SystemIO getSystemIO(BigInteger descriptor) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		if (descsMap.containsKey(descriptor.intValue())) {
 			GenericSource g = descsMap.get(descriptor.intValue());
 			if (g.isSystemIO())
@@ -100,6 +114,7 @@ public class SimulatorDescriptor {
 	}
 
 	public static boolean contains(BigInteger descriptor) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		return descsMap.containsKey(descriptor.intValue());
 	}
 
@@ -107,6 +122,7 @@ public class SimulatorDescriptor {
 	 * Kill all simulation descriptors by closing them correctly.
 	 */
 	public static void killDescriptors() {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		for (GenericSource g : descsMap.values()) {
 			g.close();
 		}
@@ -114,6 +130,7 @@ public class SimulatorDescriptor {
 	}
 
 	public static void finalize(BigInteger descriptor) {
+		Map<Integer, GenericSource> descsMap = DESCRIPTORS.get();
 		if (descsMap.containsKey(descriptor.intValue())) {
 			descsMap.remove(descriptor.intValue()).close();
 		}
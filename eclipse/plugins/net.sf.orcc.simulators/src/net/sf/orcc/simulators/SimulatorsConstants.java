@@ -85,6 +85,112 @@ public class SimulatorsConstants {
 
 	public static final String PROFILE_FOLDER = "net.sf.orcc.simulators.profileFolder";
 
+	/**
+	 * When enabled, interpreters represent integers and floats with long and
+	 * double values instead of BigInteger and BigDecimal.
+	 */
+	public static final String PRIMITIVE_VALUES = "net.sf.orcc.simulators.primitiveValues";
+
+	/**
+	 * When enabled, the actions of the actors are compiled to JVM bytecode
+	 * instead of being interpreted.
+	 */
+	public static final String JIT = "net.sf.orcc.simulators.jit";
+
+	/**
+	 * Scheduling policy of the simulator: "round-robin" (default), or one of
+	 * the data-driven policies "fifo", "backlog" and "depth-first".
+	 */
+	public static final String SCHEDULER = "net.sf.orcc.simulators.scheduler";
+
+	/**
+	 * Number of worker threads used by the parallel simulator. When empty, one
+	 * thread per available processor is used.
+	 */
+	public static final String THREADS_NUMBER = "net.sf.orcc.simulators.threadsNumber";
+
+	/**
+	 * File where a hash of each frame compared by the display is recorded. A
+	 * recorded file can then be used as a golden reference.
+	 */
+	public static final String FRAME_HASH_FILE = "net.sf.orcc.simulators.frameHashFile";
+
+	/**
+	 * Format of the FIFO traces: "text" (default), "binary" or "compressed".
+	 */
+	public static final String TRACES_FORMAT = "net.sf.orcc.simulators.tracesFormat";
+
+	/**
+	 * When enabled, the network is run several times to search for the FIFO
+	 * sizes that keep its throughput, instead of being simulated.
+	 */
+	public static final String BUFFER_SIZING = "net.sf.orcc.simulators.bufferSizing";
+
+	/**
+	 * Buffer size configuration file (BXDF) written by the buffer sizing.
+	 */
+	public static final String BUFFER_SIZING_FILE = "net.sf.orcc.simulators.bufferSizingFile";
+
+	/**
+	 * Accepted loss of throughput of the buffer sizing, in percent.
+	 */
+	public static final String BUFFER_SIZING_TOLERANCE = "net.sf.orcc.simulators.bufferSizingTolerance";
+
+	/**
+	 * Maximum number of runs of the network during the buffer sizing.
+	 */
+	public static final String BUFFER_SIZING_RUNS = "net.sf.orcc.simulators.bufferSizingRuns";
+
+	/**
+	 * When enabled, the actors are classified and the static regions of the
+	 * network are executed from a precomputed schedule, without evaluating
+	 * the guards of their actions.
+	 */
+	public static final String STATIC_REGIONS = "net.sf.orcc.simulators.staticRegions";
+
+	/**
+	 * When enabled, the state of the network is saved in checkpoint files
+	 * during the simulation.
+	 */
+	public static final String CHECKPOINT = "net.sf.orcc.simulators.checkpoint";
+
+	/**
+	 * Folder where the checkpoint files are written.
+	 */
+	public static final String CHECKPOINT_FOLDER = "net.sf.orcc.simulators.checkpointFolder";
+
+	/**
+	 * Number of frames displayed between two checkpoints (0 to disable).
+	 */
+	public static final String CHECKPOINT_FRAMES = "net.sf.orcc.simulators.checkpointFrames";
+
+	/**
+	 * Number of tokens written in the FIFOs between two checkpoints (0 to
+	 * disable).
+	 */
+	public static final String CHECKPOINT_TRAFFIC = "net.sf.orcc.simulators.checkpointTraffic";
+
+	/**
+	 * Checkpoint file the simulation is resumed from.
+	 */
+	public static final String RESTORE_FILE = "net.sf.orcc.simulators.restoreFile";
+
+	/**
+	 * File where the metrics of the simulation are sampled: CSV when its name
+	 * ends with ".csv", JSON lines otherwise.
+	 */
+	public static final String METRICS_FILE = "net.sf.orcc.simulators.metricsFile";
+
+	/**
+	 * Period of the samples of the metrics, in milliseconds.
+	 */
+	public static final String METRICS_PERIOD = "net.sf.orcc.simulators.metricsPeriod";
+
+	/**
+	 * When enabled, the last sample of the metrics is published through JMX.
+	 */
+	public static final String METRICS_JMX = "net.sf.orcc.simulators.metricsJmx";
+
 	/**
 	 * Cast the variables or ports using the TypeResizer transformation
 	 */
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.batch;
+
+import static net.sf.orcc.OrccLaunchConstants.FIFO_SIZE;
+import static net.sf.orcc.simulators.SimulatorsConstants.FRAMES_NUMBER;
+import static net.sf.orcc.simulators.SimulatorsConstants.JIT;
+import static net.sf.orcc.simulators.SimulatorsConstants.LOOP_NUMBER;
+import static net.sf.orcc.simulators.SimulatorsConstants.PRIMITIVE_VALUES;
+import static net.sf.orcc.simulators.SimulatorsConstants.SCHEDULER;
+import static net.sf.orcc.simulators.SimulatorsConstants.STATIC_REGIONS;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.util.OrccLogger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+/**
+ * Command-line tool that runs the simulations of a job file in parallel, and
+ * writes their results as a JUnit XML report. The exit code is the number of
+ * jobs that did not pass.
+ * 
+ * @see BatchJob#parse(File)
+ * @see BatchRunner
+ */
+public class BatchCli implements IApplication {
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		Options clOptions = new Options();
+		clOptions.addOption("j", "threads", true,
+				"Number of simulations run at the same time "
+						+ "(default: one per available processor)");
+		clOptions.addOption("o", "report", true,
+				"Write a JUnit XML report in the given file");
+		clOptions.addOption("l", "loops_number", true,
+				"Defines the number of times input stimulus will be read before "
+						+ "application stop. A negative value means infinite. "
+						+ "Default : 1 time.");
+		clOptions.addOption("f", "frames_number", true,
+				"Defines the number of frames to"
+						+ "display before closing application.");
+		clOptions.addOption("s", "fifo-size", true,
+				"Default size of the FIFO channels");
+		clOptions.addOption("P", "primitive-values", false,
+				"Use long/double values instead of BigInteger/BigDecimal "
+						+ "in the interpreter (faster)");
+		clOptions.addOption("J", "jit", false,
+				"Compile the actions to JVM bytecode instead of interpreting "
+						+ "them (faster)");
+		clOptions.addOption("S", "scheduler", true,
+				"Scheduling policy: round-robin (default), or data-driven "
+						+ "fifo, backlog or depth-first");
+		clOptions.addOption("R", "static-regions", false,
+				"Execute the static regions of the network from a "
+						+ "precomputed schedule (faster)");
+		clOptions.addOption("d", "debug", false,
+				"Launch simulator in debug mode");
+		clOptions.addOption("h", "help", false, "Print this help message");
+
+		try {
+			CommandLineParser parser = new PosixParser();
+			CommandLine commandLine = parser.parse(
+					clOptions,
+					(String[]) context.getArguments().get(
+							IApplicationContext.APPLICATION_ARGS));
+
+			List<?> args = commandLine.getArgList();
+			if (commandLine.hasOption('h') || args.size() != 1) {
+				printUsage(clOptions, null);
+				return IApplication.EXIT_RELAUNCH;
+			}
+
+			Map<String, Object> options = new HashMap<String, Object>();
+			if (commandLine.hasOption('s')) {
+				options.put(FIFO_SIZE,
+						Integer.valueOf(commandLine.getOptionValue('s')));
+			}
+			if (commandLine.hasOption('l')) {
+				options.put(LOOP_NUMBER, commandLine.getOptionValue('l'));
+			}
+			if (commandLine.hasOption('f')) {
+				options.put(FRAMES_NUMBER, commandLine.getOptionValue('f'));
+			}
+			if (commandLine.hasOption('P')) {
+				options.put(PRIMITIVE_VALUES, true);
+			}
+			if (commandLine.hasOption('J')) {
+				options.put(JIT, true);
+			}
+			if (commandLine.hasOption('S')) {
+				options.put(SCHEDULER, commandLine.getOptionValue('S'));
+			}
+			if (commandLine.hasOption('R')) {
+				options.put(STATIC_REGIONS, true);
+			}
+			if (commandLine.hasOption('d')) {
+				OrccLogger.setLevel(OrccLogger.DEBUG);
+			}
+
+			int threads = Runtime.getRuntime().availableProcessors();
+			if (commandLine.hasOption('j')) {
+				threads = Integer.parseInt(commandLine.getOptionValue('j'));
+			}
+
+			List<BatchJob> jobs = BatchJob.parse(new File((String) args
+					.get(0)));
+			BatchRunner runner = new BatchRunner(options, threads);
+			int failed = runner.run(jobs);
+			if (commandLine.hasOption('o')) {
+				File report = new File(commandLine.getOptionValue('o'));
+				runner.writeReport(report, jobs);
+				OrccLogger.traceln("Report written in " + report);
+			}
+
+			return failed == 0 ? IApplication.EXIT_OK : Integer
+					.valueOf(failed);
+		} catch (ParseException pe) {
+			printUsage(clOptions, pe.getLocalizedMessage());
+		} catch (NumberFormatException ne) {
+			printUsage(clOptions, ne.getLocalizedMessage());
+		} catch (OrccRuntimeException oe) {
+			OrccLogger.severeln(oe.getMessage());
+		}
+
+		return IApplication.EXIT_RELAUNCH;
+	}
+
+	@Override
+	public void stop() {
+
+	}
+
+	public void printUsage(Options options, String parserMsg) {
+		String footer = "";
+		if (parserMsg != null && !parserMsg.isEmpty()) {
+			footer = "\nMessage of the command line parser :\n" + parserMsg;
+		}
+
+		HelpFormatter helpFormatter = new HelpFormatter();
+		helpFormatter.setWidth(80);
+		helpFormatter.printHelp(
+				"net.sf.orcc.simulators.batch [options] <job file>",
+				"Valid options are :", options, footer);
+	}
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.orcc.OrccRuntimeException;
+
+/**
+ * A simulation run by the batch runner: a network of a project simulated with
+ * an input stimulus, and optionally compared with a golden reference. A job
+ * also holds the results of its simulation once it has been run.
+ * 
+ * @see BatchRunner
+ */
+public class BatchJob {
+
+	/**
+	 * Parses a job file. Each line of the file describes a job, as the name
+	 * of the project, the qualified name of the network, the input stimulus
+	 * and an optional golden reference, separated by white spaces. Empty lines
+	 * and lines starting with '#' are ignored.
+	 * 
+	 * @param file
+	 *            a job file
+	 * @return the list of jobs of the file
+	 */
+	public static List<BatchJob> parse(File file) {
+		List<BatchJob> jobs = new ArrayList<BatchJob>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+
+				String[] fields = line.split("\\s+");
+				if (fields.length < 3 || fields.length > 4) {
+					throw new OrccRuntimeException(file + ":" + lineNumber
+							+ ": expected <project> <network> <stimulus> "
+							+ "[<golden reference>]");
+				}
+				jobs.add(new BatchJob(fields[0], fields[1], fields[2],
+						fields.length == 4 ? fields[3] : null));
+			}
+		} catch (IOException e) {
+			throw new OrccRuntimeException("Unable to read the job file "
+					+ file, e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+		return jobs;
+	}
+
+	private Throwable error;
+
+	private long firings;
+
+	private final String goldenReference;
+
+	private final String network;
+
+	private final String project;
+
+	private int statusCode;
+
+	private final String stimulus;
+
+	private long time;
+
+	private long traffic;
+
+	/**
+	 * Creates a new job.
+	 * 
+	 * @param project
+	 *            name of the project
+	 * @param network
+	 *            qualified name of the network
+	 * @param stimulus
+	 *            input stimulus file
+	 * @param goldenReference
+	 *            golden reference file, or <code>null</code>
+	 */
+	public BatchJob(String project, String network, String stimulus,
+			String goldenReference) {
+		this.project = project;
+		this.network = network;
+		this.stimulus = stimulus;
+		this.goldenReference = goldenReference;
+	}
+
+	/**
+	 * Returns the exception thrown by the simulation, if any.
+	 * 
+	 * @return an exception, or <code>null</code>
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * Returns the number of firings of the simulation.
+	 * 
+	 * @return a number of firings
+	 */
+	public long getFirings() {
+		return firings;
+	}
+
+	public String getGoldenReference() {
+		return goldenReference;
+	}
+
+	/**
+	 * Returns the name of this job, which is the name of its input stimulus.
+	 * 
+	 * @return the name of this job
+	 */
+	public String getName() {
+		return new File(stimulus).getName();
+	}
+
+	public String getNetwork() {
+		return network;
+	}
+
+	public String getProject() {
+		return project;
+	}
+
+	/**
+	 * Returns the status code of the simulation, which is not 0 when its
+	 * output differs from the golden reference.
+	 * 
+	 * @return a status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getStimulus() {
+		return stimulus;
+	}
+
+	/**
+	 * Returns the wall time of the simulation.
+	 * 
+	 * @return a time in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the number of tokens written in the FIFOs per second of
+	 * simulation.
+	 * 
+	 * @return a number of tokens per second
+	 */
+	public double getTokensPerSecond() {
+		return time == 0 ? 0 : traffic * 1000.0 / time;
+	}
+
+	/**
+	 * Returns the number of tokens written in the FIFOs by the simulation.
+	 * 
+	 * @return a number of tokens
+	 */
+	public long getTraffic() {
+		return traffic;
+	}
+
+	/**
+	 * Returns <code>true</code> if the simulation ended normally with a
+	 * status code of 0.
+	 * 
+	 * @return <code>true</code> if the job passed
+	 */
+	public boolean isPassed() {
+		return error == null && statusCode == 0;
+	}
+
+	void setError(Throwable error) {
+		this.error = error;
+	}
+
+	void setResults(long time, int statusCode, long firings, long traffic) {
+		this.time = time;
+		this.statusCode = statusCode;
+		this.firings = firings;
+		this.traffic = traffic;
+	}
+
+	@Override
+	public String toString() {
+		return project + "/" + network + " < " + stimulus;
+	}
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.batch;
+
+import static net.sf.orcc.OrccLaunchConstants.NO_DISPLAY;
+import static net.sf.orcc.OrccLaunchConstants.PROJECT;
+import static net.sf.orcc.OrccLaunchConstants.XDF_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.GOLDEN_REFERENCE;
+import static net.sf.orcc.simulators.SimulatorsConstants.GOLDEN_REFERENCE_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.INPUT_STIMULUS;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.simulators.slow.SlowSimulator;
+import net.sf.orcc.util.DomUtil;
+import net.sf.orcc.util.OrccLogger;
+import net.sf.orcc.util.OrccUtil;
+import net.sf.orcc.util.util.EcoreHelper;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * This class runs a list of simulation jobs on a pool of threads, and writes
+ * their results as a JUnit XML report.
+ * 
+ * <p>
+ * Each network is loaded once in a resource set shared by all the jobs, and
+ * each job simulates its own instantiated copy of the network. The
+ * instantiation reads the shared actors, so the jobs are instantiated one at
+ * a time, while the simulations themselves run concurrently. Each simulation
+ * has its own context, so that the state of the native procedures (the files
+ * read by the sources, the frames compared by the displays) is not shared
+ * between jobs. The jobs are always run without display.
+ * </p>
+ * 
+ */
+public class BatchRunner {
+
+	/**
+	 * A simulator that copies its network from the networks loaded by the
+	 * runner instead of loading it.
+	 */
+	private class BatchSimulator extends SlowSimulator {
+
+		@Override
+		protected Network loadNetwork() {
+			synchronized (networks) {
+				Network network = getNetwork(project, xdfFile);
+				return prepareNetwork(EcoreUtil.copy(network));
+			}
+		}
+
+	}
+
+	private final Map<String, Network> networks;
+
+	private final Map<String, Object> options;
+
+	private final ResourceSet set;
+
+	private final int threads;
+
+	private long time;
+
+	/**
+	 * Creates a new batch runner.
+	 * 
+	 * @param options
+	 *            the simulation options shared by all the jobs
+	 * @param threads
+	 *            number of jobs run at the same time
+	 */
+	public BatchRunner(Map<String, Object> options, int threads) {
+		this.options = options;
+		this.threads = Math.max(1, threads);
+		networks = new HashMap<String, Network>();
+		set = new ResourceSetImpl();
+	}
+
+	/**
+	 * Returns the given network as loaded from its XDF file, loading it first
+	 * if needed. Must be called while holding the lock of the networks.
+	 */
+	private Network getNetwork(IProject project, String qualifiedName) {
+		String key = project.getName() + "/" + qualifiedName;
+		Network network = networks.get(key);
+		if (network == null) {
+			IFile file = OrccUtil.getFile(project, qualifiedName,
+					OrccUtil.NETWORK_SUFFIX);
+			if (file == null) {
+				throw new OrccRuntimeException("Unable to find the network "
+						+ qualifiedName + " in the project "
+						+ project.getName());
+			}
+			network = EcoreHelper.getEObject(set, file);
+
+			// loads the actors now, the copies must not modify the set
+			EcoreUtil.resolveAll(set);
+			networks.put(key, network);
+		}
+		return network;
+	}
+
+	/**
+	 * Runs the given jobs and stores their results in them.
+	 * 
+	 * @param jobs
+	 *            a list of jobs
+	 * @return the number of jobs that did not pass
+	 */
+	public int run(List<BatchJob> jobs) {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (final BatchJob job : jobs) {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					runJob(job);
+				}
+			});
+		}
+
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// wait for the remaining jobs
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		time = (System.nanoTime() - start) / 1000000;
+
+		int failed = 0;
+		for (BatchJob job : jobs) {
+			if (!job.isPassed()) {
+				failed++;
+			}
+		}
+		OrccLogger.traceln(jobs.size() + " jobs run in " + time / 1000.0
+				+ " s, " + failed + " failed");
+		return failed;
+	}
+
+	/**
+	 * Simulates the network of the given job, and stores the results of the
+	 * simulation in the job.
+	 */
+	private void runJob(BatchJob job) {
+		Map<String, Object> jobOptions = new HashMap<String, Object>(options);
+		jobOptions.put(PROJECT, job.getProject());
+		jobOptions.put(XDF_FILE, job.getNetwork());
+		jobOptions.put(INPUT_STIMULUS, job.getStimulus());
+		jobOptions.put(NO_DISPLAY, true);
+		if (job.getGoldenReference() != null) {
+			jobOptions.put(GOLDEN_REFERENCE, true);
+			jobOptions.put(GOLDEN_REFERENCE_FILE, job.getGoldenReference());
+		}
+
+		OrccLogger.traceln("Running " + job);
+		long start = System.nanoTime();
+		BatchSimulator simulator = new BatchSimulator();
+		try {
+			simulator.setOptions(jobOptions);
+			simulator.run();
+		} catch (RuntimeException e) {
+			job.setError(e);
+		}
+
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		job.setResults(elapsed, simulator.getContext().getStatusCode(),
+				simulator.getFirings(), simulator.getTraffic());
+		if (job.getError() != null) {
+			OrccLogger.warnln(job + ": error, " + job.getError().getMessage());
+		} else {
+			OrccLogger.traceln(job + ": "
+					+ (job.isPassed() ? "passed" : "failed") + " in "
+					+ elapsed / 1000.0 + " s, "
+					+ Math.round(job.getTokensPerSecond()) + " tokens/s");
+		}
+	}
+
+	/**
+	 * Writes the results of the given jobs as a JUnit XML report, with one
+	 * test case per job. The test cases record the wall time of the
+	 * simulations, and their standard output the firings and tokens per
+	 * second.
+	 * 
+	 * @param file
+	 *            the report file
+	 * @param jobs
+	 *            jobs that have been run
+	 */
+	public void writeReport(File file, List<BatchJob> jobs) {
+		Document document = DomUtil.createDocument("testsuite");
+		Element suite = document.getDocumentElement();
+		int failures = 0;
+		int errors = 0;
+		for (BatchJob job : jobs) {
+			Element testCase = document.createElement("testcase");
+			testCase.setAttribute("classname", job.getProject() + "."
+					+ job.getNetwork());
+			testCase.setAttribute("name", job.getName());
+			testCase.setAttribute("time", toSeconds(job.getTime()));
+
+			Throwable error = job.getError();
+			if (error != null) {
+				errors++;
+				Element element = document.createElement("error");
+				element.setAttribute("type", error.getClass().getName());
+				element.setAttribute("message", String.valueOf(error
+						.getMessage()));
+				StringWriter trace = new StringWriter();
+				error.printStackTrace(new PrintWriter(trace));
+				element.setTextContent(trace.toString());
+				testCase.appendChild(element);
+			} else if (!job.isPassed()) {
+				failures++;
+				Element element = document.createElement("failure");
+				element.setAttribute("message", "status code "
+						+ job.getStatusCode());
+				testCase.appendChild(element);
+			}
+
+			Element out = document.createElement("system-out");
+			out.setTextContent("firings: " + job.getFirings() + "\ntokens: "
+					+ job.getTraffic() + "\ntokens/s: "
+					+ Math.round(job.getTokensPerSecond()) + "\n");
+			testCase.appendChild(out);
+			suite.appendChild(testCase);
+		}
+
+		suite.setAttribute("name", "simulation");
+		suite.setAttribute("tests", String.valueOf(jobs.size()));
+		suite.setAttribute("failures", String.valueOf(failures));
+		suite.setAttribute("errors", String.valueOf(errors));
+		suite.setAttribute("time", toSeconds(time));
+
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(file);
+			DomUtil.writeDocument(os, document);
+		} catch (IOException e) {
+			throw new OrccRuntimeException("Unable to write the report "
+					+ file, e);
+		} finally {
+			if (os != null) {
+				try {
+					os.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	private String toSeconds(long millis) {
+		return String.format(Locale.US, "%.3f", millis / 1000.0);
+	}
+
+}
@@ -0,0 +1,1274 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.jit;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Action;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.ir.Arg;
+import net.sf.orcc.ir.ArgByVal;
+import net.sf.orcc.ir.Block;
+import net.sf.orcc.ir.BlockBasic;
+import net.sf.orcc.ir.BlockIf;
+import net.sf.orcc.ir.BlockWhile;
+import net.sf.orcc.ir.ExprBinary;
+import net.sf.orcc.ir.ExprBool;
+import net.sf.orcc.ir.ExprInt;
+import net.sf.orcc.ir.ExprString;
+import net.sf.orcc.ir.ExprUnary;
+import net.sf.orcc.ir.ExprVar;
+import net.sf.orcc.ir.Expression;
+import net.sf.orcc.ir.InstAssign;
+import net.sf.orcc.ir.InstCall;
+import net.sf.orcc.ir.InstLoad;
+import net.sf.orcc.ir.InstReturn;
+import net.sf.orcc.ir.InstStore;
+import net.sf.orcc.ir.Instruction;
+import net.sf.orcc.ir.OpBinary;
+import net.sf.orcc.ir.OpUnary;
+import net.sf.orcc.ir.Param;
+import net.sf.orcc.ir.Procedure;
+import net.sf.orcc.ir.Type;
+import net.sf.orcc.ir.TypeList;
+import net.sf.orcc.ir.Var;
+import net.sf.orcc.ir.util.ExpressionPrinter;
+import net.sf.orcc.util.OrccUtil;
+
+import org.eclipse.emf.ecore.EObject;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * This class compiles the actions of an actor, and the procedures they call,
+ * to the JVM bytecode of a subclass of {@link CompiledActor}.
+ * 
+ * <p>
+ * Integers and booleans are computed with <code>long</code> values. A width
+ * analysis gives the number of bits needed by each value, so that the
+ * operations that depend on more than the 64 least significant bits of their
+ * operands (comparisons, divisions, right shifts) are only compiled when
+ * these operands are known to fit in a long. When this cannot be proved, or
+ * when the actor uses floats, strings (except in calls), phi instructions,
+ * recursive procedures or integers larger than 64 bits, {@link #compile()}
+ * throws an {@link OrccRuntimeException} and the actor must be interpreted.
+ * </p>
+ */
+public class ActorCompiler implements Opcodes {
+
+	/**
+	 * This class loader defines the class generated for one actor.
+	 */
+	private static class Loader extends ClassLoader {
+
+		public Loader() {
+			super(CompiledActor.class.getClassLoader());
+		}
+
+		public Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+
+	}
+
+	private static final String BASE = "net/sf/orcc/simulators/jit/CompiledActor";
+
+	/**
+	 * Width of the values that are only known modulo 2<sup>64</sup>.
+	 */
+	private static final int INF = 1 << 16;
+
+	/**
+	 * Number of passes of the width analysis after which the widths that still
+	 * grow are set to {@link #INF}.
+	 */
+	private static final int MAX_PASSES = 16;
+
+	private static String descriptor(Type type) {
+		if (type.isList()) {
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < type.getDimensions().size(); i++) {
+				builder.append('[');
+			}
+			Type eltType = ((TypeList) type).getInnermostType();
+			if (eltType.isBool()) {
+				builder.append('Z');
+			} else if (eltType.isInt() || eltType.isUint()) {
+				int size = eltType.getSizeInBits();
+				if (size <= 8) {
+					builder.append('B');
+				} else if (size <= 16) {
+					builder.append('S');
+				} else if (size <= 32) {
+					builder.append('I');
+				} else if (size <= 64) {
+					builder.append('J');
+				} else {
+					throw unsupported("list of " + size + "-bit integers");
+				}
+			} else {
+				throw unsupported("list of " + eltType);
+			}
+			return builder.toString();
+		} else if (type.isBool()
+				|| (type.isInt() || type.isUint())
+				&& type.getSizeInBits() <= 64) {
+			return "J";
+		}
+		throw unsupported("type " + type);
+	}
+
+	private static String print(Expression expr) {
+		return new ExpressionPrinter().doSwitch(expr).toString();
+	}
+
+	private static int saturate(long width) {
+		return (int) Math.min(width, INF);
+	}
+
+	private static OrccRuntimeException unsupported(String construct) {
+		return new OrccRuntimeException(construct + " is not supported");
+	}
+
+	/**
+	 * Returns the number of bits of the two's complement representation of
+	 * the values of the given type.
+	 */
+	private static int width(Type type) {
+		if (type.isBool()) {
+			return 2;
+		} else if (type.isInt()) {
+			return type.getSizeInBits();
+		} else if (type.isUint()) {
+			return type.getSizeInBits() + 1;
+		}
+		return INF;
+	}
+
+	private final Actor actor;
+
+	private final Map<Procedure, Set<Procedure>> callees;
+
+	private String className;
+
+	private ClassWriter cw;
+
+	private final Map<Var, Integer> fieldIndexes;
+
+	private final List<Var> fields;
+
+	private MethodVisitor mv;
+
+	private final Map<Procedure, Integer> nativeIndexes;
+
+	private final List<Procedure> natives;
+
+	private final List<Procedure> procedures;
+
+	private int resultSlot;
+
+	private final Map<Procedure, Integer> returnWidths;
+
+	private Map<Var, Integer> slots;
+
+	private final Map<Var, Integer> widths;
+
+	/**
+	 * Creates a compiler for the given actor.
+	 * 
+	 * @param actor
+	 *            an actor
+	 */
+	public ActorCompiler(Actor actor) {
+		this.actor = actor;
+		callees = new HashMap<Procedure, Set<Procedure>>();
+		fieldIndexes = new HashMap<Var, Integer>();
+		fields = new ArrayList<Var>();
+		nativeIndexes = new HashMap<Procedure, Integer>();
+		natives = new ArrayList<Procedure>();
+		procedures = new ArrayList<Procedure>();
+		returnWidths = new HashMap<Procedure, Integer>();
+		widths = new HashMap<Var, Integer>();
+	}
+
+	private void addProcedure(Procedure procedure) {
+		if (!callees.containsKey(procedure)) {
+			callees.put(procedure, new LinkedHashSet<Procedure>());
+			procedures.add(procedure);
+		}
+	}
+
+	/**
+	 * Pushes the values of the given arguments in a new array of objects.
+	 */
+	private void boxArguments(List<Arg> args, boolean print) {
+		List<Expression> values = new ArrayList<Expression>();
+		for (Arg arg : args) {
+			if (arg.isByVal()) {
+				values.add(((ArgByVal) arg).getValue());
+			} else if (!print) {
+				throw unsupported("argument by reference");
+			}
+		}
+
+		pushInt(values.size());
+		mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+		for (int i = 0; i < values.size(); i++) {
+			Expression value = values.get(i);
+			mv.visitInsn(DUP);
+			pushInt(i);
+			if (value.isExprString()) {
+				String str = ((ExprString) value).getValue();
+				mv.visitLdcInsn(print ? OrccUtil.getUnescapedString(str) : str);
+			} else if (isList(value)) {
+				loadRef(((ExprVar) value).getUse().getVariable());
+			} else if (isBoolean(value)) {
+				expression(value);
+				mv.visitInsn(L2I);
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean",
+						"valueOf", "(Z)Ljava/lang/Boolean;", false);
+			} else {
+				requireExact(value);
+				expression(value);
+				mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf",
+						"(J)Ljava/lang/Long;", false);
+			}
+			mv.visitInsn(AASTORE);
+		}
+	}
+
+	/**
+	 * Compiles the given blocks. A return instruction with a value ends the
+	 * procedure at the top level, and only ends the list of blocks otherwise,
+	 * like in the interpreter.
+	 */
+	private void blocks(List<? extends Block> blocks, Label exit, boolean top) {
+		for (Block block : blocks) {
+			if (block.isBlockBasic()) {
+				for (Instruction instr : ((BlockBasic) block)
+						.getInstructions()) {
+					instruction(instr, exit, top);
+				}
+			} else if (block.isBlockIf()) {
+				BlockIf blockIf = (BlockIf) block;
+				Label elseLabel = new Label();
+				Label thenEnd = new Label();
+				Label elseEnd = new Label();
+				branchIfFalse(blockIf.getCondition(), elseLabel);
+				blocks(blockIf.getThenBlocks(), thenEnd, false);
+				mv.visitLabel(thenEnd);
+				mv.visitJumpInsn(GOTO, elseEnd);
+				mv.visitLabel(elseLabel);
+				blocks(blockIf.getElseBlocks(), elseEnd, false);
+				mv.visitLabel(elseEnd);
+				blocks(Collections.singletonList(blockIf.getJoinBlock()),
+						exit, top);
+			} else if (block.isBlockWhile()) {
+				BlockWhile blockWhile = (BlockWhile) block;
+				Label loop = new Label();
+				Label joinEnd = new Label();
+				Label bodyEnd = new Label();
+				Label done = new Label();
+				mv.visitLabel(loop);
+				blocks(Collections.singletonList(blockWhile.getJoinBlock()),
+						joinEnd, false);
+				mv.visitLabel(joinEnd);
+				branchIfFalse(blockWhile.getCondition(), done);
+				blocks(blockWhile.getBlocks(), bodyEnd, false);
+				mv.visitLabel(bodyEnd);
+				mv.visitJumpInsn(GOTO, loop);
+				mv.visitLabel(done);
+			} else {
+				throw unsupported("block " + block.eClass().getName());
+			}
+		}
+	}
+
+	private void branchIfFalse(Expression condition, Label label) {
+		if (condition.isExprBinary()) {
+			ExprBinary expr = (ExprBinary) condition;
+			int opcode = getJump(expr.getOp(), true);
+			if (opcode != 0) {
+				compare(expr);
+				mv.visitJumpInsn(opcode, label);
+				return;
+			}
+		}
+
+		expression(condition);
+		mv.visitInsn(LCONST_0);
+		mv.visitInsn(LCMP);
+		mv.visitJumpInsn(IFEQ, label);
+	}
+
+	private void call(InstCall call) {
+		Procedure procedure = call.getProcedure();
+		if (call.isPrint()) {
+			mv.visitVarInsn(ALOAD, 0);
+			boxArguments(call.getArguments(), true);
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "print",
+					"([Ljava/lang/Object;)V", false);
+		} else if (procedure.isNative()) {
+			Integer index = nativeIndexes.get(procedure);
+			mv.visitVarInsn(ALOAD, 0);
+			pushInt(index);
+			boxArguments(call.getArguments(), false);
+			mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "callNative",
+					"(I[Ljava/lang/Object;)Ljava/lang/Object;", false);
+			if (call.hasResult()) {
+				mv.visitMethodInsn(INVOKESTATIC, BASE, "toLong",
+						"(Ljava/lang/Object;)J", false);
+				storeScalar(call.getTarget().getVariable());
+			} else {
+				mv.visitInsn(POP);
+			}
+		} else {
+			List<Param> params = procedure.getParameters();
+			List<Arg> args = call.getArguments();
+			if (params.size() != args.size()) {
+				throw unsupported("call with a wrong number of arguments");
+			}
+
+			mv.visitVarInsn(ALOAD, 0);
+			for (int i = 0; i < args.size(); i++) {
+				Var param = params.get(i).getVariable();
+				if (!args.get(i).isByVal()) {
+					throw unsupported("argument by reference");
+				}
+				Expression value = ((ArgByVal) args.get(i)).getValue();
+				if (param.getType().isList()) {
+					if (!isList(value)) {
+						throw unsupported("list argument " + print(value));
+					}
+					Var var = ((ExprVar) value).getUse().getVariable();
+					if (!descriptor(var.getType()).equals(
+							descriptor(param.getType()))) {
+						throw unsupported("list argument of another type");
+					}
+					loadRef(var);
+				} else {
+					expression(value);
+				}
+			}
+
+			mv.visitMethodInsn(INVOKESPECIAL, className,
+					"p" + procedures.indexOf(procedure),
+					getDescriptor(procedure), false);
+			if (call.hasResult()) {
+				storeScalar(call.getTarget().getVariable());
+			} else {
+				mv.visitInsn(POP2);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the given procedure does not call itself, directly or not.
+	 */
+	private void checkRecursion(Procedure procedure, Set<Procedure> path,
+			Set<Procedure> done) {
+		if (done.contains(procedure)) {
+			return;
+		}
+		if (!path.add(procedure)) {
+			throw unsupported("recursive procedure " + procedure.getName());
+		}
+		for (Procedure callee : callees.get(procedure)) {
+			checkRecursion(callee, path, done);
+		}
+		path.remove(procedure);
+		done.add(procedure);
+	}
+
+	/**
+	 * Clips the long on top of the stack to the given type, like the
+	 * interpreter does when a value is assigned or stored.
+	 */
+	private void clip(Type type) {
+		if (!type.isInt() && !type.isUint()) {
+			return;
+		}
+
+		int size = type.getSizeInBits();
+		if (size < 64) {
+			if (type.isInt()) {
+				pushInt(64 - size);
+				mv.visitInsn(LSHL);
+				pushInt(64 - size);
+				mv.visitInsn(LSHR);
+			} else {
+				mv.visitLdcInsn(Long.valueOf((1L << size) - 1));
+				mv.visitInsn(LAND);
+			}
+		}
+	}
+
+	/**
+	 * Collects the procedures called by the actions of the actor, and the
+	 * native procedures they call.
+	 */
+	private void collectProcedures() {
+		for (Action action : actor.getActions()) {
+			addProcedure(action.getScheduler());
+			addProcedure(action.getBody());
+		}
+
+		for (int i = 0; i < procedures.size(); i++) {
+			Procedure procedure = procedures.get(i);
+			Iterator<EObject> it = procedure.eAllContents();
+			while (it.hasNext()) {
+				EObject obj = it.next();
+				if (!(obj instanceof InstCall) || ((InstCall) obj).isPrint()) {
+					continue;
+				}
+
+				Procedure callee = ((InstCall) obj).getProcedure();
+				if (callee.isNative()) {
+					if (!nativeIndexes.containsKey(callee)) {
+						nativeIndexes.put(callee, natives.size());
+						natives.add(callee);
+					}
+				} else {
+					addProcedure(callee);
+					callees.get(procedure).add(callee);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pushes the comparison of the operands of the given expression.
+	 */
+	private void compare(ExprBinary expr) {
+		requireExact(expr.getE1());
+		requireExact(expr.getE2());
+		expression(expr.getE1());
+		expression(expr.getE2());
+		mv.visitInsn(LCMP);
+	}
+
+	/**
+	 * Compiles the actor.
+	 * 
+	 * @return a new instance of the compiled actor
+	 * @throws OrccRuntimeException
+	 *             if the actor uses a construct that is not supported
+	 */
+	public CompiledActor compile() {
+		collectProcedures();
+
+		Set<Procedure> done = new HashSet<Procedure>();
+		for (Procedure procedure : procedures) {
+			checkRecursion(procedure, new HashSet<Procedure>(), done);
+		}
+
+		computeWidths();
+
+		className = "net/sf/orcc/simulators/jit/gen/"
+				+ actor.getName().replaceAll("\\W", "_");
+		try {
+			byte[] bytes = generate();
+			Class<?> clasz = new Loader().define(className.replace('/', '.'),
+					bytes);
+			CompiledActor compiled = (CompiledActor) clasz.newInstance();
+			compiled.setReferences(fields, natives);
+			return compiled;
+		} catch (OrccRuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new OrccRuntimeException("Could not compile actor "
+					+ actor.getName(), e);
+		} catch (LinkageError e) {
+			throw new OrccRuntimeException("Could not load compiled actor "
+					+ actor.getName(), e);
+		}
+	}
+
+	/**
+	 * Computes the widths of the variables that are defined without being
+	 * clipped, i.e. by loads, parameter passing and procedure results.
+	 */
+	private void computeWidths() {
+		boolean changed = true;
+		for (int pass = 1; changed; pass++) {
+			changed = false;
+			for (Procedure procedure : procedures) {
+				Iterator<EObject> it = procedure.eAllContents();
+				while (it.hasNext()) {
+					EObject obj = it.next();
+					if (obj instanceof Instruction) {
+						changed |= computeWidths(procedure,
+								(Instruction) obj, pass);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Widens the variables defined by the given instruction, and returns
+	 * <code>true</code> if a width has changed.
+	 */
+	private boolean computeWidths(Procedure procedure, Instruction instr,
+			int pass) {
+		boolean changed = false;
+		if (instr.isInstLoad()) {
+			InstLoad load = (InstLoad) instr;
+			Var target = load.getTarget().getVariable();
+			Var source = load.getSource().getVariable();
+			if (!target.getType().isList()) {
+				int width = load.getIndexes().isEmpty() ? getWidth(source)
+						: width(((TypeList) source.getType())
+								.getInnermostType());
+				changed = widen(target, width, pass);
+			}
+		} else if (instr.isInstCall()) {
+			InstCall call = (InstCall) instr;
+			Procedure callee = call.getProcedure();
+			if (call.isPrint() || callee.isNative()) {
+				return false;
+			}
+
+			List<Arg> args = call.getArguments();
+			List<Param> params = callee.getParameters();
+			for (int i = 0; i < args.size() && i < params.size(); i++) {
+				Var param = params.get(i).getVariable();
+				Arg arg = args.get(i);
+				if (arg.isByVal() && !param.getType().isList()) {
+					Expression value = ((ArgByVal) arg).getValue();
+					changed |= widen(param, width(value), pass);
+				}
+			}
+
+			if (call.hasResult()) {
+				changed |= widen(call.getTarget().getVariable(),
+						getReturnWidth(callee), pass);
+			}
+		} else if (instr.isInstReturn()) {
+			Expression value = ((InstReturn) instr).getValue();
+			if (value != null && !isList(value)) {
+				int width = width(value);
+				if (width > getReturnWidth(procedure)) {
+					returnWidths.put(procedure, pass > MAX_PASSES ? INF
+							: width);
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Compiles the given expression, which pushes a long.
+	 */
+	private void expression(Expression expr) {
+		if (expr.isExprBool()) {
+			mv.visitInsn(((ExprBool) expr).isValue() ? LCONST_1 : LCONST_0);
+		} else if (expr.isExprInt()) {
+			BigInteger value = ((ExprInt) expr).getValue();
+			if (value.bitLength() > 63) {
+				throw unsupported("integer literal " + value);
+			}
+			mv.visitLdcInsn(Long.valueOf(value.longValue()));
+		} else if (expr.isExprVar()) {
+			Var var = ((ExprVar) expr).getUse().getVariable();
+			if (var.getType().isList()) {
+				throw unsupported("list " + var.getName() + " as a value");
+			}
+			loadScalar(var);
+		} else if (expr.isExprUnary()) {
+			ExprUnary unary = (ExprUnary) expr;
+			switch (unary.getOp()) {
+			case BITNOT:
+				expression(unary.getExpr());
+				mv.visitLdcInsn(Long.valueOf(-1));
+				mv.visitInsn(LXOR);
+				break;
+			case LOGIC_NOT:
+				expression(unary.getExpr());
+				mv.visitInsn(LCONST_1);
+				mv.visitInsn(LXOR);
+				break;
+			case MINUS:
+				expression(unary.getExpr());
+				mv.visitInsn(LNEG);
+				break;
+			case NUM_ELTS:
+				if (!isList(unary.getExpr())) {
+					throw unsupported(print(expr));
+				}
+				loadRef(((ExprVar) unary.getExpr()).getUse().getVariable());
+				mv.visitInsn(ARRAYLENGTH);
+				mv.visitInsn(I2L);
+				break;
+			default:
+				throw unsupported(print(expr));
+			}
+		} else if (expr.isExprBinary()) {
+			binary((ExprBinary) expr);
+		} else {
+			throw unsupported("expression " + print(expr));
+		}
+	}
+
+	private void binary(ExprBinary expr) {
+		Expression e1 = expr.getE1();
+		Expression e2 = expr.getE2();
+		OpBinary op = expr.getOp();
+		int jump = getJump(op, false);
+		if (jump != 0) {
+			// boolean value of a comparison
+			Label isTrue = new Label();
+			Label end = new Label();
+			compare(expr);
+			mv.visitJumpInsn(jump, isTrue);
+			mv.visitInsn(LCONST_0);
+			mv.visitJumpInsn(GOTO, end);
+			mv.visitLabel(isTrue);
+			mv.visitInsn(LCONST_1);
+			mv.visitLabel(end);
+			return;
+		}
+
+		switch (op) {
+		case BITAND:
+		case LOGIC_AND:
+			operands(e1, e2, LAND);
+			break;
+		case BITOR:
+		case LOGIC_OR:
+			operands(e1, e2, LOR);
+			break;
+		case BITXOR:
+			operands(e1, e2, LXOR);
+			break;
+		case MINUS:
+			operands(e1, e2, LSUB);
+			break;
+		case PLUS:
+			operands(e1, e2, LADD);
+			break;
+		case TIMES:
+			operands(e1, e2, LMUL);
+			break;
+		case DIV:
+		case DIV_INT:
+			requireExact(e1);
+			requireExact(e2);
+			operands(e1, e2, LDIV);
+			break;
+		case MOD:
+			requireExact(e1);
+			requireExact(e2);
+			expression(e1);
+			expression(e2);
+			mv.visitMethodInsn(INVOKESTATIC, BASE, "mod", "(JJ)J", false);
+			break;
+		case SHIFT_LEFT:
+			requireExact(e2);
+			shift(e1, e2, LSHL, "shiftLeft");
+			break;
+		case SHIFT_RIGHT:
+			requireExact(e1);
+			requireExact(e2);
+			shift(e1, e2, LSHR, "shiftRight");
+			break;
+		default:
+			throw unsupported("operator " + op.getText());
+		}
+	}
+
+	/**
+	 * Generates the class of the compiled actor.
+	 */
+	private byte[] generate() {
+		cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC | ACC_SUPER, className, null, BASE, null);
+
+		mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "()V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for (int i = 0; i < procedures.size(); i++) {
+			generateProcedure(procedures.get(i), i);
+		}
+
+		List<Procedure> schedulers = new ArrayList<Procedure>();
+		List<Procedure> bodies = new ArrayList<Procedure>();
+		for (Action action : actor.getActions()) {
+			schedulers.add(action.getScheduler());
+			bodies.add(action.getBody());
+		}
+		generateDispatch("scheduler", "(I)J", schedulers);
+		generateDispatch("body", "(I)V", bodies);
+
+		// fields are known once the procedures have been generated
+		for (int i = 0; i < fields.size(); i++) {
+			cw.visitField(ACC_PUBLIC, "f" + i,
+					descriptor(fields.get(i).getType()), null, null)
+					.visitEnd();
+		}
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Generates a method that calls the procedure of the action whose index
+	 * is given.
+	 */
+	private void generateDispatch(String name, String desc,
+			List<Procedure> targets) {
+		boolean isVoid = desc.endsWith("V");
+		mv = cw.visitMethod(ACC_PROTECTED, name, desc, null, null);
+		mv.visitCode();
+
+		Label dflt = new Label();
+		if (!targets.isEmpty()) {
+			Label[] labels = new Label[targets.size()];
+			for (int i = 0; i < labels.length; i++) {
+				labels[i] = new Label();
+			}
+
+			mv.visitVarInsn(ILOAD, 1);
+			mv.visitTableSwitchInsn(0, labels.length - 1, dflt, labels);
+			for (int i = 0; i < labels.length; i++) {
+				Procedure procedure = targets.get(i);
+				mv.visitLabel(labels[i]);
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitMethodInsn(INVOKESPECIAL, className,
+						"p" + procedures.indexOf(procedure), "()J", false);
+				if (isVoid) {
+					mv.visitInsn(POP2);
+					mv.visitInsn(RETURN);
+				} else {
+					mv.visitInsn(LRETURN);
+				}
+			}
+		}
+
+		mv.visitLabel(dflt);
+		if (isVoid) {
+			mv.visitInsn(RETURN);
+		} else {
+			mv.visitInsn(LCONST_0);
+			mv.visitInsn(LRETURN);
+		}
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * Generates the method of the given procedure. Its parameters and local
+	 * variables are JVM local variables, the other variables are fields.
+	 */
+	private void generateProcedure(Procedure procedure, int index) {
+		mv = cw.visitMethod(ACC_PRIVATE, "p" + index,
+				getDescriptor(procedure), null, null);
+		mv.visitCode();
+
+		slots = new HashMap<Var, Integer>();
+		int slot = 1;
+		for (Param param : procedure.getParameters()) {
+			Var var = param.getVariable();
+			slots.put(var, slot);
+			slot += var.getType().isList() ? 1 : 2;
+		}
+
+		// like the interpreter, allocates local lists at each call
+		for (Var local : procedure.getLocals()) {
+			if (slots.containsKey(local)) {
+				continue;
+			}
+
+			slots.put(local, slot);
+			Type type = local.getType();
+			if (type.isList()) {
+				String desc = descriptor(type);
+				List<Integer> dimensions = type.getDimensions();
+				for (int size : dimensions) {
+					pushInt(size);
+				}
+				if (dimensions.size() == 1) {
+					newArray(desc.charAt(1));
+				} else {
+					mv.visitMultiANewArrayInsn(desc, dimensions.size());
+				}
+				mv.visitVarInsn(ASTORE, slot);
+				slot++;
+			} else {
+				descriptor(type);
+				mv.visitInsn(LCONST_0);
+				mv.visitVarInsn(LSTORE, slot);
+				slot += 2;
+			}
+		}
+
+		resultSlot = slot;
+		mv.visitInsn(LCONST_0);
+		mv.visitVarInsn(LSTORE, resultSlot);
+
+		Label end = new Label();
+		blocks(procedure.getBlocks(), end, true);
+		mv.visitLabel(end);
+		mv.visitVarInsn(LLOAD, resultSlot);
+		mv.visitInsn(LRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private String getDescriptor(Procedure procedure) {
+		StringBuilder builder = new StringBuilder("(");
+		for (Param param : procedure.getParameters()) {
+			builder.append(descriptor(param.getVariable().getType()));
+		}
+		Type returnType = procedure.getReturnType();
+		if (returnType != null && !returnType.isVoid()) {
+			descriptor(returnType);
+			if (returnType.isList()) {
+				throw unsupported("procedure returning a list");
+			}
+		}
+		return builder.append(")J").toString();
+	}
+
+	private int getField(Var var) {
+		Integer index = fieldIndexes.get(var);
+		if (index == null) {
+			descriptor(var.getType());
+			index = fields.size();
+			fieldIndexes.put(var, index);
+			fields.add(var);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the jump instruction taken when the comparison with the given
+	 * operator is true, or false if <code>negate</code> is set, or 0 if the
+	 * operator is not a comparison.
+	 */
+	private int getJump(OpBinary op, boolean negate) {
+		switch (op) {
+		case EQ:
+			return negate ? IFNE : IFEQ;
+		case NE:
+			return negate ? IFEQ : IFNE;
+		case LT:
+			return negate ? IFGE : IFLT;
+		case LE:
+			return negate ? IFGT : IFLE;
+		case GT:
+			return negate ? IFLE : IFGT;
+		case GE:
+			return negate ? IFLT : IFGE;
+		default:
+			return 0;
+		}
+	}
+
+	private int getReturnWidth(Procedure procedure) {
+		Integer width = returnWidths.get(procedure);
+		if (width == null) {
+			Type type = procedure.getReturnType();
+			return type == null || type.isVoid() ? 0 : width(type);
+		}
+		return width;
+	}
+
+	private int getWidth(Var var) {
+		Integer width = widths.get(var);
+		return width == null ? width(var.getType()) : width;
+	}
+
+	private void instruction(Instruction instr, Label exit, boolean top) {
+		if (instr.isInstAssign()) {
+			InstAssign assign = (InstAssign) instr;
+			Var target = assign.getTarget().getVariable();
+			expression(assign.getValue());
+			clip(target.getType());
+			storeScalar(target);
+		} else if (instr.isInstLoad()) {
+			InstLoad load = (InstLoad) instr;
+			Var target = load.getTarget().getVariable();
+			Var source = load.getSource().getVariable();
+			List<Expression> indexes = load.getIndexes();
+			if (!indexes.isEmpty()) {
+				loadElement(source, indexes);
+				storeScalar(target);
+			} else if (target.getType().isList()) {
+				if (!descriptor(target.getType()).equals(
+						descriptor(source.getType()))) {
+					throw unsupported("load of a list of another type");
+				}
+				loadRef(source);
+				storeRef(target);
+			} else {
+				loadScalar(source);
+				storeScalar(target);
+			}
+		} else if (instr.isInstStore()) {
+			InstStore store = (InstStore) instr;
+			Var target = store.getTarget().getVariable();
+			List<Expression> indexes = store.getIndexes();
+			if (indexes.isEmpty()) {
+				expression(store.getValue());
+				clip(target.getType());
+				storeScalar(target);
+			} else {
+				String desc = loadArray(target, indexes);
+				expression(store.getValue());
+				clip(((TypeList) target.getType()).getInnermostType());
+				switch (desc.charAt(1)) {
+				case 'Z':
+				case 'B':
+					mv.visitInsn(L2I);
+					mv.visitInsn(BASTORE);
+					break;
+				case 'S':
+					mv.visitInsn(L2I);
+					mv.visitInsn(SASTORE);
+					break;
+				case 'I':
+					mv.visitInsn(L2I);
+					mv.visitInsn(IASTORE);
+					break;
+				default:
+					mv.visitInsn(LASTORE);
+				}
+			}
+		} else if (instr.isInstCall()) {
+			call((InstCall) instr);
+		} else if (instr.isInstReturn()) {
+			Expression value = ((InstReturn) instr).getValue();
+			if (value != null) {
+				expression(value);
+				if (top) {
+					mv.visitVarInsn(LSTORE, resultSlot);
+				} else {
+					// the value is ignored by the enclosing block
+					mv.visitInsn(POP2);
+				}
+				mv.visitJumpInsn(GOTO, exit);
+			}
+		} else {
+			throw unsupported("instruction " + instr.eClass().getName());
+		}
+	}
+
+	private boolean isBoolean(Expression expr) {
+		if (expr.isExprBool()) {
+			return true;
+		} else if (expr.isExprVar()) {
+			return ((ExprVar) expr).getUse().getVariable().getType().isBool();
+		} else if (expr.isExprBinary()) {
+			OpBinary op = ((ExprBinary) expr).getOp();
+			return getJump(op, false) != 0 || op == OpBinary.LOGIC_AND
+					|| op == OpBinary.LOGIC_OR;
+		} else if (expr.isExprUnary()) {
+			return ((ExprUnary) expr).getOp() == OpUnary.LOGIC_NOT;
+		}
+		return false;
+	}
+
+	private boolean isList(Expression expr) {
+		return expr.isExprVar()
+				&& ((ExprVar) expr).getUse().getVariable().getType().isList();
+	}
+
+	/**
+	 * Pushes the innermost array of the given list and the last index, and
+	 * returns the descriptor of this array.
+	 */
+	private String loadArray(Var var, List<Expression> indexes) {
+		String desc = descriptor(var.getType());
+		if (indexes.size() != desc.lastIndexOf('[') + 1) {
+			throw unsupported("partial indexing of " + var.getName());
+		}
+
+		loadRef(var);
+		for (int i = 0; i < indexes.size(); i++) {
+			// truncating to an int is exact modulo 2^64, like intValue()
+			expression(indexes.get(i));
+			mv.visitInsn(L2I);
+			if (i < indexes.size() - 1) {
+				mv.visitInsn(AALOAD);
+				desc = desc.substring(1);
+			}
+		}
+		return desc;
+	}
+
+	/**
+	 * Pushes an element of the given list, extended like
+	 * ValueUtil.get(Type, Object, Object...) does.
+	 */
+	private void loadElement(Var var, List<Expression> indexes) {
+		Type type = ((TypeList) var.getType()).getInnermostType();
+		String desc = loadArray(var, indexes);
+		switch (desc.charAt(1)) {
+		case 'Z':
+			mv.visitInsn(BALOAD);
+			mv.visitInsn(I2L);
+			break;
+		case 'B':
+			mv.visitInsn(BALOAD);
+			if (type.isUint()) {
+				pushInt(0xFF);
+				mv.visitInsn(IAND);
+			}
+			mv.visitInsn(I2L);
+			break;
+		case 'S':
+			mv.visitInsn(SALOAD);
+			if (type.isUint()) {
+				pushInt(0xFFFF);
+				mv.visitInsn(IAND);
+			}
+			mv.visitInsn(I2L);
+			break;
+		case 'I':
+			mv.visitInsn(IALOAD);
+			mv.visitInsn(I2L);
+			if (type.isUint()) {
+				mv.visitLdcInsn(Long.valueOf(0xFFFFFFFFL));
+				mv.visitInsn(LAND);
+			}
+			break;
+		default:
+			mv.visitInsn(LALOAD);
+		}
+	}
+
+	private void loadRef(Var var) {
+		Integer slot = slots.get(var);
+		if (slot == null) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, className, "f" + getField(var),
+					descriptor(var.getType()));
+		} else {
+			mv.visitVarInsn(ALOAD, slot);
+		}
+	}
+
+	private void loadScalar(Var var) {
+		if (var.getType().isList()) {
+			throw unsupported("list " + var.getName() + " as a value");
+		}
+
+		Integer slot = slots.get(var);
+		if (slot == null) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, className, "f" + getField(var), "J");
+		} else {
+			mv.visitVarInsn(LLOAD, slot);
+		}
+	}
+
+	private void newArray(char elementType) {
+		switch (elementType) {
+		case 'Z':
+			mv.visitIntInsn(NEWARRAY, T_BOOLEAN);
+			break;
+		case 'B':
+			mv.visitIntInsn(NEWARRAY, T_BYTE);
+			break;
+		case 'S':
+			mv.visitIntInsn(NEWARRAY, T_SHORT);
+			break;
+		case 'I':
+			mv.visitIntInsn(NEWARRAY, T_INT);
+			break;
+		default:
+			mv.visitIntInsn(NEWARRAY, T_LONG);
+		}
+	}
+
+	private void operands(Expression e1, Expression e2, int opcode) {
+		expression(e1);
+		expression(e2);
+		mv.visitInsn(opcode);
+	}
+
+	private void pushInt(int value) {
+		if (value >= -1 && value <= 5) {
+			mv.visitInsn(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(SIPUSH, value);
+		} else {
+			mv.visitLdcInsn(Integer.valueOf(value));
+		}
+	}
+
+	/**
+	 * Checks that the values of the given expression fit in a long, i.e. that
+	 * its long value is exact and not only known modulo 2<sup>64</sup>.
+	 */
+	private void requireExact(Expression expr) {
+		if (width(expr) > 64) {
+			throw unsupported("operand " + print(expr)
+					+ " that may not fit in 64 bits");
+		}
+	}
+
+	private void shift(Expression e1, Expression e2, int opcode,
+			String helper) {
+		expression(e1);
+		if (e2.isExprInt() && ((ExprInt) e2).getValue().signum() >= 0
+				&& ((ExprInt) e2).getValue().bitLength() < 6) {
+			pushInt(((ExprInt) e2).getIntValue());
+			mv.visitInsn(opcode);
+		} else {
+			expression(e2);
+			mv.visitMethodInsn(INVOKESTATIC, BASE, helper, "(JJ)J", false);
+		}
+	}
+
+	private void storeRef(Var var) {
+		Integer slot = slots.get(var);
+		if (slot == null) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitInsn(SWAP);
+			mv.visitFieldInsn(PUTFIELD, className, "f" + getField(var),
+					descriptor(var.getType()));
+		} else {
+			mv.visitVarInsn(ASTORE, slot);
+		}
+	}
+
+	private void storeScalar(Var var) {
+		if (var.getType().isList()) {
+			throw unsupported("scalar stored in list " + var.getName());
+		}
+
+		Integer slot = slots.get(var);
+		if (slot == null) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitInsn(DUP_X2);
+			mv.visitInsn(POP);
+			mv.visitFieldInsn(PUTFIELD, className, "f" + getField(var), "J");
+		} else {
+			mv.visitVarInsn(LSTORE, slot);
+		}
+	}
+
+	private boolean widen(Var var, int width, int pass) {
+		if (width > getWidth(var)) {
+			widths.put(var, pass > MAX_PASSES ? INF : width);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of bits of the two's complement representation of
+	 * the values of the given expression, or {@link #INF} if these values are
+	 * only known modulo 2<sup>64</sup>.
+	 */
+	private int width(Expression expr) {
+		if (expr.isExprBool()) {
+			return 2;
+		} else if (expr.isExprInt()) {
+			return ((ExprInt) expr).getValue().bitLength() + 1;
+		} else if (expr.isExprVar()) {
+			return getWidth(((ExprVar) expr).getUse().getVariable());
+		} else if (expr.isExprUnary()) {
+			ExprUnary unary = (ExprUnary) expr;
+			switch (unary.getOp()) {
+			case BITNOT:
+				return width(unary.getExpr());
+			case MINUS:
+				return saturate(width(unary.getExpr()) + 1L);
+			case NUM_ELTS:
+				return 32;
+			default:
+				return 2;
+			}
+		} else if (expr.isExprBinary()) {
+			ExprBinary binary = (ExprBinary) expr;
+			int w1 = width(binary.getE1());
+			int w2 = width(binary.getE2());
+			switch (binary.getOp()) {
+			case BITAND:
+			case BITOR:
+			case BITXOR:
+				return Math.max(w1, w2);
+			case DIV:
+			case DIV_INT:
+				return saturate(w1 + 1L);
+			case MINUS:
+			case PLUS:
+				return saturate(Math.max(w1, w2) + 1L);
+			case MOD:
+				return w2;
+			case SHIFT_LEFT:
+				return saturate((long) w1 + maxDistance(binary.getE2(), w2));
+			case SHIFT_RIGHT:
+				return w1;
+			case TIMES:
+				return saturate((long) w1 + w2);
+			default:
+				return 2;
+			}
+		}
+		return INF;
+	}
+
+	/**
+	 * Returns the largest distance of a left shift by the given expression.
+	 */
+	private int maxDistance(Expression distance, int width) {
+		if (distance.isExprInt()) {
+			return saturate(((ExprInt) distance).getValue().min(
+					BigInteger.valueOf(INF)).longValue());
+		} else if (width < 16) {
+			return (1 << (width - 1)) - 1;
+		}
+		return INF;
+	}
+
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.jit;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Action;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.FSM;
+import net.sf.orcc.df.Pattern;
+import net.sf.orcc.df.Port;
+import net.sf.orcc.df.State;
+import net.sf.orcc.df.Transition;
+import net.sf.orcc.graph.Edge;
+import net.sf.orcc.ir.Procedure;
+import net.sf.orcc.ir.Type;
+import net.sf.orcc.ir.TypeList;
+import net.sf.orcc.ir.Var;
+import net.sf.orcc.ir.util.ValueUtil;
+import net.sf.orcc.simulators.slow.NativeProcedure;
+import net.sf.orcc.simulators.slow.SimulatorFifo;
+import net.sf.orcc.simulators.slow.SimulatorFifoBuffer;
+import net.sf.orcc.util.Attribute;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class is the base class of the actors compiled to JVM bytecode by
+ * {@link ActorCompiler}. The generated subclass implements the scheduler and
+ * the body of each action, while this class selects the next action exactly
+ * as {@link net.sf.orcc.simulators.slow.ConnectedActorInterpreter} does, with
+ * the FSM compiled to transition tables.
+ * 
+ * <p>
+ * Integers and booleans are represented by <code>long</code> values in the
+ * generated code, and lists by the same Java arrays as the interpreter. The
+ * variables that are not local to a procedure are public fields of the
+ * generated class named <code>f&lt;i&gt;</code>, where <i>i</i> is the index
+ * of the variable in the list given by the compiler.
+ * </p>
+ */
+public abstract class CompiledActor {
+
+	/**
+	 * This class holds the FIFOs, the arrays and the number of tokens of the
+	 * ports of a pattern.
+	 */
+	private static class PortTable {
+
+		private final Object[] arrays;
+
+		private final SimulatorFifoBuffer[] buffers;
+
+		private final boolean[] partial;
+
+		private final SimulatorFifo[] fifos;
+
+		private final int[] numTokens;
+
+		private final Type[] types;
+
+		public PortTable(Pattern pattern, Map<Var, Object> arrays,
+				boolean output) {
+			int size = pattern.getPorts().size();
+			this.arrays = new Object[size];
+			buffers = new SimulatorFifoBuffer[size];
+			partial = new boolean[size];
+			fifos = new SimulatorFifo[size];
+			numTokens = new int[size];
+			types = new Type[size];
+
+			int i = 0;
+			for (Port port : pattern.getPorts()) {
+				Var var = pattern.getVariable(port);
+				TypeList type = (TypeList) var.getType();
+				Object array = arrays.get(var);
+				if (array == null) {
+					array = ValueUtil.createArray(type);
+					arrays.put(var, array);
+				}
+
+				this.arrays[i] = array;
+				numTokens[i] = pattern.getNumTokens(port);
+				types[i] = type.getInnermostType();
+				partial[i] = Array.getLength(array) > numTokens[i];
+
+				Attribute attr = port.getAttribute("fifo");
+				if (attr != null) {
+					if (output) {
+						buffers[i] = (SimulatorFifoBuffer) attr
+								.getObjectValue();
+					} else {
+						fifos[i] = (SimulatorFifo) attr.getObjectValue();
+					}
+				}
+				i++;
+			}
+		}
+
+	}
+
+	/**
+	 * Clears the given one-dimensional array of primitive values.
+	 * 
+	 * @param array
+	 *            an array
+	 */
+	private static void clear(Object array) {
+		if (array instanceof byte[]) {
+			Arrays.fill((byte[]) array, (byte) 0);
+		} else if (array instanceof short[]) {
+			Arrays.fill((short[]) array, (short) 0);
+		} else if (array instanceof int[]) {
+			Arrays.fill((int[]) array, 0);
+		} else if (array instanceof long[]) {
+			Arrays.fill((long[]) array, 0);
+		} else if (array instanceof boolean[]) {
+			Arrays.fill((boolean[]) array, false);
+		}
+	}
+
+	/**
+	 * Returns the remainder of the Euclidean division of a by b, like
+	 * {@link java.math.BigInteger#mod(java.math.BigInteger)}.
+	 * 
+	 * @param a
+	 *            the dividend
+	 * @param b
+	 *            the divisor
+	 * @return a mod b, in [0; b[
+	 */
+	protected static long mod(long a, long b) {
+		if (b <= 0) {
+			throw new ArithmeticException("BigInteger: modulus not positive");
+		}
+		long r = a % b;
+		return r < 0 ? r + b : r;
+	}
+
+	/**
+	 * Returns a shifted left by n bits, modulo 2<sup>64</sup>.
+	 * 
+	 * @param a
+	 *            a value
+	 * @param n
+	 *            a distance, truncated to an int like the interpreter does
+	 * @return a &lt;&lt; n
+	 */
+	protected static long shiftLeft(long a, long n) {
+		int distance = (int) n;
+		if (distance < 0) {
+			throw new OrccRuntimeException("negative shift distance " + n);
+		}
+		return distance >= 64 ? 0 : a << distance;
+	}
+
+	/**
+	 * Returns a shifted right by n bits, with sign extension.
+	 * 
+	 * @param a
+	 *            a value
+	 * @param n
+	 *            a distance, truncated to an int like the interpreter does
+	 * @return a &gt;&gt; n
+	 */
+	protected static long shiftRight(long a, long n) {
+		int distance = (int) n;
+		if (distance < 0) {
+			throw new OrccRuntimeException("negative shift distance " + n);
+		}
+		return a >> Math.min(distance, 63);
+	}
+
+	/**
+	 * Converts a value returned by a native procedure or held by a variable
+	 * of the interpreter to a <code>long</code>.
+	 * 
+	 * @param value
+	 *            a Boolean or a Number
+	 * @return the value as a long
+	 */
+	protected static long toLong(Object value) {
+		if (value instanceof Boolean) {
+			return ((Boolean) value) ? 1 : 0;
+		} else if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		return 0;
+	}
+
+	private int[] actionsOutsideFsm;
+
+	private String name;
+
+	private NativeProcedure[] natives;
+
+	private List<Procedure> nativeProcedures;
+
+	private JitActorInterpreter interpreter;
+
+	private PortTable[] inputs;
+
+	private boolean outputFull;
+
+	private PortTable[] outputs;
+
+	private PortTable[] peeks;
+
+	private int state;
+
+	private State[] states;
+
+	private int[][] transitionActions;
+
+	private int[][] transitionTargets;
+
+	private List<Var> variables;
+
+	/**
+	 * Calls the native procedure at the given index.
+	 * 
+	 * @param index
+	 *            index of the procedure in the list given by the compiler
+	 * @param args
+	 *            boxed arguments
+	 * @return the value returned by the procedure
+	 */
+	protected final Object callNative(int index, Object[] args) {
+		NativeProcedure procedure = natives[index];
+		if (procedure == null) {
+			procedure = interpreter.getNativeProcedure(nativeProcedures
+					.get(index));
+			natives[index] = procedure;
+		}
+		return procedure.invoke(args, true);
+	}
+
+	/**
+	 * Executes the body of the action at the given index.
+	 * 
+	 * @param action
+	 *            index of an action in the list of actions of the actor
+	 */
+	protected abstract void body(int action);
+
+	private void execute(int action) {
+		PortTable table = inputs[action];
+		for (int i = 0; i < table.fifos.length; i++) {
+			Object array = table.arrays[i];
+			if (table.partial[i]) {
+				// the interpreter reads tokens in a new array
+				clear(array);
+			}
+			table.fifos[i].read(table.types[i], array, table.numTokens[i]);
+		}
+
+		// the body may not write every output token
+		table = outputs[action];
+		for (int i = 0; i < table.arrays.length; i++) {
+			clear(table.arrays[i]);
+		}
+
+		body(action);
+
+		for (int i = 0; i < table.buffers.length; i++) {
+			SimulatorFifoBuffer buffer = table.buffers[i];
+			if (buffer != null) {
+				buffer.write(table.types[i], table.arrays[i],
+						table.numTokens[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the current state of the FSM of the actor.
+	 * 
+	 * @return the current state, or <code>null</code> if the actor has no FSM
+	 */
+	public State getFsmState() {
+		return states == null ? null : states[state];
+	}
+
+	private int getNextAction() {
+		for (int action : actionsOutsideFsm) {
+			if (isSchedulable(action) && hasRoom(action)) {
+				return action;
+			}
+		}
+
+		if (states != null) {
+			int[] actions = transitionActions[state];
+			for (int i = 0; i < actions.length; i++) {
+				int action = actions[i];
+				if (isSchedulable(action)) {
+					if (hasRoom(action)) {
+						state = transitionTargets[state][i];
+						return action;
+					}
+					return -1;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	private boolean hasRoom(int action) {
+		PortTable table = outputs[action];
+		for (int i = 0; i < table.buffers.length; i++) {
+			SimulatorFifoBuffer buffer = table.buffers[i];
+			if (buffer != null && !buffer.hasRoom(table.numTokens[i])) {
+				outputFull = true;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Initializes this compiled actor from the given interpreter, which must
+	 * have been initialized: the fields receive the current values of the
+	 * variables, and the FIFOs are read from the ports of the actor.
+	 * 
+	 * @param interpreter
+	 *            the interpreter of the actor
+	 * @param currentState
+	 *            the current FSM state of the interpreter
+	 */
+	void initialize(JitActorInterpreter interpreter, State currentState) {
+		this.interpreter = interpreter;
+		Actor actor = interpreter.getActor();
+		name = actor.getName();
+		natives = new NativeProcedure[nativeProcedures.size()];
+
+		List<Action> actions = actor.getActions();
+		int numActions = actions.size();
+		inputs = new PortTable[numActions];
+		outputs = new PortTable[numActions];
+		peeks = new PortTable[numActions];
+		Map<Var, Object> arrays = new HashMap<Var, Object>();
+		for (int i = 0; i < numActions; i++) {
+			Action action = actions.get(i);
+			inputs[i] = new PortTable(action.getInputPattern(), arrays, false);
+			peeks[i] = new PortTable(action.getPeekPattern(), arrays, false);
+			outputs[i] = new PortTable(action.getOutputPattern(), arrays,
+					true);
+		}
+
+		List<Action> outside = actor.getActionsOutsideFsm();
+		actionsOutsideFsm = new int[outside.size()];
+		for (int i = 0; i < actionsOutsideFsm.length; i++) {
+			actionsOutsideFsm[i] = actions.indexOf(outside.get(i));
+		}
+
+		if (actor.hasFsm()) {
+			FSM fsm = actor.getFsm();
+			List<State> fsmStates = fsm.getStates();
+			states = fsmStates.toArray(new State[fsmStates.size()]);
+			transitionActions = new int[states.length][];
+			transitionTargets = new int[states.length][];
+			for (int i = 0; i < states.length; i++) {
+				List<Edge> edges = states[i].getOutgoing();
+				transitionActions[i] = new int[edges.size()];
+				transitionTargets[i] = new int[edges.size()];
+				int j = 0;
+				for (Edge edge : edges) {
+					Transition transition = (Transition) edge;
+					transitionActions[i][j] = actions.indexOf(transition
+							.getAction());
+					transitionTargets[i][j] = fsmStates.indexOf(transition
+							.getTarget());
+					j++;
+				}
+			}
+			state = fsmStates.indexOf(currentState);
+		}
+
+		try {
+			for (int i = 0; i < variables.size(); i++) {
+				Var var = variables.get(i);
+				Object value = arrays.get(var);
+				if (value == null) {
+					value = interpreter.getValue(var);
+				}
+
+				Field field = getClass().getField("f" + i);
+				if (field.getType() == Long.TYPE) {
+					field.setLong(this, toLong(value));
+				} else {
+					field.set(this, value);
+				}
+			}
+		} catch (Exception e) {
+			throw new OrccRuntimeException("Could not initialize the "
+					+ "variables of the compiled actor " + name, e);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the last call to {@link #schedule()} found
+	 * an action that could not fire because one of its output FIFOs was full.
+	 *
+	 * @return <code>true</code> if the actor is blocked on an output
+	 */
+	boolean isOutputFull() {
+		return outputFull;
+	}
+
+	private boolean isSchedulable(int action) {
+		PortTable table = inputs[action];
+		for (int i = 0; i < table.fifos.length; i++) {
+			SimulatorFifo fifo = table.fifos[i];
+			if (fifo == null || !fifo.hasTokens(table.numTokens[i])) {
+				return false;
+			}
+		}
+
+		table = peeks[action];
+		for (int i = 0; i < table.fifos.length; i++) {
+			Object array = table.arrays[i];
+			if (table.partial[i]) {
+				clear(array);
+			}
+			table.fifos[i].peek(table.types[i], array, table.numTokens[i]);
+		}
+
+		return scheduler(action) != 0;
+	}
+
+	/**
+	 * Prints the given values, like the print procedure of the interpreter.
+	 * 
+	 * @param values
+	 *            strings and boxed values
+	 */
+	protected final void print(Object[] values) {
+		for (Object value : values) {
+			OrccLogger.noticeRaw(String.valueOf(value));
+		}
+	}
+
+	/**
+	 * Schedules the next schedulable action, if any.
+	 * 
+	 * @return <code>true</code> if an action was fired
+	 */
+	public final boolean schedule() {
+		outputFull = false;
+		int action = getNextAction();
+		if (action < 0) {
+			return false;
+		}
+		execute(action);
+		return true;
+	}
+
+	/**
+	 * Evaluates the scheduler of the action at the given index.
+	 * 
+	 * @param action
+	 *            index of an action in the list of actions of the actor
+	 * @return a non-zero value if the action is schedulable
+	 */
+	protected abstract long scheduler(int action);
+
+	/**
+	 * Sets the variables and the native procedures referenced by the
+	 * generated code.
+	 * 
+	 * @param variables
+	 *            the variables held by the fields of the generated class
+	 * @param nativeProcedures
+	 *            the native procedures called by the generated code
+	 */
+	void setReferences(List<Var> variables, List<Procedure> nativeProcedures) {
+		this.variables = variables;
+		this.nativeProcedures = nativeProcedures;
+	}
+
+	/**
+	 * Writes the values of the fields back to the given state variables in the
+	 * interpreter, so that it holds the current state of the actor.
+	 * 
+	 * @param stateVars
+	 *            the state variables of the actor
+	 * @param primitiveValues
+	 *            <code>true</code> if the interpreter represents integers
+	 *            with long values
+	 */
+	void storeVariables(List<Var> stateVars, boolean primitiveValues) {
+		try {
+			for (int i = 0; i < variables.size(); i++) {
+				Var var = variables.get(i);
+				if (!stateVars.contains(var)) {
+					continue;
+				}
+
+				Field field = getClass().getField("f" + i);
+				Object value;
+				if (field.getType() != Long.TYPE) {
+					value = field.get(this);
+				} else if (var.getType().isBool()) {
+					value = field.getLong(this) != 0;
+				} else if (primitiveValues) {
+					value = field.getLong(this);
+				} else {
+					value = BigInteger.valueOf(field.getLong(this));
+				}
+				interpreter.setValue(var, value);
+			}
+		} catch (Exception e) {
+			throw new OrccRuntimeException("Could not read the variables of "
+					+ "the compiled actor " + name, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "compiled actor " + name;
+	}
+
+}
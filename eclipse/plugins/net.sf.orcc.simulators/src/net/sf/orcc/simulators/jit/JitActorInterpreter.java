@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.jit;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.State;
+import net.sf.orcc.ir.Procedure;
+import net.sf.orcc.simulators.slow.ConnectedActorInterpreter;
+import net.sf.orcc.simulators.slow.NativeProcedure;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class defines an interpreter that compiles its actor to JVM bytecode
+ * with {@link ActorCompiler} once it has been initialized. The actors that
+ * cannot be compiled are interpreted, and the initialize actions are always
+ * interpreted.
+ * 
+ * <p>
+ * Once compiled, the state of the actor is held by the compiled class: the
+ * values of the variables held by the interpreter are not updated anymore,
+ * only its FSM state is, until {@link #synchronizeVariables()} is called.
+ * </p>
+ */
+public class JitActorInterpreter extends ConnectedActorInterpreter {
+
+	private CompiledActor compiled;
+
+	/**
+	 * Creates an interpreter that compiles the given actor.
+	 * 
+	 * @param actor
+	 *            the actor to compile
+	 */
+	public JitActorInterpreter(Actor actor) {
+		super(actor);
+	}
+
+	@Override
+	protected NativeProcedure getNativeProcedure(Procedure procedure) {
+		// visible to the compiled actor
+		return super.getNativeProcedure(procedure);
+	}
+
+	@Override
+	public void initialize() {
+		super.initialize();
+
+		try {
+			compiled = new ActorCompiler(actor).compile();
+			compiled.initialize(this, fsmState);
+		} catch (OrccRuntimeException e) {
+			compiled = null;
+			OrccLogger.debugln("Actor " + actor.getName()
+					+ " is interpreted: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the actor has been compiled.
+	 * 
+	 * @return <code>true</code> if the actor runs as JVM bytecode
+	 */
+	public boolean isCompiled() {
+		return compiled != null;
+	}
+
+	@Override
+	public void restoreState(State state) {
+		super.restoreState(state);
+		if (compiled != null) {
+			compiled.initialize(this, fsmState);
+		}
+	}
+
+	@Override
+	public boolean schedule() {
+		if (compiled == null) {
+			return super.schedule();
+		}
+
+		try {
+			if (compiled.schedule()) {
+				fsmState = compiled.getFsmState();
+				fired();
+				return true;
+			}
+			blocked(compiled.isOutputFull());
+			return false;
+		} catch (OrccRuntimeException e) {
+			throw new OrccRuntimeException("Runtime exception thrown by actor "
+					+ actor.getName(), e);
+		} catch (IndexOutOfBoundsException e) {
+			throw new OrccRuntimeException("Runtime exception thrown by actor "
+					+ actor.getName(), new OrccRuntimeException(
+					"Array Index Out of Bound", e));
+		}
+	}
+
+	@Override
+	public void synchronizeVariables() {
+		if (compiled != null) {
+			compiled.storeVariables(actor.getStateVars(), primitiveValues);
+		}
+		super.synchronizeVariables();
+	}
+
+	@Override
+	public String toString() {
+		return (compiled == null ? "interpreter" : "compiled interpreter")
+				+ " for actor " + actor.getName();
+	}
+
+}
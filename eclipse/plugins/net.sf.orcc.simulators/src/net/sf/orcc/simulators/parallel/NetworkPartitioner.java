@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.parallel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.graph.Vertex;
+import net.sf.orcc.ir.Instruction;
+import net.sf.orcc.util.OrccLogger;
+
+import org.eclipse.emf.ecore.EObject;
+
+/**
+ * This class splits the actors of a flattened network into partitions that are
+ * run by the workers of the parallel simulator. Partitions are either given by
+ * a mapping of the actors on components, or computed by balancing the static
+ * weight of the actors (see {@link #getWeight(Actor)}) between partitions.
+ * 
+ */
+public class NetworkPartitioner {
+
+	private final Network network;
+
+	private final Map<Actor, Integer> weights;
+
+	/**
+	 * Creates a partitioner for the given flattened network.
+	 * 
+	 * @param network
+	 *            a flattened network
+	 */
+	public NetworkPartitioner(Network network) {
+		this.network = network;
+		weights = new HashMap<Actor, Integer>();
+		for (Actor actor : getActors()) {
+			weights.put(actor, getWeight(actor));
+		}
+	}
+
+	/**
+	 * Returns the weight of the given actor, which is the number of
+	 * instructions it contains. This is a rough estimation of the cost of the
+	 * actor, but it does not need to run the network.
+	 * 
+	 * @param actor
+	 *            an actor
+	 * @return the weight of the actor, at least 1
+	 */
+	public static int getWeight(Actor actor) {
+		int weight = 1;
+		Iterator<EObject> it = actor.eAllContents();
+		while (it.hasNext()) {
+			if (it.next() instanceof Instruction) {
+				weight++;
+			}
+		}
+		return weight;
+	}
+
+	/**
+	 * Adds the given actor to the partition with the lowest load.
+	 */
+	private void addToLightest(List<List<Actor>> partitions, int[] loads,
+			Actor actor) {
+		int lightest = 0;
+		for (int i = 1; i < loads.length; i++) {
+			if (loads[i] < loads[lightest]) {
+				lightest = i;
+			}
+		}
+
+		partitions.get(lightest).add(actor);
+		loads[lightest] += weights.get(actor);
+	}
+
+	private List<Actor> getActors() {
+		List<Actor> actors = new ArrayList<Actor>();
+		for (Vertex vertex : network.getChildren()) {
+			Actor actor = vertex.getAdapter(Actor.class);
+			if (actor != null) {
+				actors.add(actor);
+			}
+		}
+		return actors;
+	}
+
+	/**
+	 * Returns at most <code>number</code> partitions whose total weights are as
+	 * close as possible. Actors are assigned by decreasing weight to the
+	 * lightest partition (longest processing time first).
+	 * 
+	 * @param number
+	 *            the maximum number of partitions
+	 * @return a list of non-empty partitions
+	 */
+	public List<List<Actor>> getBalancedPartitions(int number) {
+		List<Actor> actors = getActors();
+		int size = Math.max(1, Math.min(number, actors.size()));
+
+		List<List<Actor>> partitions = new ArrayList<List<Actor>>(size);
+		for (int i = 0; i < size; i++) {
+			partitions.add(new ArrayList<Actor>());
+		}
+
+		Collections.sort(actors, new Comparator<Actor>() {
+			@Override
+			public int compare(Actor a1, Actor a2) {
+				return weights.get(a2).compareTo(weights.get(a1));
+			}
+		});
+
+		int[] loads = new int[size];
+		for (Actor actor : actors) {
+			addToLightest(partitions, loads, actor);
+		}
+
+		return removeEmpty(partitions);
+	}
+
+	/**
+	 * Returns one partition per component of the given mapping. The mapping
+	 * associates the name of an actor, optionally prefixed by the name of the
+	 * network, to the name of a component. Actors that are not mapped are
+	 * added to the lightest partition.
+	 * 
+	 * @param mapping
+	 *            a map from actor names to component names
+	 * @return a list of non-empty partitions, or an empty list if no actor is
+	 *         mapped
+	 */
+	public List<List<Actor>> getMappedPartitions(Map<String, String> mapping) {
+		Map<String, List<Actor>> mapped = new TreeMap<String, List<Actor>>();
+		List<Actor> unmapped = new ArrayList<Actor>();
+		for (Actor actor : getActors()) {
+			String component = mapping.get(network.getName() + "_"
+					+ actor.getName());
+			if (component == null) {
+				component = mapping.get(actor.getName());
+			}
+
+			if (component == null || component.isEmpty()) {
+				unmapped.add(actor);
+			} else {
+				List<Actor> partition = mapped.get(component);
+				if (partition == null) {
+					partition = new ArrayList<Actor>();
+					mapped.put(component, partition);
+				}
+				partition.add(actor);
+			}
+		}
+
+		List<List<Actor>> partitions = new ArrayList<List<Actor>>(
+				mapped.values());
+		if (partitions.isEmpty()) {
+			return partitions;
+		}
+
+		int[] loads = new int[partitions.size()];
+		for (int i = 0; i < loads.length; i++) {
+			for (Actor actor : partitions.get(i)) {
+				loads[i] += weights.get(actor);
+			}
+		}
+
+		for (Actor actor : unmapped) {
+			OrccLogger.warnln("The instance '" + actor.getName()
+					+ "' is not mapped.");
+			addToLightest(partitions, loads, actor);
+		}
+
+		return partitions;
+	}
+
+	private List<List<Actor>> removeEmpty(List<List<Actor>> partitions) {
+		Iterator<List<Actor>> it = partitions.iterator();
+		while (it.hasNext()) {
+			if (it.next().isEmpty()) {
+				it.remove();
+			}
+		}
+		return partitions;
+	}
+
+}
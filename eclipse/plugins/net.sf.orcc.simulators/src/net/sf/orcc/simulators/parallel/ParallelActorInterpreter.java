@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.parallel;
+
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.ir.InstCall;
+import net.sf.orcc.ir.Procedure;
+import net.sf.orcc.simulators.slow.ConnectedActorInterpreter;
+
+/**
+ * This class defines an actor interpreter that can be run concurrently with
+ * the interpreters of the other actors of the network. Actors are copied by the
+ * instantiation, and the procedures declared in units, which are shared between
+ * all the actors using them, are interpreted in frames of their own. Native
+ * procedures work on static state: calls to such procedures are serialized
+ * with a lock common to all the interpreters.
+ * 
+ */
+public class ParallelActorInterpreter extends ConnectedActorInterpreter {
+
+	private final Object sharedLock;
+
+	/**
+	 * Creates an actor interpreter dedicated to the parallel simulator.
+	 * 
+	 * @param actor
+	 *            the actor to interpret
+	 * @param sharedLock
+	 *            the lock that guards the calls to native procedures
+	 */
+	public ParallelActorInterpreter(Actor actor, Object sharedLock) {
+		super(actor);
+		this.sharedLock = sharedLock;
+	}
+
+	@Override
+	public Object caseInstCall(InstCall call) {
+		Procedure proc = call.getProcedure();
+		if (call.isPrint() || proc.isNative()) {
+			synchronized (sharedLock) {
+				return super.caseInstCall(call);
+			}
+		}
+
+		return super.caseInstCall(call);
+	}
+
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.parallel;
+
+import static net.sf.orcc.OrccLaunchConstants.MAPPING;
+import static net.sf.orcc.simulators.SimulatorsConstants.THREADS_NUMBER;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.ir.util.ActorInterpreter;
+import net.sf.orcc.simulators.slow.ConnectedActorInterpreter;
+import net.sf.orcc.simulators.slow.SlowSimulator;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class implements a simulator that fires the actors of the network in
+ * parallel. Actors are split into partitions, and each partition is scheduled
+ * round-robin by its own worker thread. FIFOs have a single writer and one
+ * reader per connection, so they can be shared between workers without lock.
+ * 
+ * <p>
+ * The simulation ends when the network is quiescent: every worker has made a
+ * complete pass over its actors without firing any of them, and no firing
+ * happened anywhere in the network since the beginning of these passes.
+ * </p>
+ * 
+ */
+public class ParallelSimulator extends SlowSimulator {
+
+	/**
+	 * This class defines a worker that schedules the actors of one partition.
+	 */
+	private class Worker implements Callable<Void> {
+
+		private final int id;
+
+		private final List<ActorInterpreter> partition;
+
+		public Worker(int id, List<ActorInterpreter> partition) {
+			this.id = id;
+			this.partition = partition;
+		}
+
+		@Override
+		public Void call() {
+			try {
+				while (!isFinished()) {
+					long seen = firings.get();
+					if (!schedulePartition() && !isFinished()) {
+						waitForFirings(seen);
+					}
+				}
+			} catch (RuntimeException e) {
+				aborted = true;
+				throw e;
+			} catch (Error e) {
+				aborted = true;
+				throw e;
+			}
+			return null;
+		}
+
+		/**
+		 * Runs every actor of the partition until it cannot fire anymore.
+		 * 
+		 * @return <code>true</code> if at least one actor has been fired
+		 */
+		private boolean schedulePartition() {
+			boolean hasExecuted = false;
+			for (ActorInterpreter interpreter : partition) {
+				int nbFiring = 0;
+				while (!isFinished() && interpreter.schedule()) {
+					nbFiring++;
+				}
+
+				if (nbFiring > 0) {
+					// published after the tokens written by the firings
+					firings.addAndGet(nbFiring);
+					hasExecuted = true;
+				}
+			}
+			return hasExecuted;
+		}
+
+		/**
+		 * Waits until another worker fires an actor, or until the network is
+		 * quiescent. The last pass over the partition started when the firing
+		 * counter was <code>seen</code> and did not fire anything.
+		 * 
+		 * @param seen
+		 *            value of the firing counter at the beginning of the pass
+		 */
+		private void waitForFirings(long seen) {
+			idleSince.set(id, seen);
+			int spins = 0;
+			while (!isFinished()) {
+				long current = firings.get();
+				if (current != seen) {
+					break;
+				}
+
+				if (isQuiescent(current)) {
+					terminated = true;
+					break;
+				}
+
+				if (spins < MAX_SPINS) {
+					spins++;
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+			}
+			idleSince.set(id, NOT_IDLE);
+		}
+
+	}
+
+	private static final int MAX_SPINS = 100;
+
+	private static final long NOT_IDLE = -1;
+
+	private static final long PARK_NANOS = 100000;
+
+	private volatile boolean aborted;
+
+	private final AtomicLong firings = new AtomicLong();
+
+	private AtomicLongArray idleSince;
+
+	private Map<String, String> mapping;
+
+	private int nbThreads;
+
+	private final Object sharedLock = new Object();
+
+	private volatile boolean terminated;
+
+	@Override
+	protected ConnectedActorInterpreter createInterpreter(Actor actor) {
+		return new ParallelActorInterpreter(actor, sharedLock);
+	}
+
+	/**
+	 * Returns the partitions of the network, from the mapping if any or else
+	 * by balancing the weight of the actors between the worker threads.
+	 * 
+	 * @param network
+	 *            a flattened network
+	 * @return a list of non-empty partitions
+	 */
+	protected List<List<Actor>> getPartitions(Network network) {
+		NetworkPartitioner partitioner = new NetworkPartitioner(network);
+		List<List<Actor>> partitions = partitioner
+				.getMappedPartitions(mapping);
+		if (partitions.isEmpty()) {
+			partitions = partitioner.getBalancedPartitions(nbThreads);
+		}
+		return partitions;
+	}
+
+	@Override
+	protected void initializeOptions() {
+		super.initializeOptions();
+
+		mapping = getAttribute(MAPPING, new HashMap<String, String>());
+
+		String threads = getAttribute(THREADS_NUMBER, "");
+		if (threads.isEmpty()) {
+			nbThreads = Runtime.getRuntime().availableProcessors();
+		} else {
+			try {
+				nbThreads = Integer.parseInt(threads.trim());
+			} catch (NumberFormatException e) {
+				throw new OrccRuntimeException("Invalid number of threads: "
+						+ threads);
+			}
+			if (nbThreads < 1) {
+				throw new OrccRuntimeException("Invalid number of threads: "
+						+ threads);
+			}
+		}
+	}
+
+	private boolean isFinished() {
+		return terminated || aborted || isStopped();
+	}
+
+	/**
+	 * Returns <code>true</code> if every worker is idle since the firing
+	 * counter had the given value. An idle worker does not fire anything until
+	 * the counter changes, so the network cannot make progress anymore.
+	 * 
+	 * @param current
+	 *            the current value of the firing counter
+	 * @return <code>true</code> if the network is quiescent
+	 */
+	private boolean isQuiescent(long current) {
+		for (int i = 0; i < idleSince.length(); i++) {
+			if (idleSince.get(i) != current) {
+				return false;
+			}
+		}
+		return firings.get() == current;
+	}
+
+	@Override
+	protected boolean supportsCheckpoints() {
+		// the workers never stop all together between two firings
+		return false;
+	}
+
+	@Override
+	protected boolean supportsStaticRegions() {
+		return false;
+	}
+
+	@Override
+	protected SimulationEndOrigin runNetwork(Network network) {
+		List<List<Actor>> partitions = getPartitions(network);
+		int size = partitions.size();
+		int nbActors = 0;
+		for (List<Actor> partition : partitions) {
+			nbActors += partition.size();
+		}
+		OrccLogger.traceln("Run " + nbActors + " actors on " + size
+				+ " thread(s)");
+
+		firings.set(0);
+		idleSince = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			idleSince.set(i, NOT_IDLE);
+		}
+		aborted = false;
+		terminated = false;
+
+		List<Worker> workers = new ArrayList<Worker>(size);
+		for (List<Actor> partition : partitions) {
+			List<ActorInterpreter> group = new ArrayList<ActorInterpreter>();
+			for (Actor actor : partition) {
+				group.add(interpreters.get(actor));
+			}
+			workers.add(new Worker(workers.size(), group));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(size);
+		try {
+			List<Future<Void>> futures = executor.invokeAll(workers);
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			aborted = true;
+			Thread.currentThread().interrupt();
+			return SimulationEndOrigin.EXTERNALSTOP;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new OrccRuntimeException("Simulation failed", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (isStopped()) {
+			return SimulationEndOrigin.EXTERNALSTOP;
+		}
+		return SimulationEndOrigin.NORMALEND;
+	}
+
+}
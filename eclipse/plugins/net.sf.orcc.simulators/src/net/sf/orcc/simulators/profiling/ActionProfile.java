@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.profiling;
+
+import net.sf.orcc.df.Action;
+import net.sf.orcc.df.Pattern;
+
+/**
+ * This class defines the profile of an action: how many times its guard was
+ * evaluated and it was fired, the time spent in its firings and the number of
+ * tokens it consumed and produced.
+ * 
+ */
+public class ActionProfile {
+
+	private final Action action;
+
+	private long cpuTime;
+
+	private long failedGuards;
+
+	private long firings;
+
+	private long maxTime = -1;
+
+	private long minTime = -1;
+
+	private final int rateIn;
+
+	private final int rateOut;
+
+	private long successfulGuards;
+
+	private long time;
+
+	private double timeSquares;
+
+	/**
+	 * Creates an empty profile of the given action.
+	 * 
+	 * @param action
+	 *            an action
+	 */
+	public ActionProfile(Action action) {
+		this.action = action;
+		rateIn = getNumTokens(action.getInputPattern());
+		rateOut = getNumTokens(action.getOutputPattern());
+	}
+
+	/**
+	 * Records a firing of the action.
+	 * 
+	 * @param wallTime
+	 *            wall-clock time of the firing, in nanoseconds
+	 * @param threadCpuTime
+	 *            CPU time of the firing, in nanoseconds
+	 */
+	void fired(long wallTime, long threadCpuTime) {
+		firings++;
+		time += wallTime;
+		timeSquares += (double) wallTime * wallTime;
+		cpuTime += threadCpuTime;
+		if (minTime < 0 || wallTime < minTime) {
+			minTime = wallTime;
+		}
+		if (wallTime > maxTime) {
+			maxTime = wallTime;
+		}
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * Returns the CPU time spent in the firings of the action.
+	 * 
+	 * @return a time in nanoseconds, 0 if the CPU time is not measurable
+	 */
+	public long getCpuTime() {
+		return cpuTime;
+	}
+
+	/**
+	 * Returns the number of times the action was not schedulable, either
+	 * because there were not enough tokens or because its guard was false.
+	 * 
+	 * @return the number of failed schedulability tests
+	 */
+	public long getFailedGuards() {
+		return failedGuards;
+	}
+
+	public long getFirings() {
+		return firings;
+	}
+
+	/**
+	 * Returns the longest firing of the action.
+	 * 
+	 * @return a time in nanoseconds, -1 if the action was never fired
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns the average time of a firing of the action.
+	 * 
+	 * @return a time in nanoseconds, 0 if the action was never fired
+	 */
+	public double getMeanTime() {
+		return firings == 0 ? 0 : (double) time / firings;
+	}
+
+	/**
+	 * Returns the shortest firing of the action.
+	 * 
+	 * @return a time in nanoseconds, -1 if the action was never fired
+	 */
+	public long getMinTime() {
+		return minTime;
+	}
+
+	public long getSuccessfulGuards() {
+		return successfulGuards;
+	}
+
+	/**
+	 * Returns the wall-clock time spent in the firings of the action.
+	 * 
+	 * @return a time in nanoseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the variance of the time of a firing of the action.
+	 * 
+	 * @return a variance in square nanoseconds
+	 */
+	public double getTimeVariance() {
+		if (firings == 0) {
+			return 0;
+		}
+		double mean = getMeanTime();
+		return timeSquares / firings - mean * mean;
+	}
+
+	public long getTokensConsumed() {
+		return firings * rateIn;
+	}
+
+	public long getTokensProduced() {
+		return firings * rateOut;
+	}
+
+	/**
+	 * Returns the total number of tokens of the given pattern.
+	 */
+	private int getNumTokens(Pattern pattern) {
+		int numTokens = 0;
+		for (int n : pattern.getNumTokensMap().values()) {
+			numTokens += n;
+		}
+		return numTokens;
+	}
+
+	/**
+	 * Records an evaluation of the schedulability of the action.
+	 * 
+	 * @param schedulable
+	 *            <code>true</code> if the action was schedulable
+	 */
+	void guardEvaluated(boolean schedulable) {
+		if (schedulable) {
+			successfulGuards++;
+		} else {
+			failedGuards++;
+		}
+	}
+
+}
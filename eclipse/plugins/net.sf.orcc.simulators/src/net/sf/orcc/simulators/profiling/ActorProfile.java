@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.orcc.df.Action;
+import net.sf.orcc.df.Actor;
+
+/**
+ * This class defines the profile of an actor instance during a simulation.
+ * The interpreter of the instance reports the evaluation of the guards of its
+ * actions, the firings of the actions, and the calls to its scheduler. Each
+ * instance has its own profile, which is only updated by the thread running
+ * the instance.
+ * 
+ */
+public class ActorProfile {
+
+	private static final ThreadMXBean threadBean = ManagementFactory
+			.getThreadMXBean();
+
+	private final Map<Action, ActionProfile> actions;
+
+	private final Actor actor;
+
+	private final boolean cpuTimeSupported;
+
+	private boolean lastFired;
+
+	private long misses;
+
+	private long switches;
+
+	private long time;
+
+	/**
+	 * Creates an empty profile of the given actor.
+	 * 
+	 * @param actor
+	 *            an actor instance
+	 */
+	public ActorProfile(Actor actor) {
+		this.actor = actor;
+		actions = new LinkedHashMap<Action, ActionProfile>();
+		for (Action action : actor.getActions()) {
+			actions.put(action, new ActionProfile(action));
+		}
+		cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+	}
+
+	/**
+	 * Records a firing of the given action.
+	 * 
+	 * @param action
+	 *            an action of the actor
+	 * @param wallTime
+	 *            wall-clock time of the firing, in nanoseconds
+	 * @param cpuTime
+	 *            CPU time of the firing, in nanoseconds
+	 */
+	public void fired(Action action, long wallTime, long cpuTime) {
+		getProfile(action).fired(wallTime, cpuTime);
+	}
+
+	/**
+	 * Returns the profiles of the actions of the actor.
+	 * 
+	 * @return the profiles of the actions, in the order of the actor
+	 */
+	public Collection<ActionProfile> getActionProfiles() {
+		return actions.values();
+	}
+
+	public Actor getActor() {
+		return actor;
+	}
+
+	/**
+	 * Returns the CPU time used by the current thread, if the JVM can measure
+	 * it.
+	 * 
+	 * @return a time in nanoseconds, or 0
+	 */
+	public long getCurrentCpuTime() {
+		return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+	}
+
+	/**
+	 * Returns the total number of firings of the actions of the actor.
+	 * 
+	 * @return a number of firings
+	 */
+	public long getFirings() {
+		long firings = 0;
+		for (ActionProfile profile : actions.values()) {
+			firings += profile.getFirings();
+		}
+		return firings;
+	}
+
+	/**
+	 * Returns the number of calls to the scheduler of the actor that did not
+	 * fire any action.
+	 * 
+	 * @return a number of calls
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the profile of the given action, which is created if the action
+	 * was not known yet (e.g. an initialize action).
+	 */
+	private ActionProfile getProfile(Action action) {
+		ActionProfile profile = actions.get(action);
+		if (profile == null) {
+			profile = new ActionProfile(action);
+			actions.put(action, profile);
+		}
+		return profile;
+	}
+
+	/**
+	 * Returns the number of times the actor started firing after a call to its
+	 * scheduler that did not fire any action.
+	 * 
+	 * @return a number of switches
+	 */
+	public long getSwitches() {
+		return switches;
+	}
+
+	/**
+	 * Returns the time spent in the scheduler of the actor, including the
+	 * evaluation of the guards and the firings.
+	 * 
+	 * @return a time in nanoseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Records an evaluation of the schedulability of the given action.
+	 * 
+	 * @param action
+	 *            an action of the actor
+	 * @param schedulable
+	 *            <code>true</code> if the action was schedulable
+	 */
+	public void guardEvaluated(Action action, boolean schedulable) {
+		getProfile(action).guardEvaluated(schedulable);
+	}
+
+	/**
+	 * Records a call to the scheduler of the actor.
+	 * 
+	 * @param fired
+	 *            <code>true</code> if an action was fired
+	 * @param wallTime
+	 *            wall-clock time of the call, in nanoseconds
+	 */
+	public void scheduled(boolean fired, long wallTime) {
+		time += wallTime;
+		if (!fired) {
+			misses++;
+		} else if (!lastFired) {
+			switches++;
+		}
+		lastFired = fired;
+	}
+
+}
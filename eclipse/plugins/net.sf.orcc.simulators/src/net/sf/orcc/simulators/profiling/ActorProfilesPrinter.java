@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.profiling;
+
+import java.util.Collection;
+import java.util.Locale;
+
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Connection;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.simulators.slow.SimulatorFifo;
+import net.sf.orcc.util.Attribute;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * This class prints the profiles of the actors of a simulated network. The
+ * XML profile has the same shape as the one saved by the C runtime when
+ * profiling (see <code>save_profiling</code>), so that it can be used for the
+ * mapping of the actors, except that times are in nanoseconds instead of clock
+ * cycles. The CSV profile has one line per action.
+ * 
+ */
+public class ActorProfilesPrinter {
+
+	private final Network network;
+
+	private final Collection<ActorProfile> profiles;
+
+	/**
+	 * Creates a printer of the given profiles.
+	 * 
+	 * @param network
+	 *            the simulated network
+	 * @param profiles
+	 *            the profiles of the actors of the network
+	 */
+	public ActorProfilesPrinter(Network network,
+			Collection<ActorProfile> profiles) {
+		this.network = network;
+		this.profiles = profiles;
+	}
+
+	/**
+	 * Returns the qualified name of the class of the given actor, like the C
+	 * back-end does.
+	 */
+	private String getActorClass(Actor actor) {
+		IFile file = actor.getFile();
+		if (file == null) {
+			return "";
+		}
+		return file.getProjectRelativePath().removeFirstSegments(1)
+				.removeFileExtension().toString().replace("/", ".");
+	}
+
+	/**
+	 * Returns the profiles as CSV, with one line per action.
+	 * 
+	 * @return the content of a CSV file
+	 */
+	public CharSequence getCsvContent() {
+		StringBuilder builder = new StringBuilder(
+				"actor;action;firings;guards passed;guards failed;"
+						+ "time (ns);cpu time (ns);tokens consumed;"
+						+ "tokens produced\n");
+		for (ActorProfile profile : profiles) {
+			for (ActionProfile action : profile.getActionProfiles()) {
+				builder.append(profile.getActor().getName()).append(';')
+						.append(action.getAction().getName()).append(';')
+						.append(action.getFirings()).append(';')
+						.append(action.getSuccessfulGuards()).append(';')
+						.append(action.getFailedGuards()).append(';')
+						.append(action.getTime()).append(';')
+						.append(action.getCpuTime()).append(';')
+						.append(action.getTokensConsumed()).append(';')
+						.append(action.getTokensProduced()).append('\n');
+			}
+		}
+		return builder;
+	}
+
+	/**
+	 * Returns the profiles as XML, with the workloads of the actors, actions
+	 * and connections of the network.
+	 * 
+	 * @return the content of an XML file
+	 */
+	public CharSequence getXmlContent() {
+		double totalTime = 0;
+		for (ActorProfile profile : profiles) {
+			totalTime += profile.getTime();
+		}
+		// avoids divisions by zero, workloads are 0 (or 1) anyway
+		totalTime = Math.max(totalTime, 1);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		builder.append("<network id=\"").append(network.getSimpleName())
+				.append("\">\n");
+
+		for (ActorProfile profile : profiles) {
+			long actionsTime = 0;
+			for (ActionProfile action : profile.getActionProfiles()) {
+				actionsTime += action.getTime();
+			}
+
+			Actor actor = profile.getActor();
+			builder.append("  <actor id=\"").append(actor.getName())
+					.append("\" workload=\"")
+					.append((int) (profile.getTime() / totalTime * 10000) + 1)
+					.append("\" schedulerWorkload=\"")
+					.append(format("%.3f", (profile.getTime() - actionsTime)
+							/ totalTime * 10000))
+					.append("\" actor-class=\"").append(getActorClass(actor))
+					.append("\" firings=\"").append(profile.getFirings())
+					.append("\" switches=\"").append(profile.getSwitches())
+					.append("\" misses=\"").append(profile.getMisses())
+					.append("\">\n");
+
+			for (ActionProfile action : profile.getActionProfiles()) {
+				printAction(builder, action, totalTime);
+			}
+
+			builder.append("  </actor>\n");
+		}
+
+		long totalTraffic = 0;
+		for (Connection connection : network.getConnections()) {
+			totalTraffic += getTraffic(connection);
+		}
+		totalTraffic = Math.max(totalTraffic, 1);
+
+		for (Connection connection : network.getConnections()) {
+			builder.append("  <Connection src=\"")
+					.append(connection.getSource().getLabel())
+					.append("\" dst=\"")
+					.append(connection.getTarget().getLabel())
+					.append("\" workload=\"")
+					.append((int) ((float) getTraffic(connection)
+							/ totalTraffic * 10000) + 1).append("\"/>\n");
+		}
+
+		builder.append("</network>\n");
+		return builder;
+	}
+
+	private String format(String format, double value) {
+		return String.format(Locale.US, format, value);
+	}
+
+	/**
+	 * Returns the number of tokens that went through the given connection.
+	 */
+	private long getTraffic(Connection connection) {
+		Attribute attribute = connection.getAttribute("fifo");
+		if (attribute == null) {
+			return 0;
+		}
+		return ((SimulatorFifo) attribute.getObjectValue()).getTraffic();
+	}
+
+	/**
+	 * Prints the profile of the given action.
+	 */
+	private void printAction(StringBuilder builder, ActionProfile action,
+			double totalTime) {
+		builder.append("    <action id=\"")
+				.append(action.getAction().getName())
+				.append("\" workload=\"")
+				.append(format("%.3f", action.getTime() / totalTime * 10000))
+				.append('"');
+
+		if (action.getFirings() > 0) {
+			double mean = action.getMeanTime();
+			builder.append(" clockcycles=\"").append(format("%.0f", mean))
+					.append('"');
+			if (action.getMinTime() != mean) {
+				builder.append(" clockcycles-min=\"")
+						.append(action.getMinTime()).append('"');
+			}
+			if (action.getMaxTime() != mean) {
+				builder.append(" clockcycles-max=\"")
+						.append(action.getMaxTime()).append('"');
+			}
+			builder.append(" clockcycles-variance=\"")
+					.append(format("%.1f", action.getTimeVariance()))
+					.append("\" firings=\"").append(action.getFirings())
+					.append('"');
+		}
+
+		builder.append(" guards-passed=\"")
+				.append(action.getSuccessfulGuards())
+				.append("\" guards-failed=\"")
+				.append(action.getFailedGuards())
+				.append("\" cpu-time=\"").append(action.getCpuTime())
+				.append("\" tokens-consumed=\"")
+				.append(action.getTokensConsumed())
+				.append("\" tokens-produced=\"")
+				.append(action.getTokensProduced()).append("\"/>\n");
+	}
+
+}
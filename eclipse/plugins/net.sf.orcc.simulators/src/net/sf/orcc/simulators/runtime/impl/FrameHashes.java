@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.runtime.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class defines a file of frame hashes. Each line of such a file holds
+ * the size of a frame and a CRC-32 of each of its Y, U and V planes, so that
+ * a decoded sequence can be checked against a few bytes per frame instead of
+ * a full golden YUV file. A frame hash file is either recorded, or loaded and
+ * compared frame after frame.
+ * 
+ */
+public class FrameHashes {
+
+	/**
+	 * First line of a frame hash file.
+	 */
+	public static final String HEADER = "# Orcc frame hashes";
+
+	/**
+	 * Creates a new frame hash file with the given name.
+	 * 
+	 * @param fileName
+	 *            name of the file to record
+	 * @return a frame hash file open for writing
+	 * @throws IOException
+	 */
+	public static FrameHashes create(String fileName) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
+		writer.write(HEADER);
+		writer.newLine();
+		return new FrameHashes(writer, null);
+	}
+
+	/**
+	 * Returns <code>true</code> if the given file is a frame hash file.
+	 * 
+	 * @param fileName
+	 *            name of a file
+	 * @return <code>true</code> if the file starts with {@link #HEADER}
+	 */
+	public static boolean isFrameHashes(String fileName) {
+		try {
+			BufferedReader reader = new BufferedReader(
+					new FileReader(fileName));
+			try {
+				return HEADER.equals(reader.readLine());
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Loads the frame hash file with the given name.
+	 * 
+	 * @param fileName
+	 *            name of a frame hash file
+	 * @return a frame hash file open for comparison
+	 * @throws IOException
+	 */
+	public static FrameHashes load(String fileName) throws IOException {
+		List<String> hashes = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			// skips the header
+			reader.readLine();
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					hashes.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return new FrameHashes(null, hashes);
+	}
+
+	private final CRC32 crc = new CRC32();
+
+	private int frameNumber;
+
+	private final List<String> hashes;
+
+	private final BufferedWriter writer;
+
+	private FrameHashes(BufferedWriter writer, List<String> hashes) {
+		this.writer = writer;
+		this.hashes = hashes;
+	}
+
+	/**
+	 * Closes this file.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Compares the given frame with the next frame of this file. When all the
+	 * frames of the file have been compared, comparison starts over with the
+	 * first frame, like with a golden YUV file.
+	 * 
+	 * @param pictureBufferY
+	 *            Y buffer
+	 * @param pictureBufferU
+	 *            U buffer
+	 * @param pictureBufferV
+	 *            V buffer
+	 * @param width
+	 *            width of the picture
+	 * @param height
+	 *            height of the picture
+	 * @return <code>true</code> if the frame has the expected hash
+	 */
+	public boolean compare(byte[] pictureBufferY, byte[] pictureBufferU,
+			byte[] pictureBufferV, int width, int height) {
+		String expected = hashes.get(frameNumber);
+		frameNumber = (frameNumber + 1) % hashes.size();
+		return expected.equals(hash(pictureBufferY, pictureBufferU,
+				pictureBufferV, width, height));
+	}
+
+	/**
+	 * Returns the number of frames of this file.
+	 * 
+	 * @return the number of frames recorded or loaded
+	 */
+	public int getNumFrames() {
+		return writer == null ? hashes.size() : frameNumber;
+	}
+
+	/**
+	 * Returns the hash line of the given frame.
+	 */
+	private String hash(byte[] pictureBufferY, byte[] pictureBufferU,
+			byte[] pictureBufferV, int width, int height) {
+		int sizeY = width * height;
+		int sizeUV = sizeY / 4;
+		return width + "x" + height + " " + hash(pictureBufferY, sizeY) + " "
+				+ hash(pictureBufferU, sizeUV) + " "
+				+ hash(pictureBufferV, sizeUV);
+	}
+
+	/**
+	 * Returns the CRC-32 of the first <code>size</code> bytes of the given
+	 * plane, as 8 hexadecimal digits.
+	 */
+	private String hash(byte[] plane, int size) {
+		crc.reset();
+		crc.update(plane, 0, Math.min(size, plane.length));
+		String value = Long.toHexString(crc.getValue());
+		return "00000000".substring(value.length()) + value;
+	}
+
+	/**
+	 * Sets the number of the next frame to compare, modulo the number of
+	 * frames of this file.
+	 * 
+	 * @param frameNumber
+	 *            a frame number
+	 */
+	public void seek(int frameNumber) {
+		this.frameNumber = hashes.isEmpty() ? 0 : frameNumber % hashes.size();
+	}
+
+	/**
+	 * Records the hash of the given frame in this file.
+	 * 
+	 * @param pictureBufferY
+	 *            Y buffer
+	 * @param pictureBufferU
+	 *            U buffer
+	 * @param pictureBufferV
+	 *            V buffer
+	 * @param width
+	 *            width of the picture
+	 * @param height
+	 *            height of the picture
+	 * @throws IOException
+	 */
+	public void record(byte[] pictureBufferY, byte[] pictureBufferU,
+			byte[] pictureBufferV, int width, int height) throws IOException {
+		writer.write(hash(pictureBufferY, pictureBufferU, pictureBufferV,
+				width, height));
+		writer.newLine();
+		writer.flush();
+		frameNumber++;
+	}
+
+}
@@ -29,6 +29,7 @@
 
 package net.sf.orcc.simulators.runtime.impl;
 
+import net.sf.orcc.simulators.SimulationContext;
 import net.sf.orcc.util.OrccLogger;
 
 public class GenericDisplay {
@@ -44,31 +45,94 @@ public class GenericDisplay {
 	 */
 	public static final int DISPLAY_ENABLE = 3;
 
-	protected static String goldenReference = "";
+	/**
+	 * Settings of the displays in a simulation.
+	 */
+	protected static class Settings {
+
+		public int displayStatus = DISPLAY_ENABLE;
+
+		/**
+		 * Number of pictures sent to the display since it was initialized,
+		 * whether the display is enabled or not
+		 */
+		public int displayedFrames;
+
+		/**
+		 * Name of the file where the hashes of the compared frames are
+		 * recorded (empty if they are not recorded)
+		 */
+		public String frameHashFile = "";
+
+		public String goldenReference = "";
+
+		/**
+		 * This variable should store number of frames user want to decode
+		 * before stopping application
+		 */
+		public int nbFrames;
+
+	}
+
+	private static final SimulationContext.Local<Settings> SETTINGS = new SimulationContext.Local<Settings>() {
+
+		@Override
+		protected Settings initialValue() {
+			return new Settings();
+		}
+
+	};
 
 	/**
-	 * This variable should store number of frames user want to decode before
-	 * stopping application
+	 * Returns the number of pictures sent to the display since it was
+	 * initialized.
+	 * 
+	 * @return a number of frames
 	 */
-	public static int nbFrames;
+	public static int getDisplayedFrames() {
+		return SETTINGS.get().displayedFrames;
+	}
 
-	protected static int displayStatus = DISPLAY_ENABLE;
+	public static String getFrameHashFile() {
+		return SETTINGS.get().frameHashFile;
+	}
 
 	public static String getGoldenReference() {
-		return goldenReference;
+		return SETTINGS.get().goldenReference;
+	}
+
+	public static int getNbFrames() {
+		return SETTINGS.get().nbFrames;
+	}
+
+	/**
+	 * Returns the settings of the displays of the current simulation.
+	 * 
+	 * @return the settings of the displays
+	 */
+	protected static Settings getSettings() {
+		return SETTINGS.get();
+	}
+
+	public static void setFrameHashFile(String fileName) {
+		SETTINGS.get().frameHashFile = fileName;
 	}
 
 	public static void setGoldenReference(String fileName) {
-		GenericDisplay.goldenReference = fileName;
+		SETTINGS.get().goldenReference = fileName;
+	}
+
+	public static void setNbFrames(int nbFrames) {
+		SETTINGS.get().nbFrames = nbFrames;
 	}
 
 	public static void setDisplayEnabled() {
-		displayStatus = DISPLAY_ENABLE;
+		SETTINGS.get().displayStatus = DISPLAY_ENABLE;
 		OrccLogger.debugln("Display has been enabled");
 	}
 
 	public static void setDisplayDisabled() {
-		displayStatus = DISPLAY_DISABLE;
+		SETTINGS.get().displayStatus = DISPLAY_DISABLE;
 		OrccLogger.debugln("Display has been disabled");
 	}
 }
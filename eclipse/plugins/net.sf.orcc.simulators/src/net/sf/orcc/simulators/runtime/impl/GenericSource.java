@@ -29,32 +29,63 @@
 
 package net.sf.orcc.simulators.runtime.impl;
 
+import net.sf.orcc.simulators.SimulationContext;
 import net.sf.orcc.simulators.Simulator;
 
 
 public class GenericSource {
 
-	protected static String inputStimulus = "";
+	/**
+	 * Settings of the sources in a simulation.
+	 */
+	private static class Settings {
+
+		private String inputStimulus = "";
+
+		private int nbLoops = Simulator.DEFAULT_NB_LOOPS;
+
+	}
+
+	private static final SimulationContext.Local<Settings> SETTINGS = new SimulationContext.Local<Settings>() {
+
+		@Override
+		protected Settings initialValue() {
+			return new Settings();
+		}
 
-	protected static int nbLoops = Simulator.DEFAULT_NB_LOOPS;
+	};
 
 	/**
-	 * Sets the file name used by this Source class.
+	 * Returns the name of the file read by the sources of the current
+	 * simulation.
 	 * 
-	 * @param inputStimulus
-	 *            name of a file to read
+	 * @return name of a file to read
 	 */
-
 	public static String getInputStimulus() {
-		return inputStimulus;
+		return SETTINGS.get().inputStimulus;
 	}
 
+	/**
+	 * Returns the number of times the input stimulus is read.
+	 * 
+	 * @return a number of loops
+	 */
+	public static int getNbLoops() {
+		return SETTINGS.get().nbLoops;
+	}
+
+	/**
+	 * Sets the file name read by the sources of the current simulation.
+	 * 
+	 * @param fileName
+	 *            name of a file to read
+	 */
 	public static void setInputStimulus(String fileName) {
-		GenericSource.inputStimulus = fileName;
+		SETTINGS.get().inputStimulus = fileName;
 	}
 	
 	public static void setNbLoops(int nb) {
-		nbLoops = nb;
+		SETTINGS.get().nbLoops = nb;
 	}
 
 	public void close(){
@@ -29,18 +29,36 @@
 
 package net.sf.orcc.simulators.runtime.impl;
 
+import net.sf.orcc.simulators.SimulationContext;
+
 public class GenericWriter {
 
-	protected static String outputFile = "";
+	/**
+	 * Settings of the writers in a simulation.
+	 */
+	private static class Settings {
+
+		private String outputFile = "";
+
+	}
+
+	private static final SimulationContext.Local<Settings> SETTINGS = new SimulationContext.Local<Settings>() {
+
+		@Override
+		protected Settings initialValue() {
+			return new Settings();
+		}
+
+	};
 
 	/** 
 	 * @return file to be written to by the Writer actor
 	 */
 	public static String getOutputFile() {
-		return outputFile;
+		return SETTINGS.get().outputFile;
 	}
 
 	public static void setOutputFile(String fileName) {
-		GenericWriter.outputFile = fileName;
+		SETTINGS.get().outputFile = fileName;
 	}
 }
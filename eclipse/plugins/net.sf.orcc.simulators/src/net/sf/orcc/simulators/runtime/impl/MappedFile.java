@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.runtime.impl;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * This class defines a read-only file accessed through a memory mapping. It
+ * has the same reading semantics as {@link RandomAccessFile} (partial reads at
+ * the end of the file, -1 when reading a byte past the end), but bytes are
+ * copied from the mapping instead of going through a system call for each
+ * read. Large files are mapped by windows, so that files larger than 2 GB can
+ * be read too.
+ * 
+ */
+public class MappedFile {
+
+	/**
+	 * Maximum size of a mapped window.
+	 */
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final RandomAccessFile file;
+
+	private final long length;
+
+	/**
+	 * number of bytes the offset has been set past the end of the file
+	 */
+	private long pastEnd;
+
+	private MappedByteBuffer window;
+
+	/**
+	 * offset in the file of the first byte of the current window
+	 */
+	private long windowStart;
+
+	/**
+	 * Opens the given file for reading.
+	 * 
+	 * @param fileName
+	 *            name of a file
+	 * @throws FileNotFoundException
+	 *             if the file does not exist or cannot be read
+	 * @throws IOException
+	 *             if the file cannot be mapped
+	 */
+	public MappedFile(String fileName) throws FileNotFoundException,
+			IOException {
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+		length = channel.size();
+		map(0L);
+	}
+
+	/**
+	 * Closes this file. The mapping itself is released when it is garbage
+	 * collected.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		window = null;
+		file.close();
+	}
+
+	/**
+	 * Returns the current offset in this file.
+	 * 
+	 * @return the offset of the next byte to read
+	 */
+	public long getFilePointer() {
+		return windowStart + window.position() + pastEnd;
+	}
+
+	/**
+	 * Returns the length of this file.
+	 * 
+	 * @return the length of this file, in bytes
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Maps the window that starts at the given offset.
+	 * 
+	 * @param offset
+	 *            an offset in the file
+	 * @throws IOException
+	 */
+	private void map(long offset) throws IOException {
+		long size = Math.min(WINDOW_SIZE, length - offset);
+		window = channel.map(MapMode.READ_ONLY, offset, size);
+		windowStart = offset;
+	}
+
+	/**
+	 * Reads a byte from this file.
+	 * 
+	 * @return the byte read, between 0 and 255, or -1 if the end of the file
+	 *         has been reached
+	 * @throws IOException
+	 */
+	public int read() throws IOException {
+		if (!window.hasRemaining()) {
+			if (getFilePointer() >= length) {
+				return -1;
+			}
+			map(getFilePointer());
+		}
+		return window.get() & 0xFF;
+	}
+
+	/**
+	 * Reads up to <code>len</code> bytes from this file into the given array.
+	 * 
+	 * @param b
+	 *            the array the bytes are copied to
+	 * @param off
+	 *            offset in <code>b</code>
+	 * @param len
+	 *            maximum number of bytes to read
+	 * @return the number of bytes read, or -1 if the end of the file has
+	 *         already been reached
+	 * @throws IOException
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		int count = 0;
+		while (count < len) {
+			if (!window.hasRemaining()) {
+				if (getFilePointer() >= length) {
+					break;
+				}
+				map(getFilePointer());
+			}
+
+			int n = Math.min(len - count, window.remaining());
+			window.get(b, off + count, n);
+			count += n;
+		}
+
+		return count == 0 ? -1 : count;
+	}
+
+	/**
+	 * Sets the offset of the next byte to read.
+	 * 
+	 * @param pos
+	 *            an offset in the file
+	 * @throws IOException
+	 *             if the offset is negative
+	 */
+	public void seek(long pos) throws IOException {
+		if (pos < 0) {
+			throw new IOException("Negative seek offset");
+		}
+
+		pastEnd = Math.max(0L, pos - length);
+		if (pos >= windowStart && pos <= windowStart + window.limit()) {
+			window.position((int) (pos - windowStart));
+		} else {
+			map(Math.min(pos, length));
+		}
+	}
+
+}
@@ -37,6 +37,8 @@ import javax.sound.sampled.DataLine;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.SourceDataLine;
 
+import net.sf.orcc.simulators.SimulationContext;
+
 /**
  * Audio native functions for the simulator
  * 
@@ -45,15 +47,36 @@ import javax.sound.sampled.SourceDataLine;
  */
 public class Audio {
 
+	/**
+	 * State of the audio output in a simulation.
+	 */
+	private static class State {
+
+		private AudioFormat audioFormat;
+
+		private byte[] bdata = new byte[BUFFER_SIZE];
+
+		private DataLine.Info info;
+
+		private SourceDataLine line = null;
+
+		private int nBytesRead = 0;
+
+	}
+
 	private static final int BUFFER_SIZE = 128000;
-	private static AudioFormat audioFormat;
-	private static SourceDataLine line = null;
-	private static DataLine.Info info;
-	private static byte[] bdata = new byte[BUFFER_SIZE];
-	private static int nBytesRead = 0;
+
+	private static final SimulationContext.Local<State> STATE = new SimulationContext.Local<State>() {
+
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+
+	};
 
 	public static boolean audio_bufferFull() {
-		if (nBytesRead == BUFFER_SIZE) {
+		if (STATE.get().nBytesRead == BUFFER_SIZE) {
 			return true;
 		} else {
 			return false;
@@ -61,26 +84,29 @@ public class Audio {
 	}
 
 	public static void audio_close() {
-		line.drain();
-		line.close();
+		State state = STATE.get();
+		state.line.drain();
+		state.line.close();
 	}
 
 	public static void audio_initAudioFormat(BigInteger SampleRate,
 			BigInteger SampleSizeInBits, BigInteger Channels) {
+		State state = STATE.get();
 		if (SampleSizeInBits.intValue() == 8) {
-			audioFormat = new AudioFormat(SampleRate.floatValue(),
+			state.audioFormat = new AudioFormat(SampleRate.floatValue(),
 					SampleSizeInBits.intValue(), Channels.intValue(), false,
 					false);
 		} else {
-			audioFormat = new AudioFormat(SampleRate.floatValue(),
+			state.audioFormat = new AudioFormat(SampleRate.floatValue(),
 					SampleSizeInBits.intValue(), Channels.intValue(), true,
 					false);
 		}
-		info = new DataLine.Info(SourceDataLine.class, audioFormat);
-		if (AudioSystem.isLineSupported(info)) {
+		state.info = new DataLine.Info(SourceDataLine.class,
+				state.audioFormat);
+		if (AudioSystem.isLineSupported(state.info)) {
 			try {
-				line = (SourceDataLine) AudioSystem.getLine(info);
-				line.open(audioFormat);
+				state.line = (SourceDataLine) AudioSystem.getLine(state.info);
+				state.line.open(state.audioFormat);
 			} catch (LineUnavailableException e) {
 				e.printStackTrace();
 				System.exit(1);
@@ -95,18 +121,21 @@ public class Audio {
 	}
 
 	public static void audio_play() {
+		State state = STATE.get();
+		int nBytesRead = state.nBytesRead;
 		int increment = ((nBytesRead % 4) == 0) ? 0 : 4 - (nBytesRead % 4);
 		for (int i = 0; i < increment; i++) {
-			bdata[nBytesRead + i] = (byte) 0;
+			state.bdata[nBytesRead + i] = (byte) 0;
 		}
-		line.start();
-		line.write(bdata, 0, nBytesRead + increment);
-		nBytesRead = 0;
-		bdata = new byte[BUFFER_SIZE];
+		state.line.start();
+		state.line.write(state.bdata, 0, nBytesRead + increment);
+		state.nBytesRead = 0;
+		state.bdata = new byte[BUFFER_SIZE];
 	}
 
 	public static void audio_receive(BigInteger data) {
-		bdata[nBytesRead] = data.byteValue();
-		nBytesRead++;
+		State state = STATE.get();
+		state.bdata[state.nBytesRead] = data.byteValue();
+		state.nBytesRead++;
 	}
 }
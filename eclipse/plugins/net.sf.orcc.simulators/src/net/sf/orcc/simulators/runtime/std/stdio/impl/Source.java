@@ -28,14 +28,17 @@
  */
 package net.sf.orcc.simulators.runtime.std.stdio.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.math.BigInteger;
 
 import net.sf.orcc.OrccRuntimeException;
 import net.sf.orcc.simulators.AbstractSimulator;
+import net.sf.orcc.simulators.SimulationContext;
 import net.sf.orcc.simulators.runtime.impl.GenericSource;
+import net.sf.orcc.simulators.runtime.impl.MappedFile;
 import net.sf.orcc.util.OrccLogger;
 
 /**
@@ -46,12 +49,68 @@ import net.sf.orcc.util.OrccLogger;
  */
 public class Source extends GenericSource {
 
-	// private static String inputStimulus;
+	/**
+	 * values returned by source_readByte, indexed by byte + 1 (-1 at the end
+	 * of the file)
+	 */
+	private static final BigInteger[] BYTES = new BigInteger[257];
 
-	private static RandomAccessFile in;
+	static {
+		for (int i = 0; i < BYTES.length; i++) {
+			BYTES[i] = BigInteger.valueOf(i - 1);
+		}
+	}
 
-	@Deprecated
-	private static int loopsCount;
+	/**
+	 * State of the sources in a simulation.
+	 */
+	private static class State {
+
+		private MappedFile in;
+
+		@Deprecated
+		private int loopsCount;
+
+	}
+
+	private static final SimulationContext.Local<State> STATE = new SimulationContext.Local<State>() {
+
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+
+	};
+
+	/**
+	 * Restores the state of the source saved by {@link #saveState(DataOutput)}.
+	 * 
+	 * @param input
+	 *            the input the state is read from
+	 * @throws IOException
+	 */
+	public static void restoreState(DataInput input) throws IOException {
+		State state = STATE.get();
+		long position = input.readLong();
+		state.loopsCount = input.readInt();
+		if (state.in != null && position >= 0) {
+			state.in.seek(position);
+		}
+	}
+
+	/**
+	 * Saves the state of the source: the position in the input stimulus and
+	 * the number of loops left.
+	 * 
+	 * @param output
+	 *            the output the state is written to
+	 * @throws IOException
+	 */
+	public static void saveState(DataOutput output) throws IOException {
+		State state = STATE.get();
+		output.writeLong(state.in == null ? -1 : state.in.getFilePointer());
+		output.writeInt(state.loopsCount);
+	}
 
 	public static void source_exit(BigInteger status) {
 		OrccLogger.traceln("Exit signal called by application. Return code: "
@@ -60,73 +119,80 @@ public class Source extends GenericSource {
 	}
 
 	public static BigInteger source_getNbLoop() {
-		return BigInteger.valueOf(nbLoops);
+		return BigInteger.valueOf(getNbLoops());
 	}
 
 	@Deprecated
 	public static Boolean source_isMaxLoopsReached() {
-		return loopsCount <= 0;
+		State state = STATE.get();
+		return state.loopsCount <= 0;
 	}
 
 	@Deprecated
 	public static void source_decrementNbLoops() {
-		--loopsCount;
+		State state = STATE.get();
+		--state.loopsCount;
 	}
 
 	public static void source_init() {
+		State state = STATE.get();
 		try {
-			in = new RandomAccessFile(inputStimulus, "r");
+			if (state.in != null) {
+				state.in.close();
+			}
+			state.in = new MappedFile(getInputStimulus());
 		} catch (FileNotFoundException e) {
-			String msg = "File not found: \"" + inputStimulus + "\"";
+			String msg = "File not found: \"" + getInputStimulus() + "\"";
+			throw new OrccRuntimeException(msg, e);
+		} catch (IOException e) {
+			String msg = "I/O error when opening file \""
+					+ getInputStimulus() + "\"";
 			throw new OrccRuntimeException(msg, e);
 		}
-		loopsCount = nbLoops;
+		state.loopsCount = getNbLoops();
 	}
 
 	public static void source_readNBytes(byte outTable[],
 			BigInteger nbTokenToRead) {
+		State state = STATE.get();
 		try {
-			in.read(outTable, 0, nbTokenToRead.intValue());
+			state.in.read(outTable, 0, nbTokenToRead.intValue());
 		} catch (IOException e) {
-			String msg = "I/O error when reading file \"" + inputStimulus
-					+ "\"";
+			String msg = "I/O error when reading file \""
+					+ getInputStimulus() + "\"";
 			throw new OrccRuntimeException(msg, e);
 		}
 	}
 	
 	public static BigInteger source_readByte(){
+		State state = STATE.get();
 		try {
-			return BigInteger.valueOf(in.read());
+			return BYTES[state.in.read() + 1];
 		} catch (IOException e) {
-			String msg = "I/O error when reading file \"" + inputStimulus
-					+ "\"";
+			String msg = "I/O error when reading file \""
+					+ getInputStimulus() + "\"";
 			throw new OrccRuntimeException(msg, e);
 		}
 		
 	}
 
 	public static void source_rewind() {
+		State state = STATE.get();
 		try {
-			// and for Damien, no there are no rewind on RandomAccessFile :)
-			in.seek(0L);
+			state.in.seek(0L);
 		} catch (IOException e) {
-			String msg = "I/O error when rewinding file \"" + inputStimulus
-					+ "\"";
+			String msg = "I/O error when rewinding file \""
+					+ getInputStimulus() + "\"";
 			throw new OrccRuntimeException(msg, e);
 		}
 	}
 
 	public static BigInteger source_sizeOfFile() {
-		try {
-			if (in == null) {
-				return BigInteger.ZERO;
-			}
-			return BigInteger.valueOf(in.length());
-		} catch (IOException e) {
-			String msg = "I/O error when getting size of file \""
-					+ inputStimulus + "\"";
-			throw new RuntimeException(msg, e);
+		State state = STATE.get();
+		if (state.in == null) {
+			return BigInteger.ZERO;
 		}
+		return BigInteger.valueOf(state.in.length());
 	}
 
 }
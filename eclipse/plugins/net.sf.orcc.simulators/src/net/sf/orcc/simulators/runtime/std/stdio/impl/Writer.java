@@ -28,6 +28,8 @@
  */
 package net.sf.orcc.simulators.runtime.std.stdio.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -35,6 +37,7 @@ import java.io.RandomAccessFile;
 import java.math.BigInteger;
 
 import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.simulators.SimulationContext;
 import net.sf.orcc.simulators.runtime.impl.GenericWriter;
 
 /**
@@ -45,35 +48,83 @@ import net.sf.orcc.simulators.runtime.impl.GenericWriter;
  */
 public class Writer extends GenericWriter {
 
-	private static RandomAccessFile out;
+	/**
+	 * State of the writers in a simulation.
+	 */
+	private static class State {
+
+		private RandomAccessFile out;
+
+	}
+
+	private static final SimulationContext.Local<State> STATE = new SimulationContext.Local<State>() {
+
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+
+	};
+
+	/**
+	 * Restores the state of the writer saved by {@link #saveState(DataOutput)}.
+	 * The bytes written before the checkpoint are not written again, they are
+	 * left as zeros in the output file.
+	 * 
+	 * @param input
+	 *            the input the state is read from
+	 * @throws IOException
+	 */
+	public static void restoreState(DataInput input) throws IOException {
+		State state = STATE.get();
+		long position = input.readLong();
+		if (state.out != null && position >= 0) {
+			state.out.seek(position);
+		}
+	}
+
+	/**
+	 * Saves the state of the writer: the position in the output file.
+	 * 
+	 * @param output
+	 *            the output the state is written to
+	 * @throws IOException
+	 */
+	public static void saveState(DataOutput output) throws IOException {
+		State state = STATE.get();
+		output.writeLong(state.out == null ? -1 : state.out.getFilePointer());
+	}
 
 	public static void Writer_init() {
+		State state = STATE.get();
 		try {
-			File oldFile = new File(outputFile);
+			File oldFile = new File(getOutputFile());
 			if (oldFile.exists()) {
 				oldFile.delete();
 			}
-			out = new RandomAccessFile(outputFile, "rw");
+			state.out = new RandomAccessFile(getOutputFile(), "rw");
 		} catch (FileNotFoundException e) {
-			String msg = "Cannot write to file: \"" + outputFile + "\"";
+			String msg = "Cannot write to file: \"" + getOutputFile() + "\"";
 			throw new OrccRuntimeException(msg, e);
 		}
 	}
 
 	public static void Writer_write(BigInteger b) {
+		State state = STATE.get();
 		try {
-			out.writeByte(b.byteValue());
+			state.out.writeByte(b.byteValue());
 		} catch (IOException e) {
-			String msg = "Cannot write " + b + " to " + outputFile;
+			String msg = "Cannot write " + b + " to " + getOutputFile();
 			throw new OrccRuntimeException(msg, e);
 		}
 	}
 
 	public static void Writer_close() {
+		State state = STATE.get();
 		try {
-			out.close();
+			state.out.close();
 		} catch (IOException e) {
-			String msg = "Cannot close " + outputFile;
+			String msg = "Cannot close " + getOutputFile();
 			throw new OrccRuntimeException(msg, e);
 		}
 	}
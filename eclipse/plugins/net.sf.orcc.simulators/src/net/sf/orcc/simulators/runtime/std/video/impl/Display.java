@@ -30,20 +30,25 @@ package net.sf.orcc.simulators.runtime.std.video.impl;
 
 import java.awt.Canvas;
 import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.math.BigInteger;
 
 import javax.swing.JFrame;
 
 import net.sf.orcc.OrccRuntimeException;
-import net.sf.orcc.simulators.AbstractSimulator;
+import net.sf.orcc.simulators.SimulationContext;
+import net.sf.orcc.simulators.runtime.impl.FrameHashes;
 import net.sf.orcc.simulators.runtime.impl.GenericDisplay;
+import net.sf.orcc.simulators.runtime.impl.MappedFile;
 import net.sf.orcc.util.OrccLogger;
 
 /**
@@ -54,45 +59,81 @@ import net.sf.orcc.util.OrccLogger;
  */
 public class Display extends GenericDisplay {
 
-	private static BufferStrategy buffer;
+	/**
+	 * State of the displays in a simulation.
+	 */
+	private static class State {
+
+		private BufferStrategy buffer;
+
+		private Canvas canvas;
 
-	private static Canvas canvas;
+		private JFrame frame;
 
-	private static JFrame frame;
+		private int frameNumber;
 
-	private static int frameNumber = 0;
+		/**
+		 * frame hashes compared with the decoded frames (if the golden
+		 * reference is a frame hash file)
+		 */
+		private FrameHashes goldenHashes;
 
-	private static BufferedImage image;
+		private BufferedImage image;
 
-	private static RandomAccessFile in;
+		/**
+		 * buffers of the golden frame, reused from one frame to the next
+		 */
+		private byte[] goldenY, goldenU, goldenV;
 
-	private static int lastHeight;
+		private MappedFile in;
 
-	private static int lastWidth;
+		/**
+		 * pixels of the image, written directly by the color conversion
+		 */
+		private int[] pixels;
 
-	private static long t1;
+		private int lastHeight;
 
-	private static long t2;
+		private int lastWidth;
 
-	private static boolean useCompare;
+		private FrameHashes recordedHashes;
+
+		private long t1;
+
+		private long t2;
+
+		private boolean useCompare;
+
+	}
+
+	private static final SimulationContext.Local<State> STATE = new SimulationContext.Local<State>() {
+
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+
+	};
 
 	/**
 	 * Close open frames (if any) and clear all
 	 */
 	public static void clearAll() {
-		if (frame != null && frame.isVisible()) {
-			frame.setVisible(false);
-			frame.dispose();
+		State state = STATE.get();
+		if (state.frame != null && state.frame.isVisible()) {
+			state.frame.setVisible(false);
+			state.frame.dispose();
 		}
 
-		if (buffer != null) {
-			buffer.dispose();
+		if (state.buffer != null) {
+			state.buffer.dispose();
 		}
 
-		canvas = null;
-		image = null;
-		lastHeight = 0;
-		lastWidth = 0;
+		state.canvas = null;
+		state.image = null;
+		state.pixels = null;
+		state.lastHeight = 0;
+		state.lastWidth = 0;
 	}
 
 	private static int clip(int n) {
@@ -145,23 +186,55 @@ public class Display extends GenericDisplay {
 	public static void compareYUV_comparePicture(byte[] pictureBufferY,
 			byte[] pictureBufferU, byte[] pictureBufferV,
 			BigInteger pictureWidth, BigInteger pictureHeight) {
+		Settings settings = getSettings();
+		State state = STATE.get();
 		int width = pictureWidth.intValue();
 		int height = pictureHeight.intValue();
 
-		if (useCompare) {
-			byte[] Y = new byte[width * height];
-			byte[] U = new byte[width * height / 4];
-			byte[] V = new byte[width * height / 4];
+		if (state.recordedHashes != null) {
+			try {
+				state.recordedHashes.record(pictureBufferY, pictureBufferU,
+						pictureBufferV, width, height);
+			} catch (IOException e) {
+				String msg = "I/O error when writing file \""
+						+ settings.frameHashFile + "\"";
+				throw new OrccRuntimeException(msg, e);
+			}
+		}
+
+		if (state.goldenHashes != null) {
+			OrccLogger.trace("Frame number " + state.frameNumber);
+			state.frameNumber = (state.frameNumber + 1)
+					% state.goldenHashes.getNumFrames();
+			if (state.goldenHashes.compare(pictureBufferY, pictureBufferU,
+					pictureBufferV, width, height)) {
+				OrccLogger.traceRaw("; hash matches !\n");
+			} else {
+				OrccLogger.traceRaw("; hash mismatch !\n");
+				SimulationContext.current().addStatus(1);
+			}
+		} else if (state.useCompare) {
+			int sizeY = width * height;
+			int sizeUV = sizeY / 4;
+			if (state.goldenY == null || state.goldenY.length != sizeY) {
+				state.goldenY = new byte[sizeY];
+				state.goldenU = new byte[sizeUV];
+				state.goldenV = new byte[sizeUV];
+			}
+
+			byte[] Y = state.goldenY;
+			byte[] U = state.goldenU;
+			byte[] V = state.goldenV;
 
 			try {
 				int numErrors = 0;
 
-				OrccLogger.trace("Frame number " + frameNumber);
-				frameNumber++;
+				OrccLogger.trace("Frame number " + state.frameNumber);
+				state.frameNumber++;
 
-				in.read(Y, 0, width * height);
-				in.read(U, 0, width * height / 4);
-				in.read(V, 0, width * height / 4);
+				state.in.read(Y, 0, sizeY);
+				state.in.read(U, 0, sizeUV);
+				state.in.read(V, 0, sizeUV);
 
 				numErrors += compareYUV_compareComponent(width, height, Y,
 						pictureBufferY, 16);
@@ -176,12 +249,12 @@ public class Display extends GenericDisplay {
 					OrccLogger.traceRaw("; " + numErrors
 							+ " errors detected !\n");
 
-					AbstractSimulator.statusCode++;
+					SimulationContext.current().addStatus(1);
 				}
 
-				if (in.getFilePointer() == in.length()) {
-					in.seek(0L);
-					frameNumber = 0;
+				if (state.in.getFilePointer() == state.in.length()) {
+					state.in.seek(0L);
+					state.frameNumber = 0;
 				}
 			} catch (IOException e) {
 				e.printStackTrace();
@@ -193,18 +266,72 @@ public class Display extends GenericDisplay {
 	 * Init the YUV comparison.
 	 */
 	public static void compareYUV_init() {
-		useCompare = false;
-		if (!goldenReference.isEmpty()) {
+		Settings settings = getSettings();
+		State state = STATE.get();
+		compareYUV_close();
+		state.frameNumber = 0;
+		state.useCompare = false;
+		if (!settings.goldenReference.isEmpty()) {
 			try {
-				in = new RandomAccessFile(goldenReference, "r");
-				useCompare = true;
+				if (FrameHashes.isFrameHashes(settings.goldenReference)) {
+					state.goldenHashes = FrameHashes
+							.load(settings.goldenReference);
+					if (state.goldenHashes.getNumFrames() == 0) {
+						throw new OrccRuntimeException("No frame hash in \""
+								+ settings.goldenReference + "\"");
+					}
+					OrccLogger.traceln(state.goldenHashes.getNumFrames()
+							+ " frame hashes loaded from "
+							+ settings.goldenReference);
+				} else {
+					state.in = new MappedFile(settings.goldenReference);
+					state.useCompare = true;
+				}
 			} catch (FileNotFoundException e) {
-				String msg = "File not found: \"" + goldenReference + "\"";
+				String msg = "File not found: \"" + settings.goldenReference
+						+ "\"";
+				throw new OrccRuntimeException(msg, e);
+			} catch (IOException e) {
+				String msg = "I/O error when opening file \""
+						+ settings.goldenReference + "\"";
+				throw new OrccRuntimeException(msg, e);
+			}
+		}
+
+		if (!settings.frameHashFile.isEmpty()) {
+			try {
+				state.recordedHashes = FrameHashes
+						.create(settings.frameHashFile);
+			} catch (IOException e) {
+				String msg = "I/O error when creating file \""
+						+ settings.frameHashFile + "\"";
 				throw new OrccRuntimeException(msg, e);
 			}
 		}
 	}
 
+	/**
+	 * Closes the files opened by the YUV comparison (if any).
+	 */
+	public static void compareYUV_close() {
+		State state = STATE.get();
+		try {
+			if (state.in != null) {
+				state.in.close();
+			}
+			if (state.recordedHashes != null) {
+				state.recordedHashes.close();
+			}
+		} catch (IOException e) {
+			OrccLogger.warnln("I/O error when closing the YUV comparison "
+					+ "files: " + e.getMessage());
+		}
+
+		state.in = null;
+		state.goldenHashes = null;
+		state.recordedHashes = null;
+	}
+
 	private static int convertYCbCrtoRGB(int y, int cb, int cr) {
 		int C = y - 16;
 		int D = cb - 128;
@@ -220,41 +347,50 @@ public class Display extends GenericDisplay {
 	public static void displayYUV_displayPicture(byte[] pictureBufferY,
 			byte[] pictureBufferU, byte[] pictureBufferV,
 			BigInteger biPictureWidth, BigInteger biPictureHeight) {
+		Settings settings = getSettings();
+		State state = STATE.get();
+		settings.displayedFrames++;
+		if (settings.displayStatus == DISPLAY_DISABLE) {
+			return;
+		}
+
 		int pictureWidth = biPictureWidth.intValue();
 		int pictureHeight = biPictureHeight.intValue();
-		if (pictureWidth != lastWidth || pictureHeight != lastHeight) {
+		if (pictureWidth != state.lastWidth
+				|| pictureHeight != state.lastHeight) {
 			setVideoSize(pictureWidth, pictureHeight);
 		}
 
-		if (image == null) {
+		if (state.image == null) {
 			return;
 		}
 
-		for (int i = 0; i < pictureWidth / 2; i++) {
-			for (int j = 0; j < pictureHeight / 2; j++) {
-				int u = pictureBufferU[i + j * pictureWidth / 2] & 0xFF;
-				int v = pictureBufferV[i + j * pictureWidth / 2] & 0xFF;
-				int y0 = pictureBufferY[i * 2 + j * 2 * pictureWidth] & 0xFF;
-				int y1 = pictureBufferY[i * 2 + 1 + j * 2 * pictureWidth] & 0xFF;
-				int y2 = pictureBufferY[i * 2 + (j * 2 + 1) * pictureWidth] & 0xFF;
-				int y3 = pictureBufferY[i * 2 + 1 + (j * 2 + 1) * pictureWidth] & 0xFF;
-
-				int rgb0 = convertYCbCrtoRGB(y0, u, v);
-				int rgb1 = convertYCbCrtoRGB(y1, u, v);
-				int rgb2 = convertYCbCrtoRGB(y2, u, v);
-				int rgb3 = convertYCbCrtoRGB(y3, u, v);
-
-				image.setRGB(i * 2, j * 2, rgb0);
-				image.setRGB(i * 2 + 1, j * 2, rgb1);
-				image.setRGB(i * 2, j * 2 + 1, rgb2);
-				image.setRGB(i * 2 + 1, j * 2 + 1, rgb3);
+		int[] pixels = state.pixels;
+		int widthUV = pictureWidth / 2;
+		for (int j = 0; j < pictureHeight / 2; j++) {
+			int line0 = j * 2 * pictureWidth;
+			int line1 = line0 + pictureWidth;
+			int lineUV = j * widthUV;
+			for (int i = 0; i < widthUV; i++) {
+				int u = pictureBufferU[lineUV + i] & 0xFF;
+				int v = pictureBufferV[lineUV + i] & 0xFF;
+				int x = i * 2;
+
+				pixels[line0 + x] = convertYCbCrtoRGB(
+						pictureBufferY[line0 + x] & 0xFF, u, v);
+				pixels[line0 + x + 1] = convertYCbCrtoRGB(
+						pictureBufferY[line0 + x + 1] & 0xFF, u, v);
+				pixels[line1 + x] = convertYCbCrtoRGB(
+						pictureBufferY[line1 + x] & 0xFF, u, v);
+				pixels[line1 + x + 1] = convertYCbCrtoRGB(
+						pictureBufferY[line1 + x + 1] & 0xFF, u, v);
 			}
 		}
 
-		if (buffer != null) {
-			Graphics graphics = buffer.getDrawGraphics();
-			graphics.drawImage(image, 0, 0, null);
-			buffer.show();
+		if (state.buffer != null) {
+			Graphics graphics = state.buffer.getDrawGraphics();
+			graphics.drawImage(state.image, 0, 0, null);
+			state.buffer.show();
 			graphics.dispose();
 		}
 	}
@@ -266,7 +402,7 @@ public class Display extends GenericDisplay {
 	 * @return the flags of the display
 	 */
 	public static BigInteger displayYUV_getFlags() {
-		return BigInteger.valueOf(displayStatus);
+		return BigInteger.valueOf(getSettings().displayStatus);
 	}
 
 	/**
@@ -276,53 +412,112 @@ public class Display extends GenericDisplay {
 	 *         set any value
 	 */
 	public static BigInteger displayYUV_getNbFrames() {
-		return BigInteger.valueOf(nbFrames);
+		return BigInteger.valueOf(getSettings().nbFrames);
 	}
 
 	/**
 	 * Initializes the display.
 	 */
 	public static void displayYUV_init() {
+		Settings settings = getSettings();
+		State state = STATE.get();
 		clearAll();
+		settings.displayedFrames = 0;
+
+		if (settings.displayStatus == DISPLAY_DISABLE) {
+			return;
+		} else if (GraphicsEnvironment.isHeadless()) {
+			OrccLogger.warnln("No graphics environment available, "
+					+ "the display is disabled");
+			setDisplayDisabled();
+			return;
+		}
 
-		frame = new JFrame("display");
-		canvas = new Canvas();
-		frame.add(canvas);
-		frame.setResizable(false);
-		frame.setVisible(true);
+		state.frame = new JFrame("display");
+		state.canvas = new Canvas();
+		state.frame.add(state.canvas);
+		state.frame.setResizable(false);
+		state.frame.setVisible(true);
 
-		frame.addWindowListener(new WindowAdapter() {
+		// the window is closed in the event dispatch thread
+		final JFrame window = state.frame;
+		final SimulationContext context = SimulationContext.current();
+		window.addWindowListener(new WindowAdapter() {
 
 			@Override
 			public void windowClosing(WindowEvent e) {
-				frame.dispose();
-				AbstractSimulator.userStop();
+				window.dispose();
+				context.stop();
 			}
 		});
 	}
 
 	public static void fpsPrintInit() {
-		t1 = System.currentTimeMillis();
+		State state = STATE.get();
+		state.t1 = System.currentTimeMillis();
 	}
 
 	public static void fpsPrintNewPicDecoded() {
-		t2 = System.currentTimeMillis();
-		OrccLogger.noticeRaw("Image displayed in " + (t2 - t1) + " ms\n");
-		t1 = t2;
+		State state = STATE.get();
+		state.t2 = System.currentTimeMillis();
+		OrccLogger.noticeRaw("Image displayed in " + (state.t2 - state.t1)
+				+ " ms\n");
+		state.t1 = state.t2;
+	}
+
+	/**
+	 * Restores the state of the display and of the YUV comparison saved by
+	 * {@link #saveState(DataOutput)}.
+	 * 
+	 * @param input
+	 *            the input the state is read from
+	 * @throws IOException
+	 */
+	public static void restoreState(DataInput input) throws IOException {
+		Settings settings = getSettings();
+		State state = STATE.get();
+		settings.displayedFrames = input.readInt();
+		state.frameNumber = input.readInt();
+		long position = input.readLong();
+		if (state.in != null && position >= 0) {
+			state.in.seek(position);
+		}
+		if (state.goldenHashes != null) {
+			state.goldenHashes.seek(state.frameNumber);
+		}
+	}
+
+	/**
+	 * Saves the state of the display and of the YUV comparison: the number of
+	 * frames displayed and compared, and the position in the golden reference.
+	 * 
+	 * @param output
+	 *            the output the state is written to
+	 * @throws IOException
+	 */
+	public static void saveState(DataOutput output) throws IOException {
+		Settings settings = getSettings();
+		State state = STATE.get();
+		output.writeInt(settings.displayedFrames);
+		output.writeInt(state.frameNumber);
+		output.writeLong(state.in == null ? -1 : state.in.getFilePointer());
 	}
 
 	private static void setVideoSize(int newWidth, int newHeight) {
-		lastWidth = newWidth;
-		lastHeight = newHeight;
+		State state = STATE.get();
+		state.lastWidth = newWidth;
+		state.lastHeight = newHeight;
 
-		if (canvas != null) {
-			canvas.setSize(lastWidth, lastHeight);
-			frame.pack();
-			canvas.createBufferStrategy(2);
-			buffer = canvas.getBufferStrategy();
+		if (state.canvas != null) {
+			state.canvas.setSize(state.lastWidth, state.lastHeight);
+			state.frame.pack();
+			state.canvas.createBufferStrategy(2);
+			state.buffer = state.canvas.getBufferStrategy();
 
-			image = new BufferedImage(lastWidth, lastHeight,
+			state.image = new BufferedImage(state.lastWidth, state.lastHeight,
 					BufferedImage.TYPE_INT_RGB);
+			state.pixels = ((DataBufferInt) state.image.getRaster()
+					.getDataBuffer()).getData();
 		}
 	}
 
@@ -38,7 +38,7 @@ import java.math.BigInteger;
 
 import javax.swing.JFrame;
 
-import net.sf.orcc.simulators.AbstractSimulator;
+import net.sf.orcc.simulators.SimulationContext;
 import net.sf.orcc.util.OrccLogger;
 
 /**
@@ -49,9 +49,28 @@ import net.sf.orcc.util.OrccLogger;
  */
 public class DisplayYUVWithCrop {
 
-	private static BufferStrategy buffer;
+	/**
+	 * State of the display in a simulation.
+	 */
+	private static class State {
+
+		private BufferStrategy buffer;
+
+		private Canvas canvas;
+
+		private JFrame frame;
+
+		private BufferedImage image;
+
+		private int lastHeight;
+
+		private int lastWidth;
 
-	private static Canvas canvas;
+		private long t1;
+
+		private long t2;
+
+	}
 
 	/**
 	 * display is disabled.
@@ -68,17 +87,14 @@ public class DisplayYUVWithCrop {
 	 */
 	public static final int DISPLAY_READY = 1;
 
-	private static JFrame frame;
-
-	private static BufferedImage image;
+	private static final SimulationContext.Local<State> STATE = new SimulationContext.Local<State>() {
 
-	private static int lastHeight;
-
-	private static int lastWidth;
-
-	private static long t1;
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
 
-	private static long t2;
+	};
 
 	private static int clip(int n) {
 		if (n < 0) {
@@ -132,12 +148,15 @@ public class DisplayYUVWithCrop {
 	public static void displayYUV_displayPicture(byte[] pictureBufferY,
 			byte[] pictureBufferU, byte[] pictureBufferV,
 			BigInteger biPictureWidth, BigInteger biPictureHeight) {
+		State state = STATE.get();
 		int pictureWidth = biPictureWidth.intValue();
 		int pictureHeight = biPictureHeight.intValue();
-		if (pictureWidth != lastWidth || pictureHeight != lastHeight) {
-			setVideoSize(pictureWidth, pictureHeight);
+		if (pictureWidth != state.lastWidth
+				|| pictureHeight != state.lastHeight) {
+			setVideoSize(state, pictureWidth, pictureHeight);
 		}
 
+		BufferedImage image = state.image;
 		if (image == null) {
 			return;
 		}
@@ -163,6 +182,7 @@ public class DisplayYUVWithCrop {
 			}
 		}
 
+		BufferStrategy buffer = state.buffer;
 		if (buffer != null) {
 			Graphics graphics = buffer.getDrawGraphics();
 			graphics.drawImage(image, 0, 0, null);
@@ -185,54 +205,60 @@ public class DisplayYUVWithCrop {
 	 * Initializes the display.
 	 */
 	public static void displayYUV_init() {
-		frame = new JFrame("display");
-		frame.addWindowListener(new WindowAdapter() {
+		// the window is closed in the event dispatch thread
+		final SimulationContext context = SimulationContext.current();
+		final State state = STATE.get();
+		state.frame = new JFrame("display");
+		state.frame.addWindowListener(new WindowAdapter() {
 
 			@Override
 			public void windowClosing(WindowEvent e) {
-				if (buffer != null) {
-					buffer.dispose();
+				if (state.buffer != null) {
+					state.buffer.dispose();
 				}
 
-				canvas = null;
-				image = null;
-				lastHeight = 0;
-				lastWidth = 0;
+				state.canvas = null;
+				state.image = null;
+				state.lastHeight = 0;
+				state.lastWidth = 0;
 
-				AbstractSimulator.stop(BigInteger.ZERO);
+				context.stop();
 			}
 
 		});
 
-		canvas = new Canvas();
-		frame.add(canvas);
-		frame.setVisible(true);
+		state.canvas = new Canvas();
+		state.frame.add(state.canvas);
+		state.frame.setVisible(true);
 	}
 
-	private static void setVideoSize(int newWidth, int newHeight) {
-		lastWidth = newWidth;
-		lastHeight = newHeight;
+	private static void setVideoSize(State state, int newWidth, int newHeight) {
+		state.lastWidth = newWidth;
+		state.lastHeight = newHeight;
 
+		Canvas canvas = state.canvas;
 		if (canvas != null) {
-			canvas.setSize(lastWidth, lastHeight);
-			frame.pack();
+			canvas.setSize(newWidth, newHeight);
+			state.frame.pack();
 
 			canvas.createBufferStrategy(2);
-			buffer = canvas.getBufferStrategy();
+			state.buffer = canvas.getBufferStrategy();
 
-			image = new BufferedImage(lastWidth, lastHeight,
+			state.image = new BufferedImage(newWidth, newHeight,
 					BufferedImage.TYPE_INT_RGB);
 		}
 	}
 
 	public static void fpsPrintInit() {
-		t1 = System.currentTimeMillis();
+		STATE.get().t1 = System.currentTimeMillis();
 	}
 
 	public static void fpsPrintNewPicDecoded() {
-		t2 = System.currentTimeMillis();
-		OrccLogger.noticeRaw("Image displayed in " + (t2 - t1) + " ms\n");
-		t1 = t2;
+		State state = STATE.get();
+		state.t2 = System.currentTimeMillis();
+		OrccLogger.noticeRaw("Image displayed in " + (state.t2 - state.t1)
+				+ " ms\n");
+		state.t1 = state.t2;
 	}
 
 }
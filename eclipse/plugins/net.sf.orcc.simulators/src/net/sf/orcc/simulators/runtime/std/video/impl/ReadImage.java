@@ -34,35 +34,54 @@ import java.io.IOException;
 
 import javax.imageio.ImageIO;
 
+import net.sf.orcc.simulators.SimulationContext;
 import net.sf.orcc.simulators.runtime.impl.GenericSource;
 
 public class ReadImage extends GenericSource {
 
-	private static int height;
+	/**
+	 * State of the image read in a simulation.
+	 */
+	private static class State {
 
-	private static BufferedImage image;
+		private int height;
 
-	private static int width;
+		private BufferedImage image;
 
-	private static int x;
+		private int width;
 
-	private static int y;
+		private int x;
+
+		private int y;
+
+	}
+
+	private static final SimulationContext.Local<State> STATE = new SimulationContext.Local<State>() {
+
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+
+	};
 
 	public static void advance() {
-		x++;
-		if (x == width) {
-			x = 0;
-			y++;
+		State state = STATE.get();
+		state.x++;
+		if (state.x == state.width) {
+			state.x = 0;
+			state.y++;
 		}
 
-		if (y == height) {
-			x = 0;
-			y = 0;
+		if (state.y == state.height) {
+			state.x = 0;
+			state.y = 0;
 		}
 	}
 
 	public static int getBlue() {
-		return getBlue(image.getRGB(x, y));
+		State state = STATE.get();
+		return getBlue(state.image.getRGB(state.x, state.y));
 	}
 
 	private static int getBlue(int pixel) {
@@ -70,7 +89,8 @@ public class ReadImage extends GenericSource {
 	}
 
 	public static int getGreen() {
-		return getGreen(image.getRGB(x, y));
+		State state = STATE.get();
+		return getGreen(state.image.getRGB(state.x, state.y));
 	}
 
 	private static int getGreen(int pixel) {
@@ -78,11 +98,12 @@ public class ReadImage extends GenericSource {
 	}
 
 	public static int getHeight() {
-		return image.getHeight();
+		return STATE.get().image.getHeight();
 	}
 
 	public static int getRed() {
-		return getRed(image.getRGB(x, y));
+		State state = STATE.get();
+		return getRed(state.image.getRGB(state.x, state.y));
 	}
 
 	private static int getRed(int pixel) {
@@ -90,19 +111,22 @@ public class ReadImage extends GenericSource {
 	}
 
 	public static int getWidth() {
-		return image.getWidth();
+		return STATE.get().image.getWidth();
 	}
 
 	public static void readImage_initialize() {
+		State state = STATE.get();
 		try {
-			image = ImageIO.read(new File(inputStimulus));
+			state.image = ImageIO.read(new File(getInputStimulus()));
 		} catch (IOException e) {
 			String msg = "image error";
 			throw new RuntimeException(msg, e);
 		}
 
-		width = image.getWidth();
-		height = image.getHeight();
+		state.width = state.image.getWidth();
+		state.height = state.image.getHeight();
+		state.x = 0;
+		state.y = 0;
 	}
 
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.slow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class searches for small FIFO sizes that keep the throughput of a
+ * network within a tolerance. The network is first simulated with its current
+ * sizes, which gives the reference throughput and the high-water mark of each
+ * FIFO. FIFOs are then sized after their high-water marks, and their sizes are
+ * halved, first all together then one by one, while the simulation still
+ * processes exactly as many firings as the reference, with as many firings
+ * per scheduling round within the tolerance.
+ * 
+ * <p>
+ * Sizes are powers of two, and never smaller than the number of tokens
+ * produced or consumed at once on the FIFO.
+ * </p>
+ * 
+ */
+public class BufferSizeExplorer {
+
+	/**
+	 * Statistics of a FIFO during a run.
+	 */
+	public static class FifoStatistics {
+
+		private final long blocked;
+
+		private final int highWaterMark;
+
+		private final int minSize;
+
+		private final int size;
+
+		public FifoStatistics(int size, int minSize, int highWaterMark,
+				long blocked) {
+			this.size = size;
+			this.minSize = minSize;
+			this.highWaterMark = highWaterMark;
+			this.blocked = blocked;
+		}
+
+	}
+
+	/**
+	 * Statistics of a run of the network.
+	 */
+	public static class RunStatistics {
+
+		private final long firings;
+
+		private final Map<String, FifoStatistics> fifos;
+
+		private final long rounds;
+
+		public RunStatistics(long firings, long rounds) {
+			this.firings = firings;
+			this.rounds = rounds;
+			fifos = new TreeMap<String, FifoStatistics>();
+		}
+
+		/**
+		 * Adds the statistics of the given FIFO.
+		 * 
+		 * @param name
+		 *            name of the FIFO
+		 * @param statistics
+		 *            its statistics
+		 */
+		public void add(String name, FifoStatistics statistics) {
+			fifos.put(name, statistics);
+		}
+
+		/**
+		 * Returns the number of firings per scheduling round.
+		 * 
+		 * @return the throughput of the run
+		 */
+		public double getThroughput() {
+			return rounds == 0 ? 0 : (double) firings / rounds;
+		}
+
+	}
+
+	private static int roundPow2(int value) {
+		int pow2 = 1;
+		while (pow2 < value) {
+			pow2 <<= 1;
+		}
+		return pow2;
+	}
+
+	private final int maxRuns;
+
+	private RunStatistics reference;
+
+	private int runs;
+
+	private final SlowSimulator simulator;
+
+	private final double tolerance;
+
+	/**
+	 * Creates a new explorer.
+	 * 
+	 * @param simulator
+	 *            the simulator that runs the network
+	 * @param tolerance
+	 *            accepted loss of throughput, in percent
+	 * @param maxRuns
+	 *            maximum number of simulations
+	 */
+	public BufferSizeExplorer(SlowSimulator simulator, int tolerance,
+			int maxRuns) {
+		this.simulator = simulator;
+		this.tolerance = tolerance / 100.0;
+		this.maxRuns = maxRuns;
+	}
+
+	/**
+	 * Returns the smallest power of two not smaller than half the given size
+	 * and than the minimal size of the FIFO, or the given size if it cannot be
+	 * reduced.
+	 */
+	private int getHalfSize(int size, FifoStatistics statistics) {
+		int half = Math.max(size / 2, roundPow2(statistics.minSize));
+		return Math.min(half, size);
+	}
+
+	/**
+	 * Searches for the FIFO sizes.
+	 * 
+	 * @return a map from FIFO names to sizes
+	 */
+	public Map<String, Integer> explore() {
+		runs = 0;
+		reference = simulate(new TreeMap<String, Integer>());
+		if (reference == null) {
+			return new TreeMap<String, Integer>();
+		}
+		OrccLogger.traceln("Reference run: " + reference.firings
+				+ " firings in " + reference.rounds + " rounds");
+
+		// sizes from the high-water marks
+		Map<String, Integer> sizes = new TreeMap<String, Integer>();
+		Map<String, Integer> initialSizes = new TreeMap<String, Integer>();
+		for (Map.Entry<String, FifoStatistics> entry : reference.fifos
+				.entrySet()) {
+			FifoStatistics statistics = entry.getValue();
+			initialSizes.put(entry.getKey(), statistics.size);
+			int size = roundPow2(Math.max(statistics.highWaterMark,
+					statistics.minSize));
+			sizes.put(entry.getKey(), Math.max(1, size));
+		}
+
+		RunStatistics current = simulate(sizes);
+		if (current == null) {
+			return sizes;
+		}
+		if (!isAcceptable(current)) {
+			OrccLogger.warnln("The high-water marks do not keep the "
+					+ "throughput, the current sizes are kept");
+			return initialSizes;
+		}
+
+		// halve all the FIFOs together
+		boolean reduced = true;
+		while (reduced && runs < maxRuns) {
+			reduced = false;
+			Map<String, Integer> candidate = new TreeMap<String, Integer>();
+			for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+				int size = entry.getValue();
+				int half = getHalfSize(size,
+						reference.fifos.get(entry.getKey()));
+				candidate.put(entry.getKey(), half);
+				reduced |= half < size;
+			}
+
+			if (reduced) {
+				RunStatistics statistics = simulate(candidate);
+				if (statistics == null) {
+					return sizes;
+				}
+				reduced = isAcceptable(statistics);
+				if (reduced) {
+					sizes = candidate;
+					current = statistics;
+				}
+			}
+		}
+
+		// then one by one, the largest and least blocking ones first
+		final RunStatistics last = current;
+		final Map<String, Integer> lastSizes = sizes;
+		List<String> names = new ArrayList<String>(sizes.keySet());
+		Collections.sort(names, new Comparator<String>() {
+			@Override
+			public int compare(String name1, String name2) {
+				int cmp = lastSizes.get(name2).compareTo(lastSizes.get(name1));
+				if (cmp == 0) {
+					cmp = Long.valueOf(last.fifos.get(name1).blocked)
+							.compareTo(last.fifos.get(name2).blocked);
+				}
+				return cmp;
+			}
+		});
+
+		for (String name : names) {
+			while (runs < maxRuns) {
+				int size = sizes.get(name);
+				int half = getHalfSize(size, reference.fifos.get(name));
+				if (half >= size) {
+					break;
+				}
+
+				Map<String, Integer> candidate = new TreeMap<String, Integer>(
+						sizes);
+				candidate.put(name, half);
+				RunStatistics statistics = simulate(candidate);
+				if (statistics == null) {
+					return sizes;
+				}
+				if (!isAcceptable(statistics)) {
+					break;
+				}
+				sizes = candidate;
+				current = statistics;
+			}
+		}
+
+		printSummary(initialSizes, sizes, current);
+		return sizes;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given run processes exactly as many
+	 * firings as the reference run, with the same throughput within the
+	 * tolerance. A run with fewer firings has deadlocked, so it is never
+	 * acceptable.
+	 */
+	private boolean isAcceptable(RunStatistics statistics) {
+		return statistics.firings == reference.firings
+				&& statistics.getThroughput() >= reference.getThroughput()
+						* (1 - tolerance);
+	}
+
+	private void printSummary(Map<String, Integer> initialSizes,
+			Map<String, Integer> sizes, RunStatistics statistics) {
+		long before = 0;
+		long after = 0;
+		for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+			String name = entry.getKey();
+			FifoStatistics fifo = statistics.fifos.get(name);
+			OrccLogger.debugln(name + ": size " + entry.getValue()
+					+ ", high-water mark " + fifo.highWaterMark + ", blocked "
+					+ fifo.blocked + " times");
+			before += initialSizes.get(name);
+			after += entry.getValue();
+		}
+
+		double throughput = reference.getThroughput() == 0 ? 1 : statistics
+				.getThroughput() / reference.getThroughput();
+		OrccLogger.traceln(runs + " runs, total size of the FIFOs reduced "
+				+ "from " + before + " to " + after + " tokens, throughput "
+				+ Math.round(100 * throughput) + "% of the reference");
+	}
+
+	/**
+	 * Simulates the network with the given sizes.
+	 * 
+	 * @return the statistics of the run, or <code>null</code> if the
+	 *         simulation was canceled
+	 */
+	private RunStatistics simulate(Map<String, Integer> sizes) {
+		runs++;
+		return simulator.simulate(sizes);
+	}
+
+}
@@ -0,0 +1,555 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.slow;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Connection;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.df.State;
+import net.sf.orcc.graph.Vertex;
+import net.sf.orcc.ir.Var;
+import net.sf.orcc.ir.util.ActorInterpreter;
+import net.sf.orcc.ir.util.PrimitiveValueUtil;
+import net.sf.orcc.simulators.runtime.std.stdio.impl.Source;
+import net.sf.orcc.simulators.runtime.std.stdio.impl.Writer;
+import net.sf.orcc.simulators.runtime.std.video.impl.Display;
+
+/**
+ * This class saves the state of a simulated network in a checkpoint file, and
+ * restores it. The state of the network is made of the values of the state
+ * variables and the FSM state of each actor, the tokens in the FIFOs, and the
+ * positions of the native Source, Display and Writer actors in their files.
+ * 
+ * <p>
+ * A checkpoint file is a deflated binary stream. It can only be restored in
+ * the same network, connected with the same FIFO sizes, but values are
+ * converted so that a checkpoint of a simulation with primitive values can be
+ * restored in a simulation with big integers, and conversely.
+ * </p>
+ * 
+ */
+public class Checkpoint {
+
+	private static final int MAGIC = 0x4F52434B;
+
+	private static final int VERSION = 1;
+
+	private static final byte NULL = 0;
+
+	private static final byte BOOLEAN = 1;
+
+	private static final byte LONG = 2;
+
+	private static final byte BIG_INTEGER = 3;
+
+	private static final byte DOUBLE = 4;
+
+	private static final byte BIG_DECIMAL = 5;
+
+	private static final byte STRING = 6;
+
+	private static final byte BYTE_ARRAY = 7;
+
+	private static final byte SHORT_ARRAY = 8;
+
+	private static final byte INT_ARRAY = 9;
+
+	private static final byte LONG_ARRAY = 10;
+
+	private static final byte BOOLEAN_ARRAY = 11;
+
+	private static final byte FLOAT_ARRAY = 12;
+
+	private static final byte OBJECT_ARRAY = 13;
+
+	private final List<SimulatorFifoBuffer> buffers;
+
+	private final Map<Actor, ActorInterpreter> interpreters;
+
+	private final Network network;
+
+	/**
+	 * Creates a checkpoint of the given connected network.
+	 * 
+	 * @param network
+	 *            a connected network
+	 * @param interpreters
+	 *            the interpreters of its actors
+	 */
+	public Checkpoint(Network network, Map<Actor, ActorInterpreter> interpreters) {
+		this.network = network;
+		this.interpreters = interpreters;
+
+		Set<SimulatorFifoBuffer> distinct = new LinkedHashSet<SimulatorFifoBuffer>();
+		for (Connection connection : network.getConnections()) {
+			SimulatorFifo fifo = connection.getValueAsObject("fifo");
+			if (fifo != null) {
+				distinct.add(fifo.getBuffer());
+			}
+		}
+		buffers = new ArrayList<SimulatorFifoBuffer>(distinct);
+	}
+
+	/**
+	 * Returns the number of tokens written in the FIFOs of the network since
+	 * the beginning of the simulation.
+	 * 
+	 * @return a number of tokens
+	 */
+	public long getTraffic() {
+		long traffic = 0;
+		for (SimulatorFifoBuffer buffer : buffers) {
+			traffic += buffer.getWriteIndex();
+		}
+		return traffic;
+	}
+
+	private Object readArray(DataInputStream in, byte tag) throws IOException {
+		int length = in.readInt();
+		switch (tag) {
+		case BYTE_ARRAY: {
+			byte[] array = new byte[length];
+			in.readFully(array);
+			return array;
+		}
+		case SHORT_ARRAY: {
+			short[] array = new short[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = in.readShort();
+			}
+			return array;
+		}
+		case INT_ARRAY: {
+			int[] array = new int[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = in.readInt();
+			}
+			return array;
+		}
+		case LONG_ARRAY: {
+			long[] array = new long[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = in.readLong();
+			}
+			return array;
+		}
+		case BOOLEAN_ARRAY: {
+			boolean[] array = new boolean[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = in.readBoolean();
+			}
+			return array;
+		}
+		case FLOAT_ARRAY: {
+			float[] array = new float[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = in.readFloat();
+			}
+			return array;
+		}
+		default: {
+			Class<?> arrayClass;
+			try {
+				arrayClass = Class.forName(in.readUTF());
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Unknown array class", e);
+			}
+			Object[] array = (Object[]) Array.newInstance(
+					arrayClass.getComponentType(), length);
+			for (int i = 0; i < length; i++) {
+				array[i] = readValue(in);
+			}
+			return array;
+		}
+		}
+	}
+
+	private void readBuffers(DataInputStream in) throws IOException {
+		int numBuffers = in.readInt();
+		if (numBuffers != buffers.size()) {
+			throw new OrccRuntimeException("The checkpoint has " + numBuffers
+					+ " FIFO buffers, the network has " + buffers.size());
+		}
+
+		for (SimulatorFifoBuffer buffer : buffers) {
+			List<SimulatorFifo> fifos = buffer.getFifos();
+			int numFifos = in.readInt();
+			if (numFifos != fifos.size()) {
+				throw new OrccRuntimeException("The FIFOs of the checkpoint "
+						+ "do not match the connections of the network");
+			}
+
+			long minIndex = Long.MAX_VALUE;
+			for (SimulatorFifo fifo : fifos) {
+				String name = in.readUTF();
+				int size = in.readInt();
+				long readIndex = in.readLong();
+				if (!name.equals(String.valueOf(fifo.getName()))) {
+					throw new OrccRuntimeException("Expected the FIFO " + name
+							+ " in the network, found " + fifo.getName());
+				} else if (size != fifo.getSize()) {
+					throw new OrccRuntimeException("The FIFO " + name
+							+ " has size " + size + " in the checkpoint, "
+							+ fifo.getSize() + " in the network");
+				}
+				fifo.setReadIndex(readIndex);
+				minIndex = Math.min(minIndex, readIndex);
+			}
+
+			long writeIndex = in.readLong();
+			for (long index = minIndex; index < writeIndex; index++) {
+				buffer.set(index, readValue(in));
+			}
+			buffer.setWriteIndex(writeIndex);
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case BOOLEAN:
+			return in.readBoolean();
+		case LONG:
+			return in.readLong();
+		case BIG_INTEGER: {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return new BigInteger(bytes);
+		}
+		case DOUBLE:
+			return in.readDouble();
+		case BIG_DECIMAL:
+			return new BigDecimal(in.readUTF());
+		case STRING:
+			return in.readUTF();
+		default:
+			if (tag > OBJECT_ARRAY) {
+				throw new IOException("Unexpected value tag " + tag);
+			}
+			return readArray(in, tag);
+		}
+	}
+
+	/**
+	 * Restores the state of the network saved in the given file. The network
+	 * must have been connected and initialized.
+	 * 
+	 * @param file
+	 *            a checkpoint file
+	 */
+	public void restore(File file) {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new InflaterInputStream(new FileInputStream(file))));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new OrccRuntimeException(file
+						+ " is not a checkpoint of this version of Orcc");
+			}
+
+			String name = in.readUTF();
+			if (!name.equals(network.getName())) {
+				throw new OrccRuntimeException("The checkpoint " + file
+						+ " is a checkpoint of the network " + name);
+			}
+
+			int numActors = in.readInt();
+			if (numActors != network.getChildren().size()) {
+				throw new OrccRuntimeException("The checkpoint has "
+						+ numActors + " actors, the network has "
+						+ network.getChildren().size());
+			}
+			for (Vertex vertex : network.getChildren()) {
+				restoreActor(in, vertex.getAdapter(Actor.class));
+			}
+
+			readBuffers(in);
+
+			Source.restoreState(in);
+			Display.restoreState(in);
+			Writer.restoreState(in);
+		} catch (IOException e) {
+			throw new OrccRuntimeException("Could not read the checkpoint "
+					+ file, e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	private void restoreActor(DataInputStream in, Actor actor)
+			throws IOException {
+		String name = in.readUTF();
+		if (!name.equals(actor.getName())) {
+			throw new OrccRuntimeException("Expected the actor " + name
+					+ " in the network, found " + actor.getName());
+		}
+
+		ActorInterpreter interpreter = interpreters.get(actor);
+		boolean primitiveValues = interpreter.isPrimitiveValues();
+		int numVars = in.readInt();
+		for (int i = 0; i < numVars; i++) {
+			String varName = in.readUTF();
+			Object value = readValue(in);
+			Var var = actor.getStateVar(varName);
+			if (var == null) {
+				throw new OrccRuntimeException("The actor " + name
+						+ " has no state variable " + varName);
+			}
+			interpreter.setValue(var,
+					primitiveValues ? PrimitiveValueUtil.narrow(value)
+							: PrimitiveValueUtil.widen(value));
+		}
+
+		int stateIndex = in.readInt();
+		State state = null;
+		if (stateIndex >= 0) {
+			if (!actor.hasFsm()
+					|| stateIndex >= actor.getFsm().getStates().size()) {
+				throw new OrccRuntimeException("The FSM of the actor " + name
+						+ " does not match the checkpoint");
+			}
+			state = actor.getFsm().getStates().get(stateIndex);
+		}
+
+		if (interpreter instanceof ConnectedActorInterpreter) {
+			((ConnectedActorInterpreter) interpreter).restoreState(state);
+		}
+	}
+
+	private void saveActor(DataOutputStream out, Actor actor)
+			throws IOException {
+		ActorInterpreter interpreter = interpreters.get(actor);
+		interpreter.synchronizeVariables();
+
+		out.writeUTF(actor.getName());
+		List<Var> stateVars = new ArrayList<Var>();
+		for (Var var : actor.getStateVars()) {
+			if (var.isAssignable()) {
+				stateVars.add(var);
+			}
+		}
+		out.writeInt(stateVars.size());
+		for (Var var : stateVars) {
+			out.writeUTF(var.getName());
+			writeValue(out, var.getValue());
+		}
+
+		State state = interpreter.getFsmState();
+		out.writeInt(state == null ? -1 : actor.getFsm().getStates()
+				.indexOf(state));
+	}
+
+	/**
+	 * Saves the state of the network in the given file.
+	 * 
+	 * @param file
+	 *            a checkpoint file
+	 */
+	public void write(File file) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(
+					new DeflaterOutputStream(new FileOutputStream(file),
+							deflater)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(network.getName());
+
+			out.writeInt(network.getChildren().size());
+			for (Vertex vertex : network.getChildren()) {
+				saveActor(out, vertex.getAdapter(Actor.class));
+			}
+
+			writeBuffers(out);
+
+			Source.saveState(out);
+			Display.saveState(out);
+			Writer.saveState(out);
+			out.close();
+			out = null;
+		} catch (IOException e) {
+			throw new OrccRuntimeException("Could not write the checkpoint "
+					+ file, e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// nothing to do
+				}
+			}
+			deflater.end();
+		}
+	}
+
+	private void writeArray(DataOutputStream out, Object value)
+			throws IOException {
+		if (value instanceof byte[]) {
+			byte[] array = (byte[]) value;
+			out.writeByte(BYTE_ARRAY);
+			out.writeInt(array.length);
+			out.write(array);
+		} else if (value instanceof short[]) {
+			short[] array = (short[]) value;
+			out.writeByte(SHORT_ARRAY);
+			out.writeInt(array.length);
+			for (short element : array) {
+				out.writeShort(element);
+			}
+		} else if (value instanceof int[]) {
+			int[] array = (int[]) value;
+			out.writeByte(INT_ARRAY);
+			out.writeInt(array.length);
+			for (int element : array) {
+				out.writeInt(element);
+			}
+		} else if (value instanceof long[]) {
+			long[] array = (long[]) value;
+			out.writeByte(LONG_ARRAY);
+			out.writeInt(array.length);
+			for (long element : array) {
+				out.writeLong(element);
+			}
+		} else if (value instanceof boolean[]) {
+			boolean[] array = (boolean[]) value;
+			out.writeByte(BOOLEAN_ARRAY);
+			out.writeInt(array.length);
+			for (boolean element : array) {
+				out.writeBoolean(element);
+			}
+		} else if (value instanceof float[]) {
+			float[] array = (float[]) value;
+			out.writeByte(FLOAT_ARRAY);
+			out.writeInt(array.length);
+			for (float element : array) {
+				out.writeFloat(element);
+			}
+		} else if (value instanceof Object[]) {
+			Object[] array = (Object[]) value;
+			out.writeByte(OBJECT_ARRAY);
+			out.writeInt(array.length);
+			out.writeUTF(array.getClass().getName());
+			for (Object element : array) {
+				writeValue(out, element);
+			}
+		} else {
+			throw new OrccRuntimeException("Cannot save a value of type "
+					+ value.getClass().getName() + " in a checkpoint");
+		}
+	}
+
+	private void writeBuffers(DataOutputStream out) throws IOException {
+		out.writeInt(buffers.size());
+		for (SimulatorFifoBuffer buffer : buffers) {
+			List<SimulatorFifo> fifos = buffer.getFifos();
+			out.writeInt(fifos.size());
+
+			long minIndex = Long.MAX_VALUE;
+			for (SimulatorFifo fifo : fifos) {
+				out.writeUTF(String.valueOf(fifo.getName()));
+				out.writeInt(fifo.getSize());
+				out.writeLong(fifo.getReadIndex());
+				minIndex = Math.min(minIndex, fifo.getReadIndex());
+			}
+
+			// the tokens not read yet by every FIFO
+			long writeIndex = buffer.getWriteIndex();
+			out.writeLong(writeIndex);
+			for (long index = minIndex; index < writeIndex; index++) {
+				writeValue(out, buffer.get(index));
+			}
+		}
+	}
+
+	private void writeValue(DataOutputStream out, Object value)
+			throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof BigInteger) {
+			BigInteger intVal = (BigInteger) value;
+			if (intVal.bitLength() < 64) {
+				out.writeByte(LONG);
+				out.writeLong(intVal.longValue());
+			} else {
+				byte[] bytes = intVal.toByteArray();
+				out.writeByte(BIG_INTEGER);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof BigDecimal) {
+			out.writeByte(BIG_DECIMAL);
+			out.writeUTF(value.toString());
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			out.writeUTF((String) value);
+		} else {
+			writeArray(out, value);
+		}
+	}
+
+}
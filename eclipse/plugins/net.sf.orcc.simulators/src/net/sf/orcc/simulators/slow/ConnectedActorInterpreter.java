@@ -28,27 +28,38 @@
  */
 package net.sf.orcc.simulators.slow;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import net.sf.orcc.OrccRuntimeException;
 import net.sf.orcc.df.Action;
 import net.sf.orcc.df.Actor;
 import net.sf.orcc.df.Pattern;
 import net.sf.orcc.df.Port;
+import net.sf.orcc.df.State;
 import net.sf.orcc.ir.Arg;
 import net.sf.orcc.ir.ArgByVal;
 import net.sf.orcc.ir.Expression;
+import net.sf.orcc.ir.InstCall;
 import net.sf.orcc.ir.Procedure;
 import net.sf.orcc.ir.Type;
 import net.sf.orcc.ir.TypeList;
 import net.sf.orcc.ir.Var;
 import net.sf.orcc.ir.util.ActorInterpreter;
 import net.sf.orcc.ir.util.ValueUtil;
+import net.sf.orcc.simulators.profiling.ActorProfile;
 import net.sf.orcc.simulators.util.RuntimeExpressionEvaluator;
 import net.sf.orcc.util.Attribute;
-import net.sf.orcc.util.util.EcoreHelper;
+import net.sf.orcc.util.OrccLogger;
 
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
 /**
  * This class defines an actor that can be interpreted by calling
@@ -60,6 +71,24 @@ import org.eclipse.emf.ecore.EObject;
  */
 public class ConnectedActorInterpreter extends ActorInterpreter {
 
+	// written only by the thread that schedules this actor, and read without
+	// synchronization by the metrics sampler, which may see stale values
+	private long blockedOnInput;
+
+	private long blockedOnOutput;
+
+	private long firings;
+
+	private boolean nativeCalls;
+
+	private boolean nativeTime;
+
+	private final Map<Procedure, NativeProcedure> natives;
+
+	private boolean outputFull;
+
+	private ActorProfile profile;
+
 	/**
 	 * Creates an actor interpreter dedicated to the simulator.
 	 * 
@@ -68,71 +97,84 @@ public class ConnectedActorInterpreter extends ActorInterpreter {
 	 */
 	public ConnectedActorInterpreter(Actor actor) {
 		super(actor);
-		exprInterpreter = new RuntimeExpressionEvaluator();
+		setExprInterpreter(new RuntimeExpressionEvaluator());
+		natives = new LinkedHashMap<Procedure, NativeProcedure>();
 	}
 
 	@Override
 	protected Object callNativeProcedure(Procedure procedure,
 			List<Arg> arguments) {
-		int numParams = arguments.size();
-		Class<?>[] parameterTypes = new Class<?>[numParams];
-		Object[] args = new Object[numParams];
+		Object[] args = new Object[arguments.size()];
 		int i = 0;
 		for (Arg arg : arguments) {
 			if (arg.isByVal()) {
 				Expression expr = ((ArgByVal) arg).getValue();
 				args[i] = exprInterpreter.doSwitch(expr);
-				parameterTypes[i] = args[i].getClass();
 			}
 
 			i++;
 		}
 
-		// get packageName and containerName for calling the correct native
-		// function
-		EObject entity = procedure.eContainer();
-		String name = EcoreHelper.getFeature(entity, "name");
-		int index = name.lastIndexOf('.');
-		if (index != -1) {
-			name = "net.sf.orcc.simulators.runtime." + name.substring(0, index)
-					+ ".impl" + name.substring(index);
-		}
-		try {
-			Class<?> clasz = Class.forName(name);
-			return clasz.getMethod(procedure.getName(), parameterTypes).invoke(
-					null, args);
-		} catch (Exception e) {
-			throw new OrccRuntimeException(
-					"Native procedure call Exception for "
-							+ procedure.getName(), e);
-		}
+		return getNativeProcedure(procedure).invoke(args, primitiveValues);
 	}
 
 	@Override
 	protected boolean checkOutputPattern(Pattern outputPattern) {
-		boolean hasRooms = true;
 		if (outputPattern != null) {
 			for (Port port : outputPattern.getPorts()) {
 				// check only connected output ports
 				Attribute attr = port.getAttribute("fifo");
 				if (attr != null) {
-					@SuppressWarnings("unchecked")
-					List<SimulatorFifo> fifos = (List<SimulatorFifo>) attr
+					SimulatorFifoBuffer buffer = (SimulatorFifoBuffer) attr
 							.getObjectValue();
-					Integer nbOfTokens = outputPattern.getNumTokens(port);
-					for (SimulatorFifo fifo : fifos) {
-						hasRooms &= fifo.hasRoom(nbOfTokens);
+					if (!buffer.hasRoom(outputPattern.getNumTokens(port))) {
+						outputFull = true;
+						return false;
 					}
 				}
-
 			}
 		}
-		return hasRooms;
+		return true;
+	}
+
+	/**
+	 * Records a failed scheduling attempt of the actor.
+	 * 
+	 * @param outputFull
+	 *            <code>true</code> if an action could not fire because one of
+	 *            its output FIFOs was full, <code>false</code> if no action had
+	 *            enough input tokens and a true guard
+	 */
+	protected void blocked(boolean outputFull) {
+		if (outputFull) {
+			blockedOnOutput++;
+		} else {
+			blockedOnInput++;
+		}
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public void execute(Action action) {
+		fired();
+		if (profile == null) {
+			fire(action);
+		} else {
+			long time = System.nanoTime();
+			long cpuTime = profile.getCurrentCpuTime();
+			fire(action);
+			profile.fired(action, System.nanoTime() - time,
+					profile.getCurrentCpuTime() - cpuTime);
+		}
+	}
+
+	/**
+	 * Fires the given action: reads its input tokens, interprets its body and
+	 * writes its output tokens.
+	 * 
+	 * @param action
+	 *            a schedulable action
+	 */
+	private void fire(Action action) {
 		// allocate patterns
 		Pattern inputPattern = action.getInputPattern();
 		Pattern outputPattern = action.getOutputPattern();
@@ -147,11 +189,7 @@ public class ConnectedActorInterpreter extends ActorInterpreter {
 					.getObjectValue();
 			Var variable = inputPattern.getVariable(port);
 			Type type = ((TypeList) variable.getType()).getInnermostType();
-			Object array = variable.getValue();
-			for (int i = 0; i < numTokens; i++) {
-				Object value = fifo.read();
-				ValueUtil.set(type, array, value, i);
-			}
+			fifo.read(type, getValue(variable), numTokens);
 		}
 
 		// Interpret the whole action
@@ -161,24 +199,118 @@ public class ConnectedActorInterpreter extends ActorInterpreter {
 			// write tokens only on connected output ports
 			Attribute attr = port.getAttribute("fifo");
 			if (attr != null) {
-				List<SimulatorFifo> fifos = (List<SimulatorFifo>) attr
+				SimulatorFifoBuffer buffer = (SimulatorFifoBuffer) attr
 						.getObjectValue();
 				int numTokens = outputPattern.getNumTokens(port);
 				Var variable = outputPattern.getVariable(port);
 				Type type = ((TypeList) variable.getType()).getInnermostType();
-				Object array = variable.getValue();
-				for (int i = 0; i < numTokens; i++) {
-					Object value = ValueUtil.get(type, array, i);
-					for (SimulatorFifo fifo : fifos) {
-						fifo.write(value);
-					}
-				}
+				buffer.write(type, getValue(variable), numTokens);
 			}
 		}
 	}
 
+	/**
+	 * Records a firing of the actor.
+	 */
+	protected void fired() {
+		firings++;
+	}
+
+	/**
+	 * Returns the number of scheduling attempts of the actor that failed
+	 * because no action had enough input tokens and a true guard.
+	 * 
+	 * @return a number of failed scheduling attempts
+	 */
+	public long getBlockedOnInput() {
+		return blockedOnInput;
+	}
+
+	/**
+	 * Returns the number of scheduling attempts of the actor that failed
+	 * because an output FIFO was full.
+	 * 
+	 * @return a number of failed scheduling attempts
+	 */
+	public long getBlockedOnOutput() {
+		return blockedOnOutput;
+	}
+
+	/**
+	 * Returns the number of actions fired by the actor.
+	 * 
+	 * @return a number of firings
+	 */
+	public long getFirings() {
+		return firings;
+	}
+
+	/**
+	 * Returns the Java method of the given native procedure, which is resolved
+	 * the first time it is requested.
+	 * 
+	 * @param procedure
+	 *            a native procedure
+	 * @return the resolved native procedure
+	 */
+	protected NativeProcedure getNativeProcedure(Procedure procedure) {
+		NativeProcedure nativeProc = natives.get(procedure);
+		if (nativeProc == null) {
+			nativeProc = NativeProcedure.resolve(procedure);
+			nativeProc.setStatistics(nativeCalls, nativeTime);
+			natives.put(procedure, nativeProc);
+		}
+		return nativeProc;
+	}
+
+	/**
+	 * Returns the native procedures called by this actor so far, with their
+	 * statistics.
+	 * 
+	 * @return the native procedures resolved by this interpreter
+	 */
+	public Collection<NativeProcedure> getNativeProcedures() {
+		return natives.values();
+	}
+
+	/**
+	 * Returns the profile of this actor.
+	 * 
+	 * @return the profile of this actor, or <code>null</code> if it is not
+	 *         profiled
+	 */
+	public ActorProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Resolves the native procedures that may be called by the actor, and
+	 * warns about the ones that do not exist in the simulator runtime.
+	 */
+	@Override
+	public void initialize() {
+		resolveNativeProcedures();
+		super.initialize();
+	}
+
 	@Override
 	protected boolean isSchedulable(Action action) {
+		boolean schedulable = hasTokensAndGuard(action);
+		if (profile != null) {
+			profile.guardEvaluated(action, schedulable);
+		}
+		return schedulable;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given action has enough tokens on its
+	 * input ports and its guard is true.
+	 * 
+	 * @param action
+	 *            an action
+	 * @return <code>true</code> if the action is schedulable
+	 */
+	private boolean hasTokensAndGuard(Action action) {
 		Pattern pattern = action.getInputPattern();
 		// check tokens
 		for (Port port : pattern.getPorts()) {
@@ -198,21 +330,16 @@ public class ConnectedActorInterpreter extends ActorInterpreter {
 		// allocates peeked variables
 		pattern = action.getPeekPattern();
 		for (Port port : pattern.getPorts()) {
-			int numTokens = pattern.getNumTokens(port);
-			SimulatorFifo fifo = (SimulatorFifo) port.getAttribute(0)
-					.getObjectValue();
-
 			Var peeked = pattern.getVariable(port);
 			if (peeked != null) {
-				peeked.setValue(ValueUtil.createArray((TypeList) peeked
-						.getType()));
-			}
+				int numTokens = pattern.getNumTokens(port);
+				SimulatorFifo fifo = (SimulatorFifo) port.getAttribute("fifo")
+						.getObjectValue();
 
-			Type type = ((TypeList) peeked.getType()).getInnermostType();
-			Object array = peeked.getValue();
-			for (int i = 0; i < numTokens; i++) {
-				Object value = fifo.peek(i);
-				ValueUtil.set(type, array, value, i);
+				TypeList type = (TypeList) peeked.getType();
+				Object array = ValueUtil.createArray(type);
+				fifo.peek(type.getInnermostType(), array, numTokens);
+				setValue(peeked, array);
 			}
 		}
 
@@ -220,6 +347,103 @@ public class ConnectedActorInterpreter extends ActorInterpreter {
 		return ValueUtil.isTrue(result);
 	}
 
+	/**
+	 * Resolves the native procedures called by the actor, directly or through
+	 * the procedures of the units it uses.
+	 */
+	private void resolveNativeProcedures() {
+		Set<EObject> visited = new HashSet<EObject>();
+		List<EObject> toVisit = new ArrayList<EObject>();
+		toVisit.add(actor);
+		while (!toVisit.isEmpty()) {
+			EObject object = toVisit.remove(toVisit.size() - 1);
+			Iterator<EObject> it = object.eAllContents();
+			while (it.hasNext()) {
+				EObject obj = it.next();
+				if (!(obj instanceof InstCall) || ((InstCall) obj).isPrint()) {
+					continue;
+				}
+
+				Procedure procedure = ((InstCall) obj).getProcedure();
+				if (!visited.add(procedure)) {
+					continue;
+				}
+
+				if (procedure.isNative()) {
+					try {
+						NativeProcedure nativeProc;
+						nativeProc = NativeProcedure.resolve(procedure);
+						nativeProc.setStatistics(nativeCalls, nativeTime);
+						natives.put(procedure, nativeProc);
+					} catch (OrccRuntimeException e) {
+						OrccLogger.warnln("Actor " + actor.getName() + ": "
+								+ e.getMessage());
+					}
+				} else if (!EcoreUtil.isAncestor(actor, procedure)) {
+					// procedure declared in a unit
+					toVisit.add(procedure);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean schedule() {
+		outputFull = false;
+		boolean fired;
+		if (profile == null) {
+			fired = super.schedule();
+		} else {
+			long time = System.nanoTime();
+			fired = super.schedule();
+			profile.scheduled(fired, System.nanoTime() - time);
+		}
+
+		if (!fired) {
+			blocked(outputFull);
+		}
+		return fired;
+	}
+
+	/**
+	 * Restores the state of the actor from the values of its state variables
+	 * held by this interpreter and the given FSM state, e.g. when a checkpoint
+	 * is restored.
+	 * 
+	 * @param state
+	 *            the current state of the FSM, or <code>null</code> if the
+	 *            actor has no FSM
+	 */
+	public void restoreState(State state) {
+		fsmState = state;
+	}
+
+	/**
+	 * Sets which statistics are recorded by the native procedures resolved
+	 * from now on by this interpreter.
+	 * 
+	 * @param calls
+	 *            <code>true</code> to count the calls to native procedures
+	 * @param time
+	 *            <code>true</code> to also measure the time spent in them
+	 * @see NativeProcedure#setStatistics(boolean, boolean)
+	 */
+	public void setNativeStatistics(boolean calls, boolean time) {
+		nativeCalls = calls;
+		nativeTime = time;
+	}
+
+	/**
+	 * Sets the profile where the guard evaluations and the firings of this
+	 * actor are recorded.
+	 * 
+	 * @param profile
+	 *            a profile, or <code>null</code> to disable profiling
+	 */
+	public void setProfile(ActorProfile profile) {
+		this.profile = profile;
+	}
+
 	@Override
 	public String toString() {
 		return "interpreter for actor " + actor.getName();
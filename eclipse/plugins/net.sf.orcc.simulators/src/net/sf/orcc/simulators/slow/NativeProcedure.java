@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.slow;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.ir.Procedure;
+import net.sf.orcc.ir.util.PrimitiveValueUtil;
+import net.sf.orcc.util.util.EcoreHelper;
+
+import org.eclipse.emf.ecore.EObject;
+
+/**
+ * This class defines a native procedure resolved to the static Java method
+ * that implements it in the simulator runtime. The method and the conversions
+ * of its arguments are computed once, and the number of calls and the time
+ * spent in the method are recorded.
+ * 
+ */
+public class NativeProcedure {
+
+	/**
+	 * Returns the name of the runtime class that implements the native
+	 * procedures of the given unit or actor.
+	 * 
+	 * @param entity
+	 *            the unit or actor that contains a native procedure
+	 * @return the qualified name of a runtime class
+	 */
+	private static String getClassName(EObject entity) {
+		String name = EcoreHelper.getFeature(entity, "name");
+		int index = name.lastIndexOf('.');
+		if (index != -1) {
+			name = "net.sf.orcc.simulators.runtime." + name.substring(0, index)
+					+ ".impl" + name.substring(index);
+		}
+		return name;
+	}
+
+	/**
+	 * Resolves the given native procedure.
+	 * 
+	 * @param procedure
+	 *            a native procedure
+	 * @return the resolved native procedure
+	 * @throws OrccRuntimeException
+	 *             if there is no runtime method for this procedure
+	 */
+	public static NativeProcedure resolve(Procedure procedure) {
+		String className = getClassName(procedure.eContainer());
+		Class<?> clasz;
+		try {
+			clasz = Class.forName(className);
+		} catch (ClassNotFoundException e) {
+			throw new OrccRuntimeException("No runtime class " + className
+					+ " for native procedure " + procedure.getName());
+		}
+
+		// natives are not overloaded, so the name and arity are enough
+		Method method = null;
+		int numCandidates = 0;
+		int numParams = procedure.getParameters().size();
+		for (Method candidate : clasz.getMethods()) {
+			if (candidate.getName().equals(procedure.getName())
+					&& Modifier.isStatic(candidate.getModifiers())
+					&& candidate.getParameterTypes().length == numParams) {
+				method = candidate;
+				numCandidates++;
+			}
+		}
+
+		if (numCandidates == 0) {
+			throw new OrccRuntimeException("No runtime method "
+					+ procedure.getName() + " with " + numParams
+					+ " parameter(s) in " + className);
+		}
+
+		return new NativeProcedure(procedure, clasz,
+				numCandidates == 1 ? method : null);
+	}
+
+	// written only by the thread of the actor that owns this procedure, and
+	// read without synchronization by the metrics sampler
+	private long calls;
+
+	private final Class<?> clasz;
+
+	private boolean counted;
+
+	private final Method method;
+
+	private final String name;
+
+	private final boolean narrowResult;
+
+	private final Procedure procedure;
+
+	private long time;
+
+	private boolean timed;
+
+	private final boolean[] widenArgs;
+
+	private NativeProcedure(Procedure procedure, Class<?> clasz,
+			Method method) {
+		this.procedure = procedure;
+		this.clasz = clasz;
+		this.method = method;
+		name = clasz.getName() + "." + procedure.getName();
+
+		if (method == null) {
+			// overloaded method: resolved at each call from the arguments
+			widenArgs = null;
+			narrowResult = true;
+		} else {
+			method.setAccessible(true);
+			Class<?>[] types = method.getParameterTypes();
+			widenArgs = new boolean[types.length];
+			for (int i = 0; i < types.length; i++) {
+				widenArgs[i] = types[i] == BigInteger.class
+						|| types[i] == BigDecimal.class;
+			}
+			Class<?> returnType = method.getReturnType();
+			narrowResult = returnType == BigInteger.class
+					|| returnType == BigDecimal.class;
+		}
+	}
+
+	/**
+	 * Returns the number of times this procedure has been called.
+	 * 
+	 * @return the number of calls, or 0 if the calls are not counted
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * Returns the qualified name of the Java method of this procedure.
+	 * 
+	 * @return the name of this native procedure
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the procedure resolved by this object.
+	 * 
+	 * @return a native procedure
+	 */
+	public Procedure getProcedure() {
+		return procedure;
+	}
+
+	/**
+	 * Returns the time spent in this procedure, in nanoseconds.
+	 * 
+	 * @return the total time of the calls to this procedure, or 0 if they
+	 *         are not timed
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Calls this procedure with the given arguments. Native functions take
+	 * and return BigInteger/BigDecimal values, so the arguments are widened,
+	 * and the result is narrowed if the caller uses primitive values.
+	 * 
+	 * @param args
+	 *            values of the arguments, modified by this method
+	 * @param primitiveValues
+	 *            <code>true</code> if the caller uses primitive values
+	 * @return the value returned by the procedure
+	 */
+	public Object invoke(Object[] args, boolean primitiveValues) {
+		long start = timed ? System.nanoTime() : 0;
+		try {
+			Method target = method;
+			if (target == null) {
+				Class<?>[] parameterTypes = new Class<?>[args.length];
+				for (int i = 0; i < args.length; i++) {
+					args[i] = PrimitiveValueUtil.widen(args[i]);
+					parameterTypes[i] = args[i].getClass();
+				}
+				target = clasz.getMethod(procedure.getName(), parameterTypes);
+			} else {
+				for (int i = 0; i < args.length; i++) {
+					if (widenArgs[i]) {
+						args[i] = PrimitiveValueUtil.widen(args[i]);
+					}
+				}
+			}
+
+			Object result = target.invoke(null, args);
+			if (primitiveValues && narrowResult) {
+				return PrimitiveValueUtil.narrow(result);
+			}
+			return result;
+		} catch (Exception e) {
+			throw new OrccRuntimeException(
+					"Native procedure call Exception for "
+							+ procedure.getName(), e);
+		} finally {
+			if (counted) {
+				calls++;
+				if (timed) {
+					time += System.nanoTime() - start;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets which statistics are recorded by this procedure. Both are disabled
+	 * by default, so that a call costs no more than the invocation itself.
+	 * 
+	 * @param counted
+	 *            <code>true</code> to count the calls
+	 * @param timed
+	 *            <code>true</code> to count the calls and measure their time
+	 */
+	public void setStatistics(boolean counted, boolean timed) {
+		this.counted = counted || timed;
+		this.timed = timed;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + calls + " calls, " + (time / 1000000) + " ms";
+	}
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.slow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Connection;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.graph.Vertex;
+import net.sf.orcc.ir.util.ActorInterpreter;
+import net.sf.orcc.util.Attribute;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class defines a data-driven scheduler for the simulator. Actors are kept
+ * in a ready queue, and an actor that cannot fire leaves the queue until one
+ * of its input FIFOs receives tokens or one of its output FIFOs is read. The
+ * order in which ready actors are scheduled depends on a
+ * {@link SchedulingPolicy}.
+ * 
+ * <p>
+ * The scheduler counts the wasted attempts of each actor, i.e. the number of
+ * times it has been scheduled without being able to fire.
+ * </p>
+ * 
+ */
+public class ReadyQueueScheduler {
+
+	/**
+	 * This class defines a listener that enqueues the reader of a FIFO when
+	 * tokens are written, and its writer when tokens are read.
+	 */
+	private class ConnectionListener implements SimulatorFifoListener {
+
+		private final Node source;
+
+		private final Node target;
+
+		public ConnectionListener(Node source, Node target) {
+			this.source = source;
+			this.target = target;
+		}
+
+		@Override
+		public void tokensRead(SimulatorFifo fifo) {
+			enqueue(source);
+		}
+
+		@Override
+		public void tokensWritten(SimulatorFifo fifo) {
+			enqueue(target);
+		}
+
+	}
+
+	/**
+	 * This class holds the scheduling state of an actor.
+	 */
+	private static class Node {
+
+		private final Actor actor;
+
+		private long firings;
+
+		private final List<SimulatorFifo> inputs;
+
+		private final ActorInterpreter interpreter;
+
+		private boolean queued;
+
+		private long wasted;
+
+		public Node(Actor actor, ActorInterpreter interpreter) {
+			this.actor = actor;
+			this.interpreter = interpreter;
+			inputs = new ArrayList<SimulatorFifo>();
+		}
+
+		/**
+		 * Returns the number of tokens available on the inputs of the actor.
+		 */
+		public long getBacklog() {
+			long backlog = 0;
+			for (SimulatorFifo fifo : inputs) {
+				backlog += fifo.getNumTokens();
+			}
+			return backlog;
+		}
+
+	}
+
+	private Node current;
+
+	private boolean currentFired;
+
+	private final List<SimulatorFifo> fifos;
+
+	private final Map<Actor, Node> nodes;
+
+	private final SchedulingPolicy policy;
+
+	private final Deque<Node> queue;
+
+	/**
+	 * Creates a data-driven scheduler for the given network. The FIFOs of the
+	 * network must have been created, and all actors are initially ready.
+	 * 
+	 * @param network
+	 *            a connected network
+	 * @param interpreters
+	 *            the interpreters of the actors of the network
+	 * @param policy
+	 *            a data-driven scheduling policy
+	 */
+	public ReadyQueueScheduler(Network network,
+			Map<Actor, ActorInterpreter> interpreters,
+			SchedulingPolicy policy) {
+		this.policy = policy;
+		fifos = new ArrayList<SimulatorFifo>();
+		nodes = new LinkedHashMap<Actor, Node>();
+		queue = new ArrayDeque<Node>();
+
+		for (Vertex vertex : network.getChildren()) {
+			Actor actor = vertex.getAdapter(Actor.class);
+			Node node = new Node(actor, interpreters.get(actor));
+			nodes.put(actor, node);
+			enqueue(node);
+		}
+
+		for (Connection connection : network.getConnections()) {
+			Attribute attribute = connection.getAttribute("fifo");
+			Actor src = connection.getSource().getAdapter(Actor.class);
+			Actor tgt = connection.getTarget().getAdapter(Actor.class);
+			if (attribute == null || src == null || tgt == null) {
+				continue;
+			}
+
+			SimulatorFifo fifo = (SimulatorFifo) attribute.getObjectValue();
+			Node source = nodes.get(src);
+			Node target = nodes.get(tgt);
+			target.inputs.add(fifo);
+			fifo.setListener(new ConnectionListener(source, target));
+			fifos.add(fifo);
+		}
+	}
+
+	/**
+	 * Removes the listeners set by this scheduler on the FIFOs of the network.
+	 */
+	public void dispose() {
+		for (SimulatorFifo fifo : fifos) {
+			fifo.setListener(null);
+		}
+	}
+
+	private void enqueue(Node node) {
+		if (!node.queued) {
+			node.queued = true;
+			queue.addLast(node);
+		}
+	}
+
+	/**
+	 * Returns the number of times the given actor has been fired.
+	 * 
+	 * @param actor
+	 *            an actor of the network
+	 * @return the number of firings of the actor
+	 */
+	public long getFirings(Actor actor) {
+		return nodes.get(actor).firings;
+	}
+
+	/**
+	 * Returns the number of times the given actor has been scheduled without
+	 * firing any action, i.e. the number of times its guards have been
+	 * evaluated in vain.
+	 * 
+	 * @param actor
+	 *            an actor of the network
+	 * @return the number of wasted attempts of the actor
+	 */
+	public long getWastedAttempts(Actor actor) {
+		return nodes.get(actor).wasted;
+	}
+
+	private Node poll() {
+		switch (policy) {
+		case BACKLOG:
+			Node best = null;
+			long maxBacklog = -1;
+			for (Node node : queue) {
+				long backlog = node.getBacklog();
+				if (backlog > maxBacklog) {
+					best = node;
+					maxBacklog = backlog;
+				}
+			}
+			if (best != null) {
+				queue.remove(best);
+			}
+			return best;
+		case DEPTH_FIRST:
+			return queue.pollLast();
+		default:
+			return queue.pollFirst();
+		}
+	}
+
+	/**
+	 * Prints the number of firings and wasted attempts of the network, and of
+	 * each actor at the debug level.
+	 */
+	public void printStatistics() {
+		List<Node> sorted = new ArrayList<Node>(nodes.values());
+		Collections.sort(sorted, new Comparator<Node>() {
+			@Override
+			public int compare(Node n1, Node n2) {
+				return Long.valueOf(n2.wasted).compareTo(n1.wasted);
+			}
+		});
+
+		long firings = 0;
+		long wasted = 0;
+		for (Node node : sorted) {
+			firings += node.firings;
+			wasted += node.wasted;
+			OrccLogger.debugln(node.actor.getName() + ": " + node.firings
+					+ " firings, " + node.wasted + " wasted attempts");
+		}
+
+		OrccLogger.traceln("Scheduler (" + policy.getName() + "): "
+				+ firings + " firings, " + wasted + " wasted attempts");
+	}
+
+	/**
+	 * Fires at most one action. The current actor is scheduled until it
+	 * cannot fire anymore, then the next actor is taken from the ready queue.
+	 * 
+	 * @return <code>false</code> if no actor is ready anymore
+	 */
+	public boolean step() {
+		if (current == null) {
+			current = poll();
+			if (current == null) {
+				return false;
+			}
+			current.queued = false;
+			currentFired = false;
+		}
+
+		if (current.interpreter.schedule()) {
+			current.firings++;
+			currentFired = true;
+		} else {
+			if (!currentFired) {
+				current.wasted++;
+			}
+			current = null;
+		}
+		return true;
+	}
+
+}
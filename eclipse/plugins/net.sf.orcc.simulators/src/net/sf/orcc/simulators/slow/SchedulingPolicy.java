@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.slow;
+
+import net.sf.orcc.OrccRuntimeException;
+
+/**
+ * This enumeration defines the policies used by the simulator to choose the
+ * next actor to schedule.
+ * 
+ */
+public enum SchedulingPolicy {
+
+	/**
+	 * Ready actors are scheduled by decreasing number of tokens available on
+	 * their inputs.
+	 */
+	BACKLOG("backlog"),
+
+	/**
+	 * The most recently ready actor is scheduled first, so tokens tend to
+	 * follow the paths of the network before new tokens are produced.
+	 */
+	DEPTH_FIRST("depth-first"),
+
+	/**
+	 * Ready actors are scheduled in the order they became ready.
+	 */
+	FIFO("fifo"),
+
+	/**
+	 * Every actor is scheduled in turn, until none of them can fire.
+	 */
+	ROUND_ROBIN("round-robin");
+
+	/**
+	 * Returns the policy with the given name.
+	 * 
+	 * @param name
+	 *            name of a policy, as returned by {@link #getName()}
+	 * @return a scheduling policy
+	 * @throws OrccRuntimeException
+	 *             if there is no policy with this name
+	 */
+	public static SchedulingPolicy getPolicy(String name) {
+		for (SchedulingPolicy policy : values()) {
+			if (policy.name.equalsIgnoreCase(name)) {
+				return policy;
+			}
+		}
+		throw new OrccRuntimeException("Unknown scheduling policy: " + name);
+	}
+
+	private final String name;
+
+	private SchedulingPolicy(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of this policy, as used in the simulator options.
+	 * 
+	 * @return the name of this policy
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns <code>true</code> if this policy schedules only the actors whose
+	 * FIFOs have changed.
+	 * 
+	 * @return <code>true</code> if this policy uses a ready queue
+	 */
+	public boolean isDataDriven() {
+		return this != ROUND_ROBIN;
+	}
+
+}
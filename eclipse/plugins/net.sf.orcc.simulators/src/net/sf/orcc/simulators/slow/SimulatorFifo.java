@@ -35,16 +35,15 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 
 import net.sf.orcc.ir.Type;
 import net.sf.orcc.ir.util.ValueUtil;
+import net.sf.orcc.simulators.trace.TraceWriter;
 
 /**
- * This class defines a generic FIFO.
+ * This class defines a generic FIFO. A FIFO is a read index in a
+ * {@link SimulatorFifoBuffer}, which may be shared with the other FIFOs
+ * connected to the same output port.
  * 
  * @author Matthieu Wipliez
  * @author Antoine Lorence
@@ -52,7 +51,10 @@ import net.sf.orcc.ir.util.ValueUtil;
  */
 public class SimulatorFifo {
 
-	private BlockingQueue<Object> content;
+	private final SimulatorFifoBuffer buffer;
+
+	private volatile long readIndex;
+
 	private Type type;
 
 	private String name;
@@ -66,6 +68,14 @@ public class SimulatorFifo {
 
 	private long traffic;
 
+	private long blocked;
+
+	private int highWaterMark;
+
+	private SimulatorFifoListener listener;
+
+	private TraceWriter traceWriter;
+
 	/**
 	 * Creates a new FIFO with the given type and size.
 	 * 
@@ -73,11 +83,11 @@ public class SimulatorFifo {
 	 *            the size of the FIFO
 	 */
 	public SimulatorFifo(int size) {
-		this(null, size, false);
+		this((Type) null, size, false);
 	}
 
 	/**
-	 * Creates a new FIFO with the given type and size.
+	 * Creates a new FIFO with the given type and size, in its own buffer.
 	 * 
 	 * @param type
 	 *            type of data in the FIFO
@@ -85,10 +95,24 @@ public class SimulatorFifo {
 	 *            the size of the FIFO
 	 */
 	public SimulatorFifo(Type type, int size, boolean profile) {
+		this(new SimulatorFifoBuffer(type), size, profile);
+	}
+
+	/**
+	 * Creates a new FIFO with the given size, reading from the given buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer written by the source port
+	 * @param size
+	 *            the size of the FIFO
+	 */
+	public SimulatorFifo(SimulatorFifoBuffer buffer, int size,
+			boolean profile) {
+		this.buffer = buffer;
 		this.size = size;
-		this.type = type;
+		this.type = buffer.getType();
 		this.profile = profile;
-		content = new ArrayBlockingQueue<Object>(size);
+		buffer.addReader(this);
 	}
 
 	/**
@@ -106,7 +130,27 @@ public class SimulatorFifo {
 	 */
 	public SimulatorFifo(Type type, int size, String folderName,
 			String fifoName, boolean enableTraces, boolean profile) {
-		this(type, size, profile);
+		this(new SimulatorFifoBuffer(type), size, folderName, fifoName,
+				enableTraces, profile);
+	}
+
+	/**
+	 * Creates a new FIFO reading from the given buffer, with the given size
+	 * and a file for tracing exchanged data.
+	 * 
+	 * @param buffer
+	 *            the buffer written by the source port
+	 * @param size
+	 *            the size of the FIFO
+	 * @param folderName
+	 *            output traces folder
+	 * @param fifoName
+	 *            name of the FIFO (and the trace file)
+	 */
+	public SimulatorFifo(SimulatorFifoBuffer buffer, int size,
+			String folderName, String fifoName, boolean enableTraces,
+			boolean profile) {
+		this(buffer, size, profile);
 		this.name = fifoName;
 		this.enableTraces = enableTraces;
 
@@ -130,6 +174,10 @@ public class SimulatorFifo {
 	}
 
 	public void closePrinter() {
+		if (traceWriter != null) {
+			traceWriter.close();
+			traceWriter = null;
+		}
 		if (writer != null) {
 			writer.close();
 		}
@@ -142,6 +190,25 @@ public class SimulatorFifo {
 		}
 	}
 
+	/**
+	 * Returns the number of times a writer found this FIFO full. It is kept
+	 * only if the FIFO was set to be profiled at the initialization.
+	 * 
+	 * @return the number of failed room checks
+	 */
+	public long getBlocked() {
+		return blocked;
+	}
+
+	/**
+	 * Returns the buffer this FIFO reads from.
+	 * 
+	 * @return the buffer of this FIFO
+	 */
+	public SimulatorFifoBuffer getBuffer() {
+		return buffer;
+	}
+
 	/**
 	 * Returns the name of the FIFO (name of writing actor and its corresponding
 	 * output port.
@@ -152,6 +219,24 @@ public class SimulatorFifo {
 		return name;
 	}
 
+	/**
+	 * Returns the number of tokens in this FIFO.
+	 * 
+	 * @return the number of tokens in this FIFO
+	 */
+	public int getNumTokens() {
+		return (int) (buffer.getWriteIndex() - readIndex);
+	}
+
+	/**
+	 * Returns the number of tokens ever read from this FIFO.
+	 * 
+	 * @return the read index
+	 */
+	long getReadIndex() {
+		return readIndex;
+	}
+
 	/**
 	 * Returns the size of the FIFO ( >= number of tokens in the FIFO).
 	 * 
@@ -161,6 +246,26 @@ public class SimulatorFifo {
 		return size;
 	}
 
+	/**
+	 * Returns the maximum number of tokens this FIFO contained. It is kept
+	 * only if the FIFO was set to be profiled at the initialization.
+	 * 
+	 * @return the high-water mark of this FIFO
+	 */
+	public int getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * Returns the listener notified when tokens are read from or written to
+	 * this FIFO.
+	 * 
+	 * @return the listener of this FIFO, or <code>null</code>
+	 */
+	public SimulatorFifoListener getListener() {
+		return listener;
+	}
+
 	/**
 	 * Return the tokens traffic which goes through this FIFOs. The traffic is
 	 * kept only if the FIFO was set to be profiled at the initialization.
@@ -181,7 +286,11 @@ public class SimulatorFifo {
 	 *         tokens in this FIFO
 	 */
 	public boolean hasRoom(int numTokens) {
-		return content.remainingCapacity() >= numTokens;
+		boolean hasRoom = size - getNumTokens() >= numTokens;
+		if (!hasRoom && profile) {
+			blocked++;
+		}
+		return hasRoom;
 	}
 
 	/**
@@ -194,61 +303,166 @@ public class SimulatorFifo {
 	 *         of tokens
 	 */
 	public boolean hasTokens(int numTokens) {
-		return content.size() >= numTokens;
+		return getNumTokens() >= numTokens;
 	}
 
 	/**
 	 * Peeks one token from the FIFO (but don't remove it).
 	 * 
-	 * @return the token read
+	 * @return the token read, or <code>null</code> if there are not enough
+	 *         tokens
 	 */
 	public Object peek(int offset) {
-		Object result = null;
-
-		if (offset == 0) {
-			result = content.peek();
-		} else {
-			Iterator<Object> it = content.iterator();
-			while (it.hasNext()) {
-				result = it.next();
-				if (offset-- == 0)
-					break;
-			}
+		if (!hasTokens(offset + 1)) {
+			return null;
 		}
+		return buffer.get(readIndex + offset);
+	}
 
-		return result;
+	/**
+	 * Copies the first <code>numTokens</code> tokens of the FIFO in the given
+	 * array (but don't remove them). The caller must have checked that there
+	 * are enough tokens with {@link #hasTokens(int)}.
+	 * 
+	 * @param eltType
+	 *            type of the elements of the array
+	 * @param array
+	 *            a one-dimensional array
+	 * @param numTokens
+	 *            number of tokens to copy
+	 */
+	public void peek(Type eltType, Object array, int numTokens) {
+		buffer.copyTo(readIndex, eltType, array, numTokens);
 	}
 
 	/**
 	 * Reads one token and remove it from the FIFO.
 	 * 
-	 * @return the token read
+	 * @return the token read, or <code>null</code> if the FIFO is empty
 	 */
 	public Object read() {
-		return content.poll();
+		if (!hasTokens(1)) {
+			return null;
+		}
+		long r = readIndex;
+		Object value = buffer.get(r);
+		readIndex = r + 1;
+		if (listener != null) {
+			listener.tokensRead(this);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads <code>numTokens</code> tokens in the given array and remove them
+	 * from the FIFO. The caller must have checked that there are enough tokens
+	 * with {@link #hasTokens(int)}.
+	 * 
+	 * @param eltType
+	 *            type of the elements of the array
+	 * @param array
+	 *            a one-dimensional array
+	 * @param numTokens
+	 *            number of tokens to read
+	 */
+	public void read(Type eltType, Object array, int numTokens) {
+		long r = readIndex;
+		buffer.copyTo(r, eltType, array, numTokens);
+		readIndex = r + numTokens;
+		if (listener != null) {
+			listener.tokensRead(this);
+		}
+	}
+
+	/**
+	 * Sets the listener notified when tokens are read from or written to this
+	 * FIFO. Listeners are called by the thread that reads or writes, so they
+	 * are only meant to be used by single-threaded schedulers.
+	 * 
+	 * @param listener
+	 *            a listener, or <code>null</code> to remove the current one
+	 */
+	public void setListener(SimulatorFifoListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the number of tokens ever read from this FIFO. This is used to
+	 * restore the state of the FIFO from a checkpoint.
+	 * 
+	 * @param readIndex
+	 *            the read index
+	 */
+	void setReadIndex(long readIndex) {
+		this.readIndex = readIndex;
+	}
+
+	/**
+	 * Sets the binary trace where the tokens written in this FIFO are
+	 * recorded.
+	 * 
+	 * @param traceWriter
+	 *            a binary trace, or <code>null</code> to stop tracing
+	 */
+	public void setTraceWriter(TraceWriter traceWriter) {
+		this.traceWriter = traceWriter;
 	}
 
 	@Override
 	public String toString() {
-		return "Fifo[" + size + "] : " + content.size() + " elements";
+		return "Fifo[" + size + "] : " + getNumTokens() + " elements";
 	}
 
 	/**
-	 * Writes one token in the FIFO.
+	 * Writes one token in the FIFO. Note that the token is written in the
+	 * buffer, and is thus available to all the FIFOs sharing this buffer.
 	 * 
-	 * @return the token read
+	 * @param value
+	 *            the token to write
 	 */
 	public void write(Object value) {
-		content.offer(value);
+		buffer.write(value);
+	}
 
+	/**
+	 * Called by the buffer when tokens have been written.
+	 * 
+	 * @param index
+	 *            absolute index of the first token written
+	 * @param numTokens
+	 *            number of tokens written
+	 */
+	void written(long index, int numTokens) {
 		if (enableTraces) {
-			writePrinter(value);
+			for (int i = 0; i < numTokens; i++) {
+				writePrinter(buffer.get(index + i));
+			}
+		}
+		if (traceWriter != null) {
+			for (int i = 0; i < numTokens; i++) {
+				traceWriter.write(buffer.get(index + i));
+			}
 		}
 		if (profile) {
-			traffic++;
+			traffic += numTokens;
+			int numTokensInFifo = getNumTokens();
+			if (numTokensInFifo > highWaterMark) {
+				highWaterMark = numTokensInFifo;
+			}
+		}
+		if (listener != null) {
+			listener.tokensWritten(this);
 		}
 	}
 
+	/**
+	 * Returns <code>true</code> if the given token is an integer, either as a
+	 * {@link java.math.BigInteger} or in the primitive representation.
+	 */
+	private static boolean isIntValue(Object value) {
+		return ValueUtil.isInt(value) || value instanceof Long;
+	}
+
 	private void writePrinter(Object value) {
 		// Useless function when used without simulator
 		if (type == null)
@@ -258,8 +472,8 @@ public class SimulatorFifo {
 			writer.println(value);
 		} else if (type.isFloat()) {
 			writer.println(value);
-		} else if (type.isInt() && ValueUtil.isInt(value)) {
-			BigInteger intVal = (BigInteger) value;
+		} else if (type.isInt() && isIntValue(value)) {
+			Number intVal = (Number) value;
 			int size = type.getSizeInBits();
 			if (size <= 8) {
 				writer.println(intVal.byteValue());
@@ -270,8 +484,8 @@ public class SimulatorFifo {
 			} else if (size <= 64) {
 				writer.println(intVal.longValue());
 			}
-		} else if (type.isUint() && ValueUtil.isInt(value)) {
-			BigInteger intVal = (BigInteger) value;
+		} else if (type.isUint() && isIntValue(value)) {
+			Number intVal = (Number) value;
 			int size = type.getSizeInBits();
 			if (size < 8) {
 				writer.println(intVal.byteValue());
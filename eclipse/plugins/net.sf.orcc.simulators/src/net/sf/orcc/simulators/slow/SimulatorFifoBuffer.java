@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.slow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.orcc.ir.Type;
+import net.sf.orcc.ir.util.PrimitiveValueUtil;
+import net.sf.orcc.ir.util.ValueUtil;
+
+/**
+ * This class defines the ring buffer written by an output port. Tokens are
+ * stored in an array specialized on the type of the port (as created by
+ * {@link ValueUtil#createArray(Type, int...)}), and each connection from this
+ * port is a {@link SimulatorFifo} with its own read index in this buffer. A
+ * token written on a broadcast output port is thus stored only once.
+ * 
+ * <p>
+ * The buffer has a single writer and may have many readers: the write index
+ * and the read indexes are volatile, so a writer and its readers may run in
+ * different threads without any lock.
+ * </p>
+ * 
+ * <p>
+ * Tokens are returned in the representation of the interpreters that read
+ * them: {@link PrimitiveValueUtil} in "primitive values" mode, and
+ * {@link ValueUtil} otherwise.
+ * </p>
+ * 
+ */
+public class SimulatorFifoBuffer {
+
+	private Object content;
+
+	private int mask;
+
+	/** true if the tokens are stored in an array of objects */
+	private final boolean objects;
+
+	/** true if tokens are returned in the primitive representation */
+	private final boolean primitiveValues;
+
+	private SimulatorFifo[] readers;
+
+	private final Type type;
+
+	private volatile long writeIndex;
+
+	/**
+	 * Creates a new buffer for tokens of the given type. The buffer has no
+	 * reader: its capacity is set when FIFOs are attached to it.
+	 * 
+	 * @param type
+	 *            type of the tokens, may be <code>null</code>
+	 */
+	public SimulatorFifoBuffer(Type type) {
+		this(type, false);
+	}
+
+	/**
+	 * Creates a new buffer for tokens of the given type, returned in the
+	 * primitive representation if <code>primitiveValues</code> is true. The
+	 * buffer has no reader: its capacity is set when FIFOs are attached to it.
+	 * 
+	 * @param type
+	 *            type of the tokens, may be <code>null</code>
+	 * @param primitiveValues
+	 *            <code>true</code> if the tokens are read by interpreters in
+	 *            "primitive values" mode
+	 */
+	public SimulatorFifoBuffer(Type type, boolean primitiveValues) {
+		this.type = type;
+		this.objects = type == null || type.isList();
+		this.primitiveValues = primitiveValues;
+		this.readers = new SimulatorFifo[0];
+		allocate(1);
+	}
+
+	/**
+	 * Attaches the given FIFO to this buffer, growing the buffer if needed.
+	 * This must be done before any token is written.
+	 * 
+	 * @param fifo
+	 *            a FIFO reading from this buffer
+	 */
+	void addReader(SimulatorFifo fifo) {
+		if (writeIndex != 0) {
+			throw new IllegalStateException(
+					"cannot attach a FIFO to a buffer already written");
+		}
+
+		SimulatorFifo[] newReaders = new SimulatorFifo[readers.length + 1];
+		System.arraycopy(readers, 0, newReaders, 0, readers.length);
+		newReaders[readers.length] = fifo;
+		readers = newReaders;
+
+		int capacity = mask + 1;
+		if (fifo.getSize() > capacity) {
+			while (capacity < fifo.getSize()) {
+				capacity <<= 1;
+			}
+			allocate(capacity);
+		}
+	}
+
+	private void allocate(int capacity) {
+		if (objects) {
+			content = new Object[capacity];
+		} else {
+			content = ValueUtil.createArray(type, capacity);
+		}
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Copies <code>numTokens</code> tokens starting at the given absolute index
+	 * into the given array.
+	 * 
+	 * @param index
+	 *            absolute index of the first token
+	 * @param eltType
+	 *            type of the elements of the array
+	 * @param array
+	 *            a one-dimensional array
+	 * @param numTokens
+	 *            number of tokens to copy
+	 */
+	void copyTo(long index, Type eltType, Object array, int numTokens) {
+		int start = (int) index & mask;
+		if (array.getClass() == content.getClass()) {
+			int first = Math.min(numTokens, mask + 1 - start);
+			System.arraycopy(content, start, array, 0, first);
+			System.arraycopy(content, 0, array, first, numTokens - first);
+		} else if (objects) {
+			for (int i = 0; i < numTokens; i++) {
+				Object value = ((Object[]) content)[(int) (index + i) & mask];
+				PrimitiveValueUtil.set(eltType, array, value, i);
+			}
+		} else {
+			// converts between primitive arrays without boxing as BigInteger
+			for (int i = 0; i < numTokens; i++) {
+				Object value = PrimitiveValueUtil.get(type, content,
+						(int) (index + i) & mask);
+				PrimitiveValueUtil.set(eltType, array, value, i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the token at the given absolute index.
+	 * 
+	 * @param index
+	 *            an absolute index
+	 * @return a token
+	 */
+	Object get(long index) {
+		int i = (int) index & mask;
+		if (objects) {
+			return ((Object[]) content)[i];
+		} else if (primitiveValues) {
+			return PrimitiveValueUtil.get(type, content, i);
+		}
+		return ValueUtil.get(type, content, i);
+	}
+
+	/**
+	 * Returns the FIFOs reading from this buffer.
+	 * 
+	 * @return an unmodifiable list of FIFOs
+	 */
+	public List<SimulatorFifo> getFifos() {
+		List<SimulatorFifo> fifos = new ArrayList<SimulatorFifo>(
+				readers.length);
+		Collections.addAll(fifos, readers);
+		return Collections.unmodifiableList(fifos);
+	}
+
+	/**
+	 * Returns the type of the tokens stored in this buffer.
+	 * 
+	 * @return the type of the tokens
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the number of tokens ever written in this buffer.
+	 * 
+	 * @return the write index
+	 */
+	long getWriteIndex() {
+		return writeIndex;
+	}
+
+	/**
+	 * Sets the token at the given absolute index, without notifying the FIFOs.
+	 * This is used to restore the contents of the buffer from a checkpoint.
+	 * 
+	 * @param index
+	 *            an absolute index
+	 * @param value
+	 *            a token
+	 */
+	void set(long index, Object value) {
+		int i = (int) index & mask;
+		if (objects) {
+			((Object[]) content)[i] = value;
+		} else {
+			PrimitiveValueUtil.set(type, content, value, i);
+		}
+	}
+
+	/**
+	 * Sets the number of tokens ever written in this buffer. This is used to
+	 * restore the state of the buffer from a checkpoint.
+	 * 
+	 * @param writeIndex
+	 *            the write index
+	 */
+	void setWriteIndex(long writeIndex) {
+		this.writeIndex = writeIndex;
+	}
+
+	/**
+	 * Returns <code>true</code> if there is enough room for the given number of
+	 * tokens in every FIFO reading from this buffer.
+	 * 
+	 * @param numTokens
+	 *            a number of tokens
+	 * @return <code>true</code> if the tokens can be written
+	 */
+	public boolean hasRoom(int numTokens) {
+		for (SimulatorFifo fifo : readers) {
+			if (!fifo.hasRoom(numTokens)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Buffer[" + (mask + 1) + "] : " + readers.length + " readers";
+	}
+
+	/**
+	 * Writes one token in this buffer. The token is silently dropped if one of
+	 * the FIFOs is full.
+	 * 
+	 * @param value
+	 *            a token
+	 */
+	public void write(Object value) {
+		if (!hasRoom(1)) {
+			return;
+		}
+
+		long w = writeIndex;
+		int i = (int) w & mask;
+		if (objects) {
+			((Object[]) content)[i] = value;
+		} else {
+			PrimitiveValueUtil.set(type, content, value, i);
+		}
+		writeIndex = w + 1;
+
+		for (SimulatorFifo fifo : readers) {
+			fifo.written(w, 1);
+		}
+	}
+
+	/**
+	 * Writes the first <code>numTokens</code> elements of the given array in
+	 * this buffer. The caller must have checked that there is enough room with
+	 * {@link #hasRoom(int)}.
+	 * 
+	 * @param eltType
+	 *            type of the elements of the array
+	 * @param array
+	 *            a one-dimensional array
+	 * @param numTokens
+	 *            number of tokens to write
+	 */
+	public void write(Type eltType, Object array, int numTokens) {
+		long w = writeIndex;
+		int start = (int) w & mask;
+		if (array.getClass() == content.getClass()) {
+			int first = Math.min(numTokens, mask + 1 - start);
+			System.arraycopy(array, 0, content, start, first);
+			System.arraycopy(array, first, content, 0, numTokens - first);
+		} else {
+			for (int i = 0; i < numTokens; i++) {
+				Object value = PrimitiveValueUtil.get(eltType, array, i);
+				PrimitiveValueUtil.set(type, content, value,
+						(int) (w + i) & mask);
+			}
+		}
+		writeIndex = w + numTokens;
+
+		for (SimulatorFifo fifo : readers) {
+			fifo.written(w, numTokens);
+		}
+	}
+
+}
@@ -35,27 +35,50 @@ import static net.sf.orcc.OrccLaunchConstants.NO_DISPLAY;
 import static net.sf.orcc.OrccLaunchConstants.PROJECT;
 import static net.sf.orcc.OrccLaunchConstants.TRACES_FOLDER;
 import static net.sf.orcc.OrccLaunchConstants.XDF_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.BUFFER_SIZING;
+import static net.sf.orcc.simulators.SimulatorsConstants.BUFFER_SIZING_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.BUFFER_SIZING_RUNS;
+import static net.sf.orcc.simulators.SimulatorsConstants.BUFFER_SIZING_TOLERANCE;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT_FOLDER;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT_FRAMES;
+import static net.sf.orcc.simulators.SimulatorsConstants.CHECKPOINT_TRAFFIC;
 import static net.sf.orcc.simulators.SimulatorsConstants.FRAMES_NUMBER;
+import static net.sf.orcc.simulators.SimulatorsConstants.FRAME_HASH_FILE;
 import static net.sf.orcc.simulators.SimulatorsConstants.GOLDEN_REFERENCE;
 import static net.sf.orcc.simulators.SimulatorsConstants.GOLDEN_REFERENCE_FILE;
 import static net.sf.orcc.simulators.SimulatorsConstants.INPUT_STIMULUS;
+import static net.sf.orcc.simulators.SimulatorsConstants.JIT;
 import static net.sf.orcc.simulators.SimulatorsConstants.LOOP_NUMBER;
+import static net.sf.orcc.simulators.SimulatorsConstants.METRICS_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.METRICS_JMX;
+import static net.sf.orcc.simulators.SimulatorsConstants.METRICS_PERIOD;
 import static net.sf.orcc.simulators.SimulatorsConstants.OUTPUT_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.PRIMITIVE_VALUES;
 import static net.sf.orcc.simulators.SimulatorsConstants.PROFILE;
 import static net.sf.orcc.simulators.SimulatorsConstants.PROFILE_FOLDER;
+import static net.sf.orcc.simulators.SimulatorsConstants.RESTORE_FILE;
+import static net.sf.orcc.simulators.SimulatorsConstants.SCHEDULER;
+import static net.sf.orcc.simulators.SimulatorsConstants.STATIC_REGIONS;
+import static net.sf.orcc.simulators.SimulatorsConstants.TRACES_FORMAT;
 import static net.sf.orcc.simulators.SimulatorsConstants.TYPE_RESIZER;
 import static net.sf.orcc.simulators.SimulatorsConstants.TYPE_RESIZER_CAST_BOOLTOINT;
 import static net.sf.orcc.simulators.SimulatorsConstants.TYPE_RESIZER_CAST_NATIVEPORTS;
 import static net.sf.orcc.simulators.SimulatorsConstants.TYPE_RESIZER_CAST_TO2NBITS;
 import static net.sf.orcc.simulators.SimulatorsConstants.TYPE_RESIZER_CAST_TO32BITS;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.swing.SwingUtilities;
 
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Action;
 import net.sf.orcc.df.Actor;
 import net.sf.orcc.df.Connection;
 import net.sf.orcc.df.Network;
@@ -66,11 +89,23 @@ import net.sf.orcc.df.transform.TypeResizer;
 import net.sf.orcc.graph.Vertex;
 import net.sf.orcc.ir.util.ActorInterpreter;
 import net.sf.orcc.simulators.AbstractSimulator;
+import net.sf.orcc.simulators.SimulationContext;
+import net.sf.orcc.simulators.SimulationMetrics.Metric;
 import net.sf.orcc.simulators.SimulatorDescriptor;
+import net.sf.orcc.simulators.jit.JitActorInterpreter;
+import net.sf.orcc.simulators.profiling.ActorProfile;
+import net.sf.orcc.simulators.profiling.ActorProfilesPrinter;
 import net.sf.orcc.simulators.runtime.impl.GenericDisplay;
 import net.sf.orcc.simulators.runtime.impl.GenericSource;
 import net.sf.orcc.simulators.runtime.impl.GenericWriter;
 import net.sf.orcc.simulators.runtime.std.video.impl.Display;
+import net.sf.orcc.simulators.trace.TraceService;
+import net.sf.orcc.simulators.trace.TraceWriter;
+import net.sf.orcc.simulators.slow.BufferSizeExplorer.FifoStatistics;
+import net.sf.orcc.simulators.slow.BufferSizeExplorer.RunStatistics;
+import net.sf.orcc.tools.classifier.Classifier;
+import net.sf.orcc.tools.mapping.XmlBufferSizeConfiguration;
+import net.sf.orcc.tools.merger.actor.StaticRegionDetector;
 import net.sf.orcc.tools.stats.StatisticsPrinter;
 import net.sf.orcc.util.FilesManager;
 import net.sf.orcc.util.OrccLogger;
@@ -94,30 +129,84 @@ import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
  */
 public class SlowSimulator extends AbstractSimulator {
 
+	private boolean bufferSizing;
+
+	private String bufferSizingFile;
+
+	private int bufferSizingRuns;
+
+	private int bufferSizingTolerance;
+
+	private boolean checkpoint;
+
+	private Checkpoint checkpointer;
+
+	private String checkpointFolder;
+
+	private int checkpointFrames;
+
+	private long checkpointTraffic;
+
 	private boolean enableTraces;
 
 	private boolean enableTypeResizer;
 
+	private long firings;
+
+	private String frameHashFile;
+
+	private int framesNumber;
+
 	private String goldenReferenceFile;
 
+	private boolean jit;
+
 	private boolean hasGoldenReference;
 
 	protected Map<Actor, ActorInterpreter> interpreters;
 
 	private int loopsNumber;
 
+	private String metricsFile;
+
+	private boolean metricsJmx;
+
+	private int metricsPeriod;
+
+	private int nextCheckpointFrames;
+
+	private long nextCheckpointTraffic;
+
 	private boolean noDisplay;
 
+	private boolean primitiveValues;
+
 	private boolean profile;
 
 	protected IProject project;
 
+	private String restoreFile;
+
+	private long rounds;
+
+	private SchedulingPolicy schedulingPolicy;
+
+	private boolean staticRegions;
+
+	private Map<Actor, StaticRegion> regions;
+
 	private String stimulusFile;
 
 	private String outputFile;
 	
 	private String traceFolder;
 
+	private long traffic;
+
+	private TraceService traceService;
+
+	private String tracesFormat;
+
 	private String profileFolder;
 
 	private final Boolean[] typeResizer = { false, false, false, false };
@@ -126,6 +215,53 @@ public class SlowSimulator extends AbstractSimulator {
 
 	protected String xdfFile;
 
+	/**
+	 * Writes a checkpoint of the given network if enough frames have been
+	 * displayed or enough tokens have been written in its FIFOs since the
+	 * previous checkpoint. This must only be called between two firings.
+	 * 
+	 * @param network
+	 *            the simulated network
+	 */
+	protected void checkpointIfDue(Network network) {
+		if (checkpointer == null) {
+			return;
+		}
+
+		int frames = GenericDisplay.getDisplayedFrames();
+		long traffic = checkpointer.getTraffic();
+		if ((checkpointFrames > 0 && frames >= nextCheckpointFrames)
+				|| (checkpointTraffic > 0 && traffic >= nextCheckpointTraffic)) {
+			File file = new File(checkpointFolder, network.getSimpleName()
+					+ "_" + traffic + ".ckpt");
+			checkpointer.write(file);
+			OrccLogger.traceln("Checkpoint after " + frames + " frames and "
+					+ traffic + " tokens written in " + file);
+			scheduleCheckpoint();
+		}
+	}
+
+	/**
+	 * Closes the traces of the FIFOs of the given network, and waits for the
+	 * binary traces to be written.
+	 * 
+	 * @param network
+	 *            the simulated network
+	 */
+	protected void closeTraces(Network network) {
+		for (Connection connection : network.getConnections()) {
+			SimulatorFifo fifo = connection.getValueAsObject("fifo");
+			if (fifo != null) {
+				fifo.closePrinter();
+			}
+		}
+
+		if (traceService != null) {
+			traceService.shutdown();
+			traceService = null;
+		}
+	}
+
 	/**
 	 * Visit the network graph for building the required topology. Edges of the
 	 * graph correspond to the connections between the actors. These connections
@@ -134,7 +270,6 @@ public class SlowSimulator extends AbstractSimulator {
 	 * 
 	 * @param graph
 	 */
-	@SuppressWarnings("unchecked")
 	public void connectNetwork(Network network) {
 		for (Connection connection : network.getConnections()) {
 			Actor src = connection.getSource().getAdapter(Actor.class);
@@ -152,22 +287,38 @@ public class SlowSimulator extends AbstractSimulator {
 				break;
 			}
 
-			String name = src.getName() + "." + srcPort.getName() + " --> "
-					+ tgt.getName() + "." + tgtPort.getName();
-			SimulatorFifo fifo = new SimulatorFifo(srcPort.getType(), size,
-					traceFolder, name, enableTraces, profile);
-
-			tgtPort.setAttribute("fifo", fifo);
-
-			List<SimulatorFifo> fifos;
+			// all the connections from the same output port share a buffer
+			SimulatorFifoBuffer buffer;
 			if (srcPort.hasAttribute("fifo")) {
-				fifos = (List<SimulatorFifo>) srcPort.getAttribute("fifo")
+				buffer = (SimulatorFifoBuffer) srcPort.getAttribute("fifo")
 						.getObjectValue();
 			} else {
-				fifos = new ArrayList<SimulatorFifo>();
-				srcPort.setAttribute("fifo", fifos);
+				buffer = new SimulatorFifoBuffer(srcPort.getType(),
+						primitiveValues);
+				srcPort.setAttribute("fifo", buffer);
 			}
-			fifos.add(fifo);
+
+			String name = getFifoName(connection);
+			boolean binaryTraces = enableTraces
+					&& !"text".equals(tracesFormat)
+					&& TraceWriter.isTraceable(tgtPort.getType());
+			SimulatorFifo fifo = new SimulatorFifo(buffer, size, traceFolder,
+					name, enableTraces && !binaryTraces, profile
+							|| bufferSizing);
+			if (binaryTraces) {
+				// named after the input port, as the traces of the C back-end
+				String fileName = tgt.getName() + "_" + tgtPort.getName()
+						+ ("compressed".equals(tracesFormat) ? ".bin.gz"
+								: ".bin");
+				if (traceService == null) {
+					traceService = new TraceService();
+				}
+				fifo.setTraceWriter(new TraceWriter(traceService, new File(
+						traceFolder, fileName), name, tgtPort.getType(),
+						"compressed".equals(tracesFormat)));
+			}
+
+			tgtPort.setAttribute("fifo", fifo);
 
 			connection.setAttribute("fifo", fifo);
 		}
@@ -195,6 +346,162 @@ public class SlowSimulator extends AbstractSimulator {
 
 	}
 
+	/**
+	 * Returns the name of the FIFO of the given connection.
+	 * 
+	 * @param connection
+	 *            a connection between two actors
+	 * @return a name of the form "source.port --&gt; target.port", or
+	 *         <code>null</code> if the connection is not between two actors
+	 */
+	protected String getFifoName(Connection connection) {
+		Actor src = connection.getSource().getAdapter(Actor.class);
+		Actor tgt = connection.getTarget().getAdapter(Actor.class);
+		if (src == null || tgt == null || connection.getSourcePort() == null
+				|| connection.getTargetPort() == null) {
+			return null;
+		}
+		return src.getName() + "." + connection.getSourcePort().getName()
+				+ " --> " + tgt.getName() + "."
+				+ connection.getTargetPort().getName();
+	}
+
+	/**
+	 * Returns the number of firings of the last simulation, whatever its
+	 * scheduler.
+	 *
+	 * @return a number of firings
+	 */
+	public long getFirings() {
+		return firings;
+	}
+
+	/**
+	 * Returns the number of tokens written in the FIFOs during the last
+	 * simulation.
+	 *
+	 * @return a number of tokens
+	 */
+	public long getTraffic() {
+		return traffic;
+	}
+
+	/**
+	 * Returns the largest number of tokens produced or consumed at once on the
+	 * given connection, which is the smallest size of its FIFO.
+	 */
+	private int getMinSize(Connection connection) {
+		int minSize = 1;
+		Actor src = connection.getSource().getAdapter(Actor.class);
+		for (Action action : src.getActions()) {
+			minSize = Math.max(minSize, action.getOutputPattern().getNumTokens(
+					connection.getSourcePort()));
+		}
+
+		Actor tgt = connection.getTarget().getAdapter(Actor.class);
+		for (Action action : tgt.getActions()) {
+			Port port = connection.getTargetPort();
+			minSize = Math.max(minSize,
+					action.getInputPattern().getNumTokens(port));
+			minSize = Math.max(minSize,
+					action.getPeekPattern().getNumTokens(port));
+		}
+		return minSize;
+	}
+
+	/**
+	 * Creates the interpreter of the given actor.
+	 * 
+	 * @param actor
+	 *            an actor
+	 * @return a new interpreter for this actor
+	 */
+	protected ConnectedActorInterpreter createInterpreter(Actor actor) {
+		// the actors of static regions are fired by the interpreter
+		if (jit && (regions == null || !regions.containsKey(actor))) {
+			return new JitActorInterpreter(actor);
+		}
+		return new ConnectedActorInterpreter(actor);
+	}
+
+	/**
+	 * Classifies the actors of the given network, and computes the static
+	 * schedule of its static regions. The internal FIFOs of the regions are
+	 * resized so that an iteration of their schedule never blocks.
+	 * 
+	 * @param network
+	 *            a flattened network
+	 */
+	protected void detectStaticRegions(Network network) {
+		regions = new LinkedHashMap<Actor, StaticRegion>();
+		new Classifier().doSwitch(network);
+
+		int nbRegions = 0;
+		for (List<Vertex> vertices : new StaticRegionDetector()
+				.analyze(network)) {
+			try {
+				StaticRegion region = new StaticRegion(network, vertices);
+				region.setFifoSizes(getAttribute(FIFO_SIZE, DEFAULT_FIFO_SIZE));
+				for (Actor actor : region.getActors()) {
+					regions.put(actor, region);
+				}
+				OrccLogger.debugln("Static region " + region);
+				nbRegions++;
+			} catch (OrccRuntimeException e) {
+				OrccLogger.warnln("A static region cannot be scheduled ("
+						+ e.getMessage() + "), its actors are scheduled "
+						+ "dynamically");
+			}
+		}
+
+		OrccLogger.traceln(nbRegions + " static regions with "
+				+ regions.size() + " actors");
+	}
+
+	/**
+	 * Returns the number of actions fired by the interpreters, which count
+	 * their firings whatever the scheduler that runs them.
+	 * 
+	 * @return a number of firings
+	 */
+	private long countFirings() {
+		long firings = 0;
+		for (ActorInterpreter interpreter : interpreters.values()) {
+			if (interpreter instanceof ConnectedActorInterpreter) {
+				firings += ((ConnectedActorInterpreter) interpreter)
+						.getFirings();
+			}
+		}
+		return firings;
+	}
+
+	/**
+	 * Returns the number of tokens written in the FIFOs of the given network
+	 * since the beginning of the simulation. The FIFOs connected to the same
+	 * output port share a buffer, which is counted once.
+	 * 
+	 * @param network
+	 *            a connected network
+	 * @return a number of tokens
+	 */
+	private long countTraffic(Network network) {
+		long traffic = 0;
+		for (Vertex vertex : network.getChildren()) {
+			Actor actor = vertex.getAdapter(Actor.class);
+			if (actor == null) {
+				continue;
+			}
+
+			for (Port port : actor.getOutputs()) {
+				if (port.hasAttribute("fifo")) {
+					traffic += ((SimulatorFifoBuffer) port.getAttribute("fifo")
+							.getObjectValue()).getWriteIndex();
+				}
+			}
+		}
+		return traffic;
+	}
+
 	/**
 	 * Visits the network and creates one interpreter per actor.
 	 * 
@@ -202,11 +509,18 @@ public class SlowSimulator extends AbstractSimulator {
 	 *            the network
 	 */
 	protected void createInterpreters(Network network) {
+		// natives are counted for the metrics, and timed for the statistics
+		boolean nativeCalls = !metricsFile.isEmpty() || metricsJmx;
+		boolean nativeTime = isNativeStatisticsEnabled();
 		for (Vertex vertex : network.getChildren()) {
 			Actor actor = vertex.getAdapter(Actor.class);
 
-			ConnectedActorInterpreter interpreter = new ConnectedActorInterpreter(
-					actor);
+			ConnectedActorInterpreter interpreter = createInterpreter(actor);
+			interpreter.setPrimitiveValues(primitiveValues);
+			interpreter.setNativeStatistics(nativeCalls, nativeTime);
+			if (profile) {
+				interpreter.setProfile(new ActorProfile(actor));
+			}
 
 			interpreters.put(actor, interpreter);
 		}
@@ -216,6 +530,8 @@ public class SlowSimulator extends AbstractSimulator {
 		GenericSource.setInputStimulus(stimulusFile);
 
 		GenericSource.setNbLoops(loopsNumber);
+
+		GenericDisplay.setNbFrames(framesNumber);
 		
 		GenericWriter.setOutputFile(outputFile);
 
@@ -223,14 +539,93 @@ public class SlowSimulator extends AbstractSimulator {
 			GenericDisplay.setGoldenReference(goldenReferenceFile);
 		}
 
+		GenericDisplay.setFrameHashFile(frameHashFile);
+
 		if (noDisplay) {
 			GenericDisplay.setDisplayDisabled();
+		} else {
+			GenericDisplay.setDisplayEnabled();
 		}
 
+		int compiled = 0;
 		for (Vertex vertex : network.getChildren()) {
 			Actor actor = vertex.getAdapter(Actor.class);
 			ActorInterpreter interpreter = interpreters.get(actor);
 			interpreter.initialize();
+			if (interpreter instanceof JitActorInterpreter
+					&& ((JitActorInterpreter) interpreter).isCompiled()) {
+				compiled++;
+			}
+		}
+
+		if (jit) {
+			OrccLogger.traceln(compiled + " of " + interpreters.size()
+					+ " actors compiled to bytecode");
+		}
+
+		if (regions != null) {
+			for (StaticRegion region : getStaticRegions()) {
+				region.connect(interpreters);
+			}
+		}
+	}
+
+	/**
+	 * Restores the state of the given network from the checkpoint file given
+	 * in the options (if any), and prepares the checkpoints of the
+	 * simulation (if enabled).
+	 * 
+	 * @param network
+	 *            a connected and initialized network
+	 */
+	protected void initializeCheckpoints(Network network) {
+		if (!checkpoint && restoreFile.isEmpty()) {
+			return;
+		}
+
+		Checkpoint state = new Checkpoint(network, interpreters);
+		if (!restoreFile.isEmpty()) {
+			state.restore(new File(restoreFile));
+			OrccLogger.traceln("Simulation resumed from " + restoreFile
+					+ " after " + GenericDisplay.getDisplayedFrames()
+					+ " frames and " + state.getTraffic() + " tokens");
+		}
+
+		if (checkpoint) {
+			checkpointer = state;
+			scheduleCheckpoint();
+		}
+	}
+
+	/**
+	 * Returns the static regions of the network, in the order of their
+	 * leaders.
+	 */
+	private List<StaticRegion> getStaticRegions() {
+		List<StaticRegion> staticRegions = new ArrayList<StaticRegion>();
+		for (Map.Entry<Actor, StaticRegion> entry : regions.entrySet()) {
+			if (entry.getValue().getLeader() == entry.getKey()) {
+				staticRegions.add(entry.getValue());
+			}
+		}
+		return staticRegions;
+	}
+
+	/**
+	 * Returns the integer-valued attribute with the given name, given either
+	 * as an integer or as a string.
+	 */
+	private int getIntAttribute(String attributeName, int defaultValue) {
+		String value = getAttribute(attributeName, "").trim();
+		if (value.isEmpty()) {
+			return getAttribute(attributeName, defaultValue);
+		}
+
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new OrccRuntimeException("Invalid value for "
+					+ attributeName + ": " + value);
 		}
 	}
 
@@ -241,12 +636,28 @@ public class SlowSimulator extends AbstractSimulator {
 		outputFile = outputDir.equals("") ? "" : outputDir + "/orcc-simulation-out";
 		hasGoldenReference = getAttribute(GOLDEN_REFERENCE, false);
 		goldenReferenceFile = getAttribute(GOLDEN_REFERENCE_FILE, "");
+		frameHashFile = getAttribute(FRAME_HASH_FILE, "");
 		xdfFile = getAttribute(XDF_FILE, "");
 		String name = getAttribute(PROJECT, "");
 		enableTraces = getAttribute(ENABLE_TRACES, false);
 		traceFolder = getAttribute(TRACES_FOLDER, "");
+		tracesFormat = getAttribute(TRACES_FORMAT, "text");
+		if (!"text".equals(tracesFormat) && !"binary".equals(tracesFormat)
+				&& !"compressed".equals(tracesFormat)) {
+			OrccLogger.warnln("Unknown traces format \"" + tracesFormat
+					+ "\", text traces are written");
+			tracesFormat = "text";
+		}
 		profile = getAttribute(PROFILE, false);
 		profileFolder = getAttribute(PROFILE_FOLDER, "");
+		bufferSizing = getAttribute(BUFFER_SIZING, false);
+		bufferSizingFile = getAttribute(BUFFER_SIZING_FILE, "");
+		bufferSizingTolerance = getIntAttribute(BUFFER_SIZING_TOLERANCE, 5);
+		bufferSizingRuns = getIntAttribute(BUFFER_SIZING_RUNS, 32);
+		if (bufferSizing && bufferSizingFile.isEmpty()) {
+			throw new OrccRuntimeException(
+					"No output file given for the buffer sizes");
+		}
 
 		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
 		project = root.getProject(name);
@@ -254,9 +665,50 @@ public class SlowSimulator extends AbstractSimulator {
 		vtlFolders = OrccUtil.getOutputFolders(project);
 
 		loopsNumber = getAttribute(LOOP_NUMBER, DEFAULT_NB_LOOPS);
-		GenericDisplay.nbFrames = getAttribute(FRAMES_NUMBER, DEFAULT_NB_FRAMES);
+		framesNumber = getAttribute(FRAMES_NUMBER, DEFAULT_NB_FRAMES);
 
 		noDisplay = getAttribute(NO_DISPLAY, false);
+		primitiveValues = getAttribute(PRIMITIVE_VALUES, false);
+		jit = getAttribute(JIT, false);
+		if (jit && profile) {
+			OrccLogger.warnln("The actors are interpreted when profiling, "
+					+ "the JIT mode is ignored");
+			jit = false;
+		}
+		schedulingPolicy = SchedulingPolicy.getPolicy(getAttribute(SCHEDULER,
+				SchedulingPolicy.ROUND_ROBIN.getName()));
+		staticRegions = getAttribute(STATIC_REGIONS, false);
+		if (staticRegions && !supportsStaticRegions()) {
+			OrccLogger.warnln("Static regions are only supported by the "
+					+ "round-robin scheduler, all the actors are scheduled "
+					+ "dynamically");
+			staticRegions = false;
+		}
+
+		checkpoint = getAttribute(CHECKPOINT, false);
+		checkpointFolder = getAttribute(CHECKPOINT_FOLDER, "");
+		checkpointFrames = getIntAttribute(CHECKPOINT_FRAMES, 0);
+		checkpointTraffic = getIntAttribute(CHECKPOINT_TRAFFIC, 0);
+		restoreFile = getAttribute(RESTORE_FILE, "");
+		if (checkpoint && !supportsCheckpoints()) {
+			OrccLogger.warnln("Checkpoints are not supported by this "
+					+ "simulator, no checkpoint is written");
+			checkpoint = false;
+		} else if (checkpoint && checkpointFrames <= 0
+				&& checkpointTraffic <= 0) {
+			throw new OrccRuntimeException("No number of frames nor of "
+					+ "tokens given between two checkpoints");
+		}
+		if (staticRegions && (checkpoint || !restoreFile.isEmpty())) {
+			// a checkpoint may be taken in the middle of an iteration
+			OrccLogger.warnln("Static regions are not supported with "
+					+ "checkpoints, all the actors are scheduled dynamically");
+			staticRegions = false;
+		}
+
+		metricsFile = getAttribute(METRICS_FILE, "");
+		metricsPeriod = getIntAttribute(METRICS_PERIOD, 1000);
+		metricsJmx = getAttribute(METRICS_JMX, false);
 
 		enableTypeResizer = getAttribute(TYPE_RESIZER, false);
 		typeResizer[0] = getAttribute(TYPE_RESIZER_CAST_TO2NBITS, false);
@@ -264,8 +716,7 @@ public class SlowSimulator extends AbstractSimulator {
 		typeResizer[2] = getAttribute(TYPE_RESIZER_CAST_NATIVEPORTS, false);
 		typeResizer[3] = getAttribute(TYPE_RESIZER_CAST_BOOLTOINT, false);
 
-		stopRequested = false;
-		statusCode = 0;
+		context.reset();
 	}
 
 	/**
@@ -276,43 +727,421 @@ public class SlowSimulator extends AbstractSimulator {
 		Runnable killer = new Runnable() {
 			@Override
 			public void run() {
-				SimulatorDescriptor.killDescriptors();
-				Display.clearAll();
+				SimulationContext previous = SimulationContext.enter(context);
+				try {
+					SimulatorDescriptor.killDescriptors();
+					Display.clearAll();
+					Display.compareYUV_close();
+				} finally {
+					SimulationContext.enter(previous);
+				}
 			}
 		};
-		SwingUtilities.invokeLater(killer);
+		if (noDisplay) {
+			// no window to close, the descriptors are killed right away so
+			// that they cannot be killed after the next simulation opened them
+			killer.run();
+		} else {
+			SwingUtilities.invokeLater(killer);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the native procedures are timed, i.e. if
+	 * their statistics are written in the profiling folder or displayed at the
+	 * debug level.
+	 * 
+	 * @return <code>true</code> if the native statistics are enabled
+	 */
+	private boolean isNativeStatisticsEnabled() {
+		return profile || OrccLogger.isLoggable(OrccLogger.DEBUG);
+	}
+
+	/**
+	 * Loads the network to simulate, fully instantiated and flattened.
+	 * 
+	 * @return a flattened network
+	 */
+	protected Network loadNetwork() {
+		IFile file = OrccUtil.getFile(project, xdfFile,
+				OrccUtil.NETWORK_SUFFIX);
+		ResourceSet set = new ResourceSetImpl();
+		Network network = EcoreHelper.getEObject(set, file);
+		return prepareNetwork(network);
+	}
+
+	/**
+	 * Instantiates and flattens the given network, and resizes its types if
+	 * required.
+	 * 
+	 * @param network
+	 *            a network as loaded from its XDF file
+	 * @return the flattened network
+	 */
+	protected Network prepareNetwork(Network network) {
+		// full instantiation (no more instances)
+		new Instantiator(true).doSwitch(network);
+
+		// flattens network
+		new NetworkFlattener().doSwitch(network);
+
+		// if required, use the type sizer transformation
+		if (enableTypeResizer) {
+			new TypeResizer(typeResizer[0], typeResizer[1], typeResizer[2],
+					typeResizer[3]).doSwitch(network);
+		}
+
+		return network;
+	}
+
+	/**
+	 * Writes the profiles of the actors of the network in the profiling
+	 * folder, as XML and CSV.
+	 * 
+	 * @param network
+	 *            the simulated network
+	 */
+	protected void printActorProfiles(Network network) {
+		List<ActorProfile> profiles = new ArrayList<ActorProfile>();
+		for (Vertex vertex : network.getChildren()) {
+			ActorInterpreter interpreter = interpreters.get(vertex
+					.getAdapter(Actor.class));
+			if (interpreter instanceof ConnectedActorInterpreter) {
+				ActorProfile actorProfile;
+				actorProfile = ((ConnectedActorInterpreter) interpreter)
+						.getProfile();
+				if (actorProfile != null) {
+					profiles.add(actorProfile);
+				}
+			}
+		}
+
+		ActorProfilesPrinter printer = new ActorProfilesPrinter(network,
+				profiles);
+		FilesManager.writeFile(printer.getXmlContent(), profileFolder,
+				network.getSimpleName() + "_profiling.xml");
+		FilesManager.writeFile(printer.getCsvContent(), profileFolder,
+				network.getSimpleName() + "_actions.csv");
+	}
+
+	/**
+	 * Prints the number of calls and the time spent in each native procedure,
+	 * summed over all the actors, at the debug level. If profiling is enabled,
+	 * the statistics are also written in the profiling folder.
+	 * 
+	 * @param network
+	 *            the simulated network
+	 */
+	protected void printNativeStatistics(Network network) {
+		if (!isNativeStatisticsEnabled()) {
+			return;
+		}
+
+		Map<String, long[]> statistics = new TreeMap<String, long[]>();
+		for (ActorInterpreter interpreter : interpreters.values()) {
+			if (!(interpreter instanceof ConnectedActorInterpreter)) {
+				continue;
+			}
+
+			ConnectedActorInterpreter connected;
+			connected = (ConnectedActorInterpreter) interpreter;
+			for (NativeProcedure nativeProc : connected.getNativeProcedures()) {
+				long[] stats = statistics.get(nativeProc.getName());
+				if (stats == null) {
+					stats = new long[2];
+					statistics.put(nativeProc.getName(), stats);
+				}
+				stats[0] += nativeProc.getCalls();
+				stats[1] += nativeProc.getTime();
+			}
+		}
+
+		StringBuilder builder = new StringBuilder("native;calls;time (ns)\n");
+		for (Map.Entry<String, long[]> entry : statistics.entrySet()) {
+			long[] stats = entry.getValue();
+			OrccLogger.debugln(entry.getKey() + ": " + stats[0] + " calls, "
+					+ (stats[1] / 1000000) + " ms");
+			builder.append(entry.getKey()).append(';').append(stats[0])
+					.append(';').append(stats[1]).append('\n');
+		}
+
+		if (profile) {
+			FilesManager.writeFile(builder, profileFolder,
+					network.getSimpleName() + "_natives.csv");
+		}
+	}
+
+	/**
+	 * Registers the metrics of the given connected network: the firings and
+	 * the failed scheduling attempts of each actor, the number of tokens in
+	 * each FIFO, and the calls to each native procedure.
+	 * 
+	 * @param network
+	 *            a connected network
+	 */
+	protected void registerMetrics(Network network) {
+		for (Vertex vertex : network.getChildren()) {
+			Actor actor = vertex.getAdapter(Actor.class);
+			ActorInterpreter interpreter = interpreters.get(actor);
+			if (!(interpreter instanceof ConnectedActorInterpreter)) {
+				continue;
+			}
+
+			final ConnectedActorInterpreter connected = (ConnectedActorInterpreter) interpreter;
+			String prefix = "actors." + actor.getName() + ".";
+			metrics.addRate(prefix + "firings", new Metric() {
+				@Override
+				public long getValue() {
+					return connected.getFirings();
+				}
+			});
+			metrics.addCount(prefix + "blockedOnInput", new Metric() {
+				@Override
+				public long getValue() {
+					return connected.getBlockedOnInput();
+				}
+			});
+			metrics.addCount(prefix + "blockedOnOutput", new Metric() {
+				@Override
+				public long getValue() {
+					return connected.getBlockedOnOutput();
+				}
+			});
+		}
+
+		for (Connection connection : network.getConnections()) {
+			String name = getFifoName(connection);
+			final SimulatorFifo fifo = connection.getValueAsObject("fifo");
+			if (name != null && fifo != null) {
+				metrics.addCount("fifos." + name + ".tokens", new Metric() {
+					@Override
+					public long getValue() {
+						return fifo.getNumTokens();
+					}
+				});
+			}
+		}
+
+		// each actor has its own native procedures, their calls are summed
+		Map<String, List<NativeProcedure>> natives = new TreeMap<String, List<NativeProcedure>>();
+		for (ActorInterpreter interpreter : interpreters.values()) {
+			if (interpreter instanceof ConnectedActorInterpreter) {
+				for (NativeProcedure procedure : ((ConnectedActorInterpreter) interpreter)
+						.getNativeProcedures()) {
+					List<NativeProcedure> procedures = natives.get(procedure
+							.getName());
+					if (procedures == null) {
+						procedures = new ArrayList<NativeProcedure>();
+						natives.put(procedure.getName(), procedures);
+					}
+					procedures.add(procedure);
+				}
+			}
+		}
+		for (Map.Entry<String, List<NativeProcedure>> entry : natives
+				.entrySet()) {
+			final List<NativeProcedure> procedures = entry.getValue();
+			metrics.addRate("natives." + entry.getKey() + ".calls",
+					new Metric() {
+						@Override
+						public long getValue() {
+							long calls = 0;
+							for (NativeProcedure procedure : procedures) {
+								calls += procedure.getCalls();
+							}
+							return calls;
+						}
+					});
+		}
 	}
 
 	@Override
 	public void run() {
+		// the native procedures of this simulation use its own context
+		SimulationContext previous = SimulationContext.enter(context);
+		try {
+			if (bufferSizing) {
+				runBufferSizing();
+			} else {
+				runSimulation();
+			}
+		} finally {
+			SimulationContext.enter(previous);
+		}
+	}
+
+	/**
+	 * Searches for the FIFO sizes that keep the throughput of the network,
+	 * and writes them in a buffer size configuration file (BXDF).
+	 */
+	protected void runBufferSizing() {
+		// the runs are neither displayed, compared, traced nor profiled
+		noDisplay = true;
+		hasGoldenReference = false;
+		frameHashFile = "";
+		enableTraces = false;
+		profile = false;
+		staticRegions = false;
+		checkpoint = false;
+		restoreFile = "";
+		GenericDisplay.setGoldenReference("");
+
 		try {
 			killDescriptors();
+			Map<String, Integer> sizes = new BufferSizeExplorer(this,
+					bufferSizingTolerance, bufferSizingRuns).explore();
+			if (isCanceled()) {
+				OrccLogger.traceln("Buffer sizing aborted.");
+				return;
+			}
 
-			interpreters = new HashMap<Actor, ActorInterpreter>();
+			Network network = loadNetwork();
+			for (Connection connection : network.getConnections()) {
+				String name = getFifoName(connection);
+				if (name != null && sizes.containsKey(name)) {
+					connection.setSize(sizes.get(name));
+				}
+			}
 
-			IFile file = OrccUtil.getFile(project, xdfFile,
-					OrccUtil.NETWORK_SUFFIX);
-			ResourceSet set = new ResourceSetImpl();
-			Network network = EcoreHelper.getEObject(set, file);
+			new XmlBufferSizeConfiguration(true, true).write(new File(
+					bufferSizingFile), network,
+					getAttribute(FIFO_SIZE, DEFAULT_FIFO_SIZE));
+			OrccLogger.traceln("Buffer sizes written in " + bufferSizingFile);
+		} finally {
+			interpreters = null;
+			killDescriptors();
+		}
+	}
 
-			// full instantiation (no more instances)
-			new Instantiator(true).doSwitch(network);
+	/**
+	 * Runs the network with a data-driven scheduler, which only schedules the
+	 * actors whose FIFOs have changed.
+	 * 
+	 * @param network
+	 *            a connected network
+	 * @return the origin of the end of the simulation
+	 */
+	protected SimulationEndOrigin runDataDriven(Network network) {
+		ReadyQueueScheduler scheduler = new ReadyQueueScheduler(network,
+				interpreters, schedulingPolicy);
+		try {
+			while (scheduler.step()) {
+				// check for cancelation
+				if (isStopped()) {
+					return SimulationEndOrigin.EXTERNALSTOP;
+				}
+				checkpointIfDue(network);
+			}
+		} finally {
+			scheduler.dispose();
+			scheduler.printStatistics();
+		}
 
-			// flattens network
-			new NetworkFlattener().doSwitch(network);
+		return SimulationEndOrigin.NORMALEND;
+	}
+
+	protected SimulationEndOrigin runNetwork(Network network) {
+		if (schedulingPolicy.isDataDriven()) {
+			return runDataDriven(network);
+		}
+		return runRoundRobin(network);
+	}
+
+	/**
+	 * Runs the network with a round-robin scheduler, and counts the firings
+	 * and the scheduling rounds.
+	 * 
+	 * @param network
+	 *            a connected network
+	 * @return the origin of the end of the simulation
+	 */
+	protected SimulationEndOrigin runRoundRobin(Network network) {
+		boolean hasExecuted;
+		do {
+			hasExecuted = false;
+			rounds++;
+			for (Vertex vertex : network.getChildren()) {
+				int nbFiring = 0;
+				Actor actor = vertex.getAdapter(Actor.class);
+				StaticRegion region = regions == null ? null : regions
+						.get(actor);
+				if (region == null) {
+					ActorInterpreter interpreter = interpreters.get(actor);
+					while (interpreter.schedule()) {
+						// check for cancelation
+						if (isStopped()) {
+							return SimulationEndOrigin.EXTERNALSTOP;
+						}
+						nbFiring++;
+					}
+				} else if (region.getLeader() == actor) {
+					// the region is scheduled in place of its leader
+					int nbRegionFiring;
+					while ((nbRegionFiring = region.schedule()) > 0) {
+						// check for cancelation
+						if (isStopped()) {
+							return SimulationEndOrigin.EXTERNALSTOP;
+						}
+						nbFiring += nbRegionFiring;
+					}
+				}
+
+				firings += nbFiring;
+				hasExecuted |= (nbFiring > 0);
+
+				// check for cancelation
+				if (isStopped()) {
+					return SimulationEndOrigin.EXTERNALSTOP;
+				}
+			}
+
+			// when the network cannot progress anymore, the static regions
+			// that cannot execute a whole iteration are scheduled dynamically
+			if (!hasExecuted && regions != null) {
+				for (StaticRegion region : getStaticRegions()) {
+					int nbFiring = region.scheduleDynamic();
+					firings += nbFiring;
+					hasExecuted |= (nbFiring > 0);
+				}
+			}
+
+			checkpointIfDue(network);
+		} while (hasExecuted);
+
+		return SimulationEndOrigin.NORMALEND;
+	}
 
-			// if required, use the type sizer transformation
-			if (enableTypeResizer) {
-				new TypeResizer(typeResizer[0], typeResizer[1], typeResizer[2],
-						typeResizer[3]).doSwitch(network);
+	/**
+	 * Loads, connects and simulates the network, then prints the results of
+	 * the simulation.
+	 */
+	protected void runSimulation() {
+		try {
+			killDescriptors();
+
+			firings = 0;
+			traffic = 0;
+			interpreters = new HashMap<Actor, ActorInterpreter>();
+			Network network = loadNetwork();
+
+			if (staticRegions) {
+				detectStaticRegions(network);
 			}
 
 			// create interpreters, connect network, initialize, and run
 			createInterpreters(network);
 			connectNetwork(network);
 			initializeNetwork(network);
+			initializeCheckpoints(network);
+			registerMetrics(network);
+			startMetricsSampler(network.getSimpleName(), metricsFile,
+					metricsPeriod, metricsJmx);
 
 			SimulationEndOrigin returnStatus = runNetwork(network);
+			stopMetricsSampler();
+			firings = countFirings();
+			traffic = countTraffic(network);
+			closeTraces(network);
 
 			killDescriptors();
 
@@ -322,7 +1151,21 @@ public class SlowSimulator extends AbstractSimulator {
 			} else {
 				OrccLogger.traceln("End of simulation");
 				OrccLogger.traceln("Simulation returned status code "
-						+ statusCode);
+						+ context.getStatusCode());
+			}
+
+			if (regions != null) {
+				for (StaticRegion region : getStaticRegions()) {
+					OrccLogger.debugln("Static region of "
+							+ region.getLeader().getName() + ": "
+							+ region.getIterations() + " iterations");
+				}
+			}
+
+			printNativeStatistics(network);
+
+			if (profile) {
+				printActorProfiles(network);
 			}
 
 			if (profile) {
@@ -331,36 +1174,84 @@ public class SlowSimulator extends AbstractSimulator {
 			}
 		} finally {
 			// clean up to prevent memory leak
+			stopMetricsSampler();
 			interpreters = null;
+			regions = null;
+			checkpointer = null;
 		}
 	}
 
-	protected SimulationEndOrigin runNetwork(Network network) {
-		boolean hasExecuted;
-		do {
-			hasExecuted = false;
-			for (Vertex vertex : network.getChildren()) {
-				int nbFiring = 0;
-				Actor actor = vertex.getAdapter(Actor.class);
-				ActorInterpreter interpreter = interpreters.get(actor);
+	/**
+	 * Simulates the network once with the given FIFO sizes, with a
+	 * round-robin scheduler, and returns the statistics of its FIFOs.
+	 * 
+	 * @param sizes
+	 *            a map from FIFO names to sizes, FIFOs not in the map keep
+	 *            their size
+	 * @return the statistics of the run, or <code>null</code> if the
+	 *         simulation was canceled
+	 */
+	RunStatistics simulate(Map<String, Integer> sizes) {
+		context.reset();
+		interpreters = new HashMap<Actor, ActorInterpreter>();
+		Network network = loadNetwork();
+		for (Connection connection : network.getConnections()) {
+			String name = getFifoName(connection);
+			if (name != null && sizes.containsKey(name)) {
+				connection.setSize(sizes.get(name));
+			}
+		}
 
-				while (interpreter.schedule()) {
-					// check for cancelation
-					if (isStopped()) {
-						return SimulationEndOrigin.EXTERNALSTOP;
-					}
-					nbFiring++;
-				}
+		createInterpreters(network);
+		connectNetwork(network);
+		initializeNetwork(network);
 
-				hasExecuted |= (nbFiring > 0);
+		firings = 0;
+		rounds = 0;
+		runRoundRobin(network);
+		if (isCanceled()) {
+			return null;
+		}
 
-				// check for cancelation
-				if (isStopped()) {
-					return SimulationEndOrigin.EXTERNALSTOP;
-				}
+		RunStatistics statistics = new RunStatistics(firings, rounds);
+		for (Connection connection : network.getConnections()) {
+			SimulatorFifo fifo = connection.getValueAsObject("fifo");
+			if (fifo != null) {
+				statistics.add(getFifoName(connection), new FifoStatistics(
+						fifo.getSize(), getMinSize(connection),
+						fifo.getHighWaterMark(), fifo.getBlocked()));
 			}
-		} while (hasExecuted);
+		}
+		return statistics;
+	}
 
-		return SimulationEndOrigin.NORMALEND;
+	/**
+	 * Sets the number of frames and of tokens of the next checkpoint.
+	 */
+	private void scheduleCheckpoint() {
+		nextCheckpointFrames = GenericDisplay.getDisplayedFrames()
+				+ checkpointFrames;
+		nextCheckpointTraffic = checkpointer.getTraffic() + checkpointTraffic;
 	}
+
+	/**
+	 * Returns <code>true</code> if this simulator can save the state of the
+	 * network in checkpoints during the simulation.
+	 * 
+	 * @return <code>true</code> if checkpoints are supported
+	 */
+	protected boolean supportsCheckpoints() {
+		return true;
+	}
+
+	/**
+	 * Returns <code>true</code> if this simulator can execute the static
+	 * regions of the network from their schedule.
+	 * 
+	 * @return <code>true</code> if static regions are supported
+	 */
+	protected boolean supportsStaticRegions() {
+		return !schedulingPolicy.isDataDriven();
+	}
+
 }
@@ -0,0 +1,544 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.slow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.df.Action;
+import net.sf.orcc.df.Actor;
+import net.sf.orcc.df.Connection;
+import net.sf.orcc.df.DfFactory;
+import net.sf.orcc.df.Network;
+import net.sf.orcc.df.Port;
+import net.sf.orcc.graph.Vertex;
+import net.sf.orcc.ir.util.ActorInterpreter;
+import net.sf.orcc.ir.util.IrUtil;
+import net.sf.orcc.moc.CSDFMoC;
+import net.sf.orcc.tools.merger.actor.Iterand;
+import net.sf.orcc.tools.merger.actor.SASLoopScheduler;
+import net.sf.orcc.tools.merger.actor.Schedule;
+import net.sf.orcc.tools.merger.actor.StaticRegionDetector;
+
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * This class executes a static region of a network, as found by
+ * {@link StaticRegionDetector} once the actors have been classified. The
+ * region is scheduled by a {@link SASLoopScheduler}, and an iteration of this
+ * schedule fires the actions in order, without evaluating their guards nor the
+ * FSM of their actors, as soon as the FIFOs at the boundary of the region have
+ * enough tokens and room for the whole iteration. The internal FIFOs of the
+ * region are sized so that an iteration never blocks.
+ * 
+ * <p>
+ * When the network cannot progress otherwise, e.g. at the end of the stimulus
+ * when the remaining tokens do not make a whole iteration, the actors of the
+ * region are scheduled dynamically. The region is then scheduled dynamically
+ * until every actor is back at the beginning of its cycle and the internal
+ * FIFOs are back to their initial state.
+ * </p>
+ * 
+ */
+public class StaticRegion {
+
+	/**
+	 * A FIFO at the boundary of the region, with the number of tokens read
+	 * from it or written to it by an iteration.
+	 */
+	private static class BoundaryFifo {
+
+		private final SimulatorFifo fifo;
+
+		private final int numTokens;
+
+		public BoundaryFifo(SimulatorFifo fifo, int numTokens) {
+			this.fifo = fifo;
+			this.numTokens = numTokens;
+		}
+
+	}
+
+	/**
+	 * The firing of an action by the interpreter of its actor.
+	 */
+	private static class Firing {
+
+		private final Action action;
+
+		private final ConnectedActorInterpreter interpreter;
+
+		public Firing(ConnectedActorInterpreter interpreter, Action action) {
+			this.interpreter = interpreter;
+			this.action = action;
+		}
+
+	}
+
+	/**
+	 * A loop of the schedule, whose body contains firings and nested loops.
+	 */
+	private static class Loop {
+
+		private final Object[] body;
+
+		private final int count;
+
+		public Loop(int count, Object[] body) {
+			this.count = count;
+			this.body = body;
+		}
+
+	}
+
+	private final List<Actor> actors;
+
+	private int[] baselines;
+
+	/**
+	 * number of actions fired by an iteration
+	 */
+	private int firings;
+
+	private List<SimulatorFifo> internalFifos;
+
+	private List<BoundaryFifo> inputs;
+
+	private ConnectedActorInterpreter[] interpreters;
+
+	private long iterations;
+
+	private final Actor leader;
+
+	private final Network network;
+
+	private int[] numPhases;
+
+	private List<BoundaryFifo> outputs;
+
+	private int[] phases;
+
+	/**
+	 * number of tokens read or written on the ports of the actors by an
+	 * iteration
+	 */
+	private final Map<Port, Integer> rates;
+
+	private Loop root;
+
+	private final Schedule schedule;
+
+	/**
+	 * number of tokens needed by an iteration on the internal connections
+	 */
+	private final Map<Connection, Integer> sizes;
+
+	/**
+	 * Computes the static schedule of the given region of the network.
+	 * 
+	 * @param network
+	 *            a flattened network whose actors have been classified
+	 * @param vertices
+	 *            a static region of this network
+	 * @throws OrccRuntimeException
+	 *             if the region is inconsistent
+	 */
+	public StaticRegion(Network network, List<Vertex> vertices) {
+		this.network = network;
+
+		actors = new ArrayList<Actor>();
+		for (Vertex vertex : vertices) {
+			actors.add(vertex.getAdapter(Actor.class));
+		}
+
+		// the region is scheduled in place of its first actor
+		Actor first = null;
+		for (Vertex vertex : network.getChildren()) {
+			if (vertices.contains(vertex)) {
+				first = vertex.getAdapter(Actor.class);
+				break;
+			}
+		}
+		leader = first;
+
+		SASLoopScheduler scheduler = new SASLoopScheduler(getSubNetwork());
+		scheduler.schedule();
+		schedule = scheduler.getSchedule();
+
+		sizes = new HashMap<Connection, Integer>();
+		for (Map.Entry<Connection, Integer> entry : scheduler.getMaxTokens()
+				.entrySet()) {
+			Connection connection = getConnection(entry.getKey());
+			if (connection != null) {
+				sizes.put(connection, entry.getValue()
+						+ getInitialTokens(connection));
+			}
+		}
+
+		rates = new HashMap<Port, Integer>();
+		addRates(schedule, 1);
+	}
+
+	/**
+	 * Adds the number of tokens read and written by the given schedule,
+	 * repeated the given number of times, to the rates of the ports.
+	 */
+	private void addRates(Schedule schedule, int factor) {
+		int count = factor * Math.max(1, schedule.getIterationCount());
+		for (Iterand iterand : schedule.getIterands()) {
+			if (iterand.isSchedule()) {
+				addRates(iterand.getSchedule(), count);
+			} else {
+				Action action = getAction(iterand.getAction());
+				Actor actor = (Actor) action.eContainer();
+				for (Port port : actor.getInputs()) {
+					addRate(port, count
+							* action.getInputPattern().getNumTokens(port));
+				}
+				for (Port port : actor.getOutputs()) {
+					addRate(port, count
+							* action.getOutputPattern().getNumTokens(port));
+				}
+				firings += count;
+			}
+		}
+	}
+
+	private void addRate(Port port, int numTokens) {
+		Integer rate = rates.get(port);
+		rates.put(port, rate == null ? numTokens : rate + numTokens);
+	}
+
+	/**
+	 * Associates the region with the interpreters of its actors, and records
+	 * the initial state of its FIFOs. The network must be connected and
+	 * initialized.
+	 * 
+	 * @param interpreters
+	 *            the interpreters of the actors of the network
+	 */
+	public void connect(Map<Actor, ActorInterpreter> interpreters) {
+		this.interpreters = new ConnectedActorInterpreter[actors.size()];
+		phases = new int[actors.size()];
+		numPhases = new int[actors.size()];
+		for (int i = 0; i < actors.size(); i++) {
+			Actor actor = actors.get(i);
+			this.interpreters[i] = (ConnectedActorInterpreter) interpreters
+					.get(actor);
+			numPhases[i] = ((CSDFMoC) actor.getMoC()).getInvocations().size();
+		}
+
+		inputs = new ArrayList<BoundaryFifo>();
+		outputs = new ArrayList<BoundaryFifo>();
+		internalFifos = new ArrayList<SimulatorFifo>();
+		for (Connection connection : network.getConnections()) {
+			SimulatorFifo fifo = connection.getValueAsObject("fifo");
+			if (fifo == null) {
+				continue;
+			}
+
+			boolean src = actors.contains(connection.getSource());
+			boolean tgt = actors.contains(connection.getTarget());
+			if (src && tgt) {
+				internalFifos.add(fifo);
+			} else if (tgt) {
+				inputs.add(new BoundaryFifo(fifo, getRate(connection
+						.getTargetPort())));
+			} else if (src) {
+				outputs.add(new BoundaryFifo(fifo, getRate(connection
+						.getSourcePort())));
+			}
+		}
+
+		baselines = new int[internalFifos.size()];
+		for (int i = 0; i < baselines.length; i++) {
+			baselines[i] = internalFifos.get(i).getNumTokens();
+		}
+
+		root = createLoop(schedule);
+	}
+
+	/**
+	 * Creates the loop that executes the given schedule.
+	 */
+	private Loop createLoop(Schedule schedule) {
+		List<Object> body = new ArrayList<Object>();
+		for (Iterand iterand : schedule.getIterands()) {
+			if (iterand.isSchedule()) {
+				body.add(createLoop(iterand.getSchedule()));
+			} else {
+				Action action = getAction(iterand.getAction());
+				Actor actor = (Actor) action.eContainer();
+				body.add(new Firing(interpreters[actors.indexOf(actor)],
+						action));
+			}
+		}
+		return new Loop(Math.max(1, schedule.getIterationCount()),
+				body.toArray());
+	}
+
+	/**
+	 * Executes the given loop.
+	 */
+	private void execute(Loop loop) {
+		Object[] body = loop.body;
+		for (int i = 0; i < loop.count; i++) {
+			for (Object step : body) {
+				if (step instanceof Firing) {
+					Firing firing = (Firing) step;
+					try {
+						firing.interpreter.execute(firing.action);
+					} catch (OrccRuntimeException e) {
+						throw new OrccRuntimeException(
+								"Runtime exception thrown by actor "
+										+ firing.interpreter.getActor()
+												.getName(), e);
+					}
+				} else {
+					execute((Loop) step);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the action of the network that corresponds to the given action
+	 * of the sub-network.
+	 */
+	private Action getAction(Action action) {
+		Actor copy = (Actor) action.eContainer();
+		Actor actor = network.getChild(copy.getLabel()).getAdapter(
+				Actor.class);
+		return actor.getActions().get(copy.getActions().indexOf(action));
+	}
+
+	/**
+	 * Returns the actors of the region.
+	 * 
+	 * @return the actors of the region
+	 */
+	public List<Actor> getActors() {
+		return actors;
+	}
+
+	/**
+	 * Returns the connection of the network that corresponds to the given
+	 * connection of the sub-network.
+	 */
+	private Connection getConnection(Connection connection) {
+		Actor src = network.getChild(connection.getSource().getLabel())
+				.getAdapter(Actor.class);
+		Port srcPort = src.getOutput(connection.getSourcePort().getName());
+		String tgt = connection.getTarget().getLabel();
+		String tgtPort = connection.getTargetPort().getName();
+		for (Connection candidate : src.getOutgoingPortMap().get(srcPort)) {
+			if (candidate.getTarget().getLabel().equals(tgt)
+					&& candidate.getTargetPort().getName().equals(tgtPort)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of tokens written on the given connection by the
+	 * initialize actions of its source.
+	 */
+	private int getInitialTokens(Connection connection) {
+		int numTokens = 0;
+		Actor src = connection.getSource().getAdapter(Actor.class);
+		for (Action action : src.getInitializes()) {
+			numTokens += action.getOutputPattern().getNumTokens(
+					connection.getSourcePort());
+		}
+		return numTokens;
+	}
+
+	/**
+	 * Returns the number of iterations of the static schedule executed so
+	 * far.
+	 * 
+	 * @return a number of iterations
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Returns the actor in place of which the region is scheduled.
+	 * 
+	 * @return the first actor of the region in the children of the network
+	 */
+	public Actor getLeader() {
+		return leader;
+	}
+
+	private int getRate(Port port) {
+		Integer rate = rates.get(port);
+		return rate == null ? 0 : rate;
+	}
+
+	/**
+	 * Returns a copy of the network that only contains the actors of the
+	 * region, whose connections with the other actors are replaced by ports.
+	 */
+	private Network getSubNetwork() {
+		DfFactory factory = DfFactory.eINSTANCE;
+		Network subNetwork = IrUtil.copy(network);
+
+		List<Vertex> vertices = new ArrayList<Vertex>();
+		for (Actor actor : actors) {
+			vertices.add(subNetwork.getChild(actor.getLabel()));
+		}
+		for (Vertex vertex : new ArrayList<Vertex>(subNetwork.getChildren())) {
+			if (!vertices.contains(vertex)) {
+				subNetwork.remove(vertex);
+			}
+		}
+
+		for (Vertex vertex : vertices) {
+			Actor actor = vertex.getAdapter(Actor.class);
+			List<Port> unconnected = new ArrayList<Port>(actor.getInputs());
+			unconnected.removeAll(actor.getIncomingPortMap().keySet());
+			for (Port input : unconnected) {
+				Port port = EcoreUtil.copy(input);
+				port.setName(actor.getName() + "_" + input.getName());
+				subNetwork.addInput(port);
+				subNetwork.add(factory.createConnection(port, null, vertex,
+						input));
+			}
+
+			unconnected = new ArrayList<Port>(actor.getOutputs());
+			unconnected.removeAll(actor.getOutgoingPortMap().keySet());
+			for (Port output : unconnected) {
+				Port port = EcoreUtil.copy(output);
+				port.setName(actor.getName() + "_" + output.getName());
+				subNetwork.addOutput(port);
+				subNetwork.add(factory.createConnection(vertex, output, port,
+						null));
+			}
+		}
+
+		return subNetwork;
+	}
+
+	/**
+	 * Returns <code>true</code> if every actor is at the beginning of its
+	 * cycle and the internal FIFOs contain as many tokens as after the
+	 * initialization, so that the static schedule can be executed.
+	 */
+	private boolean isAligned() {
+		for (int phase : phases) {
+			if (phase != 0) {
+				return false;
+			}
+		}
+		for (int i = 0; i < baselines.length; i++) {
+			if (internalFifos.get(i).getNumTokens() != baselines[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Executes an iteration of the static schedule if the FIFOs at the
+	 * boundary of the region allow it. If the region is not at the beginning
+	 * of an iteration, its actors are scheduled dynamically instead.
+	 * 
+	 * @return the number of actions fired
+	 */
+	public int schedule() {
+		if (!isAligned()) {
+			return scheduleDynamic();
+		}
+
+		for (BoundaryFifo input : inputs) {
+			if (!input.fifo.hasTokens(input.numTokens)) {
+				return 0;
+			}
+		}
+		for (BoundaryFifo output : outputs) {
+			if (!output.fifo.hasRoom(output.numTokens)) {
+				return 0;
+			}
+		}
+
+		execute(root);
+		iterations++;
+		return firings;
+	}
+
+	/**
+	 * Schedules each actor of the region once, dynamically.
+	 * 
+	 * @return the number of actions fired
+	 */
+	public int scheduleDynamic() {
+		int fired = 0;
+		for (int i = 0; i < interpreters.length; i++) {
+			if (interpreters[i].schedule()) {
+				phases[i] = (phases[i] + 1) % numPhases[i];
+				fired++;
+			}
+		}
+		return fired;
+	}
+
+	/**
+	 * Sets the size of the internal connections of the region to at least the
+	 * number of tokens they contain during an iteration of the schedule.
+	 * 
+	 * @param defaultSize
+	 *            the size of the connections that have no size
+	 */
+	public void setFifoSizes(int defaultSize) {
+		for (Map.Entry<Connection, Integer> entry : sizes.entrySet()) {
+			Connection connection = entry.getKey();
+			Integer size = connection.getSize();
+			if ((size == null ? defaultSize : size) < entry.getValue()) {
+				connection.setSize(entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Actor actor : actors) {
+			builder.append(builder.length() == 0 ? "" : ", ").append(
+					actor.getName());
+		}
+		return "{" + builder + "}: " + schedule;
+	}
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.util.OrccLogger;
+
+/**
+ * This class compares the FIFO traces of two folders, for instance the traces
+ * of the simulator and the traces of the code generated by the C back-end,
+ * and reports the first divergent token of each FIFO.
+ * 
+ * <p>
+ * Traces are paired by the name of the input port they feed: the C back-end
+ * names them "&lt;instance&gt;_&lt;port&gt;.txt", binary traces of the
+ * simulator are named alike, and text traces of the simulator are named
+ * "&lt;source&gt;.&lt;port&gt; --&gt; &lt;target&gt;.&lt;port&gt;_traces.txt".
+ * </p>
+ * 
+ */
+public class TraceDiff {
+
+	/**
+	 * Relative tolerance used to compare floating-point tokens, which are
+	 * printed with 6 decimals by the C back-end.
+	 */
+	private static final double EPSILON = 1e-6;
+
+	/**
+	 * Returns the key used to pair the given trace with the trace of the same
+	 * FIFO in another folder.
+	 * 
+	 * @param fileName
+	 *            name of a trace file
+	 * @return a key, or <code>null</code> if the file is not a trace
+	 */
+	public static String getKey(String fileName) {
+		String key = fileName;
+		if (key.endsWith(".gz")) {
+			key = key.substring(0, key.length() - 3);
+		}
+
+		if (key.endsWith(".bin") || key.endsWith(".txt")) {
+			key = key.substring(0, key.length() - 4);
+		} else {
+			return null;
+		}
+
+		if (key.endsWith("_traces")) {
+			key = key.substring(0, key.length() - 7);
+		}
+
+		int arrow = key.indexOf(" --> ");
+		if (arrow != -1) {
+			key = key.substring(arrow + 5);
+			int dot = key.lastIndexOf('.');
+			if (dot != -1) {
+				key = key.substring(0, dot) + "_" + key.substring(dot + 1);
+			}
+		}
+
+		// index of the traces generated by the C back-end
+		return "traces".equals(key) ? null : key;
+	}
+
+	private static boolean isSameToken(String token1, String token2) {
+		if (token1.equals(token2)) {
+			return true;
+		}
+
+		try {
+			double value1 = Double.parseDouble(token1);
+			double value2 = Double.parseDouble(token2);
+			double scale = Math.max(1.0, Math.abs(value1));
+			return Math.abs(value1 - value2) <= EPSILON * scale;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Lists the traces of the given folder by key.
+	 */
+	private static Map<String, File> listTraces(File folder) {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			throw new OrccRuntimeException("Unable to read traces folder "
+					+ folder);
+		}
+
+		Map<String, File> traces = new TreeMap<String, File>();
+		for (File file : files) {
+			String key = getKey(file.getName());
+			if (key != null && file.isFile()) {
+				traces.put(key, file);
+			}
+		}
+		return traces;
+	}
+
+	/**
+	 * Compares the traces of the given folders. Every trace of the reference
+	 * folder must have a counterpart in the other folder, while the traces
+	 * only found in the other folder are just counted (the C back-end also
+	 * traces output ports).
+	 * 
+	 * @param reference
+	 *            the folder of the reference traces
+	 * @param folder
+	 *            the folder of the traces to check
+	 * @return the number of FIFOs whose traces differ or are missing
+	 */
+	public int compare(File reference, File folder) {
+		Map<String, File> expected = listTraces(reference);
+		Map<String, File> actual = listTraces(folder);
+
+		int errors = 0;
+		int identical = 0;
+		for (Entry<String, File> entry : expected.entrySet()) {
+			String key = entry.getKey();
+			File other = actual.remove(key);
+			if (other == null) {
+				OrccLogger.warnln(key + ": no trace in " + folder);
+				errors++;
+			} else if (compare(key, entry.getValue(), other)) {
+				identical++;
+			} else {
+				errors++;
+			}
+		}
+
+		OrccLogger.traceln(identical + " identical FIFO traces, " + errors
+				+ " different or missing");
+		if (!actual.isEmpty()) {
+			OrccLogger.traceln(actual.size() + " traces of " + folder
+					+ " have no reference");
+		}
+		return errors;
+	}
+
+	/**
+	 * Compares the given traces of a FIFO and reports the first divergent
+	 * token.
+	 * 
+	 * @return <code>true</code> if the traces are identical
+	 */
+	private boolean compare(String key, File reference, File file) {
+		TraceReader expected = null;
+		TraceReader actual = null;
+		try {
+			expected = new TraceReader(reference);
+			actual = new TraceReader(file);
+			String name = expected.getFifoName() != null ? expected
+					.getFifoName() : actual.getFifoName();
+			String label = name != null ? name : key;
+
+			long index = 0;
+			while (true) {
+				String token1 = expected.next();
+				String token2 = actual.next();
+				if (token1 == null && token2 == null) {
+					return true;
+				} else if (token1 == null) {
+					OrccLogger.warnln(label + ": reference ends after "
+							+ index + " tokens, got " + token2);
+					return false;
+				} else if (token2 == null) {
+					OrccLogger.warnln(label + ": trace ends after " + index
+							+ " tokens, expected " + token1);
+					return false;
+				} else if (!isSameToken(token1, token2)) {
+					OrccLogger.warnln(label + ": token " + index
+							+ " differs, expected " + token1 + ", got "
+							+ token2);
+					return false;
+				}
+				index++;
+			}
+		} catch (IOException e) {
+			throw new OrccRuntimeException("Unable to compare traces of "
+					+ key, e);
+		} finally {
+			close(expected);
+			close(actual);
+		}
+	}
+
+	private void close(TraceReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				OrccLogger.warnln("Unable to close trace: " + e.getMessage());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.trace;
+
+import java.io.File;
+import java.util.List;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.util.OrccLogger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+/**
+ * Command-line tool that compares the FIFO traces of two folders. The exit
+ * code is the number of FIFOs whose traces differ or are missing.
+ * 
+ * @see TraceDiff
+ */
+public class TraceDiffCli implements IApplication {
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		Options clOptions = new Options();
+		clOptions.addOption("h", "help", false, "Print this help message");
+
+		try {
+			CommandLineParser parser = new PosixParser();
+			CommandLine commandLine = parser.parse(
+					clOptions,
+					(String[]) context.getArguments().get(
+							IApplicationContext.APPLICATION_ARGS));
+
+			List<?> args = commandLine.getArgList();
+			if (commandLine.hasOption('h') || args.size() != 2) {
+				printUsage(clOptions, null);
+				return IApplication.EXIT_RELAUNCH;
+			}
+
+			File reference = new File((String) args.get(0));
+			File folder = new File((String) args.get(1));
+			int errors = new TraceDiff().compare(reference, folder);
+			return errors == 0 ? IApplication.EXIT_OK : Integer
+					.valueOf(errors);
+		} catch (ParseException pe) {
+			printUsage(clOptions, pe.getLocalizedMessage());
+		} catch (OrccRuntimeException oe) {
+			OrccLogger.severeln(oe.getMessage());
+		}
+
+		return IApplication.EXIT_RELAUNCH;
+	}
+
+	@Override
+	public void stop() {
+
+	}
+
+	public void printUsage(Options options, String parserMsg) {
+		String footer = "";
+		if (parserMsg != null && !parserMsg.isEmpty()) {
+			footer = "\nMessage of the command line parser :\n" + parserMsg;
+		}
+
+		HelpFormatter helpFormatter = new HelpFormatter();
+		helpFormatter.setWidth(80);
+		helpFormatter.printHelp(
+				"net.sf.orcc.simulators.tracediff [options] "
+						+ "<reference traces folder> <traces folder>",
+				"Valid options are :", options, footer);
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class reads the tokens of a FIFO trace. It accepts the binary traces
+ * written by {@link TraceWriter}, compressed or not, as well as the text
+ * traces written by the simulator and by the C back-end (one token per line).
+ * Tokens are returned as decimal strings, booleans being returned as "1" and
+ * "0" so that traces of both origins can be compared.
+ * 
+ */
+public class TraceReader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int GZIP_MAGIC = 0x1F8B;
+
+	private DataInputStream data;
+
+	private String fifoName;
+
+	private byte kind;
+
+	private BufferedReader reader;
+
+	private int remaining;
+
+	private int width;
+
+	/**
+	 * Opens the given trace.
+	 * 
+	 * @param file
+	 *            a binary or text trace
+	 * @throws IOException
+	 *             if the trace cannot be read
+	 */
+	public TraceReader(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file),
+				BUFFER_SIZE);
+		try {
+			if (readMagic(in, 2) == GZIP_MAGIC) {
+				in = new BufferedInputStream(new GZIPInputStream(in,
+						BUFFER_SIZE), BUFFER_SIZE);
+			}
+
+			if (readMagic(in, 4) == TraceWriter.MAGIC) {
+				data = new DataInputStream(in);
+				data.readInt();
+				fifoName = data.readUTF();
+				kind = data.readByte();
+				width = data.readByte();
+			} else {
+				reader = new BufferedReader(new InputStreamReader(in, "UTF-8"),
+						BUFFER_SIZE);
+			}
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes this trace.
+	 */
+	public void close() throws IOException {
+		if (data != null) {
+			data.close();
+		} else {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Returns the name of the FIFO stored in a binary trace.
+	 * 
+	 * @return the name of the traced FIFO, or <code>null</code> for a text
+	 *         trace
+	 */
+	public String getFifoName() {
+		return fifoName;
+	}
+
+	/**
+	 * Returns <code>true</code> if this trace is a binary trace.
+	 * 
+	 * @return <code>true</code> if this trace is a binary trace
+	 */
+	public boolean isBinary() {
+		return data != null;
+	}
+
+	/**
+	 * Returns the next token of the trace.
+	 * 
+	 * @return a token, or <code>null</code> at the end of the trace
+	 * @throws IOException
+	 *             if the trace cannot be read
+	 */
+	public String next() throws IOException {
+		if (data == null) {
+			String line;
+			do {
+				line = reader.readLine();
+				if (line == null) {
+					return null;
+				}
+				line = line.trim();
+			} while (line.isEmpty());
+
+			if ("true".equals(line)) {
+				return "1";
+			} else if ("false".equals(line)) {
+				return "0";
+			}
+			return line;
+		}
+
+		if (remaining == 0) {
+			try {
+				remaining = data.readInt();
+			} catch (EOFException e) {
+				return null;
+			}
+		}
+
+		remaining--;
+		if (kind == TraceWriter.KIND_BOOL) {
+			return data.readByte() == 0 ? "0" : "1";
+		} else if (kind == TraceWriter.KIND_FLOAT) {
+			return Double.toString(data.readDouble());
+		}
+
+		if (kind == TraceWriter.KIND_UINT) {
+			switch (width) {
+			case 1:
+				return Integer.toString(data.readUnsignedByte());
+			case 2:
+				return Integer.toString(data.readUnsignedShort());
+			case 4:
+				return Long.toString(data.readInt() & 0xFFFFFFFFL);
+			default:
+				long value = data.readLong();
+				if (value >= 0) {
+					return Long.toString(value);
+				}
+				return BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63)
+						.toString();
+			}
+		}
+
+		switch (width) {
+		case 1:
+			return Byte.toString(data.readByte());
+		case 2:
+			return Short.toString(data.readShort());
+		case 4:
+			return Integer.toString(data.readInt());
+		default:
+			return Long.toString(data.readLong());
+		}
+	}
+
+	/**
+	 * Returns the first bytes of the given stream as an integer, leaving the
+	 * stream unchanged.
+	 */
+	private int readMagic(InputStream in, int numBytes) throws IOException {
+		in.mark(numBytes);
+		int magic = 0;
+		for (int i = 0; i < numBytes; i++) {
+			int b = in.read();
+			if (b == -1) {
+				magic = -1;
+				break;
+			}
+			magic = (magic << 8) | b;
+		}
+		in.reset();
+		return magic;
+	}
+
+}
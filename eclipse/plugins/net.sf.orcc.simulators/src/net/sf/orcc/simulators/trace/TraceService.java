@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.trace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import net.sf.orcc.OrccRuntimeException;
+
+/**
+ * This class defines the background thread that writes the blocks of the
+ * binary traces of a simulation. Blocks are passed through a bounded queue:
+ * when the thread cannot keep up, the simulation waits for room in the queue
+ * instead of accumulating blocks in memory.
+ * 
+ */
+public class TraceService {
+
+	/**
+	 * A block of bytes to write in a stream, or a request to close the stream
+	 * when <code>data</code> is <code>null</code>.
+	 */
+	private static class Block {
+
+		private final byte[] data;
+
+		private final int length;
+
+		private final OutputStream out;
+
+		public Block(OutputStream out, byte[] data, int length) {
+			this.out = out;
+			this.data = data;
+			this.length = length;
+		}
+
+	}
+
+	/**
+	 * Maximum number of blocks waiting to be written.
+	 */
+	private static final int CAPACITY = 64;
+
+	private static final Block END = new Block(null, null, 0);
+
+	private volatile IOException error;
+
+	private final BlockingQueue<Block> queue;
+
+	private final Thread thread;
+
+	/**
+	 * Creates and starts a new trace service.
+	 */
+	public TraceService() {
+		queue = new ArrayBlockingQueue<Block>(CAPACITY);
+		thread = new Thread("Orcc trace writer") {
+
+			@Override
+			public void run() {
+				processBlocks();
+			}
+
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Requests the given stream to be closed once its pending blocks are
+	 * written.
+	 * 
+	 * @param out
+	 *            an output stream
+	 */
+	public void close(OutputStream out) {
+		put(new Block(out, null, 0));
+	}
+
+	/**
+	 * Writes the blocks of the queue until the end of the service.
+	 */
+	private void processBlocks() {
+		while (true) {
+			Block block;
+			try {
+				block = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			if (block == END) {
+				return;
+			}
+
+			try {
+				if (block.data == null) {
+					// streams are closed even after an error, not to leak them
+					block.out.close();
+				} else if (error == null) {
+					block.out.write(block.data, 0, block.length);
+				}
+				// else the traces are incomplete anyway, blocks are dropped
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				}
+			}
+		}
+	}
+
+	private void put(Block block) {
+		try {
+			queue.put(block);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OrccRuntimeException("Interrupted while writing traces",
+					e);
+		}
+	}
+
+	/**
+	 * Waits until all the pending blocks are written, and stops the service.
+	 * 
+	 * @throws OrccRuntimeException
+	 *             if an I/O error occurred while writing the traces
+	 */
+	public void shutdown() {
+		put(END);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (error != null) {
+			throw new OrccRuntimeException("I/O error when writing traces",
+					error);
+		}
+	}
+
+	/**
+	 * Requests the given bytes to be written in the given stream. The array
+	 * must not be modified by the caller afterwards.
+	 * 
+	 * @param out
+	 *            an output stream
+	 * @param data
+	 *            an array of bytes
+	 * @param length
+	 *            number of bytes of the array to write
+	 */
+	public void write(OutputStream out, byte[] data, int length) {
+		put(new Block(out, data, length));
+	}
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2015, IETR/INSA of Rennes
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *   * Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   * Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   * Neither the name of the IETR/INSA of Rennes nor the names of its
+ *     contributors may be used to endorse or promote products derived from this
+ *     software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY
+ * WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+package net.sf.orcc.simulators.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.orcc.OrccRuntimeException;
+import net.sf.orcc.ir.Type;
+
+/**
+ * This class writes the tokens exchanged through a FIFO in a binary trace.
+ * Tokens are encoded in blocks according to the type of the FIFO, and the
+ * blocks are handed to a {@link TraceService} that writes them in the
+ * background, optionally through a GZIP stream.
+ * 
+ * <p>
+ * A binary trace starts with the magic number {@link #MAGIC}, the name of the
+ * FIFO (modified UTF-8), the kind of tokens ({@link #KIND_BOOL},
+ * {@link #KIND_INT}, {@link #KIND_UINT} or {@link #KIND_FLOAT}) and the number
+ * of bytes of each token. It is followed by blocks made of a number of tokens
+ * and the big-endian tokens themselves. Integers are stored on the smallest
+ * width that holds all the values of their type, as in the text traces, so
+ * integers wider than 64 bits cannot be written in a binary trace.
+ * </p>
+ * 
+ */
+public class TraceWriter {
+
+	/**
+	 * Size in bytes of the blocks handed to the trace service.
+	 */
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	public static final byte KIND_BOOL = 0;
+
+	public static final byte KIND_FLOAT = 2;
+
+	public static final byte KIND_INT = 1;
+
+	public static final byte KIND_UINT = 3;
+
+	/**
+	 * Magic number of binary traces.
+	 */
+	public static final int MAGIC = 0x4F524354;
+
+	/**
+	 * Maximum size in bits of the integers of a binary trace.
+	 */
+	private static final int MAX_SIZE = 64;
+
+	/**
+	 * Returns the number of bytes used to store the tokens of the given type.
+	 * 
+	 * @param type
+	 *            type of the tokens of a FIFO
+	 * @return a number of bytes
+	 */
+	private static int getWidth(Type type) {
+		if (type.isBool()) {
+			return 1;
+		} else if (type.isFloat()) {
+			return 8;
+		}
+
+		// unsigned integers are read back as unsigned (see KIND_UINT)
+		int size = type.getSizeInBits();
+		if (size <= 8) {
+			return 1;
+		} else if (size <= 16) {
+			return 2;
+		} else if (size <= 32) {
+			return 4;
+		} else {
+			return 8;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the tokens of the given type can be
+	 * written in a binary trace.
+	 * 
+	 * @param type
+	 *            type of the tokens of a FIFO
+	 * @return <code>true</code> if the type is a boolean, float or integer
+	 *         type, integers being at most 64 bits wide
+	 */
+	public static boolean isTraceable(Type type) {
+		if (type == null) {
+			return false;
+		} else if (type.isBool() || type.isFloat()) {
+			return true;
+		}
+		return (type.isInt() || type.isUint())
+				&& type.getSizeInBits() <= MAX_SIZE;
+	}
+
+	/**
+	 * The stream of a trace file. Closing it always closes the file, even
+	 * when the pending bytes (e.g. the end of a GZIP stream) cannot be
+	 * written.
+	 */
+	private static class TraceStream extends FilterOutputStream {
+
+		private final OutputStream file;
+
+		public TraceStream(OutputStream out, OutputStream file) {
+			super(out);
+			this.file = file;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				out.close();
+			} finally {
+				file.close();
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+	}
+
+	private ByteBuffer block;
+
+	private final String fifoName;
+
+	private final byte kind;
+
+	private final OutputStream out;
+
+	private final TraceService service;
+
+	private final int width;
+
+	/**
+	 * Creates a new binary trace in the given file.
+	 * 
+	 * @param service
+	 *            the service that writes the blocks of the trace
+	 * @param file
+	 *            trace file
+	 * @param fifoName
+	 *            name of the traced FIFO
+	 * @param type
+	 *            type of the tokens of the FIFO
+	 * @param compressed
+	 *            <code>true</code> if the trace must be compressed
+	 */
+	public TraceWriter(TraceService service, File file, String fifoName,
+			Type type, boolean compressed) {
+		this.service = service;
+		this.fifoName = fifoName;
+		if (!isTraceable(type)) {
+			throw new OrccRuntimeException("cannot trace tokens of type "
+					+ type);
+		} else if (type.isBool()) {
+			kind = KIND_BOOL;
+		} else if (type.isFloat()) {
+			kind = KIND_FLOAT;
+		} else if (type.isUint()) {
+			kind = KIND_UINT;
+		} else {
+			kind = KIND_INT;
+		}
+		width = getWidth(type);
+
+		FileOutputStream fileStream = null;
+		try {
+			fileStream = new FileOutputStream(file);
+			OutputStream stream = new BufferedOutputStream(fileStream,
+					BLOCK_SIZE);
+			if (compressed) {
+				stream = new GZIPOutputStream(stream, BLOCK_SIZE);
+			}
+			out = new TraceStream(stream, fileStream);
+
+			// the header is written before any block is handed to the service
+			DataOutputStream header = new DataOutputStream(out);
+			header.writeInt(MAGIC);
+			header.writeUTF(fifoName);
+			header.writeByte(kind);
+			header.writeByte(width);
+			header.flush();
+		} catch (IOException e) {
+			if (fileStream != null) {
+				try {
+					fileStream.close();
+				} catch (IOException ignored) {
+				}
+			}
+			throw new OrccRuntimeException("Unable to create trace file "
+					+ file, e);
+		}
+
+		newBlock();
+	}
+
+	/**
+	 * Writes the pending tokens and closes this trace.
+	 */
+	public void close() {
+		flush();
+		service.close(out);
+	}
+
+	/**
+	 * Hands the current block to the trace service, if it contains tokens.
+	 */
+	private void flush() {
+		int length = block.position();
+		if (length > 4) {
+			block.putInt(0, (length - 4) / width);
+			service.write(out, block.array(), length);
+			newBlock();
+		}
+	}
+
+	private void newBlock() {
+		block = ByteBuffer.allocate(BLOCK_SIZE);
+		// room for the number of tokens
+		block.position(4);
+	}
+
+	/**
+	 * Writes the given token in this trace.
+	 * 
+	 * @param value
+	 *            a token
+	 */
+	public void write(Object value) {
+		if (block.remaining() < width) {
+			flush();
+		}
+
+		if (kind == KIND_BOOL) {
+			block.put((byte) (Boolean.TRUE.equals(value) ? 1 : 0));
+		} else if (kind == KIND_FLOAT) {
+			block.putDouble(((Number) value).doubleValue());
+		} else {
+			if (value instanceof BigInteger) {
+				// the sign bit of signed integers is not counted
+				int bits = ((BigInteger) value).bitLength();
+				if (bits > (kind == KIND_UINT ? MAX_SIZE : MAX_SIZE - 1)) {
+					throw new OrccRuntimeException("cannot trace the value "
+							+ value + " of FIFO " + fifoName + " on "
+							+ MAX_SIZE + " bits");
+				}
+			}
+
+			long intVal = ((Number) value).longValue();
+			switch (width) {
+			case 1:
+				block.put((byte) intVal);
+				break;
+			case 2:
+				block.putShort((short) intVal);
+				break;
+			case 4:
+				block.putInt((int) intVal);
+				break;
+			default:
+				block.putLong(intVal);
+				break;
+			}
+		}
+	}
+
+}
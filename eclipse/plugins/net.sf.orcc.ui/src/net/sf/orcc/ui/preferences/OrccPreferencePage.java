@@ -28,6 +28,7 @@
  */
 package net.sf.orcc.ui.preferences;
 
+import static net.sf.orcc.preferences.PreferenceConstants.P_BINARY_IR;
 import static net.sf.orcc.preferences.PreferenceConstants.P_JADE;
 import static net.sf.orcc.preferences.PreferenceConstants.P_SOLVER;
 import static net.sf.orcc.preferences.PreferenceConstants.P_SOLVER_OPTIONS;
@@ -36,6 +37,7 @@ import net.sf.orcc.OrccActivator;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.FileFieldEditor;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -122,10 +124,28 @@ public class OrccPreferencePage extends FieldEditorPreferencePage implements
 		Composite parent = getFieldEditorParent();
 		parent.setLayout(new GridLayout(1, false));
 
+		createFrontendFieldEditors(parent);
 		createJadeFieldEditors(parent);
 		createSolverFieldEditors(parent);
 	}
 
+	/**
+	 * Creates field editors for the frontend preferences.
+	 * 
+	 * @param parent
+	 *            parent composite
+	 */
+	private void createFrontendFieldEditors(Composite parent) {
+		Group group = new Group(parent, SWT.NONE);
+		group.setFont(getFont());
+		group.setLayout(new GridLayout(1, false));
+		group.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+		group.setText("Frontend");
+
+		addField(new BooleanFieldEditor(P_BINARY_IR,
+				"Write IR files in compact binary format", group));
+	}
+
 	/**
 	 * Creates field editors for the Jade preferences.
 	 * 